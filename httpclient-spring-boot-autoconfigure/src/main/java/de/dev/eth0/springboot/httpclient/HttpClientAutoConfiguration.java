@@ -4,8 +4,20 @@
 
 package de.dev.eth0.springboot.httpclient;
 
+import java.time.Duration;
+import java.util.stream.Collectors;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.core5.reactive.ReactiveResponseConsumer;
 import org.apache.http.client.HttpClient;
 import org.apache.http.impl.client.HttpClientBuilder;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.actuate.autoconfigure.endpoint.condition.ConditionalOnAvailableEndpoint;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.autoconfigure.AutoConfigureAfter;
+import org.springframework.boot.autoconfigure.AutoConfigureBefore;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnBean;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
@@ -17,9 +29,27 @@ import org.springframework.context.annotation.Configuration;
 import org.springframework.http.client.ClientHttpRequestFactory;
 import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
 import org.springframework.http.client.OkHttp3ClientHttpRequestFactory;
+import org.springframework.http.client.reactive.ClientHttpConnector;
+import org.springframework.http.client.reactive.HttpComponentsClientHttpConnector;
 
+import de.dev.eth0.springboot.httpclient.impl.ApacheHttpClientCustomizer;
+import de.dev.eth0.springboot.httpclient.impl.ConfigurableApacheHttpClient5Factory;
 import de.dev.eth0.springboot.httpclient.impl.ConfigurableApacheHttpClientFactory;
+import de.dev.eth0.springboot.httpclient.impl.ConfigurableJdkHttpClientFactory;
 import de.dev.eth0.springboot.httpclient.impl.ConfigurableOkHttpClientFactory;
+import de.dev.eth0.springboot.httpclient.impl.ConfigurableReactorNettyHttpClientFactory;
+import de.dev.eth0.springboot.httpclient.impl.HttpComponents5ClientHttpRequestFactory;
+import de.dev.eth0.springboot.httpclient.impl.JdkClientHttpRequestFactory;
+import de.dev.eth0.springboot.httpclient.impl.OkHttpClientCustomizer;
+import de.dev.eth0.springboot.httpclient.impl.actuator.ApacheHttpClientInspector;
+import de.dev.eth0.springboot.httpclient.impl.actuator.HttpClientEndpoint;
+import de.dev.eth0.springboot.httpclient.impl.actuator.HttpClientInspector;
+import de.dev.eth0.springboot.httpclient.impl.actuator.OkHttpClientInspector;
+import de.dev.eth0.springboot.httpclient.impl.certificates.CertificateLoader;
+import de.dev.eth0.springboot.httpclient.impl.jfr.ApacheHttpClientFlightRecorder;
+import de.dev.eth0.springboot.httpclient.impl.jfr.OkHttpClientFlightRecorder;
+import de.dev.eth0.springboot.httpclient.impl.metrics.ApacheHttpClientMetrics;
+import de.dev.eth0.springboot.httpclient.impl.metrics.OkHttpClientMetrics;
 import okhttp3.OkHttpClient;
 
 /**
@@ -27,8 +57,22 @@ import okhttp3.OkHttpClient;
  */
 @Configuration
 @EnableConfigurationProperties(HttpClientProperties.class)
+@AutoConfigureAfter(name = {
+    "org.springframework.boot.actuate.autoconfigure.metrics.MetricsAutoConfiguration",
+    "org.springframework.boot.actuate.autoconfigure.metrics.CompositeMeterRegistryAutoConfiguration",
+    "org.springframework.boot.actuate.autoconfigure.metrics.export.simple.SimpleMetricsExportAutoConfiguration" })
+@AutoConfigureBefore(name = "org.springframework.boot.autoconfigure.web.reactive.function.client.ClientHttpConnectorAutoConfiguration")
 public class HttpClientAutoConfiguration {
 
+  /**
+   * The SSL contexts are shared by the clients of all factories, they and the watchers of their key and truststores are
+   * closed with the application context
+   */
+  @Bean
+  public DisposableBean httpClientSharedSSLContexts() {
+    return CertificateLoader::clearSharedSSLContexts;
+  }
+
   /**
    * Configuration if Apache HttpClient is used
    */
@@ -39,8 +83,9 @@ public class HttpClientAutoConfiguration {
 
     @Bean
     @ConditionalOnMissingBean
-    public ApacheHttpClientFactory apacheHttpClientFactory(HttpClientBuilder builder, HttpClientProperties httpClientProperties) {
-      return new ConfigurableApacheHttpClientFactory(builder, httpClientProperties);
+    public ApacheHttpClientFactory apacheHttpClientFactory(HttpClientBuilder builder, HttpClientProperties httpClientProperties,
+        ObjectProvider<ApacheHttpClientCustomizer> customizers) {
+      return new ConfigurableApacheHttpClientFactory(builder, httpClientProperties, customizers.orderedStream().collect(Collectors.toList()));
     }
 
     @Bean
@@ -50,6 +95,41 @@ public class HttpClientAutoConfiguration {
     }
   }
 
+  /**
+   * Configuration if Apache HttpClient 5 is used
+   */
+  @Configuration
+  @ConditionalOnProperty(name = { "spring.cloud.httpclientfactories.apache5.enabled" })
+  @ConditionalOnClass(CloseableHttpClient.class)
+  static class ApacheHttpClient5AutoConfiguration {
+
+    @Bean
+    @ConditionalOnMissingBean
+    public ConfigurableApacheHttpClient5Factory apacheHttpClient5Factory(HttpClientProperties httpClientProperties) {
+      return new ConfigurableApacheHttpClient5Factory(httpClientProperties);
+    }
+
+    @Bean
+    @ConditionalOnMissingBean
+    public ClientHttpRequestFactory clientHttpRequestFactory(ConfigurableApacheHttpClient5Factory apacheHttpClient5Factory) {
+      return new HttpComponents5ClientHttpRequestFactory(apacheHttpClient5Factory.createBuilder().build());
+    }
+
+    /**
+     * Connector of the {@code WebClient}, if WebFlux and the reactive streams support of HttpCore 5 are available
+     */
+    @Configuration
+    @ConditionalOnClass({ ClientHttpConnector.class, ReactiveResponseConsumer.class })
+    static class ApacheHttpClient5ConnectorConfiguration {
+
+      @Bean
+      @ConditionalOnMissingBean
+      public ClientHttpConnector clientHttpConnector(ConfigurableApacheHttpClient5Factory apacheHttpClient5Factory) {
+        return new HttpComponentsClientHttpConnector(apacheHttpClient5Factory.createAsyncBuilder().build());
+      }
+    }
+  }
+
   /**
    * Configuration if OkHttp HttpClient is used
    */
@@ -60,8 +140,9 @@ public class HttpClientAutoConfiguration {
 
     @Bean
     @ConditionalOnMissingBean
-    public OkHttpClientFactory okHttpClientFactory(OkHttpClient.Builder builder, HttpClientProperties okHttpClientProperties) {
-      return new ConfigurableOkHttpClientFactory(builder, okHttpClientProperties);
+    public OkHttpClientFactory okHttpClientFactory(OkHttpClient.Builder builder, HttpClientProperties okHttpClientProperties,
+        ObjectProvider<OkHttpClientCustomizer> customizers) {
+      return new ConfigurableOkHttpClientFactory(builder, okHttpClientProperties, customizers.orderedStream().collect(Collectors.toList()));
     }
 
     @Bean
@@ -70,4 +151,147 @@ public class HttpClientAutoConfiguration {
       return new OkHttp3ClientHttpRequestFactory(okHttpClientFactory.createBuilder(false).build());
     }
   }
+
+  /**
+   * Configuration if the JDK HttpClient is used
+   */
+  @Configuration
+  @ConditionalOnProperty(name = { "spring.cloud.httpclientfactories.jdk.enabled" })
+  static class JdkHttpClientAutoConfiguration {
+
+    @Bean
+    @ConditionalOnMissingBean
+    public ConfigurableJdkHttpClientFactory jdkHttpClientFactory(HttpClientProperties httpClientProperties) {
+      return new ConfigurableJdkHttpClientFactory(httpClientProperties);
+    }
+
+    @Bean
+    @ConditionalOnMissingBean
+    public ClientHttpRequestFactory clientHttpRequestFactory(ConfigurableJdkHttpClientFactory jdkHttpClientFactory,
+        HttpClientProperties httpClientProperties) {
+      int socketTimeout = httpClientProperties.getTimeouts().getSocketTimeout();
+      return new JdkClientHttpRequestFactory(jdkHttpClientFactory.createBuilder().build(),
+          socketTimeout > 0 ? Duration.ofMillis(socketTimeout) : null);
+    }
+  }
+
+  /**
+   * Configuration if Reactor Netty is used by the {@code WebClient}
+   */
+  @Configuration
+  @ConditionalOnProperty(name = { "spring.cloud.httpclientfactories.netty.enabled" })
+  @ConditionalOnClass(name = { "reactor.netty.http.client.HttpClient", "org.springframework.http.client.reactive.ReactorClientHttpConnector" })
+  static class ReactorNettyHttpClientAutoConfiguration {
+
+    @Bean
+    @ConditionalOnMissingBean
+    public ConfigurableReactorNettyHttpClientFactory reactorNettyHttpClientFactory(HttpClientProperties httpClientProperties) {
+      return new ConfigurableReactorNettyHttpClientFactory(httpClientProperties);
+    }
+
+    @Bean
+    @ConditionalOnMissingBean
+    public ClientHttpConnector clientHttpConnector(ConfigurableReactorNettyHttpClientFactory reactorNettyHttpClientFactory) {
+      return reactorNettyHttpClientFactory.createConnector();
+    }
+  }
+
+  /**
+   * Configuration of the Micrometer instrumentation, if a {@link MeterRegistry} is available
+   */
+  @Configuration
+  @ConditionalOnClass(MeterRegistry.class)
+  @ConditionalOnBean(MeterRegistry.class)
+  @ConditionalOnProperty(name = { "http.client.metrics.enabled" }, matchIfMissing = true)
+  static class MetricsAutoConfiguration {
+
+    @Configuration
+    @ConditionalOnClass(HttpClient.class)
+    static class ApacheHttpClientMetricsConfiguration {
+
+      @Bean
+      @ConditionalOnMissingBean
+      public ApacheHttpClientMetrics apacheHttpClientMetrics(MeterRegistry meterRegistry, HttpClientProperties httpClientProperties) {
+        return new ApacheHttpClientMetrics(meterRegistry, httpClientProperties.getMetrics());
+      }
+    }
+
+    @Configuration
+    @ConditionalOnClass(OkHttpClient.class)
+    static class OkHttpClientMetricsConfiguration {
+
+      @Bean
+      @ConditionalOnMissingBean
+      public OkHttpClientMetrics okHttpClientMetrics(MeterRegistry meterRegistry, HttpClientProperties httpClientProperties) {
+        return new OkHttpClientMetrics(meterRegistry, httpClientProperties.getMetrics());
+      }
+    }
+  }
+
+  /**
+   * Configuration of the flight recorder events
+   */
+  @Configuration
+  @ConditionalOnProperty(name = { "http.client.jfr.enabled" }, matchIfMissing = true)
+  static class FlightRecorderAutoConfiguration {
+
+    @Configuration
+    @ConditionalOnClass(HttpClient.class)
+    static class ApacheHttpClientFlightRecorderConfiguration {
+
+      @Bean
+      @ConditionalOnMissingBean
+      public ApacheHttpClientFlightRecorder apacheHttpClientFlightRecorder() {
+        return new ApacheHttpClientFlightRecorder();
+      }
+    }
+
+    @Configuration
+    @ConditionalOnClass(OkHttpClient.class)
+    static class OkHttpClientFlightRecorderConfiguration {
+
+      @Bean
+      @ConditionalOnMissingBean
+      public OkHttpClientFlightRecorder okHttpClientFlightRecorder() {
+        return new OkHttpClientFlightRecorder();
+      }
+    }
+  }
+
+  /**
+   * Configuration of the actuator endpoint
+   */
+  @Configuration
+  @ConditionalOnClass(Endpoint.class)
+  @ConditionalOnAvailableEndpoint(endpoint = HttpClientEndpoint.class)
+  static class EndpointAutoConfiguration {
+
+    @Bean
+    @ConditionalOnMissingBean
+    public HttpClientEndpoint httpClientEndpoint(HttpClientProperties httpClientProperties, ObjectProvider<HttpClientInspector> inspectors) {
+      return new HttpClientEndpoint(httpClientProperties, inspectors.orderedStream().collect(Collectors.toList()));
+    }
+
+    @Configuration
+    @ConditionalOnClass(HttpClient.class)
+    static class ApacheHttpClientInspectorConfiguration {
+
+      @Bean
+      @ConditionalOnMissingBean
+      public ApacheHttpClientInspector apacheHttpClientInspector(ObjectProvider<ApacheHttpClientFactory> apacheHttpClientFactory) {
+        return new ApacheHttpClientInspector(apacheHttpClientFactory);
+      }
+    }
+
+    @Configuration
+    @ConditionalOnClass(OkHttpClient.class)
+    static class OkHttpClientInspectorConfiguration {
+
+      @Bean
+      @ConditionalOnMissingBean
+      public OkHttpClientInspector okHttpClientInspector(ObjectProvider<OkHttpClientFactory> okHttpClientFactory) {
+        return new OkHttpClientInspector(okHttpClientFactory);
+      }
+    }
+  }
 }
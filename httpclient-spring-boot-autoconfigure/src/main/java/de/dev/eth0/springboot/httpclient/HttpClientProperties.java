@@ -18,7 +18,16 @@ public class HttpClientProperties {
   private final TimeoutConfiguration timeouts = new TimeoutConfiguration();
   private final KeystoreConfiguration keystore = new KeystoreConfiguration();
   private final TruststoreConfiguration truststore = new TruststoreConfiguration();
+  private final SslConfiguration ssl = new SslConfiguration();
+  private final PoolConfiguration pool = new PoolConfiguration();
+  private final DispatcherConfiguration dispatcher = new DispatcherConfiguration();
+  private final Http2Configuration http2 = new Http2Configuration();
+  private final NettyConfiguration netty = new NettyConfiguration();
+  private final ProxySelectorConfiguration proxySelector = new ProxySelectorConfiguration();
+  private final MetricsConfiguration metrics = new MetricsConfiguration();
+  private final FlightRecorderConfiguration jfr = new FlightRecorderConfiguration();
   private ProxyConfiguration[] proxies = {};
+  private String[] noProxy = {};
   private String sslContext = "TLSv1.2";
 
   public String getSslContext() {
@@ -37,6 +46,14 @@ public class HttpClientProperties {
     this.proxies = proxies;
   }
 
+  public String[] getNoProxy() {
+    return noProxy;
+  }
+
+  public void setNoProxy(String[] noProxy) {
+    this.noProxy = noProxy;
+  }
+
   public TimeoutConfiguration getTimeouts() {
     return timeouts;
   }
@@ -49,6 +66,38 @@ public class HttpClientProperties {
     return truststore;
   }
 
+  public SslConfiguration getSsl() {
+    return ssl;
+  }
+
+  public PoolConfiguration getPool() {
+    return pool;
+  }
+
+  public DispatcherConfiguration getDispatcher() {
+    return dispatcher;
+  }
+
+  public Http2Configuration getHttp2() {
+    return http2;
+  }
+
+  public NettyConfiguration getNetty() {
+    return netty;
+  }
+
+  public ProxySelectorConfiguration getProxySelector() {
+    return proxySelector;
+  }
+
+  public MetricsConfiguration getMetrics() {
+    return metrics;
+  }
+
+  public FlightRecorderConfiguration getJfr() {
+    return jfr;
+  }
+
   @Validated
   public static class ProxyConfiguration {
 
@@ -65,6 +114,10 @@ public class HttpClientProperties {
 
     private String proxyPassword;
 
+    private LoadBalancingStrategy loadBalancing = LoadBalancingStrategy.NONE;
+
+    private boolean preemptiveAuthentication;
+
     public Pattern[] getHostPatterns() {
       return hostPatterns;
     }
@@ -104,6 +157,22 @@ public class HttpClientProperties {
     public void setProxyPassword(String proxyPassword) {
       this.proxyPassword = proxyPassword;
     }
+
+    public LoadBalancingStrategy getLoadBalancing() {
+      return loadBalancing;
+    }
+
+    public void setLoadBalancing(LoadBalancingStrategy loadBalancing) {
+      this.loadBalancing = loadBalancing;
+    }
+
+    public boolean isPreemptiveAuthentication() {
+      return preemptiveAuthentication;
+    }
+
+    public void setPreemptiveAuthentication(boolean preemptiveAuthentication) {
+      this.preemptiveAuthentication = preemptiveAuthentication;
+    }
   }
 
 
@@ -177,6 +246,81 @@ public class HttpClientProperties {
   }
 
 
+  /**
+   * SSL Configuration, applied to the SSL context shared by all clients with the same key and truststore
+   */
+  @Validated
+  public static class SslConfiguration {
+
+    public static final int DEFAULT_SESSION_CACHE_SIZE = 20480;
+    public static final long DEFAULT_SESSION_TIMEOUT = 86400000;
+
+    private int sessionCacheSize = DEFAULT_SESSION_CACHE_SIZE;
+    private long sessionTimeout = DEFAULT_SESSION_TIMEOUT;
+    private boolean reload;
+    private String[] warmupHosts = {};
+    private String[] protocols = {};
+    private String[] cipherSuites = {};
+    private String provider;
+
+    public int getSessionCacheSize() {
+      return sessionCacheSize;
+    }
+
+    public void setSessionCacheSize(int sessionCacheSize) {
+      this.sessionCacheSize = sessionCacheSize;
+    }
+
+    public long getSessionTimeout() {
+      return sessionTimeout;
+    }
+
+    public void setSessionTimeout(long sessionTimeout) {
+      this.sessionTimeout = sessionTimeout;
+    }
+
+    public boolean isReload() {
+      return reload;
+    }
+
+    public void setReload(boolean reload) {
+      this.reload = reload;
+    }
+
+    public String[] getWarmupHosts() {
+      return warmupHosts;
+    }
+
+    public void setWarmupHosts(String[] warmupHosts) {
+      this.warmupHosts = warmupHosts;
+    }
+
+    public String[] getProtocols() {
+      return protocols;
+    }
+
+    public void setProtocols(String[] protocols) {
+      this.protocols = protocols;
+    }
+
+    public String[] getCipherSuites() {
+      return cipherSuites;
+    }
+
+    public void setCipherSuites(String[] cipherSuites) {
+      this.cipherSuites = cipherSuites;
+    }
+
+    public String getProvider() {
+      return provider;
+    }
+
+    public void setProvider(String provider) {
+      this.provider = provider;
+    }
+  }
+
+
   /**
    * Timeout Configuration
    */
@@ -206,4 +350,377 @@ public class HttpClientProperties {
     }
   }
 
+
+  /**
+   * Connection Pool Configuration
+   */
+  @Validated
+  public static class PoolConfiguration {
+
+    public static final int DEFAULT_MAX_TOTAL = 200;
+    public static final int DEFAULT_MAX_PER_ROUTE = 20;
+    public static final int DEFAULT_LEASE_TIMEOUT = 5000;
+    public static final int DEFAULT_MAX_IDLE_CONNECTIONS = 20;
+    public static final long DEFAULT_KEEP_ALIVE_DURATION = 300000;
+
+    private int maxTotal = DEFAULT_MAX_TOTAL;
+    private int defaultMaxPerRoute = DEFAULT_MAX_PER_ROUTE;
+    private int leaseTimeout = DEFAULT_LEASE_TIMEOUT;
+    private int maxIdleConnections = DEFAULT_MAX_IDLE_CONNECTIONS;
+    private long keepAliveDuration = DEFAULT_KEEP_ALIVE_DURATION;
+    private RouteConfiguration[] routes = {};
+
+    public int getMaxTotal() {
+      return maxTotal;
+    }
+
+    public void setMaxTotal(int maxTotal) {
+      this.maxTotal = maxTotal;
+    }
+
+    public int getDefaultMaxPerRoute() {
+      return defaultMaxPerRoute;
+    }
+
+    public void setDefaultMaxPerRoute(int defaultMaxPerRoute) {
+      this.defaultMaxPerRoute = defaultMaxPerRoute;
+    }
+
+    public int getLeaseTimeout() {
+      return leaseTimeout;
+    }
+
+    public void setLeaseTimeout(int leaseTimeout) {
+      this.leaseTimeout = leaseTimeout;
+    }
+
+    public int getMaxIdleConnections() {
+      return maxIdleConnections;
+    }
+
+    public void setMaxIdleConnections(int maxIdleConnections) {
+      this.maxIdleConnections = maxIdleConnections;
+    }
+
+    public long getKeepAliveDuration() {
+      return keepAliveDuration;
+    }
+
+    public void setKeepAliveDuration(long keepAliveDuration) {
+      this.keepAliveDuration = keepAliveDuration;
+    }
+
+    public RouteConfiguration[] getRoutes() {
+      return routes;
+    }
+
+    public void setRoutes(RouteConfiguration[] routes) {
+      this.routes = routes;
+    }
+  }
+
+
+  /**
+   * Per route overrides of the Connection Pool Configuration
+   */
+  @Validated
+  public static class RouteConfiguration {
+
+    private Pattern[] hostPatterns;
+
+    private int maxPerRoute = PoolConfiguration.DEFAULT_MAX_PER_ROUTE;
+
+    public Pattern[] getHostPatterns() {
+      return hostPatterns;
+    }
+
+    public void setHostPatterns(String[] hostPatterns) {
+      this.hostPatterns = Arrays.stream(hostPatterns).map(Pattern::compile).toArray(Pattern[]::new);
+    }
+
+    public int getMaxPerRoute() {
+      return maxPerRoute;
+    }
+
+    public void setMaxPerRoute(int maxPerRoute) {
+      this.maxPerRoute = maxPerRoute;
+    }
+  }
+
+
+  /**
+   * Dispatcher Configuration (OkHttp only)
+   */
+  @Validated
+  public static class DispatcherConfiguration {
+
+    public static final int DEFAULT_MAX_REQUESTS = 200;
+    public static final int DEFAULT_MAX_REQUESTS_PER_HOST = 20;
+
+    private int maxRequests = DEFAULT_MAX_REQUESTS;
+    private int maxRequestsPerHost = DEFAULT_MAX_REQUESTS_PER_HOST;
+    private int executorThreads;
+    private ExecutorMode executorMode = ExecutorMode.PLATFORM;
+
+    public int getMaxRequests() {
+      return maxRequests;
+    }
+
+    public void setMaxRequests(int maxRequests) {
+      this.maxRequests = maxRequests;
+    }
+
+    public int getMaxRequestsPerHost() {
+      return maxRequestsPerHost;
+    }
+
+    public void setMaxRequestsPerHost(int maxRequestsPerHost) {
+      this.maxRequestsPerHost = maxRequestsPerHost;
+    }
+
+    public int getExecutorThreads() {
+      return executorThreads;
+    }
+
+    public void setExecutorThreads(int executorThreads) {
+      this.executorThreads = executorThreads;
+    }
+
+    public ExecutorMode getExecutorMode() {
+      return executorMode;
+    }
+
+    public void setExecutorMode(ExecutorMode executorMode) {
+      this.executorMode = executorMode;
+    }
+  }
+
+
+  /**
+   * Reactor Netty Configuration
+   */
+  @Validated
+  public static class NettyConfiguration {
+
+    private int pendingAcquireMaxCount;
+    private int eventLoopThreads;
+
+    public int getPendingAcquireMaxCount() {
+      return pendingAcquireMaxCount;
+    }
+
+    public void setPendingAcquireMaxCount(int pendingAcquireMaxCount) {
+      this.pendingAcquireMaxCount = pendingAcquireMaxCount;
+    }
+
+    public int getEventLoopThreads() {
+      return eventLoopThreads;
+    }
+
+    public void setEventLoopThreads(int eventLoopThreads) {
+      this.eventLoopThreads = eventLoopThreads;
+    }
+  }
+
+
+  /**
+   * Protocol Configuration (OkHttp only)
+   */
+  @Validated
+  public static class Http2Configuration {
+
+    private String[] protocols = {};
+    private long pingInterval;
+    private Http2RouteConfiguration[] routes = {};
+
+    public String[] getProtocols() {
+      return protocols;
+    }
+
+    public void setProtocols(String[] protocols) {
+      this.protocols = protocols;
+    }
+
+    public long getPingInterval() {
+      return pingInterval;
+    }
+
+    public void setPingInterval(long pingInterval) {
+      this.pingInterval = pingInterval;
+    }
+
+    public Http2RouteConfiguration[] getRoutes() {
+      return routes;
+    }
+
+    public void setRoutes(Http2RouteConfiguration[] routes) {
+      this.routes = routes;
+    }
+  }
+
+
+  /**
+   * Protocols of the hosts matching one of the host patterns
+   */
+  @Validated
+  public static class Http2RouteConfiguration {
+
+    private Pattern[] hostPatterns;
+
+    private String[] protocols = {};
+
+    public Pattern[] getHostPatterns() {
+      return hostPatterns;
+    }
+
+    public void setHostPatterns(String[] hostPatterns) {
+      this.hostPatterns = Arrays.stream(hostPatterns).map(Pattern::compile).toArray(Pattern[]::new);
+    }
+
+    public String[] getProtocols() {
+      return protocols;
+    }
+
+    public void setProtocols(String[] protocols) {
+      this.protocols = protocols;
+    }
+  }
+
+
+  /**
+   * Proxy Selector Configuration
+   */
+  @Validated
+  public static class ProxySelectorConfiguration {
+
+    public static final int DEFAULT_CACHE_SIZE = 1024;
+    public static final long DEFAULT_DNS_REFRESH_INTERVAL = 60000;
+    public static final int DEFAULT_FAILURE_THRESHOLD = 3;
+    public static final long DEFAULT_INITIAL_RETRY_INTERVAL = 5000;
+    public static final long DEFAULT_MAX_RETRY_INTERVAL = 300000;
+
+    private int cacheSize = DEFAULT_CACHE_SIZE;
+    private long dnsRefreshInterval = DEFAULT_DNS_REFRESH_INTERVAL;
+    private int failureThreshold = DEFAULT_FAILURE_THRESHOLD;
+    private long initialRetryInterval = DEFAULT_INITIAL_RETRY_INTERVAL;
+    private long maxRetryInterval = DEFAULT_MAX_RETRY_INTERVAL;
+
+    public int getCacheSize() {
+      return cacheSize;
+    }
+
+    public void setCacheSize(int cacheSize) {
+      this.cacheSize = cacheSize;
+    }
+
+    public long getDnsRefreshInterval() {
+      return dnsRefreshInterval;
+    }
+
+    public void setDnsRefreshInterval(long dnsRefreshInterval) {
+      this.dnsRefreshInterval = dnsRefreshInterval;
+    }
+
+    public int getFailureThreshold() {
+      return failureThreshold;
+    }
+
+    public void setFailureThreshold(int failureThreshold) {
+      this.failureThreshold = failureThreshold;
+    }
+
+    public long getInitialRetryInterval() {
+      return initialRetryInterval;
+    }
+
+    public void setInitialRetryInterval(long initialRetryInterval) {
+      this.initialRetryInterval = initialRetryInterval;
+    }
+
+    public long getMaxRetryInterval() {
+      return maxRetryInterval;
+    }
+
+    public void setMaxRetryInterval(long maxRetryInterval) {
+      this.maxRetryInterval = maxRetryInterval;
+    }
+  }
+
+  /**
+   * Metrics Configuration, only applied if Micrometer is available
+   */
+  @Validated
+  public static class MetricsConfiguration {
+
+    private boolean enabled = true;
+    private String[] hosts = {};
+    private boolean phases;
+
+    public boolean isEnabled() {
+      return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+      this.enabled = enabled;
+    }
+
+    public boolean isPhases() {
+      return phases;
+    }
+
+    public void setPhases(boolean phases) {
+      this.phases = phases;
+    }
+
+    public String[] getHosts() {
+      return hosts;
+    }
+
+    public void setHosts(String[] hosts) {
+      this.hosts = hosts;
+    }
+  }
+
+  /**
+   * Flight Recorder Configuration, the events are only recorded if enabled in a recording
+   */
+  @Validated
+  public static class FlightRecorderConfiguration {
+
+    private boolean enabled = true;
+
+    public boolean isEnabled() {
+      return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+      this.enabled = enabled;
+    }
+  }
+
+  /**
+   * Strategy used to distribute the requests across all proxies matching a host
+   */
+  public enum LoadBalancingStrategy {
+    /** proxies are used in declaration order, the following proxies are only used as fallback */
+    NONE,
+    /** the first proxy is rotated with each request */
+    ROUND_ROBIN,
+    /** the proxy with the least requests in flight is used first */
+    LEAST_IN_FLIGHT,
+    /** the first proxy is chosen by the hash of the target host, so each host uses the same proxy */
+    CONSISTENT_HASH
+  }
+
+  /**
+   * Threads executing the asynchronous calls of the OkHttp dispatcher
+   */
+  public enum ExecutorMode {
+    /** platform threads of OkHttps default executor, a bounded pool if executor threads are configured */
+    PLATFORM,
+    /** bounded pool of platform threads, limited by the executor threads or else the maximum number of requests */
+    BOUNDED,
+    /** a virtual thread per call on JDK 21+, the total number of requests is not limited */
+    VIRTUAL
+  }
 }
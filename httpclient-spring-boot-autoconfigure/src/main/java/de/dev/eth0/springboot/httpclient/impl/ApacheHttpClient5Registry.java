@@ -0,0 +1,85 @@
+/*
+ * Copyright (c) 2020. dev-eth0.de All rights reserved.
+ */
+
+package de.dev.eth0.springboot.httpclient.impl;
+
+import java.io.Closeable;
+import java.util.function.Supplier;
+import org.apache.hc.client5.http.io.HttpClientConnectionManager;
+import org.apache.hc.client5.http.nio.AsyncClientConnectionManager;
+import org.apache.hc.core5.io.CloseMode;
+
+/**
+ * Registry for the shared classic and async connection managers of an Apache HttpClient 5 configuration.
+ * <p>
+ * Each connection manager is built once and used by all clients of its kind built from the factory, therefore they share
+ * the same connection pool and SSL configuration. The clients must not shut down the connection managers on close.
+ */
+public class ApacheHttpClient5Registry implements Closeable {
+
+  private final Supplier<HttpClientConnectionManager> connectionManagerSupplier;
+  private final Supplier<AsyncClientConnectionManager> asyncConnectionManagerSupplier;
+
+  private volatile HttpClientConnectionManager connectionManager;
+  private volatile AsyncClientConnectionManager asyncConnectionManager;
+
+  /**
+   * @param connectionManagerSupplier supplies the configured classic connection manager, only called once
+   * @param asyncConnectionManagerSupplier supplies the configured async connection manager, only called once
+   */
+  public ApacheHttpClient5Registry(Supplier<HttpClientConnectionManager> connectionManagerSupplier,
+      Supplier<AsyncClientConnectionManager> asyncConnectionManagerSupplier) {
+    this.connectionManagerSupplier = connectionManagerSupplier;
+    this.asyncConnectionManagerSupplier = asyncConnectionManagerSupplier;
+  }
+
+  /**
+   * @return the shared classic {@link HttpClientConnectionManager}, built on first access
+   */
+  public HttpClientConnectionManager getConnectionManager() {
+    HttpClientConnectionManager result = connectionManager;
+    if (result == null) {
+      synchronized (this) {
+        result = connectionManager;
+        if (result == null) {
+          result = connectionManagerSupplier.get();
+          connectionManager = result;
+        }
+      }
+    }
+    return result;
+  }
+
+  /**
+   * @return the shared {@link AsyncClientConnectionManager}, built on first access
+   */
+  public AsyncClientConnectionManager getAsyncConnectionManager() {
+    AsyncClientConnectionManager result = asyncConnectionManager;
+    if (result == null) {
+      synchronized (this) {
+        result = asyncConnectionManager;
+        if (result == null) {
+          result = asyncConnectionManagerSupplier.get();
+          asyncConnectionManager = result;
+        }
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Shuts down the shared connection managers
+   */
+  @Override
+  public void close() {
+    HttpClientConnectionManager current = connectionManager;
+    if (current != null) {
+      current.close(CloseMode.GRACEFUL);
+    }
+    AsyncClientConnectionManager currentAsync = asyncConnectionManager;
+    if (currentAsync != null) {
+      currentAsync.close(CloseMode.GRACEFUL);
+    }
+  }
+}
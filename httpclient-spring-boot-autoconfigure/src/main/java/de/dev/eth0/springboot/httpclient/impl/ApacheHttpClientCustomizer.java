@@ -0,0 +1,22 @@
+/*
+ * Copyright (c) 2020. dev-eth0.de All rights reserved.
+ */
+
+package de.dev.eth0.springboot.httpclient.impl;
+
+import org.apache.http.impl.client.HttpClientBuilder;
+
+/**
+ * Callback to customize the builders of the {@link ConfigurableApacheHttpClientFactory}
+ * <p>
+ * The factory hands out the same builder with each call, therefore the customizers are only applied once per builder.
+ */
+@FunctionalInterface
+public interface ApacheHttpClientCustomizer {
+
+  /**
+   * @param builder configured builder
+   * @param factory factory holding the shared connection manager and proxy selector
+   */
+  void customize(HttpClientBuilder builder, ConfigurableApacheHttpClientFactory factory);
+}
@@ -0,0 +1,57 @@
+/*
+ * Copyright (c) 2020. dev-eth0.de All rights reserved.
+ */
+
+package de.dev.eth0.springboot.httpclient.impl;
+
+import java.io.Closeable;
+import java.util.function.Supplier;
+import org.apache.http.conn.HttpClientConnectionManager;
+
+/**
+ * Registry for the shared {@link HttpClientConnectionManager} of a configuration.
+ * <p>
+ * The connection manager is built once and used by all clients built from the factory, therefore they share the same
+ * connection pool and SSL configuration. The clients must not shut down the connection manager on close.
+ */
+public class ApacheHttpClientRegistry implements Closeable {
+
+  private final Supplier<HttpClientConnectionManager> connectionManagerSupplier;
+
+  private volatile HttpClientConnectionManager connectionManager;
+
+  /**
+   * @param connectionManagerSupplier supplies the configured connection manager, only called once
+   */
+  public ApacheHttpClientRegistry(Supplier<HttpClientConnectionManager> connectionManagerSupplier) {
+    this.connectionManagerSupplier = connectionManagerSupplier;
+  }
+
+  /**
+   * @return the shared {@link HttpClientConnectionManager}, built on first access
+   */
+  public HttpClientConnectionManager getConnectionManager() {
+    HttpClientConnectionManager result = connectionManager;
+    if (result == null) {
+      synchronized (this) {
+        result = connectionManager;
+        if (result == null) {
+          result = connectionManagerSupplier.get();
+          connectionManager = result;
+        }
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Shuts down the shared connection manager
+   */
+  @Override
+  public void close() {
+    HttpClientConnectionManager current = connectionManager;
+    if (current != null) {
+      current.shutdown();
+    }
+  }
+}
@@ -0,0 +1,239 @@
+/*
+ * Copyright (c) 2020. dev-eth0.de All rights reserved.
+ */
+
+package de.dev.eth0.springboot.httpclient.impl;
+
+import java.net.InetSocketAddress;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Map;
+import java.util.stream.Collectors;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.hc.client5.http.auth.CredentialsProvider;
+import org.apache.hc.client5.http.auth.UsernamePasswordCredentials;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.async.HttpAsyncClientBuilder;
+import org.apache.hc.client5.http.impl.async.HttpAsyncClients;
+import org.apache.hc.client5.http.impl.classic.HttpClientBuilder;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.client5.http.impl.nio.PoolingAsyncClientConnectionManagerBuilder;
+import org.apache.hc.client5.http.impl.routing.SystemDefaultRoutePlanner;
+import org.apache.hc.client5.http.io.HttpClientConnectionManager;
+import org.apache.hc.client5.http.nio.AsyncClientConnectionManager;
+import org.apache.hc.client5.http.ssl.ClientTlsStrategyBuilder;
+import org.apache.hc.client5.http.ssl.DefaultClientTlsStrategy;
+import org.apache.hc.client5.http.ssl.DefaultHostnameVerifier;
+import org.apache.hc.client5.http.ssl.SSLConnectionSocketFactory;
+import org.apache.hc.core5.http.nio.ssl.TlsStrategy;
+import org.apache.hc.core5.http2.HttpVersionPolicy;
+import org.apache.hc.core5.util.Timeout;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+
+import de.dev.eth0.springboot.httpclient.HttpClientProperties;
+import de.dev.eth0.springboot.httpclient.impl.certificates.CertificateLoader;
+import de.dev.eth0.springboot.httpclient.impl.certificates.SharedSSLContext;
+import de.dev.eth0.springboot.httpclient.impl.proxy.ConfigurableProxySelector;
+import de.dev.eth0.springboot.httpclient.impl.proxy.ProxyAddressResolver;
+
+/**
+ * Factory used to create classic and async Apache HttpClient 5 instances
+ * <p>
+ * All classic clients share the same connection manager, all async clients share the same async connection manager. Both
+ * use the SSL context and proxy selector of the configuration. The async clients negotiate HTTP/2 with ALPN for TLS
+ * connections, the classic clients only support HTTP/1.1.
+ */
+public class ConfigurableApacheHttpClient5Factory implements DisposableBean {
+
+  private static final Logger LOG = LoggerFactory.getLogger(ConfigurableApacheHttpClient5Factory.class);
+
+  private final HttpClientProperties httpClientProperties;
+  private final ApacheHttpClient5Registry registry;
+  private volatile ConfigurableProxySelector proxySelector;
+  private volatile SharedSSLContext sslContext;
+
+  public ConfigurableApacheHttpClient5Factory(HttpClientProperties httpClientProperties) {
+    this.httpClientProperties = httpClientProperties;
+    this.registry = new ApacheHttpClient5Registry(this::createConnectionManager, this::createAsyncConnectionManager);
+  }
+
+  /**
+   * @return new builder of a classic client using the shared connection manager
+   */
+  public HttpClientBuilder createBuilder() {
+    HttpClientBuilder builder = HttpClients.custom()
+        .setDefaultRequestConfig(createRequestConfig())
+        .setConnectionManager(registry.getConnectionManager())
+        .setConnectionManagerShared(true);
+    ConfigurableProxySelector selector = getOrCreateProxySelector();
+    if (selector != null) {
+      builder.setRoutePlanner(new SystemDefaultRoutePlanner(selector));
+      CredentialsProvider credentialsProvider = createCredentialsProvider(selector);
+      if (credentialsProvider != null) {
+        builder.setDefaultCredentialsProvider(credentialsProvider);
+      }
+    }
+    return builder;
+  }
+
+  /**
+   * @return new builder of an async client using the shared async connection manager, the client must be started
+   */
+  public HttpAsyncClientBuilder createAsyncBuilder() {
+    HttpAsyncClientBuilder builder = HttpAsyncClients.custom()
+        .setDefaultRequestConfig(createRequestConfig())
+        .setConnectionManager(registry.getAsyncConnectionManager())
+        .setConnectionManagerShared(true)
+        .setVersionPolicy(HttpVersionPolicy.NEGOTIATE);
+    ConfigurableProxySelector selector = getOrCreateProxySelector();
+    if (selector != null) {
+      builder.setRoutePlanner(new SystemDefaultRoutePlanner(selector));
+      CredentialsProvider credentialsProvider = createCredentialsProvider(selector);
+      if (credentialsProvider != null) {
+        builder.setDefaultCredentialsProvider(credentialsProvider);
+      }
+    }
+    return builder;
+  }
+
+  @Override
+  public synchronized void destroy() {
+    registry.close();
+    if (proxySelector != null) {
+      proxySelector.close();
+    }
+  }
+
+  /**
+   * @return registry holding the shared connection managers
+   */
+  public ApacheHttpClient5Registry getRegistry() {
+    return registry;
+  }
+
+  /**
+   * @return proxy selector shared by all clients, null if no proxies are configured or no builder was created yet
+   */
+  public ConfigurableProxySelector getProxySelector() {
+    return proxySelector;
+  }
+
+  /**
+   * @return SSL context of the shared connection managers, null if it could not be built or no builder was created yet
+   */
+  public SharedSSLContext getSslContext() {
+    return sslContext;
+  }
+
+  private RequestConfig createRequestConfig() {
+    return RequestConfig.custom()
+        .setConnectTimeout(Timeout.ofMilliseconds(httpClientProperties.getTimeouts().getConnectionTimeout()))
+        .setResponseTimeout(Timeout.ofMilliseconds(httpClientProperties.getTimeouts().getSocketTimeout()))
+        .setConnectionRequestTimeout(Timeout.ofMilliseconds(httpClientProperties.getPool().getLeaseTimeout()))
+        .build();
+  }
+
+  private HttpClientConnectionManager createConnectionManager() {
+    SharedSSLContext context = getOrCreateSSLContext();
+    SSLConnectionSocketFactory sslSocketFactory = context != null
+        ? new SSLConnectionSocketFactory(context.getSocketFactory(), context.getProtocols(), context.getCipherSuites(),
+        context.trackResumption(new DefaultHostnameVerifier()))
+        : SSLConnectionSocketFactory.getSocketFactory();
+    return PoolingHttpClientConnectionManagerBuilder.create()
+        .setSSLSocketFactory(sslSocketFactory)
+        .setMaxConnTotal(httpClientProperties.getPool().getMaxTotal())
+        .setMaxConnPerRoute(httpClientProperties.getPool().getDefaultMaxPerRoute())
+        .build();
+  }
+
+  /**
+   * The TLS strategy configures the engines of the SSL context itself, so the handshakes of the async clients aren't
+   * counted by the resumption statistics
+   */
+  private AsyncClientConnectionManager createAsyncConnectionManager() {
+    SharedSSLContext context = getOrCreateSSLContext();
+    TlsStrategy tlsStrategy;
+    if (context != null) {
+      ClientTlsStrategyBuilder tlsStrategyBuilder = ClientTlsStrategyBuilder.create()
+          .setSslContext(context.getSslContext())
+          .setHostnameVerifier(new DefaultHostnameVerifier());
+      if (context.getProtocols() != null) {
+        tlsStrategyBuilder.setTlsVersions(context.getProtocols());
+      }
+      if (context.getCipherSuites() != null) {
+        tlsStrategyBuilder.setCiphers(context.getCipherSuites());
+      }
+      tlsStrategy = tlsStrategyBuilder.build();
+    }
+    else {
+      tlsStrategy = DefaultClientTlsStrategy.getDefault();
+    }
+    return PoolingAsyncClientConnectionManagerBuilder.create()
+        .setTlsStrategy(tlsStrategy)
+        .setMaxConnTotal(httpClientProperties.getPool().getMaxTotal())
+        .setMaxConnPerRoute(httpClientProperties.getPool().getDefaultMaxPerRoute())
+        .build();
+  }
+
+  private synchronized SharedSSLContext getOrCreateSSLContext() {
+    if (sslContext == null) {
+      sslContext = CertificateLoader.getSharedSSLContext(httpClientProperties);
+      if (sslContext == null) {
+        LOG.warn("Invalid SSL Context, skipping");
+      }
+    }
+    return sslContext;
+  }
+
+  /**
+   * The proxy selector is shared by all clients, so they also share its cache
+   */
+  private synchronized ConfigurableProxySelector getOrCreateProxySelector() {
+    HttpClientProperties.ProxyConfiguration[] hostConfigs = httpClientProperties.getProxies();
+    if (hostConfigs == null || hostConfigs.length == 0) {
+      LOG.debug("No host configurations found");
+      return null;
+    }
+    if (proxySelector == null) {
+      proxySelector = new ConfigurableProxySelector(hostConfigs, httpClientProperties.getProxySelector(),
+          httpClientProperties.getNoProxy());
+    }
+    return proxySelector;
+  }
+
+  /**
+   * The route planner uses the resolved address of a proxy, so the credentials are looked up by the configured proxy of
+   * that address. The auth scope has a lowercase host, so the hosts of the keys are lowercased as well.
+   *
+   * @return credentials provider, null if no proxy has credentials
+   */
+  private CredentialsProvider createCredentialsProvider(ConfigurableProxySelector selector) {
+    Map<String, UsernamePasswordCredentials> credentials = Arrays.stream(httpClientProperties.getProxies())
+        .filter(hostConfig -> StringUtils.isNoneBlank(hostConfig.getProxyUser(), hostConfig.getProxyPassword()))
+        .collect(Collectors.toMap(
+            hostConfig -> credentialsKey(hostConfig.getProxyHost(), hostConfig.getProxyPort()),
+            hostConfig -> new UsernamePasswordCredentials(hostConfig.getProxyUser(), hostConfig.getProxyPassword().toCharArray()),
+            (first, second) -> first));
+    if (credentials.isEmpty()) {
+      return null;
+    }
+    return (authScope, context) -> {
+      if (authScope.getHost() == null || authScope.getPort() < 0) {
+        return null;
+      }
+      UsernamePasswordCredentials result = credentials.get(credentialsKey(authScope.getHost(), authScope.getPort()));
+      if (result != null) {
+        return result;
+      }
+      String key = selector.getAddressResolver().findKey(InetSocketAddress.createUnresolved(authScope.getHost(), authScope.getPort()));
+      return key != null ? credentials.get(key.toLowerCase(Locale.ROOT)) : null;
+    };
+  }
+
+  private static String credentialsKey(String host, int port) {
+    return ProxyAddressResolver.key(host.toLowerCase(Locale.ROOT), port);
+  }
+}
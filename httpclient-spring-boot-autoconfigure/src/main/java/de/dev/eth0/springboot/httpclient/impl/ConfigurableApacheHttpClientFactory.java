@@ -4,86 +4,256 @@
 
 package de.dev.eth0.springboot.httpclient.impl;
 
-import javax.net.ssl.KeyManagerFactory;
-import javax.net.ssl.SSLContext;
-import javax.net.ssl.TrustManagerFactory;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.BiConsumer;
 import org.apache.commons.lang3.StringUtils;
+import org.apache.http.HttpHost;
 import org.apache.http.auth.AuthScope;
 import org.apache.http.auth.UsernamePasswordCredentials;
 import org.apache.http.client.CredentialsProvider;
 import org.apache.http.client.config.RequestConfig;
+import org.apache.http.config.Registry;
+import org.apache.http.config.RegistryBuilder;
+import org.apache.http.conn.HttpClientConnectionManager;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.conn.socket.ConnectionSocketFactory;
+import org.apache.http.conn.socket.PlainConnectionSocketFactory;
 import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
-import org.apache.http.impl.client.BasicCredentialsProvider;
 import org.apache.http.impl.client.HttpClientBuilder;
 import org.apache.http.impl.client.ProxyAuthenticationStrategy;
 import org.apache.http.impl.conn.SystemDefaultRoutePlanner;
+import org.apache.http.protocol.HttpContext;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.cloud.commons.httpclient.DefaultApacheHttpClientFactory;
 
 import de.dev.eth0.springboot.httpclient.HttpClientProperties;
-import de.dev.eth0.springboot.httpclient.impl.proxy.ConfigurableProxySelector;
 import de.dev.eth0.springboot.httpclient.impl.certificates.CertificateLoader;
+import de.dev.eth0.springboot.httpclient.impl.certificates.SharedSSLContext;
+import de.dev.eth0.springboot.httpclient.impl.pool.ConfigurablePoolingHttpClientConnectionManager;
+import de.dev.eth0.springboot.httpclient.impl.proxy.ConfigurableProxySelector;
+import de.dev.eth0.springboot.httpclient.impl.proxy.InFlightTrackingHttpRequestExecutor;
+import de.dev.eth0.springboot.httpclient.impl.proxy.PreemptiveProxyAuthInterceptor;
+import de.dev.eth0.springboot.httpclient.impl.proxy.ProxyCredentialsProvider;
 
 /**
  * Factory used to create a HttpClient Instance
+ * <p>
+ * All clients built from this factory share the same connection manager. The {@link ApacheHttpClientCustomizer}s are
+ * applied after the configuration, once for each builder. The {@link RequestPhaseListener}s and the request failure
+ * listeners are called by the connection manager and the request executor.
  */
-public class ConfigurableApacheHttpClientFactory extends DefaultApacheHttpClientFactory {
+public class ConfigurableApacheHttpClientFactory extends DefaultApacheHttpClientFactory implements DisposableBean {
 
   private static final Logger LOG = LoggerFactory.getLogger(ConfigurableApacheHttpClientFactory.class);
 
   private final HttpClientProperties httpClientProperties;
+  private final ApacheHttpClientRegistry registry;
+  private final List<ApacheHttpClientCustomizer> customizers;
+  private final Set<HttpClientBuilder> preemptiveAuthBuilders = Collections.newSetFromMap(new WeakHashMap<>());
+  private final Set<HttpClientBuilder> customizedBuilders = Collections.newSetFromMap(new WeakHashMap<>());
+  private final List<RequestPhaseListener> requestPhaseListeners = new CopyOnWriteArrayList<>();
+  private final List<BiConsumer<HttpContext, Exception>> requestFailureListeners = new CopyOnWriteArrayList<>();
+  private volatile ConfigurableProxySelector proxySelector;
+  private volatile RequestPhaseListener requestPhaseListener;
+  private volatile BiConsumer<HttpContext, Exception> requestFailureListener;
+  private volatile SharedSSLContext sslContext;
 
   public ConfigurableApacheHttpClientFactory(HttpClientBuilder builder, HttpClientProperties httpClientProperties) {
+    this(builder, httpClientProperties, List.of());
+  }
+
+  public ConfigurableApacheHttpClientFactory(HttpClientBuilder builder, HttpClientProperties httpClientProperties,
+      List<ApacheHttpClientCustomizer> customizers) {
     super(builder);
     this.httpClientProperties = httpClientProperties;
+    this.customizers = List.copyOf(customizers);
+    this.registry = new ApacheHttpClientRegistry(this::createConnectionManager);
   }
 
   @Override
   public HttpClientBuilder createBuilder() {
     HttpClientBuilder builder = super.createBuilder();
     configureTimeouts(builder);
-    configureSSL(builder);
+    builder.setConnectionManager(registry.getConnectionManager());
+    builder.setConnectionManagerShared(true);
 
     HttpClientProperties.ProxyConfiguration[] hostConfigs = httpClientProperties.getProxies();
 
+    ConfigurableProxySelector selector = null;
     if (hostConfigs == null || hostConfigs.length == 0) {
       LOG.debug("No host configurations found");
-      return builder;
     }
-    configureProxies(builder, hostConfigs);
-    configureAuthentication(builder, hostConfigs);
+    else {
+      selector = getOrCreateProxySelector(hostConfigs);
+      configureProxies(builder, selector);
+      configureAuthentication(builder, hostConfigs, selector);
+    }
+    applyCustomizers(builder);
+    configureRequestExecutor(builder, selector);
     return builder;
   }
 
+  /**
+   * Adds a listener for the phases of all requests, must be added before the builder is created, e.g. by a
+   * {@link ApacheHttpClientCustomizer}. Adding the same listener again has no effect.
+   *
+   * @param listener listener of the request phases
+   */
+  public synchronized void addRequestPhaseListener(RequestPhaseListener listener) {
+    if (requestPhaseListeners.contains(listener)) {
+      return;
+    }
+    requestPhaseListeners.add(listener);
+    requestPhaseListener = requestPhaseListener == null ? listener : requestPhaseListener.andThen(listener);
+    HttpClientConnectionManager connectionManager = registry.getConnectionManager();
+    if (connectionManager instanceof ConfigurablePoolingHttpClientConnectionManager) {
+      ((ConfigurablePoolingHttpClientConnectionManager)connectionManager).setRequestPhaseListener(requestPhaseListener);
+    }
+  }
+
+  /**
+   * Adds a listener for the requests failing with an exception while connecting or executing the request, must be added
+   * before the builder is created, e.g. by a {@link ApacheHttpClientCustomizer}. Adding the same listener again has no
+   * effect.
+   *
+   * @param listener listener called with the context of the failed request
+   */
+  public synchronized void addRequestFailureListener(BiConsumer<HttpContext, Exception> listener) {
+    if (requestFailureListeners.contains(listener)) {
+      return;
+    }
+    requestFailureListeners.add(listener);
+    requestFailureListener = requestFailureListener == null ? listener : requestFailureListener.andThen(listener);
+    HttpClientConnectionManager connectionManager = registry.getConnectionManager();
+    if (connectionManager instanceof ConfigurablePoolingHttpClientConnectionManager) {
+      ((ConfigurablePoolingHttpClientConnectionManager)connectionManager).setRequestFailureListener(requestFailureListener);
+    }
+  }
+
+  @Override
+  public synchronized void destroy() {
+    registry.close();
+    if (proxySelector != null) {
+      proxySelector.close();
+    }
+  }
+
+  /**
+   * @return registry holding the shared connection manager
+   */
+  public ApacheHttpClientRegistry getRegistry() {
+    return registry;
+  }
+
+  /**
+   * @return proxy selector shared by all clients, null if no proxies are configured or no builder was created yet
+   */
+  public ConfigurableProxySelector getProxySelector() {
+    return proxySelector;
+  }
+
+  /**
+   * @return SSL context of the shared connection manager, null if it could not be built or no builder was created yet
+   */
+  public SharedSSLContext getSslContext() {
+    return sslContext;
+  }
+
   private void configureTimeouts(HttpClientBuilder builder) {
     builder.setDefaultRequestConfig(RequestConfig.custom()
         .setConnectTimeout(httpClientProperties.getTimeouts().getConnectionTimeout())
         .setSocketTimeout(httpClientProperties.getTimeouts().getSocketTimeout())
+        .setConnectionRequestTimeout(httpClientProperties.getPool().getLeaseTimeout())
         .build());
   }
 
-  private void configureSSL(HttpClientBuilder builder) {
-    TrustManagerFactory trustManagerFactory = CertificateLoader.getTrustManagerFactory(httpClientProperties);
-    KeyManagerFactory keyManagerFactory = CertificateLoader.getKeyManagerFactory(httpClientProperties);
-    SSLContext sslContext = CertificateLoader.buildSSLContext(httpClientProperties, keyManagerFactory, trustManagerFactory);
-    if (sslContext != null) {
-      SSLConnectionSocketFactory sslSocketFactory = new SSLConnectionSocketFactory(sslContext);
-      builder.setSSLSocketFactory(sslSocketFactory).build();
+  /**
+   * The connection manager is used instead of the builders SSL socket factory, therefore the SSL configuration needs to
+   * be part of its socket factory registry.
+   */
+  private HttpClientConnectionManager createConnectionManager() {
+    Registry<ConnectionSocketFactory> socketFactoryRegistry = RegistryBuilder.<ConnectionSocketFactory>create()
+        .register("http", PlainConnectionSocketFactory.getSocketFactory())
+        .register("https", createSSLSocketFactory())
+        .build();
+    ConfigurablePoolingHttpClientConnectionManager connectionManager = new ConfigurablePoolingHttpClientConnectionManager(
+        socketFactoryRegistry, httpClientProperties.getPool());
+    connectionManager.setConnectFailureListener(this::proxyConnectFailed);
+    connectionManager.setConnectSuccessListener(this::proxyConnectSucceeded);
+    connectionManager.setRequestPhaseListener(requestPhaseListener);
+    connectionManager.setRequestFailureListener(requestFailureListener);
+    return connectionManager;
+  }
+
+  private void proxyConnectFailed(HttpRoute route, IOException ex) {
+    ConfigurableProxySelector selector = proxySelector;
+    if (selector != null) {
+      HttpHost proxy = route.getProxyHost();
+      selector.connectFailed(URI.create(route.getTargetHost().toURI()),
+          InetSocketAddress.createUnresolved(proxy.getHostName(), proxy.getPort()), ex);
     }
-    else {
-      LOG.warn("Invalid SSL Context, skipping");
+  }
+
+  private void proxyConnectSucceeded(HttpRoute route) {
+    ConfigurableProxySelector selector = proxySelector;
+    if (selector != null && selector.getHealthTracker().hasFailures()) {
+      HttpHost proxy = route.getProxyHost();
+      selector.connectSucceeded(InetSocketAddress.createUnresolved(proxy.getHostName(), proxy.getPort()));
     }
   }
 
-  private void configureProxies(HttpClientBuilder builder, HttpClientProperties.ProxyConfiguration[] hostConfigs) {
-    ConfigurableProxySelector proxySelector = new ConfigurableProxySelector(hostConfigs);
-    SystemDefaultRoutePlanner routePlanner = new SystemDefaultRoutePlanner(proxySelector);
+  private SSLConnectionSocketFactory createSSLSocketFactory() {
+    SharedSSLContext sslContext = CertificateLoader.getSharedSSLContext(httpClientProperties);
+    if (sslContext != null) {
+      this.sslContext = sslContext;
+      return new SSLConnectionSocketFactory(sslContext.getSocketFactory(), sslContext.getProtocols(), sslContext.getCipherSuites(),
+          sslContext.trackResumption(SSLConnectionSocketFactory.getDefaultHostnameVerifier()));
+    }
+    LOG.warn("Invalid SSL Context, skipping");
+    return SSLConnectionSocketFactory.getSocketFactory();
+  }
+
+  private void configureProxies(HttpClientBuilder builder, ConfigurableProxySelector selector) {
+    SystemDefaultRoutePlanner routePlanner = new SystemDefaultRoutePlanner(selector);
     builder.setRoutePlanner(routePlanner);
   }
 
-  private void configureAuthentication(HttpClientBuilder builder, HttpClientProperties.ProxyConfiguration[] hostConfigs) {
-    CredentialsProvider credsProvider = new BasicCredentialsProvider();
+  /**
+   * A client only has a single request executor, which tracks the requests in flight, times the request phases and
+   * reports the failed requests
+   */
+  private void configureRequestExecutor(HttpClientBuilder builder, ConfigurableProxySelector selector) {
+    if (selector != null && selector.getLoadBalancer().isTrackingInFlight()) {
+      builder.setRequestExecutor(new InFlightTrackingHttpRequestExecutor(selector, requestPhaseListener, requestFailureListener));
+    }
+    else if (requestPhaseListener != null || requestFailureListener != null) {
+      builder.setRequestExecutor(new PhaseTimingHttpRequestExecutor(requestPhaseListener, requestFailureListener));
+    }
+  }
+
+  /**
+   * The proxy selector is shared by all clients, so they also share its cache
+   */
+  private synchronized ConfigurableProxySelector getOrCreateProxySelector(HttpClientProperties.ProxyConfiguration[] hostConfigs) {
+    if (proxySelector == null) {
+      proxySelector = new ConfigurableProxySelector(hostConfigs, httpClientProperties.getProxySelector(),
+          httpClientProperties.getNoProxy());
+    }
+    return proxySelector;
+  }
+
+  private void configureAuthentication(HttpClientBuilder builder, HttpClientProperties.ProxyConfiguration[] hostConfigs,
+      ConfigurableProxySelector selector) {
+    CredentialsProvider credsProvider = new ProxyCredentialsProvider(selector.getAddressResolver());
     boolean hasCredentials = false;
     for (HttpClientProperties.ProxyConfiguration hostConfig : hostConfigs) {
       if (StringUtils.isNoneBlank(hostConfig.getProxyUser(), hostConfig.getProxyPassword())) {
@@ -97,6 +267,32 @@ public class ConfigurableApacheHttpClientFactory extends DefaultApacheHttpClient
     if (hasCredentials) {
       builder.setDefaultCredentialsProvider(credsProvider);
       builder.setProxyAuthenticationStrategy(new ProxyAuthenticationStrategy());
+      configurePreemptiveAuthentication(builder, hostConfigs, selector);
+    }
+  }
+
+  /**
+   * The interceptor can't be removed from a builder, so it is only added once to each builder
+   */
+  private synchronized void configurePreemptiveAuthentication(HttpClientBuilder builder, HttpClientProperties.ProxyConfiguration[] hostConfigs,
+      ConfigurableProxySelector selector) {
+    if (preemptiveAuthBuilders.contains(builder)) {
+      return;
+    }
+    PreemptiveProxyAuthInterceptor interceptor = new PreemptiveProxyAuthInterceptor(hostConfigs, selector.getAddressResolver());
+    if (interceptor.isEnabled()) {
+      builder.addInterceptorFirst(interceptor);
+      preemptiveAuthBuilders.add(builder);
+    }
+  }
+
+  /**
+   * The customizers may add interceptors, so they are also only applied once to each builder
+   */
+  private synchronized void applyCustomizers(HttpClientBuilder builder) {
+    if (customizers.isEmpty() || !customizedBuilders.add(builder)) {
+      return;
     }
+    customizers.forEach(customizer -> customizer.customize(builder, this));
   }
 }
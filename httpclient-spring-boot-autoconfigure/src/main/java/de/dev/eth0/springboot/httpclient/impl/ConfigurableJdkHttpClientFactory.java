@@ -0,0 +1,186 @@
+/*
+ * Copyright (c) 2020. dev-eth0.de All rights reserved.
+ */
+
+package de.dev.eth0.springboot.httpclient.impl;
+
+import java.net.Authenticator;
+import java.net.InetSocketAddress;
+import java.net.PasswordAuthentication;
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.stream.Collectors;
+import javax.net.ssl.SSLParameters;
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+
+import de.dev.eth0.springboot.httpclient.HttpClientProperties;
+import de.dev.eth0.springboot.httpclient.impl.certificates.CertificateLoader;
+import de.dev.eth0.springboot.httpclient.impl.certificates.SharedSSLContext;
+import de.dev.eth0.springboot.httpclient.impl.proxy.ConfigurableProxySelector;
+import de.dev.eth0.springboot.httpclient.impl.proxy.ProxyAddressResolver;
+
+/**
+ * Factory used to create JDK {@link HttpClient} instances
+ * <p>
+ * All clients share the same executor, SSL context and proxy selector. On JDK 21+ the executor starts a virtual thread
+ * for each task, on older runtimes the default executor of each client is used. The JDK client pools its connections
+ * itself, so the pool configuration is not applied.
+ */
+public class ConfigurableJdkHttpClientFactory implements DisposableBean {
+
+  private static final Logger LOG = LoggerFactory.getLogger(ConfigurableJdkHttpClientFactory.class);
+
+  private final HttpClientProperties httpClientProperties;
+  private volatile ExecutorService executor;
+  private boolean executorCreated;
+  private volatile ConfigurableProxySelector proxySelector;
+  private volatile SharedSSLContext sslContext;
+
+  public ConfigurableJdkHttpClientFactory(HttpClientProperties httpClientProperties) {
+    this.httpClientProperties = httpClientProperties;
+  }
+
+  /**
+   * @return new builder with the configured connect timeout, SSL context, proxies and executor
+   */
+  public HttpClient.Builder createBuilder() {
+    HttpClient.Builder builder = HttpClient.newBuilder()
+        .connectTimeout(Duration.ofMillis(httpClientProperties.getTimeouts().getConnectionTimeout()));
+    ExecutorService sharedExecutor = getOrCreateExecutor();
+    if (sharedExecutor != null) {
+      builder.executor(sharedExecutor);
+    }
+    SharedSSLContext context = getOrCreateSSLContext();
+    if (context != null) {
+      builder.sslContext(context.getSslContext());
+      builder.sslParameters(createSSLParameters(context));
+    }
+    ConfigurableProxySelector selector = getOrCreateProxySelector();
+    if (selector != null) {
+      builder.proxy(selector);
+      Authenticator authenticator = createAuthenticator(selector);
+      if (authenticator != null) {
+        builder.authenticator(authenticator);
+      }
+    }
+    return builder;
+  }
+
+  @Override
+  public synchronized void destroy() {
+    if (executor != null) {
+      executor.shutdown();
+    }
+    if (proxySelector != null) {
+      proxySelector.close();
+    }
+  }
+
+  /**
+   * @return executor shared by all clients, null if virtual threads are not supported or no builder was created yet
+   */
+  public ExecutorService getExecutor() {
+    return executor;
+  }
+
+  /**
+   * @return proxy selector shared by all clients, null if no proxies are configured or no builder was created yet
+   */
+  public ConfigurableProxySelector getProxySelector() {
+    return proxySelector;
+  }
+
+  /**
+   * @return SSL context of the clients, null if it could not be built or no builder was created yet
+   */
+  public SharedSSLContext getSslContext() {
+    return sslContext;
+  }
+
+  private synchronized ExecutorService getOrCreateExecutor() {
+    if (!executorCreated) {
+      executorCreated = true;
+      executor = VirtualThreads.newVirtualThreadPerTaskExecutor();
+      if (executor == null) {
+        LOG.info("Virtual threads are not supported, using the default executor");
+      }
+    }
+    return executor;
+  }
+
+  private synchronized SharedSSLContext getOrCreateSSLContext() {
+    if (sslContext == null) {
+      sslContext = CertificateLoader.getSharedSSLContext(httpClientProperties);
+      if (sslContext == null) {
+        LOG.warn("Invalid SSL Context, skipping");
+      }
+    }
+    return sslContext;
+  }
+
+  private SSLParameters createSSLParameters(SharedSSLContext context) {
+    SSLParameters sslParameters = context.getSslContext().getDefaultSSLParameters();
+    if (context.getProtocols() != null) {
+      sslParameters.setProtocols(context.getProtocols());
+    }
+    if (context.getCipherSuites() != null) {
+      sslParameters.setCipherSuites(context.getCipherSuites());
+    }
+    return sslParameters;
+  }
+
+  /**
+   * The proxy selector is shared by all clients, so they also share its cache
+   */
+  private synchronized ConfigurableProxySelector getOrCreateProxySelector() {
+    HttpClientProperties.ProxyConfiguration[] hostConfigs = httpClientProperties.getProxies();
+    if (hostConfigs == null || hostConfigs.length == 0) {
+      LOG.debug("No host configurations found");
+      return null;
+    }
+    if (proxySelector == null) {
+      proxySelector = new ConfigurableProxySelector(hostConfigs, httpClientProperties.getProxySelector(),
+          httpClientProperties.getNoProxy());
+    }
+    return proxySelector;
+  }
+
+  /**
+   * The requesting host may be the resolved address of a proxy, so the credentials are looked up by the configured proxy
+   * of that address. The JDK disables Basic authentication for tunnels by default, so HTTPS requests through proxies with
+   * credentials require the system property {@code jdk.http.auth.tunneling.disabledSchemes} to be cleared.
+   *
+   * @return authenticator of the proxies, null if no proxy has credentials
+   */
+  private Authenticator createAuthenticator(ConfigurableProxySelector selector) {
+    Map<String, PasswordAuthentication> credentials = Arrays.stream(httpClientProperties.getProxies())
+        .filter(hostConfig -> StringUtils.isNoneBlank(hostConfig.getProxyUser(), hostConfig.getProxyPassword()))
+        .collect(Collectors.toMap(
+            hostConfig -> ProxyAddressResolver.key(hostConfig.getProxyHost(), hostConfig.getProxyPort()),
+            hostConfig -> new PasswordAuthentication(hostConfig.getProxyUser(), hostConfig.getProxyPassword().toCharArray()),
+            (first, second) -> first));
+    if (credentials.isEmpty()) {
+      return null;
+    }
+    return new Authenticator() {
+      @Override
+      protected PasswordAuthentication getPasswordAuthentication() {
+        if (getRequestorType() != RequestorType.PROXY || getRequestingHost() == null) {
+          return null;
+        }
+        PasswordAuthentication result = credentials.get(ProxyAddressResolver.key(getRequestingHost(), getRequestingPort()));
+        if (result != null) {
+          return result;
+        }
+        String key = selector.getAddressResolver().findKey(InetSocketAddress.createUnresolved(getRequestingHost(), getRequestingPort()));
+        return key != null ? credentials.get(key) : null;
+      }
+    };
+  }
+}
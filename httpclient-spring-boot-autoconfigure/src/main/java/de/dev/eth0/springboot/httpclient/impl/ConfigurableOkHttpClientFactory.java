@@ -4,72 +4,359 @@
 
 package de.dev.eth0.springboot.httpclient.impl;
 
+import java.io.IOException;
+import java.security.KeyManagementException;
+import java.security.NoSuchAlgorithmException;
+import java.security.cert.X509Certificate;
+import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Optional;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+import javax.net.ssl.HostnameVerifier;
 import javax.net.ssl.KeyManagerFactory;
 import javax.net.ssl.SSLContext;
-import javax.net.ssl.TrustManagerFactory;
+import javax.net.ssl.SSLSocketFactory;
+import javax.net.ssl.TrustManager;
 import javax.net.ssl.X509TrustManager;
+import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.cloud.commons.httpclient.DefaultOkHttpClientFactory;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
 
 import de.dev.eth0.springboot.httpclient.HttpClientProperties;
 import de.dev.eth0.springboot.httpclient.impl.certificates.CertificateLoader;
+import de.dev.eth0.springboot.httpclient.impl.certificates.SharedSSLContext;
 import de.dev.eth0.springboot.httpclient.impl.proxy.ConfigurableProxySelector;
+import de.dev.eth0.springboot.httpclient.impl.proxy.OkHttpPreemptiveProxyAuthInterceptor;
 import de.dev.eth0.springboot.httpclient.impl.proxy.OkHttpProxyAuthenticator;
+import de.dev.eth0.springboot.httpclient.impl.proxy.OkHttpProxyHealthInterceptor;
+import de.dev.eth0.springboot.httpclient.impl.proxy.OkHttpProxyInFlightInterceptor;
+import okhttp3.ConnectionPool;
+import okhttp3.ConnectionSpec;
+import okhttp3.Dispatcher;
 import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.internal.tls.OkHostnameVerifier;
 
 /**
  * Factory used to generate a {@link OkHttpClient.Builder} instance with the given configuration
+ * <p>
+ * The configured client is built once, all builders are derived from it and share its connection pool and dispatcher.
+ * The {@link OkHttpClientCustomizer}s are applied to the configured builder before the client is built. The
+ * {@link RequestPhaseListener}s are called by an event listener, which replaces an event listener of the base builder.
+ * Hosts with other protocols than the shared client are routed to derived clients by the
+ * {@link OkHttpProtocolRoutingInterceptor}.
  */
-public class ConfigurableOkHttpClientFactory extends DefaultOkHttpClientFactory {
+public class ConfigurableOkHttpClientFactory extends DefaultOkHttpClientFactory implements DisposableBean {
 
   private static final Logger LOG = LoggerFactory.getLogger(ConfigurableOkHttpClientFactory.class);
+  private static final X509TrustManager TRUST_ALL = new X509TrustManager() {
+    @Override
+    public void checkClientTrusted(X509Certificate[] chain, String authType) {
+      // all certificates are trusted
+    }
+
+    @Override
+    public void checkServerTrusted(X509Certificate[] chain, String authType) {
+      // all certificates are trusted
+    }
+
+    @Override
+    public X509Certificate[] getAcceptedIssuers() {
+      return new X509Certificate[0];
+    }
+  };
 
   private final HttpClientProperties httpClientProperties;
+  private final OkHttpClientRegistry registry;
+  private final List<OkHttpClientCustomizer> customizers;
+  private final List<RequestPhaseListener> requestPhaseListeners = new CopyOnWriteArrayList<>();
+  private final OkHttpStreamTracker streamTracker = new OkHttpStreamTracker();
+  private volatile ConfigurableProxySelector proxySelector;
+  private volatile SharedSSLContext sslContext;
+  private SSLSocketFactory trustAllSocketFactory;
 
   public ConfigurableOkHttpClientFactory(OkHttpClient.Builder builder, HttpClientProperties httpClientProperties) {
+    this(builder, httpClientProperties, List.of());
+  }
+
+  public ConfigurableOkHttpClientFactory(OkHttpClient.Builder builder, HttpClientProperties httpClientProperties,
+      List<OkHttpClientCustomizer> customizers) {
     super(builder);
     this.httpClientProperties = httpClientProperties;
+    this.customizers = List.copyOf(customizers);
+    this.registry = new OkHttpClientRegistry(this::createConfiguredBuilder);
   }
 
+  /**
+   * Disabling the SSL validation disables the hostname verification. If a truststore is configured, the certificates are
+   * still validated against it, otherwise all certificates are trusted.
+   */
   @Override
   public OkHttpClient.Builder createBuilder(boolean disableSslValidation) {
-    OkHttpClient.Builder builder = super.createBuilder(disableSslValidation);
+    OkHttpClient.Builder builder = registry.newBuilder();
+    if (disableSslValidation) {
+      HostnameVerifier hostnameVerifier = (hostname, session) -> true;
+      builder.hostnameVerifier(sslContext != null ? sslContext.trackResumption(hostnameVerifier) : hostnameVerifier);
+      HttpClientProperties.TruststoreConfiguration truststoreConfiguration = httpClientProperties.getTruststore();
+      if (StringUtils.isAnyBlank(truststoreConfiguration.getPath(), truststoreConfiguration.getPassword())) {
+        SSLSocketFactory socketFactory = getOrCreateTrustAllSocketFactory();
+        if (socketFactory != null) {
+          builder.sslSocketFactory(socketFactory, TRUST_ALL);
+        }
+      }
+    }
+    return builder;
+  }
+
+  @Override
+  public void destroy() {
+    registry.close();
+    if (proxySelector != null) {
+      proxySelector.close();
+    }
+  }
+
+  /**
+   * @return registry holding the shared client
+   */
+  public OkHttpClientRegistry getRegistry() {
+    return registry;
+  }
+
+  /**
+   * Adds a listener for the phases of all calls, must be added before the shared client is built, e.g. by a
+   * {@link OkHttpClientCustomizer}. Adding the same listener again has no effect.
+   *
+   * @param listener listener of the request phases
+   */
+  public void addRequestPhaseListener(RequestPhaseListener listener) {
+    if (!requestPhaseListeners.contains(listener)) {
+      requestPhaseListeners.add(listener);
+    }
+  }
+
+  /**
+   * @return proxy selector of the shared client, null if no proxies are configured or the client was not built yet
+   */
+  public ConfigurableProxySelector getProxySelector() {
+    return proxySelector;
+  }
+
+  /**
+   * @return tracker of the protocol and streams per host of the shared client
+   */
+  public OkHttpStreamTracker getStreamTracker() {
+    return streamTracker;
+  }
+
+  /**
+   * @return SSL context of the shared client, null if it could not be built or the client was not built yet
+   */
+  public SharedSSLContext getSslContext() {
+    return sslContext;
+  }
+
+  private OkHttpClient.Builder createConfiguredBuilder() {
+    OkHttpClient.Builder builder = super.createBuilder(false);
     configureSSL(builder);
     configureTimeouts(builder);
+    configurePool(builder);
+    configureDispatcher(builder);
     configureProxies(builder);
+    configureProtocols(builder);
+    customizers.forEach(customizer -> customizer.customize(builder, this));
+    OkHttpProtocolRoutingInterceptor routingInterceptor = configureProtocolRoutes(builder);
+    configureEventListener(builder, routingInterceptor);
     return builder;
   }
 
+  private void configureProtocols(OkHttpClient.Builder builder) {
+    HttpClientProperties.Http2Configuration http2Configuration = httpClientProperties.getHttp2();
+    List<Protocol> protocols = toProtocols(http2Configuration.getProtocols());
+    if (protocols != null) {
+      builder.protocols(protocols);
+    }
+    builder.pingInterval(http2Configuration.getPingInterval(), TimeUnit.MILLISECONDS);
+    builder.addNetworkInterceptor(streamTracker);
+  }
+
+  /**
+   * The routing interceptor is added as first interceptor, so the routed calls are intercepted once by the shared
+   * client's interceptors
+   *
+   * @return routing interceptor, null if no routes are configured
+   */
+  private OkHttpProtocolRoutingInterceptor configureProtocolRoutes(OkHttpClient.Builder builder) {
+    Map<HttpClientProperties.Http2RouteConfiguration, List<Protocol>> routes = new LinkedHashMap<>();
+    for (HttpClientProperties.Http2RouteConfiguration route : httpClientProperties.getHttp2().getRoutes()) {
+      List<Protocol> protocols = toProtocols(route.getProtocols());
+      if (protocols != null) {
+        routes.put(route, protocols);
+      }
+    }
+    if (routes.isEmpty()) {
+      return null;
+    }
+    OkHttpProtocolRoutingInterceptor routingInterceptor = new OkHttpProtocolRoutingInterceptor(routes, registry::getClient);
+    builder.interceptors().add(0, routingInterceptor);
+    return routingInterceptor;
+  }
+
+  /**
+   * @return protocols in the configured order, null if none or invalid protocols are configured
+   */
+  private static List<Protocol> toProtocols(String[] names) {
+    if (names == null || names.length == 0) {
+      return null;
+    }
+    try {
+      List<Protocol> protocols = new ArrayList<>();
+      for (String name : names) {
+        protocols.add(Protocol.get(name));
+      }
+      // validates the combination of the protocols
+      new OkHttpClient.Builder().protocols(protocols);
+      return protocols;
+    }
+    catch (IOException | IllegalArgumentException ex) {
+      LOG.error("Invalid protocols {}, skipping", Arrays.toString(names), ex);
+      return null;
+    }
+  }
+
+  /**
+   * The routed calls are reported by the derived clients, so the intercepted calls are skipped
+   */
+  private void configureEventListener(OkHttpClient.Builder builder, OkHttpProtocolRoutingInterceptor routingInterceptor) {
+    Predicate<Request> skipped = routingInterceptor != null ? routingInterceptor::isRouted : request -> false;
+    requestPhaseListeners.stream()
+        .reduce(RequestPhaseListener::andThen)
+        .ifPresent(listener -> builder.eventListenerFactory(
+            new OkHttpPhaseEventListenerFactory(listener, httpClientProperties.getDispatcher().getMaxRequests(), skipped)));
+  }
+
   private void configureTimeouts(OkHttpClient.Builder builder) {
     builder.connectTimeout(httpClientProperties.getTimeouts().getConnectionTimeout(), TimeUnit.MILLISECONDS);
     builder.readTimeout(httpClientProperties.getTimeouts().getSocketTimeout(), TimeUnit.MILLISECONDS);
     builder.writeTimeout(httpClientProperties.getTimeouts().getSocketTimeout(), TimeUnit.MILLISECONDS);
   }
 
-  private void configureSSL(OkHttpClient.Builder builder) {
-    TrustManagerFactory trustManagerFactory = CertificateLoader.getTrustManagerFactory(httpClientProperties);
-    KeyManagerFactory keyManagerFactory = CertificateLoader.getKeyManagerFactory(httpClientProperties);
-    SSLContext sslContext = CertificateLoader.buildSSLContext(httpClientProperties, keyManagerFactory, trustManagerFactory);
-    if (sslContext != null && trustManagerFactory != null) {
-      Optional<X509TrustManager> trustManager = Arrays.stream(trustManagerFactory.getTrustManagers())
-          .filter(tm -> tm instanceof X509TrustManager)
-          .map(tm -> (X509TrustManager)tm)
-          .findFirst();
-      if (trustManager.isPresent()) {
-        builder.sslSocketFactory(sslContext.getSocketFactory(), trustManager.get()).build();
-      }
-      else {
-        LOG.warn("No valid Truststore configured, using default");
-        builder.sslSocketFactory(sslContext.getSocketFactory()).build();
+  private void configurePool(OkHttpClient.Builder builder) {
+    HttpClientProperties.PoolConfiguration poolConfiguration = httpClientProperties.getPool();
+    builder.connectionPool(new ConnectionPool(poolConfiguration.getMaxIdleConnections(), poolConfiguration.getKeepAliveDuration(), TimeUnit.MILLISECONDS));
+  }
+
+  /**
+   * OkHttp only supports a global limit for requests per host, therefore the per route overrides of the pool configuration
+   * can't be applied to the dispatcher. Virtual threads don't need to be limited, so with them only the requests per host
+   * are limited.
+   */
+  private void configureDispatcher(OkHttpClient.Builder builder) {
+    HttpClientProperties.DispatcherConfiguration dispatcherConfiguration = httpClientProperties.getDispatcher();
+    ExecutorService virtualExecutor = null;
+    if (dispatcherConfiguration.getExecutorMode() == HttpClientProperties.ExecutorMode.VIRTUAL) {
+      virtualExecutor = VirtualThreads.newVirtualThreadPerTaskExecutor();
+      if (virtualExecutor == null) {
+        LOG.warn("Virtual threads are not supported, skipping");
       }
     }
+    Dispatcher dispatcher;
+    if (virtualExecutor != null) {
+      dispatcher = new Dispatcher(virtualExecutor);
+      dispatcher.setMaxRequests(Integer.MAX_VALUE);
+    }
     else {
+      int executorThreads = dispatcherConfiguration.getExecutorThreads();
+      if (executorThreads <= 0 && dispatcherConfiguration.getExecutorMode() == HttpClientProperties.ExecutorMode.BOUNDED) {
+        executorThreads = dispatcherConfiguration.getMaxRequests();
+      }
+      dispatcher = executorThreads > 0 ? new Dispatcher(createExecutorService(executorThreads)) : new Dispatcher();
+      dispatcher.setMaxRequests(dispatcherConfiguration.getMaxRequests());
+    }
+    dispatcher.setMaxRequestsPerHost(dispatcherConfiguration.getMaxRequestsPerHost());
+    builder.dispatcher(dispatcher);
+  }
+
+  private ExecutorService createExecutorService(int threads) {
+    CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("okhttp-dispatcher-");
+    threadFactory.setDaemon(true);
+    ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), threadFactory);
+    executor.allowCoreThreadTimeOut(true);
+    return executor;
+  }
+
+  /**
+   * The context trusting all certificates is derived from the shared context, so it uses the configured keystore, session
+   * cache, protocols, cipher suites and provider and is counted by its statistics. Without shared context a plain context
+   * with the configured keystore is used.
+   */
+  private synchronized SSLSocketFactory getOrCreateTrustAllSocketFactory() {
+    if (trustAllSocketFactory == null && sslContext != null) {
+      trustAllSocketFactory = sslContext.getSocketFactory(TRUST_ALL);
+    }
+    if (trustAllSocketFactory == null) {
+      KeyManagerFactory keyManagerFactory = StringUtils.isNotBlank(httpClientProperties.getKeystore().getPath())
+          ? CertificateLoader.getKeyManagerFactory(httpClientProperties)
+          : null;
+      try {
+        SSLContext trustAllContext = SSLContext.getInstance(httpClientProperties.getSslContext());
+        trustAllContext.init(keyManagerFactory != null ? keyManagerFactory.getKeyManagers() : null,
+            new TrustManager[] { TRUST_ALL }, null);
+        trustAllSocketFactory = trustAllContext.getSocketFactory();
+      }
+      catch (NoSuchAlgorithmException | KeyManagementException ex) {
+        LOG.error("Could not build SSLContext without validation, skipping", ex);
+      }
+    }
+    return trustAllSocketFactory;
+  }
+
+  /**
+   * OkHttp requires the trust manager of the socket factory, without one the default SSL configuration of OkHttp is used.
+   * The connection spec only permits the configured protocols and cipher suites, their order is applied by the socket
+   * factory.
+   */
+  private void configureSSL(OkHttpClient.Builder builder) {
+    SharedSSLContext sslContext = CertificateLoader.getSharedSSLContext(httpClientProperties);
+    if (sslContext == null) {
       LOG.warn("Invalid SSL Context, skipping");
     }
+    else if (sslContext.getTrustManager() == null) {
+      LOG.warn("No valid Truststore configured, using default");
+    }
+    else {
+      this.sslContext = sslContext;
+      builder.sslSocketFactory(sslContext.getSocketFactory(), sslContext.getTrustManager());
+      builder.hostnameVerifier(sslContext.trackResumption(OkHostnameVerifier.INSTANCE));
+      configureConnectionSpecs(builder, sslContext);
+    }
+  }
+
+  private void configureConnectionSpecs(OkHttpClient.Builder builder, SharedSSLContext sslContext) {
+    String[] protocols = sslContext.getProtocols();
+    String[] cipherSuites = sslContext.getCipherSuites();
+    if (protocols == null && cipherSuites == null) {
+      return;
+    }
+    ConnectionSpec.Builder connectionSpec = new ConnectionSpec.Builder(ConnectionSpec.MODERN_TLS);
+    if (protocols != null) {
+      connectionSpec.tlsVersions(protocols);
+    }
+    if (cipherSuites != null) {
+      connectionSpec.cipherSuites(cipherSuites);
+    }
+    builder.connectionSpecs(List.of(connectionSpec.build(), ConnectionSpec.CLEARTEXT));
   }
 
   private void configureProxies(OkHttpClient.Builder builder) {
@@ -80,7 +367,16 @@ public class ConfigurableOkHttpClientFactory extends DefaultOkHttpClientFactory
       return;
     }
 
-    builder.proxySelector(new ConfigurableProxySelector(proxyConfig));
-    builder.proxyAuthenticator(new OkHttpProxyAuthenticator(proxyConfig));
+    proxySelector = new ConfigurableProxySelector(proxyConfig, httpClientProperties.getProxySelector(), httpClientProperties.getNoProxy());
+    builder.proxySelector(proxySelector);
+    OkHttpProxyAuthenticator proxyAuthenticator = new OkHttpProxyAuthenticator(proxyConfig);
+    builder.proxyAuthenticator(proxyAuthenticator);
+    if (proxyAuthenticator.isPreemptive()) {
+      builder.addNetworkInterceptor(new OkHttpPreemptiveProxyAuthInterceptor(proxyAuthenticator));
+    }
+    builder.addNetworkInterceptor(new OkHttpProxyHealthInterceptor(proxySelector));
+    if (proxySelector.getLoadBalancer().isTrackingInFlight()) {
+      builder.addNetworkInterceptor(new OkHttpProxyInFlightInterceptor(proxySelector));
+    }
   }
 }
@@ -0,0 +1,164 @@
+/*
+ * Copyright (c) 2020. dev-eth0.de All rights reserved.
+ */
+
+package de.dev.eth0.springboot.httpclient.impl;
+
+import java.time.Duration;
+import java.util.Arrays;
+import io.netty.channel.ChannelOption;
+import io.netty.handler.ssl.ClientAuth;
+import io.netty.handler.ssl.IdentityCipherSuiteFilter;
+import io.netty.handler.ssl.JdkSslContext;
+import io.netty.handler.ssl.SslContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.http.client.reactive.ClientHttpConnector;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+
+import de.dev.eth0.springboot.httpclient.HttpClientProperties;
+import de.dev.eth0.springboot.httpclient.impl.certificates.CertificateLoader;
+import de.dev.eth0.springboot.httpclient.impl.certificates.SharedSSLContext;
+import de.dev.eth0.springboot.httpclient.impl.proxy.ConfigurableProxySelector;
+import de.dev.eth0.springboot.httpclient.impl.proxy.ProxyRoutingClientHttpConnector;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+import reactor.netty.resources.LoopResources;
+
+/**
+ * Factory used to create Reactor Netty clients and {@code WebClient} connectors
+ * <p>
+ * All clients share the same connection provider, SSL context and proxy selector. Reactor Netty pools the connections
+ * per remote address, so the maximum connections of each pool is the maximum per route. Without configured event loop
+ * threads, the global resources of Reactor Netty are used.
+ */
+public class ConfigurableReactorNettyHttpClientFactory implements DisposableBean {
+
+  private static final Logger LOG = LoggerFactory.getLogger(ConfigurableReactorNettyHttpClientFactory.class);
+
+  private final HttpClientProperties httpClientProperties;
+  private ConnectionProvider connectionProvider;
+  private LoopResources loopResources;
+  private SslContext nettySslContext;
+  private volatile ConfigurableProxySelector proxySelector;
+  private volatile SharedSSLContext sslContext;
+
+  public ConfigurableReactorNettyHttpClientFactory(HttpClientProperties httpClientProperties) {
+    this.httpClientProperties = httpClientProperties;
+  }
+
+  /**
+   * @return new client with the configured timeouts and SSL context, without proxies
+   */
+  public synchronized HttpClient createHttpClient() {
+    HttpClient httpClient = HttpClient.create(getOrCreateConnectionProvider())
+        .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, httpClientProperties.getTimeouts().getConnectionTimeout())
+        .responseTimeout(Duration.ofMillis(httpClientProperties.getTimeouts().getSocketTimeout()));
+    int eventLoopThreads = httpClientProperties.getNetty().getEventLoopThreads();
+    if (eventLoopThreads > 0) {
+      if (loopResources == null) {
+        loopResources = LoopResources.create("httpclient", eventLoopThreads, true);
+      }
+      httpClient = httpClient.runOn(loopResources);
+    }
+    SslContext context = getOrCreateSslContext();
+    if (context != null) {
+      httpClient = httpClient.secure(spec -> spec.sslContext(context));
+    }
+    return httpClient;
+  }
+
+  /**
+   * @return connector of a new client, selecting the proxy of each request if proxies are configured
+   */
+  public ClientHttpConnector createConnector() {
+    HttpClient httpClient = createHttpClient();
+    HttpClientProperties.ProxyConfiguration[] hostConfigs = httpClientProperties.getProxies();
+    if (hostConfigs == null || hostConfigs.length == 0) {
+      LOG.debug("No host configurations found");
+      return new ReactorClientHttpConnector(httpClient);
+    }
+    return new ProxyRoutingClientHttpConnector(httpClient, getOrCreateProxySelector(hostConfigs), hostConfigs,
+        httpClientProperties.getTimeouts().getConnectionTimeout());
+  }
+
+  @Override
+  public synchronized void destroy() {
+    if (connectionProvider != null) {
+      connectionProvider.dispose();
+    }
+    if (loopResources != null) {
+      loopResources.dispose();
+    }
+    if (proxySelector != null) {
+      proxySelector.close();
+    }
+  }
+
+  /**
+   * @return proxy selector shared by all connectors, null if no proxies are configured or no connector was created yet
+   */
+  public ConfigurableProxySelector getProxySelector() {
+    return proxySelector;
+  }
+
+  /**
+   * @return SSL context of the clients, null if it could not be built or no client was created yet
+   */
+  public SharedSSLContext getSslContext() {
+    return sslContext;
+  }
+
+  /**
+   * @return connection provider shared by all clients, null if no client was created yet
+   */
+  public ConnectionProvider getConnectionProvider() {
+    return connectionProvider;
+  }
+
+  private ConnectionProvider getOrCreateConnectionProvider() {
+    if (connectionProvider == null) {
+      HttpClientProperties.PoolConfiguration poolConfiguration = httpClientProperties.getPool();
+      ConnectionProvider.Builder builder = ConnectionProvider.builder("httpclient")
+          .maxConnections(poolConfiguration.getDefaultMaxPerRoute())
+          .pendingAcquireTimeout(Duration.ofMillis(poolConfiguration.getLeaseTimeout()))
+          .maxIdleTime(Duration.ofMillis(poolConfiguration.getKeepAliveDuration()));
+      int pendingAcquireMaxCount = httpClientProperties.getNetty().getPendingAcquireMaxCount();
+      if (pendingAcquireMaxCount != 0) {
+        builder.pendingAcquireMaxCount(pendingAcquireMaxCount);
+      }
+      connectionProvider = builder.build();
+    }
+    return connectionProvider;
+  }
+
+  /**
+   * The shared SSL context is wrapped, so Netty uses its session cache and reloaded key and truststores
+   */
+  private SslContext getOrCreateSslContext() {
+    if (nettySslContext == null) {
+      sslContext = CertificateLoader.getSharedSSLContext(httpClientProperties);
+      if (sslContext == null) {
+        LOG.warn("Invalid SSL Context, skipping");
+        return null;
+      }
+      String[] cipherSuites = sslContext.getCipherSuites();
+      nettySslContext = new JdkSslContext(sslContext.getSslContext(), true,
+          cipherSuites != null ? Arrays.asList(cipherSuites) : null, IdentityCipherSuiteFilter.INSTANCE, null,
+          ClientAuth.NONE, sslContext.getProtocols(), false);
+    }
+    return nettySslContext;
+  }
+
+  /**
+   * The proxy selector is shared by all connectors, so they also share its cache
+   */
+  private synchronized ConfigurableProxySelector getOrCreateProxySelector(HttpClientProperties.ProxyConfiguration[] hostConfigs) {
+    if (proxySelector == null) {
+      proxySelector = new ConfigurableProxySelector(hostConfigs, httpClientProperties.getProxySelector(),
+          httpClientProperties.getNoProxy());
+    }
+    return proxySelector;
+  }
+}
@@ -0,0 +1,333 @@
+/*
+ * Copyright (c) 2020. dev-eth0.de All rights reserved.
+ */
+
+package de.dev.eth0.springboot.httpclient.impl;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Function;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Matches hostnames against the host patterns of a list of entries (e.g. proxy configurations).
+ * <p>
+ * The patterns are compiled once into a single structure:
+ * <ul>
+ * <li>entries without patterns match all hosts</li>
+ * <li>literal patterns (e.g. <code>example\.com</code>) and suffix patterns (e.g. <code>.*\.example\.com</code>) are
+ * stored in a trie of the reversed hostname, an unescaped <code>.</code> matches any character as in the regex</li>
+ * <li>all other patterns are merged into alternations, split in halves down to the single patterns, so the matching
+ * patterns are found without matching each pattern on its own</li>
+ * <li>patterns which can't be part of an alternation (flags, back references, named groups, quotes or comments) are
+ * matched on their own</li>
+ * </ul>
+ * The result is the same as matching each pattern on its own, the matching entries are returned in declaration order.
+ * {@link #matchFirst(String)} stops at the first matching entry and doesn't allocate besides the regex matchers.
+ *
+ * @param <T> type of the entries
+ */
+public final class HostPatternMatcher<T> {
+
+  private static final String SUFFIX_PREFIX = ".*";
+  // back references, named groups, quotes which may be unterminated and comments mode
+  private static final Pattern UNSUPPORTED_IN_ALTERNATION = Pattern.compile("\\\\[\\dkQ]|\\(\\?<[^=!]|\\(\\?[a-zA-Z-]*x");
+  private static final int NO_MATCH = Integer.MAX_VALUE;
+
+  private final List<T> entries;
+  private final BitSet matchAllEntries = new BitSet();
+  private final Node root = new Node();
+  private final RegexAlternation alternation;
+  private final List<IndexedPattern> standalonePatterns = new ArrayList<>();
+
+  private HostPatternMatcher(List<T> entries, Function<T, Pattern[]> hostPatterns) {
+    this.entries = List.copyOf(entries);
+    List<IndexedPattern> alternationPatterns = new ArrayList<>();
+    for (int index = 0; index < this.entries.size(); index++) {
+      Pattern[] patterns = hostPatterns.apply(this.entries.get(index));
+      if (patterns == null || patterns.length == 0) {
+        matchAllEntries.set(index);
+        continue;
+      }
+      for (Pattern pattern : patterns) {
+        if (!addLiteral(pattern, index)) {
+          IndexedPattern indexedPattern = new IndexedPattern(pattern, index);
+          if (pattern.flags() == 0 && !UNSUPPORTED_IN_ALTERNATION.matcher(pattern.pattern()).find()) {
+            alternationPatterns.add(indexedPattern);
+          }
+          else {
+            standalonePatterns.add(indexedPattern);
+          }
+        }
+      }
+    }
+    this.alternation = alternationPatterns.isEmpty() ? null : new RegexAlternation(alternationPatterns, 0, alternationPatterns.size());
+  }
+
+  /**
+   * @param entries entries in declaration order
+   * @param hostPatterns function returning the host patterns of an entry, empty or null matches all hosts
+   * @param <T> type of the entries
+   * @return compiled matcher
+   */
+  public static <T> HostPatternMatcher<T> compile(List<T> entries, Function<T, Pattern[]> hostPatterns) {
+    return new HostPatternMatcher<>(entries, hostPatterns);
+  }
+
+  /**
+   * @param host requested host
+   * @return all entries with at least one matching pattern, in declaration order
+   */
+  public List<T> matchAll(String host) {
+    BitSet matches = new BitSet(entries.size());
+    matches.or(matchAllEntries);
+    if (host != null) {
+      root.matchAll(host, host.length() - 1, matches);
+      if (alternation != null) {
+        alternation.matchAll(host, matches);
+      }
+      for (IndexedPattern pattern : standalonePatterns) {
+        if (!matches.get(pattern.index) && pattern.pattern.matcher(host).matches()) {
+          matches.set(pattern.index);
+        }
+      }
+    }
+    List<T> result = new ArrayList<>(matches.cardinality());
+    for (int index = matches.nextSetBit(0); index >= 0; index = matches.nextSetBit(index + 1)) {
+      result.add(entries.get(index));
+    }
+    return result;
+  }
+
+  /**
+   * @param host requested host
+   * @return first entry with at least one matching pattern
+   */
+  public Optional<T> matchFirst(String host) {
+    int first = first(matchAllEntries, NO_MATCH);
+    if (host != null) {
+      first = root.matchFirst(host, host.length() - 1, first);
+      if (alternation != null && alternation.patterns.get(0).index < first) {
+        first = Math.min(first, alternation.matchFirst(host));
+      }
+      for (IndexedPattern pattern : standalonePatterns) {
+        if (pattern.index >= first) {
+          break;
+        }
+        if (pattern.pattern.matcher(host).matches()) {
+          first = pattern.index;
+        }
+      }
+    }
+    return first != NO_MATCH ? Optional.of(entries.get(first)) : Optional.empty();
+  }
+
+  /**
+   * @return the first entry, if it is before the given one
+   */
+  private static int first(BitSet entries, int first) {
+    int index = entries.nextSetBit(0);
+    return index >= 0 && index < first ? index : first;
+  }
+
+  /**
+   * Adds the pattern to the trie, if it only consists of hostname characters, escaped and unescaped dots and an optional
+   * leading <code>.*</code>
+   *
+   * @return false if the pattern is not supported by the trie
+   */
+  private boolean addLiteral(Pattern pattern, int index) {
+    if (pattern.flags() != 0) {
+      return false;
+    }
+    String regex = pattern.pattern();
+    boolean suffix = regex.startsWith(SUFFIX_PREFIX);
+    int start = suffix ? SUFFIX_PREFIX.length() : 0;
+    // tokens in reverse order, null matches any character
+    List<Character> tokens = new ArrayList<>();
+    for (int i = start; i < regex.length(); i++) {
+      char c = regex.charAt(i);
+      if (c == '\\') {
+        if (i + 1 < regex.length() && (regex.charAt(i + 1) == '.' || regex.charAt(i + 1) == '-')) {
+          tokens.add(0, regex.charAt(++i));
+        }
+        else {
+          return false;
+        }
+      }
+      else if (c == '.') {
+        tokens.add(0, null);
+      }
+      else if (Character.isLetterOrDigit(c) || c == '-' || c == '_') {
+        tokens.add(0, c);
+      }
+      else {
+        return false;
+      }
+    }
+    if (suffix && tokens.isEmpty()) {
+      matchAllEntries.set(index);
+      return true;
+    }
+    Node node = root;
+    for (Character token : tokens) {
+      node = node.child(token);
+    }
+    if (suffix) {
+      node.suffixEntries.set(index);
+    }
+    else {
+      node.terminalEntries.set(index);
+    }
+    return true;
+  }
+
+  /**
+   * Node in the trie of the reversed hostname
+   */
+  private static final class Node {
+
+    private final Map<Character, Node> children = new HashMap<>();
+    private Node anyChild;
+    /** entries matching if the host ends at this node */
+    private final BitSet terminalEntries = new BitSet();
+    /** entries matching regardless of the remaining host (leading <code>.*</code>) */
+    private final BitSet suffixEntries = new BitSet();
+
+    private Node child(Character token) {
+      if (token == null) {
+        if (anyChild == null) {
+          anyChild = new Node();
+        }
+        return anyChild;
+      }
+      return children.computeIfAbsent(token, key -> new Node());
+    }
+
+    private void matchAll(String host, int position, BitSet matches) {
+      matches.or(suffixEntries);
+      if (position < 0) {
+        matches.or(terminalEntries);
+        return;
+      }
+      Node child = children.get(host.charAt(position));
+      if (child != null) {
+        child.matchAll(host, position - 1, matches);
+      }
+      if (anyChild != null) {
+        anyChild.matchAll(host, position - 1, matches);
+      }
+    }
+
+    private int matchFirst(String host, int position, int first) {
+      int result = first(suffixEntries, first);
+      if (position < 0) {
+        return first(terminalEntries, result);
+      }
+      Node child = children.get(host.charAt(position));
+      if (child != null) {
+        result = child.matchFirst(host, position - 1, result);
+      }
+      if (anyChild != null) {
+        result = anyChild.matchFirst(host, position - 1, result);
+      }
+      return result;
+    }
+  }
+
+  /**
+   * Single regex containing a range of the patterns as alternatives. As the alternatives are tried in order, the matching
+   * group identifies the first matching pattern. The patterns after it are searched in the alternations of the halves
+   * of the range, so each matching pattern costs a logarithmic number of regex matches.
+   */
+  private static final class RegexAlternation {
+
+    private final Pattern pattern;
+    private final List<IndexedPattern> patterns;
+    private final int[] groups;
+    private final RegexAlternation first;
+    private final RegexAlternation second;
+
+    private RegexAlternation(List<IndexedPattern> patterns, int from, int to) {
+      this.patterns = patterns.subList(from, to);
+      this.groups = new int[this.patterns.size()];
+      int group = 1;
+      for (int i = 0; i < this.patterns.size(); i++) {
+        groups[i] = group;
+        group += 1 + this.patterns.get(i).pattern.matcher("").groupCount();
+      }
+      this.pattern = Pattern.compile(this.patterns.stream()
+          .map(indexedPattern -> "(" + indexedPattern.pattern.pattern() + ")")
+          .collect(Collectors.joining("|")));
+      if (this.patterns.size() > 1) {
+        int middle = (from + to) >>> 1;
+        this.first = new RegexAlternation(patterns, from, middle);
+        this.second = new RegexAlternation(patterns, middle, to);
+      }
+      else {
+        this.first = null;
+        this.second = null;
+      }
+    }
+
+    /**
+     * @return entry of the first matching pattern, {@link #NO_MATCH} if no pattern matches
+     */
+    private int matchFirst(String host) {
+      Matcher matcher = pattern.matcher(host);
+      return matcher.matches() ? patterns.get(firstGroup(matcher)).index : NO_MATCH;
+    }
+
+    private void matchAll(String host, BitSet matches) {
+      Matcher matcher = pattern.matcher(host);
+      if (matcher.matches()) {
+        int matched = firstGroup(matcher);
+        matches.set(patterns.get(matched).index);
+        matchAfter(matched, host, matches);
+      }
+    }
+
+    /**
+     * Matches the patterns after the given pattern, which is the first matching one
+     */
+    private void matchAfter(int matched, String host, BitSet matches) {
+      if (first == null) {
+        return;
+      }
+      int firstSize = first.patterns.size();
+      if (matched < firstSize) {
+        first.matchAfter(matched, host, matches);
+        second.matchAll(host, matches);
+      }
+      else {
+        second.matchAfter(matched - firstSize, host, matches);
+      }
+    }
+
+    private int firstGroup(Matcher matcher) {
+      int group = 0;
+      while (group < groups.length - 1 && matcher.start(groups[group]) < 0) {
+        group++;
+      }
+      return group;
+    }
+  }
+
+  private static final class IndexedPattern {
+
+    private final Pattern pattern;
+    private final int index;
+
+    private IndexedPattern(Pattern pattern, int index) {
+      this.pattern = pattern;
+      this.index = index;
+    }
+  }
+
+}
@@ -0,0 +1,158 @@
+/*
+ * Copyright (c) 2020. dev-eth0.de All rights reserved.
+ */
+
+package de.dev.eth0.springboot.httpclient.impl;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.util.List;
+import java.util.Map;
+import org.apache.hc.client5.http.classic.methods.HttpUriRequestBase;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpResponse;
+import org.apache.hc.core5.http.ContentType;
+import org.apache.hc.core5.http.Header;
+import org.apache.hc.core5.http.HttpEntity;
+import org.apache.hc.core5.http.io.entity.ByteArrayEntity;
+import org.apache.hc.core5.http.io.entity.EntityUtils;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.client.AbstractClientHttpRequest;
+import org.springframework.http.client.AbstractClientHttpResponse;
+import org.springframework.http.client.ClientHttpRequest;
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.http.client.ClientHttpResponse;
+
+/**
+ * {@link ClientHttpRequestFactory} executing the requests with a classic Apache HttpClient 5
+ * <p>
+ * The request body is buffered, so the length of the body is known when the request is sent. Closing the response
+ * consumes the remaining body, so the connection is released to the pool.
+ */
+public class HttpComponents5ClientHttpRequestFactory implements ClientHttpRequestFactory, DisposableBean {
+
+  private final CloseableHttpClient httpClient;
+
+  public HttpComponents5ClientHttpRequestFactory(CloseableHttpClient httpClient) {
+    this.httpClient = httpClient;
+  }
+
+  @Override
+  public ClientHttpRequest createRequest(URI uri, HttpMethod httpMethod) {
+    return new HttpComponents5ClientHttpRequest(httpClient, uri, httpMethod);
+  }
+
+  /**
+   * Closes the client, the shared connection manager is closed by the factory of the client
+   */
+  @Override
+  public void destroy() throws IOException {
+    httpClient.close();
+  }
+
+  private static final class HttpComponents5ClientHttpRequest extends AbstractClientHttpRequest {
+
+    private final CloseableHttpClient httpClient;
+    private final URI uri;
+    private final HttpMethod method;
+    private final ByteArrayOutputStream body = new ByteArrayOutputStream(1024);
+
+    HttpComponents5ClientHttpRequest(CloseableHttpClient httpClient, URI uri, HttpMethod method) {
+      this.httpClient = httpClient;
+      this.uri = uri;
+      this.method = method;
+    }
+
+    @Override
+    public String getMethodValue() {
+      return method.name();
+    }
+
+    @Override
+    public URI getURI() {
+      return uri;
+    }
+
+    @Override
+    protected OutputStream getBodyInternal(HttpHeaders headers) {
+      return body;
+    }
+
+    @Override
+    protected ClientHttpResponse executeInternal(HttpHeaders headers) throws IOException {
+      HttpUriRequestBase request = new HttpUriRequestBase(method.name(), uri);
+      for (Map.Entry<String, List<String>> header : headers.entrySet()) {
+        // set by the entity
+        if (HttpHeaders.CONTENT_LENGTH.equalsIgnoreCase(header.getKey())
+            || HttpHeaders.TRANSFER_ENCODING.equalsIgnoreCase(header.getKey())) {
+          continue;
+        }
+        for (String value : header.getValue()) {
+          request.addHeader(header.getKey(), value);
+        }
+      }
+      if (body.size() > 0) {
+        String contentType = headers.getFirst(HttpHeaders.CONTENT_TYPE);
+        request.setEntity(new ByteArrayEntity(body.toByteArray(), contentType != null ? ContentType.parse(contentType) : null));
+      }
+      return new HttpComponents5ClientHttpResponse(httpClient.execute(request));
+    }
+  }
+
+  private static final class HttpComponents5ClientHttpResponse extends AbstractClientHttpResponse {
+
+    private final CloseableHttpResponse response;
+    private HttpHeaders headers;
+
+    HttpComponents5ClientHttpResponse(CloseableHttpResponse response) {
+      this.response = response;
+    }
+
+    @Override
+    public int getRawStatusCode() {
+      return response.getCode();
+    }
+
+    @Override
+    public String getStatusText() {
+      return response.getReasonPhrase();
+    }
+
+    @Override
+    public HttpHeaders getHeaders() {
+      if (headers == null) {
+        headers = new HttpHeaders();
+        for (Header header : response.getHeaders()) {
+          headers.add(header.getName(), header.getValue());
+        }
+      }
+      return headers;
+    }
+
+    @Override
+    public InputStream getBody() throws IOException {
+      HttpEntity entity = response.getEntity();
+      return entity != null ? entity.getContent() : InputStream.nullInputStream();
+    }
+
+    @Override
+    public void close() {
+      try {
+        try {
+          EntityUtils.consume(response.getEntity());
+        }
+        finally {
+          response.close();
+        }
+      }
+      catch (IOException ex) {
+        // ignore, the connection is discarded
+      }
+    }
+  }
+}
@@ -0,0 +1,170 @@
+/*
+ * Copyright (c) 2020. dev-eth0.de All rights reserved.
+ */
+
+package de.dev.eth0.springboot.httpclient.impl;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.client.AbstractClientHttpRequest;
+import org.springframework.http.client.AbstractClientHttpResponse;
+import org.springframework.http.client.ClientHttpRequest;
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.http.client.ClientHttpResponse;
+
+/**
+ * {@link ClientHttpRequestFactory} executing the requests with a JDK {@link HttpClient}
+ * <p>
+ * The request body is buffered, so the length of the body is known when the request is sent. The headers managed by the
+ * JDK client (e.g. {@code Connection} and {@code Content-Length}) are not sent. The read timeout limits the time until
+ * the response headers are received, as the JDK client has no socket timeout.
+ */
+public class JdkClientHttpRequestFactory implements ClientHttpRequestFactory {
+
+  private static final Set<String> RESTRICTED_HEADERS = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
+
+  static {
+    RESTRICTED_HEADERS.addAll(List.of(HttpHeaders.CONNECTION, HttpHeaders.CONTENT_LENGTH, HttpHeaders.EXPECT,
+        HttpHeaders.HOST, HttpHeaders.UPGRADE, HttpHeaders.TRANSFER_ENCODING));
+  }
+
+  private final HttpClient httpClient;
+  private final Duration readTimeout;
+
+  /**
+   * @param httpClient client executing the requests
+   * @param readTimeout timeout until the response headers are received, null for no timeout
+   */
+  public JdkClientHttpRequestFactory(HttpClient httpClient, Duration readTimeout) {
+    this.httpClient = httpClient;
+    this.readTimeout = readTimeout;
+  }
+
+  @Override
+  public ClientHttpRequest createRequest(URI uri, HttpMethod httpMethod) {
+    return new JdkClientHttpRequest(httpClient, uri, httpMethod, readTimeout);
+  }
+
+  private static final class JdkClientHttpRequest extends AbstractClientHttpRequest {
+
+    private final HttpClient httpClient;
+    private final URI uri;
+    private final HttpMethod method;
+    private final Duration readTimeout;
+    private final ByteArrayOutputStream body = new ByteArrayOutputStream(1024);
+
+    JdkClientHttpRequest(HttpClient httpClient, URI uri, HttpMethod method, Duration readTimeout) {
+      this.httpClient = httpClient;
+      this.uri = uri;
+      this.method = method;
+      this.readTimeout = readTimeout;
+    }
+
+    @Override
+    public String getMethodValue() {
+      return method.name();
+    }
+
+    @Override
+    public URI getURI() {
+      return uri;
+    }
+
+    @Override
+    protected OutputStream getBodyInternal(HttpHeaders headers) {
+      return body;
+    }
+
+    @Override
+    protected ClientHttpResponse executeInternal(HttpHeaders headers) throws IOException {
+      HttpRequest.BodyPublisher bodyPublisher = body.size() > 0
+          ? HttpRequest.BodyPublishers.ofByteArray(body.toByteArray())
+          : HttpRequest.BodyPublishers.noBody();
+      HttpRequest.Builder request = HttpRequest.newBuilder(uri).method(method.name(), bodyPublisher);
+      if (readTimeout != null) {
+        request.timeout(readTimeout);
+      }
+      for (Map.Entry<String, List<String>> header : headers.entrySet()) {
+        if (RESTRICTED_HEADERS.contains(header.getKey())) {
+          continue;
+        }
+        for (String value : header.getValue()) {
+          request.header(header.getKey(), value);
+        }
+      }
+      try {
+        return new JdkClientHttpResponse(httpClient.send(request.build(), HttpResponse.BodyHandlers.ofInputStream()));
+      }
+      catch (InterruptedException ex) {
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException("Request interrupted: " + uri);
+      }
+    }
+  }
+
+  private static final class JdkClientHttpResponse extends AbstractClientHttpResponse {
+
+    private final HttpResponse<InputStream> response;
+    private HttpHeaders headers;
+
+    JdkClientHttpResponse(HttpResponse<InputStream> response) {
+      this.response = response;
+    }
+
+    @Override
+    public int getRawStatusCode() {
+      return response.statusCode();
+    }
+
+    /**
+     * HTTP/2 has no reason phrases, so the text of the status code is returned
+     */
+    @Override
+    public String getStatusText() {
+      HttpStatus status = HttpStatus.resolve(response.statusCode());
+      return status != null ? status.getReasonPhrase() : "";
+    }
+
+    @Override
+    public HttpHeaders getHeaders() {
+      if (headers == null) {
+        headers = new HttpHeaders();
+        response.headers().map().forEach(headers::addAll);
+      }
+      return headers;
+    }
+
+    @Override
+    public InputStream getBody() {
+      return response.body();
+    }
+
+    /**
+     * Closing the body releases the connection, the remaining body is discarded
+     */
+    @Override
+    public void close() {
+      try {
+        response.body().close();
+      }
+      catch (IOException ex) {
+        // ignore, the connection is discarded
+      }
+    }
+  }
+}
@@ -0,0 +1,22 @@
+/*
+ * Copyright (c) 2020. dev-eth0.de All rights reserved.
+ */
+
+package de.dev.eth0.springboot.httpclient.impl;
+
+import okhttp3.OkHttpClient;
+
+/**
+ * Callback to customize the shared client of the {@link ConfigurableOkHttpClientFactory}
+ * <p>
+ * The customizers are applied once to the configured builder, before the shared client is built.
+ */
+@FunctionalInterface
+public interface OkHttpClientCustomizer {
+
+  /**
+   * @param builder configured builder of the shared client
+   * @param factory factory holding the registry of the shared client and the proxy selector
+   */
+  void customize(OkHttpClient.Builder builder, ConfigurableOkHttpClientFactory factory);
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright (c) 2020. dev-eth0.de All rights reserved.
+ */
+
+package de.dev.eth0.springboot.httpclient.impl;
+
+import java.io.Closeable;
+import java.util.function.Supplier;
+
+import okhttp3.OkHttpClient;
+
+/**
+ * Registry for the shared {@link OkHttpClient} of a configuration.
+ * <p>
+ * The client is built once, all builders handed out are derived from it and therefore share its connection pool,
+ * dispatcher and SSL configuration.
+ */
+public class OkHttpClientRegistry implements Closeable {
+
+  private final Supplier<OkHttpClient.Builder> builderSupplier;
+
+  private volatile OkHttpClient client;
+
+  /**
+   * @param builderSupplier supplies the configured builder, only called once
+   */
+  public OkHttpClientRegistry(Supplier<OkHttpClient.Builder> builderSupplier) {
+    this.builderSupplier = builderSupplier;
+  }
+
+  /**
+   * @return the shared {@link OkHttpClient}, built on first access
+   */
+  public OkHttpClient getClient() {
+    OkHttpClient result = client;
+    if (result == null) {
+      synchronized (this) {
+        result = client;
+        if (result == null) {
+          result = builderSupplier.get().build();
+          client = result;
+        }
+      }
+    }
+    return result;
+  }
+
+  /**
+   * @return the shared {@link OkHttpClient}, null if it wasn't built yet
+   */
+  public OkHttpClient getClientIfBuilt() {
+    return client;
+  }
+
+  /**
+   * @return new builder sharing the connection pool and dispatcher of the shared client
+   */
+  public OkHttpClient.Builder newBuilder() {
+    return getClient().newBuilder();
+  }
+
+  /**
+   * Shuts down the dispatcher and evicts all pooled connections of the shared client
+   */
+  @Override
+  public void close() {
+    OkHttpClient current = client;
+    if (current != null) {
+      current.dispatcher().executorService().shutdown();
+      current.connectionPool().evictAll();
+    }
+  }
+}
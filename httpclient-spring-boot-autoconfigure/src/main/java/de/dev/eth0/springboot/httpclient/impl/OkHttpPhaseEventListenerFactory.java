@@ -0,0 +1,237 @@
+/*
+ * Copyright (c) 2020. dev-eth0.de All rights reserved.
+ */
+
+package de.dev.eth0.springboot.httpclient.impl;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.function.Predicate;
+
+import okhttp3.Call;
+import okhttp3.Connection;
+import okhttp3.EventListener;
+import okhttp3.Handshake;
+import okhttp3.Protocol;
+import okhttp3.Request;
+
+/**
+ * Event listener factory reporting the phases of each call to the {@link RequestPhaseListener}
+ * <p>
+ * The listeners hold the state of a call and are reused once the call ended, so no objects are allocated per call while
+ * enough listeners are pooled. The lease starts with the call and is completed once the first connection is acquired,
+ * for asynchronous calls it is started by the calling thread and includes the wait for the dispatcher. Phases of
+ * failed calls and connects are abandoned. The CONNECT of a tunnel isn't reported by OkHttp, it is part of the connect
+ * phase.
+ */
+public class OkHttpPhaseEventListenerFactory implements EventListener.Factory {
+
+  private final RequestPhaseListener requestPhaseListener;
+  private final BlockingQueue<PhaseEventListener> pool;
+  private final Predicate<Request> skipped;
+
+  /**
+   * @param requestPhaseListener listener of the phases
+   * @param poolSize maximum number of pooled listeners, e.g. the maximum number of concurrent requests
+   */
+  public OkHttpPhaseEventListenerFactory(RequestPhaseListener requestPhaseListener, int poolSize) {
+    this(requestPhaseListener, poolSize, request -> false);
+  }
+
+  /**
+   * @param requestPhaseListener listener of the phases
+   * @param poolSize maximum number of pooled listeners, e.g. the maximum number of concurrent requests
+   * @param skipped calls of these requests are not reported, e.g. calls executed by another call
+   */
+  public OkHttpPhaseEventListenerFactory(RequestPhaseListener requestPhaseListener, int poolSize, Predicate<Request> skipped) {
+    this.requestPhaseListener = requestPhaseListener;
+    this.pool = new ArrayBlockingQueue<>(Math.max(poolSize, 1));
+    this.skipped = skipped;
+  }
+
+  @Override
+  public EventListener create(Call call) {
+    if (skipped.test(call.request())) {
+      return EventListener.NONE;
+    }
+    PhaseEventListener listener = pool.poll();
+    if (listener == null) {
+      listener = new PhaseEventListener();
+    }
+    listener.pooled = false;
+    return listener;
+  }
+
+  /**
+   * @return number of currently pooled listeners
+   */
+  public int getPooledCount() {
+    return pool.size();
+  }
+
+  private void release(PhaseEventListener listener) {
+    if (!listener.pooled) {
+      listener.pooled = true;
+      pool.offer(listener);
+    }
+  }
+
+  private final class PhaseEventListener extends EventListener {
+
+    private boolean pooled;
+    private boolean leased;
+    private long leaseStart;
+    private Object leaseState;
+    private long dnsStart;
+    private Object dnsState;
+    private long connectStart;
+    private Object connectState;
+    private boolean connecting;
+    private boolean secureConnect;
+    private long secureConnectStart;
+    private Object secureConnectState;
+    private boolean waiting;
+    private long requestSent;
+    private Object requestSentState;
+
+    @Override
+    public void callStart(Call call) {
+      leaseState = requestPhaseListener.startPhase(RequestPhase.LEASE, host(call));
+      leased = true;
+      leaseStart = System.nanoTime();
+    }
+
+    @Override
+    public void dnsStart(Call call, String domainName) {
+      dnsState = requestPhaseListener.startPhase(RequestPhase.DNS, domainName);
+      dnsStart = System.nanoTime();
+    }
+
+    @Override
+    public void dnsEnd(Call call, String domainName, List<InetAddress> inetAddressList) {
+      requestPhaseListener.completePhase(RequestPhase.DNS, domainName, System.nanoTime() - dnsStart, dnsState);
+    }
+
+    @Override
+    public void connectStart(Call call, InetSocketAddress inetSocketAddress, Proxy proxy) {
+      connectState = requestPhaseListener.startPhase(RequestPhase.CONNECT, host(call));
+      connectStart = System.nanoTime();
+      connecting = true;
+      secureConnect = false;
+    }
+
+    @Override
+    public void secureConnectStart(Call call) {
+      secureConnect = true;
+      secureConnectStart = System.nanoTime();
+      requestPhaseListener.completePhase(RequestPhase.CONNECT, host(call), secureConnectStart - connectStart, connectState);
+      secureConnectState = requestPhaseListener.startPhase(RequestPhase.TLS, host(call));
+    }
+
+    @Override
+    public void secureConnectEnd(Call call, Handshake handshake) {
+      connecting = false;
+      requestPhaseListener.completePhase(RequestPhase.TLS, host(call), System.nanoTime() - secureConnectStart, secureConnectState);
+    }
+
+    @Override
+    public void connectEnd(Call call, InetSocketAddress inetSocketAddress, Proxy proxy, Protocol protocol) {
+      if (!secureConnect) {
+        connecting = false;
+        requestPhaseListener.completePhase(RequestPhase.CONNECT, host(call), System.nanoTime() - connectStart, connectState);
+      }
+    }
+
+    @Override
+    public void connectFailed(Call call, InetSocketAddress inetSocketAddress, Proxy proxy, Protocol protocol, IOException ioe) {
+      abandonConnect(call);
+    }
+
+    @Override
+    public void connectionAcquired(Call call, Connection connection) {
+      // the connections of follow-up requests aren't timed, their lease starts without any event
+      if (leased) {
+        leased = false;
+        requestPhaseListener.completePhase(RequestPhase.LEASE, host(call), System.nanoTime() - leaseStart, leaseState);
+      }
+    }
+
+    @Override
+    public void requestHeadersEnd(Call call, Request request) {
+      requestSent(call);
+    }
+
+    @Override
+    public void requestBodyEnd(Call call, long byteCount) {
+      requestSent(call);
+    }
+
+    @Override
+    public void responseHeadersStart(Call call) {
+      if (waiting) {
+        waiting = false;
+        requestPhaseListener.completePhase(RequestPhase.TTFB, host(call), System.nanoTime() - requestSent, requestSentState);
+      }
+    }
+
+    @Override
+    public void callEnd(Call call) {
+      end();
+    }
+
+    @Override
+    public void callFailed(Call call, IOException ioe) {
+      if (leased) {
+        requestPhaseListener.abandonPhase(RequestPhase.LEASE, host(call), leaseState);
+      }
+      abandonConnect(call);
+      if (waiting) {
+        requestPhaseListener.abandonPhase(RequestPhase.TTFB, host(call), requestSentState);
+      }
+      end();
+    }
+
+    private void end() {
+      leased = false;
+      connecting = false;
+      waiting = false;
+      leaseState = null;
+      dnsState = null;
+      connectState = null;
+      secureConnectState = null;
+      requestSentState = null;
+      release(this);
+    }
+
+    private void abandonConnect(Call call) {
+      if (connecting) {
+        connecting = false;
+        if (secureConnect) {
+          requestPhaseListener.abandonPhase(RequestPhase.TLS, host(call), secureConnectState);
+        }
+        else {
+          requestPhaseListener.abandonPhase(RequestPhase.CONNECT, host(call), connectState);
+        }
+      }
+    }
+
+    private void requestSent(Call call) {
+      // the headers of a request with body are followed by the body
+      if (waiting) {
+        requestPhaseListener.abandonPhase(RequestPhase.TTFB, host(call), requestSentState);
+      }
+      waiting = true;
+      requestSentState = requestPhaseListener.startPhase(RequestPhase.TTFB, host(call));
+      requestSent = System.nanoTime();
+    }
+
+    private String host(Call call) {
+      return call.request().url().host();
+    }
+  }
+}
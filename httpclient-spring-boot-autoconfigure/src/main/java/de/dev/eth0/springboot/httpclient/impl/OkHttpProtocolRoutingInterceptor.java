@@ -0,0 +1,102 @@
+/*
+ * Copyright (c) 2020. dev-eth0.de All rights reserved.
+ */
+
+package de.dev.eth0.springboot.httpclient.impl;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import de.dev.eth0.springboot.httpclient.HttpClientProperties;
+import okhttp3.Call;
+import okhttp3.Interceptor;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.Response;
+import okio.Timeout;
+
+/**
+ * Interceptor executing the calls of hosts, which use other protocols than the shared client, on a client derived from
+ * the shared client with these protocols
+ * <p>
+ * OkHttp only supports the protocols of a whole client. The derived clients share the connection pool, dispatcher and
+ * event listener factory of the shared client, but not its application interceptors, so this interceptor is the first
+ * one of the shared client. Interceptors added to the builders of the factory are not applied to the routed calls, the
+ * timeouts of the intercepted call are. The intercepted call only delegates to the routed call, so its events should
+ * be skipped (see {@link #isRouted(Request)}). A cancellation of the intercepted call is applied before and after the
+ * routed call was executed.
+ */
+public class OkHttpProtocolRoutingInterceptor implements Interceptor {
+
+  private final Map<HttpClientProperties.Http2RouteConfiguration, List<Protocol>> protocols;
+  private final HostPatternMatcher<HttpClientProperties.Http2RouteConfiguration> matcher;
+  private final Supplier<OkHttpClient> sharedClient;
+  private final Map<List<Object>, OkHttpClient> clients = new ConcurrentHashMap<>();
+
+  /**
+   * @param protocols protocols by route configuration, in declaration order
+   * @param sharedClient supplier of the shared client, only called once a call is routed
+   */
+  public OkHttpProtocolRoutingInterceptor(Map<HttpClientProperties.Http2RouteConfiguration, List<Protocol>> protocols,
+      Supplier<OkHttpClient> sharedClient) {
+    this.protocols = Map.copyOf(protocols);
+    this.matcher = HostPatternMatcher.compile(List.copyOf(protocols.keySet()), HttpClientProperties.Http2RouteConfiguration::getHostPatterns);
+    this.sharedClient = sharedClient;
+  }
+
+  /**
+   * @param request request of a call
+   * @return true if the call is intercepted and executed by a routed call, false for the routed call itself
+   */
+  public boolean isRouted(Request request) {
+    return request.tag(RoutedCall.class) == null && matcher.matchFirst(request.url().host()).isPresent();
+  }
+
+  @Override
+  public Response intercept(Chain chain) throws IOException {
+    Optional<HttpClientProperties.Http2RouteConfiguration> route = matcher.matchFirst(chain.request().url().host());
+    if (route.isEmpty()) {
+      return chain.proceed(chain.request());
+    }
+    List<Object> key = List.of(route.get(), chain.connectTimeoutMillis(), chain.readTimeoutMillis(), chain.writeTimeoutMillis());
+    OkHttpClient client = clients.computeIfAbsent(key, ignored -> createClient(route.get(), chain));
+    Call call = client.newCall(chain.request().newBuilder().tag(RoutedCall.class, RoutedCall.INSTANCE).build());
+    Timeout timeout = chain.call().timeout();
+    call.timeout().timeout(timeout.timeoutNanos(), TimeUnit.NANOSECONDS);
+    if (timeout.hasDeadline()) {
+      call.timeout().deadlineNanoTime(timeout.deadlineNanoTime());
+    }
+    if (chain.call().isCanceled()) {
+      throw new IOException("Canceled");
+    }
+    Response response = call.execute();
+    if (chain.call().isCanceled()) {
+      response.close();
+      throw new IOException("Canceled");
+    }
+    return response;
+  }
+
+  private OkHttpClient createClient(HttpClientProperties.Http2RouteConfiguration route, Chain chain) {
+    OkHttpClient.Builder builder = sharedClient.get().newBuilder();
+    builder.interceptors().clear();
+    return builder.protocols(protocols.get(route))
+        .connectTimeout(chain.connectTimeoutMillis(), TimeUnit.MILLISECONDS)
+        .readTimeout(chain.readTimeoutMillis(), TimeUnit.MILLISECONDS)
+        .writeTimeout(chain.writeTimeoutMillis(), TimeUnit.MILLISECONDS)
+        .build();
+  }
+
+  /**
+   * Tag of the requests of routed calls, so their events are reported
+   */
+  private enum RoutedCall {
+    INSTANCE
+  }
+}
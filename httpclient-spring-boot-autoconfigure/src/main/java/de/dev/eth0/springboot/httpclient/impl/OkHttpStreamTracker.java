@@ -0,0 +1,101 @@
+/*
+ * Copyright (c) 2020. dev-eth0.de All rights reserved.
+ */
+
+package de.dev.eth0.springboot.httpclient.impl;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import okhttp3.Connection;
+import okhttp3.Interceptor;
+import okhttp3.Protocol;
+import okhttp3.Response;
+
+/**
+ * Network interceptor tracking the protocol and the concurrent streams on the connections of each host
+ * <p>
+ * A stream is active from sending the request until the response headers are received. With HTTP/2 the streams of a
+ * host are multiplexed over few connections, with HTTP/1.1 each active stream uses a connection of its own. OkHttp
+ * doesn't expose the maximum concurrent streams of the server, so the peak of the observed streams per connection is
+ * reported.
+ */
+public class OkHttpStreamTracker implements Interceptor {
+
+  private final Map<String, HostStreams> hosts = new ConcurrentHashMap<>();
+
+  @Override
+  public Response intercept(Chain chain) throws IOException {
+    Connection connection = chain.connection();
+    if (connection == null) {
+      return chain.proceed(chain.request());
+    }
+    HostStreams streams = hosts.computeIfAbsent(chain.request().url().host(), host -> new HostStreams());
+    streams.started(connection);
+    try {
+      return chain.proceed(chain.request());
+    }
+    finally {
+      streams.completed(connection);
+    }
+  }
+
+  /**
+   * @return streams of all hosts which were requested, by host
+   */
+  public Map<String, HostStreams> getHosts() {
+    return Collections.unmodifiableMap(new TreeMap<>(hosts));
+  }
+
+  /**
+   * Streams of a host
+   */
+  public static final class HostStreams {
+
+    private final Map<Connection, Integer> connections = new ConcurrentHashMap<>();
+    private final AtomicInteger maxStreamsPerConnection = new AtomicInteger();
+    private volatile Protocol protocol;
+
+    private void started(Connection connection) {
+      protocol = connection.protocol();
+      int streams = connections.merge(connection, 1, Integer::sum);
+      maxStreamsPerConnection.accumulateAndGet(streams, Math::max);
+    }
+
+    private void completed(Connection connection) {
+      connections.computeIfPresent(connection, (key, streams) -> streams > 1 ? streams - 1 : null);
+    }
+
+    /**
+     * @return protocol of the last connection
+     */
+    public Protocol getProtocol() {
+      return protocol;
+    }
+
+    /**
+     * @return number of connections with active streams
+     */
+    public int getConnections() {
+      return connections.size();
+    }
+
+    /**
+     * @return number of active streams of all connections
+     */
+    public int getActiveStreams() {
+      return connections.values().stream().mapToInt(Integer::intValue).sum();
+    }
+
+    /**
+     * @return peak of the concurrent streams on a single connection
+     */
+    public int getMaxStreamsPerConnection() {
+      return maxStreamsPerConnection.get();
+    }
+  }
+}
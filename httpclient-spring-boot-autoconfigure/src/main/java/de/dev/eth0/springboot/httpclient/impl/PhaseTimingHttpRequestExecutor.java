@@ -0,0 +1,118 @@
+/*
+ * Copyright (c) 2020. dev-eth0.de All rights reserved.
+ */
+
+package de.dev.eth0.springboot.httpclient.impl;
+
+import java.io.IOException;
+import java.util.function.BiConsumer;
+import org.apache.http.HttpClientConnection;
+import org.apache.http.HttpException;
+import org.apache.http.HttpHost;
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpResponse;
+import org.apache.http.protocol.HttpContext;
+import org.apache.http.protocol.HttpCoreContext;
+import org.apache.http.protocol.HttpRequestExecutor;
+
+/**
+ * Request executor reporting the CONNECT of tunnels and the time to the first byte of the response to the
+ * {@link RequestPhaseListener}
+ * <p>
+ * The time to the first byte starts once the request was sent and ends when the final response headers are received.
+ * Exceptions of the execution, including the CONNECT of tunnels, are reported to the request failure listener, the
+ * failed phase is abandoned.
+ */
+public class PhaseTimingHttpRequestExecutor extends HttpRequestExecutor {
+
+  private static final String CONNECT_METHOD = "CONNECT";
+
+  private final RequestPhaseListener requestPhaseListener;
+  private final BiConsumer<HttpContext, Exception> requestFailureListener;
+
+  /**
+   * @param requestPhaseListener listener of the phases, null disables the timing
+   */
+  public PhaseTimingHttpRequestExecutor(RequestPhaseListener requestPhaseListener) {
+    this(requestPhaseListener, null);
+  }
+
+  /**
+   * @param requestPhaseListener listener of the phases, null disables the timing
+   * @param requestFailureListener listener of the failed executions, may be null
+   */
+  public PhaseTimingHttpRequestExecutor(RequestPhaseListener requestPhaseListener, BiConsumer<HttpContext, Exception> requestFailureListener) {
+    super();
+    this.requestPhaseListener = requestPhaseListener;
+    this.requestFailureListener = requestFailureListener;
+  }
+
+  @Override
+  public HttpResponse execute(HttpRequest request, HttpClientConnection conn, HttpContext context) throws IOException, HttpException {
+    if (requestFailureListener == null) {
+      return timedExecute(request, conn, context);
+    }
+    try {
+      return timedExecute(request, conn, context);
+    }
+    catch (IOException | HttpException | RuntimeException ex) {
+      requestFailureListener.accept(context, ex);
+      throw ex;
+    }
+  }
+
+  private HttpResponse timedExecute(HttpRequest request, HttpClientConnection conn, HttpContext context) throws IOException, HttpException {
+    if (requestPhaseListener == null || !isConnect(request)) {
+      return super.execute(request, conn, context);
+    }
+    String host = getHost(context);
+    Object state = requestPhaseListener.startPhase(RequestPhase.TUNNEL, host);
+    long start = System.nanoTime();
+    HttpResponse response = null;
+    try {
+      response = super.execute(request, conn, context);
+      return response;
+    }
+    finally {
+      if (response != null) {
+        requestPhaseListener.completePhase(RequestPhase.TUNNEL, host, System.nanoTime() - start, state);
+      }
+      else {
+        requestPhaseListener.abandonPhase(RequestPhase.TUNNEL, host, state);
+      }
+    }
+  }
+
+  @Override
+  protected HttpResponse doReceiveResponse(HttpRequest request, HttpClientConnection conn, HttpContext context)
+      throws HttpException, IOException {
+    if (requestPhaseListener == null || isConnect(request)) {
+      return super.doReceiveResponse(request, conn, context);
+    }
+    String host = getHost(context);
+    Object state = requestPhaseListener.startPhase(RequestPhase.TTFB, host);
+    long start = System.nanoTime();
+    HttpResponse response = null;
+    try {
+      response = super.doReceiveResponse(request, conn, context);
+      return response;
+    }
+    finally {
+      if (response != null) {
+        requestPhaseListener.completePhase(RequestPhase.TTFB, host, System.nanoTime() - start, state);
+      }
+      else {
+        requestPhaseListener.abandonPhase(RequestPhase.TTFB, host, state);
+      }
+    }
+  }
+
+  private static boolean isConnect(HttpRequest request) {
+    return CONNECT_METHOD.equalsIgnoreCase(request.getRequestLine().getMethod());
+  }
+
+  private static String getHost(HttpContext context) {
+    Object target = context.getAttribute(HttpCoreContext.HTTP_TARGET_HOST);
+    return target instanceof HttpHost ? ((HttpHost)target).getHostName() : null;
+  }
+}
@@ -0,0 +1,23 @@
+/*
+ * Copyright (c) 2020. dev-eth0.de All rights reserved.
+ */
+
+package de.dev.eth0.springboot.httpclient.impl;
+
+/**
+ * Phases of a request reported to the {@link RequestPhaseListener}
+ */
+public enum RequestPhase {
+  /** waiting for a connection from the pool, for OkHttp until a connection was acquired including connecting */
+  LEASE,
+  /** resolving the address of the host */
+  DNS,
+  /** establishing the TCP connection, for OkHttp including the CONNECT of a tunnel */
+  CONNECT,
+  /** TLS handshake */
+  TLS,
+  /** CONNECT request creating a tunnel through a proxy (Apache only) */
+  TUNNEL,
+  /** time from the request being sent until the response headers are received */
+  TTFB
+}
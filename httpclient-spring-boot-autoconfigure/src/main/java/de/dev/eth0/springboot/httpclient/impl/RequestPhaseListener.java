@@ -0,0 +1,109 @@
+/*
+ * Copyright (c) 2020. dev-eth0.de All rights reserved.
+ */
+
+package de.dev.eth0.springboot.httpclient.impl;
+
+/**
+ * Listener for the duration of the {@link RequestPhase}s, called synchronously by the client threads
+ * <p>
+ * The clients start a phase with {@link #startPhase(RequestPhase, String)} and pass the returned state to its
+ * completion, a started phase is abandoned if it failed. A phase may be completed by another thread than the one which
+ * started it, e.g. the lease of an asynchronous OkHttp call starts on the calling thread and is completed by the
+ * dispatcher, so listeners keep the state of a phase in the returned state instead of per thread. Listeners without
+ * state only implement {@link #phaseStarted(RequestPhase, String)} and
+ * {@link #phaseCompleted(RequestPhase, String, long)}.
+ */
+@FunctionalInterface
+public interface RequestPhaseListener {
+
+  /**
+   * @param phase started phase
+   * @param host requested host, for connections through a proxy the connection phases may report the proxy
+   */
+  default void phaseStarted(RequestPhase phase, String host) {
+    // only the duration is of interest by default
+  }
+
+  /**
+   * @param phase completed phase
+   * @param host requested host, for connections through a proxy the connection phases may report the proxy
+   * @param durationNanos duration of the phase in ns
+   */
+  void phaseCompleted(RequestPhase phase, String host, long durationNanos);
+
+  /**
+   * @param phase started phase
+   * @param host requested host, for connections through a proxy the connection phases may report the proxy
+   * @return state of the phase passed to its completion, may be null
+   */
+  default Object startPhase(RequestPhase phase, String host) {
+    phaseStarted(phase, host);
+    return null;
+  }
+
+  /**
+   * @param phase completed phase
+   * @param host requested host, for connections through a proxy the connection phases may report the proxy
+   * @param durationNanos duration of the phase in ns
+   * @param state state returned when the phase was started
+   */
+  default void completePhase(RequestPhase phase, String host, long durationNanos, Object state) {
+    phaseCompleted(phase, host, durationNanos);
+  }
+
+  /**
+   * @param phase failed phase, it isn't completed
+   * @param host requested host, for connections through a proxy the connection phases may report the proxy
+   * @param state state returned when the phase was started
+   */
+  default void abandonPhase(RequestPhase phase, String host, Object state) {
+    // a failed phase has no duration by default
+  }
+
+  /**
+   * @param next listener called after this one
+   * @return listener calling both listeners
+   */
+  default RequestPhaseListener andThen(RequestPhaseListener next) {
+    RequestPhaseListener first = this;
+    return new RequestPhaseListener() {
+
+      @Override
+      public void phaseStarted(RequestPhase phase, String host) {
+        first.phaseStarted(phase, host);
+        next.phaseStarted(phase, host);
+      }
+
+      @Override
+      public void phaseCompleted(RequestPhase phase, String host, long durationNanos) {
+        first.phaseCompleted(phase, host, durationNanos);
+        next.phaseCompleted(phase, host, durationNanos);
+      }
+
+      @Override
+      public Object startPhase(RequestPhase phase, String host) {
+        Object firstState = first.startPhase(phase, host);
+        Object nextState = next.startPhase(phase, host);
+        // no state is allocated while both listeners are stateless
+        return firstState == null && nextState == null ? null : new Object[] { firstState, nextState };
+      }
+
+      @Override
+      public void completePhase(RequestPhase phase, String host, long durationNanos, Object state) {
+        first.completePhase(phase, host, durationNanos, state(state, 0));
+        next.completePhase(phase, host, durationNanos, state(state, 1));
+      }
+
+      @Override
+      public void abandonPhase(RequestPhase phase, String host, Object state) {
+        first.abandonPhase(phase, host, state(state, 0));
+        next.abandonPhase(phase, host, state(state, 1));
+      }
+
+      private Object state(Object state, int index) {
+        return state != null ? ((Object[])state)[index] : null;
+      }
+    };
+  }
+}
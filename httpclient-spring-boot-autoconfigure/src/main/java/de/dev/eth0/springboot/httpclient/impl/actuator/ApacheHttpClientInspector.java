@@ -0,0 +1,89 @@
+/*
+ * Copyright (c) 2020. dev-eth0.de All rights reserved.
+ */
+
+package de.dev.eth0.springboot.httpclient.impl.actuator;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.OptionalInt;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import org.apache.http.conn.HttpClientConnectionManager;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.pool.PoolStats;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.cloud.commons.httpclient.ApacheHttpClientFactory;
+
+import de.dev.eth0.springboot.httpclient.impl.ConfigurableApacheHttpClientFactory;
+import de.dev.eth0.springboot.httpclient.impl.proxy.ConfigurableProxySelector;
+
+/**
+ * Inspects the shared connection manager of the {@link ConfigurableApacheHttpClientFactory}, all routes of the pool are
+ * listed
+ */
+public class ApacheHttpClientInspector implements HttpClientInspector {
+
+  public static final String CLIENT = "apache";
+
+  private final ObjectProvider<ApacheHttpClientFactory> factoryProvider;
+
+  /**
+   * @param factoryProvider provider of the factory, only a {@link ConfigurableApacheHttpClientFactory} is inspected
+   */
+  public ApacheHttpClientInspector(ObjectProvider<ApacheHttpClientFactory> factoryProvider) {
+    this.factoryProvider = factoryProvider;
+  }
+
+  @Override
+  public String getClient() {
+    return CLIENT;
+  }
+
+  @Override
+  public Optional<HttpClientEndpoint.ClientDescriptor> describe() {
+    return getFactory().map(factory -> {
+      HttpClientConnectionManager connectionManager = factory.getRegistry().getConnectionManager();
+      HttpClientEndpoint.PoolDescriptor pool = null;
+      List<HttpClientEndpoint.PoolDescriptor> routes = List.of();
+      if (connectionManager instanceof PoolingHttpClientConnectionManager) {
+        PoolingHttpClientConnectionManager poolingConnectionManager = (PoolingHttpClientConnectionManager)connectionManager;
+        pool = toDescriptor(null, poolingConnectionManager.getTotalStats());
+        routes = poolingConnectionManager.getRoutes().stream()
+            .map(route -> toDescriptor(route.toString(), poolingConnectionManager.getStats(route)))
+            .collect(Collectors.toList());
+      }
+      ConfigurableProxySelector proxySelector = factory.getProxySelector();
+      return new HttpClientEndpoint.ClientDescriptor(CLIENT, pool, routes,
+          proxySelector != null ? HttpClientEndpoint.ProxiesDescriptor.of(proxySelector) : null,
+          HttpClientEndpoint.ClientDescriptor.tlsOf(factory.getSslContext()), null);
+    });
+  }
+
+  @Override
+  public OptionalInt evictIdleConnections() {
+    Optional<HttpClientConnectionManager> connectionManager = getFactory().map(factory -> factory.getRegistry().getConnectionManager());
+    if (connectionManager.isEmpty()) {
+      return OptionalInt.empty();
+    }
+    HttpClientConnectionManager current = connectionManager.get();
+    int idle = getIdle(current);
+    current.closeExpiredConnections();
+    current.closeIdleConnections(0, TimeUnit.MILLISECONDS);
+    return OptionalInt.of(Math.max(idle - getIdle(current), 0));
+  }
+
+  private Optional<ConfigurableApacheHttpClientFactory> getFactory() {
+    ApacheHttpClientFactory factory = factoryProvider.getIfAvailable();
+    return factory instanceof ConfigurableApacheHttpClientFactory ? Optional.of((ConfigurableApacheHttpClientFactory)factory) : Optional.empty();
+  }
+
+  private static int getIdle(HttpClientConnectionManager connectionManager) {
+    return connectionManager instanceof PoolingHttpClientConnectionManager
+        ? ((PoolingHttpClientConnectionManager)connectionManager).getTotalStats().getAvailable() : 0;
+  }
+
+  private static HttpClientEndpoint.PoolDescriptor toDescriptor(String route, PoolStats stats) {
+    return new HttpClientEndpoint.PoolDescriptor(route, stats.getLeased(), stats.getAvailable(), stats.getPending(), stats.getMax());
+  }
+}
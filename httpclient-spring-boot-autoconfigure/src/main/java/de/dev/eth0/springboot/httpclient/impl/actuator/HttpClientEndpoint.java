@@ -0,0 +1,392 @@
+/*
+ * Copyright (c) 2020. dev-eth0.de All rights reserved.
+ */
+
+package de.dev.eth0.springboot.httpclient.impl.actuator;
+
+import java.beans.PropertyDescriptor;
+import java.lang.reflect.Array;
+import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Collectors;
+import javax.net.ssl.SSLSessionContext;
+import org.springframework.beans.BeanUtils;
+import org.springframework.beans.BeanWrapper;
+import org.springframework.beans.BeanWrapperImpl;
+import org.springframework.boot.actuate.endpoint.Sanitizer;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+
+import de.dev.eth0.springboot.httpclient.HttpClientProperties;
+import de.dev.eth0.springboot.httpclient.impl.certificates.CertificateLoader;
+import de.dev.eth0.springboot.httpclient.impl.certificates.SharedSSLContext;
+import de.dev.eth0.springboot.httpclient.impl.proxy.ConfigurableProxySelector;
+import de.dev.eth0.springboot.httpclient.impl.proxy.ProxyHealthTracker;
+import de.dev.eth0.springboot.httpclient.impl.proxy.ProxySelectionCache;
+import de.dev.eth0.springboot.httpclient.impl.proxy.ProxySelectionStatistics;
+
+/**
+ * Actuator endpoint exposing the effective configuration, the state of the connection pools and proxies of the clients
+ * and the expiry of the configured certificates
+ * <p>
+ * Passwords and other secrets of the configuration are masked by the {@link Sanitizer}. The write operation closes all
+ * idle connections.
+ */
+@Endpoint(id = "httpclient")
+public class HttpClientEndpoint {
+
+  private static final String PREFIX = "http.client.";
+
+  private final HttpClientProperties httpClientProperties;
+  private final List<HttpClientInspector> inspectors;
+  private final Sanitizer sanitizer = new Sanitizer();
+
+  public HttpClientEndpoint(HttpClientProperties httpClientProperties, List<HttpClientInspector> inspectors) {
+    this.httpClientProperties = httpClientProperties;
+    this.inspectors = inspectors;
+  }
+
+  @ReadOperation
+  public HttpClientDescriptor httpClient() {
+    List<ClientDescriptor> clients = inspectors.stream()
+        .map(HttpClientInspector::describe)
+        .flatMap(Optional::stream)
+        .collect(Collectors.toList());
+    List<CertificateDescriptor> certificates = new ArrayList<>();
+    HttpClientProperties.KeystoreConfiguration keystore = httpClientProperties.getKeystore();
+    addCertificates(certificates, "keystore", CertificateLoader.loadCertificates(keystore.getPath(), keystore.getPassword(), keystore.getType()));
+    HttpClientProperties.TruststoreConfiguration truststore = httpClientProperties.getTruststore();
+    addCertificates(certificates, "truststore",
+        CertificateLoader.loadCertificates(truststore.getPath(), truststore.getPassword(), truststore.getType()));
+    return new HttpClientDescriptor(describeProperties(httpClientProperties, PREFIX), clients, certificates);
+  }
+
+  @WriteOperation
+  public Map<String, Integer> evictIdleConnections() {
+    Map<String, Integer> evicted = new LinkedHashMap<>();
+    inspectors.forEach(inspector -> inspector.evictIdleConnections().ifPresent(count -> evicted.put(inspector.getClient(), count)));
+    return evicted;
+  }
+
+  private static void addCertificates(List<CertificateDescriptor> certificates, String store, Map<String, X509Certificate> storeCertificates) {
+    storeCertificates.forEach((alias, certificate) -> certificates.add(new CertificateDescriptor(store, alias,
+        certificate.getSubjectX500Principal().getName(), certificate.getNotAfter().toInstant().toString())));
+  }
+
+  private Map<String, Object> describeProperties(Object bean, String prefix) {
+    Map<String, Object> properties = new LinkedHashMap<>();
+    BeanWrapper wrapper = new BeanWrapperImpl(bean);
+    for (PropertyDescriptor descriptor : wrapper.getPropertyDescriptors()) {
+      String name = descriptor.getName();
+      if (descriptor.getReadMethod() != null && !"class".equals(name)) {
+        properties.put(name, describeValue(prefix + name, wrapper.getPropertyValue(name)));
+      }
+    }
+    return properties;
+  }
+
+  private Object describeValue(String key, Object value) {
+    if (value == null || BeanUtils.isSimpleValueType(value.getClass())) {
+      return sanitizer.sanitize(key, value);
+    }
+    if (value.getClass().isArray()) {
+      List<Object> values = new ArrayList<>();
+      for (int i = 0; i < Array.getLength(value); i++) {
+        values.add(describeValue(key + "[" + i + "]", Array.get(value, i)));
+      }
+      return values;
+    }
+    if (value.getClass().getName().startsWith(HttpClientProperties.class.getName())) {
+      return describeProperties(value, key + ".");
+    }
+    return sanitizer.sanitize(key, value.toString());
+  }
+
+  /**
+   * Response of the read operation
+   */
+  public static final class HttpClientDescriptor {
+
+    private final Map<String, Object> properties;
+    private final List<ClientDescriptor> clients;
+    private final List<CertificateDescriptor> certificates;
+
+    HttpClientDescriptor(Map<String, Object> properties, List<ClientDescriptor> clients, List<CertificateDescriptor> certificates) {
+      this.properties = properties;
+      this.clients = clients;
+      this.certificates = certificates;
+    }
+
+    public Map<String, Object> getProperties() {
+      return properties;
+    }
+
+    public List<ClientDescriptor> getClients() {
+      return clients;
+    }
+
+    public List<CertificateDescriptor> getCertificates() {
+      return certificates;
+    }
+  }
+
+  /**
+   * State of a client
+   */
+  public static final class ClientDescriptor {
+
+    private final String client;
+    private final PoolDescriptor pool;
+    private final List<PoolDescriptor> routes;
+    private final ProxiesDescriptor proxies;
+    private final Map<String, Long> tls;
+    private final List<StreamsDescriptor> streams;
+
+    ClientDescriptor(String client, PoolDescriptor pool, List<PoolDescriptor> routes, ProxiesDescriptor proxies, Map<String, Long> tls,
+        List<StreamsDescriptor> streams) {
+      this.client = client;
+      this.pool = pool;
+      this.routes = routes;
+      this.proxies = proxies;
+      this.tls = tls;
+      this.streams = streams;
+    }
+
+    static Map<String, Long> tlsOf(SharedSSLContext sslContext) {
+      if (sslContext == null) {
+        return null;
+      }
+      SSLSessionContext sessionContext = sslContext.getSslContext().getClientSessionContext();
+      Map<String, Long> tls = new LinkedHashMap<>();
+      tls.put("sessionCacheSize", (long)sessionContext.getSessionCacheSize());
+      tls.put("sessionTimeout", (long)sessionContext.getSessionTimeout());
+      tls.put("resumedHandshakes", sslContext.getStatistics().getResumedCount());
+      tls.put("fullHandshakes", sslContext.getStatistics().getFullCount());
+      return Collections.unmodifiableMap(tls);
+    }
+
+    public String getClient() {
+      return client;
+    }
+
+    public PoolDescriptor getPool() {
+      return pool;
+    }
+
+    public List<PoolDescriptor> getRoutes() {
+      return routes;
+    }
+
+    /**
+     * @return state of the proxies, null if no proxies are configured
+     */
+    public ProxiesDescriptor getProxies() {
+      return proxies;
+    }
+
+    /**
+     * @return session cache (timeout in s) and handshakes of the shared SSL context, null if the client has none
+     */
+    public Map<String, Long> getTls() {
+      return tls;
+    }
+
+    /**
+     * @return protocol and streams per host, null if the client doesn't track them
+     */
+    public List<StreamsDescriptor> getStreams() {
+      return streams;
+    }
+  }
+
+
+  /**
+   * Protocol and streams of the connections of a host
+   */
+  public static final class StreamsDescriptor {
+
+    private final String host;
+    private final String protocol;
+    private final int connections;
+    private final int activeStreams;
+    private final int maxStreamsPerConnection;
+    private final int max;
+
+    StreamsDescriptor(String host, String protocol, int connections, int activeStreams, int maxStreamsPerConnection, int max) {
+      this.host = host;
+      this.protocol = protocol;
+      this.connections = connections;
+      this.activeStreams = activeStreams;
+      this.maxStreamsPerConnection = maxStreamsPerConnection;
+      this.max = max;
+    }
+
+    public String getHost() {
+      return host;
+    }
+
+    public String getProtocol() {
+      return protocol;
+    }
+
+    /**
+     * @return number of connections with active streams
+     */
+    public int getConnections() {
+      return connections;
+    }
+
+    public int getActiveStreams() {
+      return activeStreams;
+    }
+
+    /**
+     * @return peak of the concurrent streams on a single connection
+     */
+    public int getMaxStreamsPerConnection() {
+      return maxStreamsPerConnection;
+    }
+
+    /**
+     * @return maximum concurrent requests of the host
+     */
+    public int getMax() {
+      return max;
+    }
+  }
+
+  /**
+   * Connections of the pool or a route
+   */
+  public static final class PoolDescriptor {
+
+    private final String route;
+    private final int leased;
+    private final Integer idle;
+    private final int pending;
+    private final int max;
+
+    PoolDescriptor(String route, int leased, Integer idle, int pending, int max) {
+      this.route = route;
+      this.leased = leased;
+      this.idle = idle;
+      this.pending = pending;
+      this.max = max;
+    }
+
+    /**
+     * @return route or host, null for the whole pool
+     */
+    public String getRoute() {
+      return route;
+    }
+
+    public int getLeased() {
+      return leased;
+    }
+
+    /**
+     * @return idle connections, null if unknown
+     */
+    public Integer getIdle() {
+      return idle;
+    }
+
+    public int getPending() {
+      return pending;
+    }
+
+    public int getMax() {
+      return max;
+    }
+  }
+
+  /**
+   * Health, selections and selection cache of the proxies
+   */
+  public static final class ProxiesDescriptor {
+
+    private final List<ProxyHealthTracker.ProxyState> health;
+    private final Map<String, Long> selections;
+    private final Map<String, Long> cache;
+
+    ProxiesDescriptor(List<ProxyHealthTracker.ProxyState> health, Map<String, Long> selections, Map<String, Long> cache) {
+      this.health = health;
+      this.selections = selections;
+      this.cache = cache;
+    }
+
+    static ProxiesDescriptor of(ConfigurableProxySelector proxySelector) {
+      ProxySelectionStatistics statistics = proxySelector.getStatistics();
+      Map<String, Long> selections = new LinkedHashMap<>();
+      statistics.getKeys().forEach(key -> selections.put(key, statistics.getCount(key)));
+      ProxySelectionCache selectionCache = proxySelector.getCache();
+      Map<String, Long> cache = new LinkedHashMap<>();
+      cache.put("size", (long)selectionCache.size());
+      cache.put("maxSize", (long)selectionCache.getMaxSize());
+      cache.put("hits", selectionCache.getHitCount());
+      cache.put("misses", selectionCache.getMissCount());
+      cache.put("evictions", selectionCache.getEvictionCount());
+      return new ProxiesDescriptor(proxySelector.getHealthTracker().getStates(), Collections.unmodifiableMap(selections),
+          Collections.unmodifiableMap(cache));
+    }
+
+    /**
+     * @return state of the proxies with failed connections
+     */
+    public List<ProxyHealthTracker.ProxyState> getHealth() {
+      return health;
+    }
+
+    /**
+     * @return number of requests by first selected proxy
+     */
+    public Map<String, Long> getSelections() {
+      return selections;
+    }
+
+    public Map<String, Long> getCache() {
+      return cache;
+    }
+  }
+
+  /**
+   * Certificate of the key or truststore
+   */
+  public static final class CertificateDescriptor {
+
+    private final String store;
+    private final String alias;
+    private final String subject;
+    private final String notAfter;
+
+    CertificateDescriptor(String store, String alias, String subject, String notAfter) {
+      this.store = store;
+      this.alias = alias;
+      this.subject = subject;
+      this.notAfter = notAfter;
+    }
+
+    public String getStore() {
+      return store;
+    }
+
+    public String getAlias() {
+      return alias;
+    }
+
+    public String getSubject() {
+      return subject;
+    }
+
+    public String getNotAfter() {
+      return notAfter;
+    }
+  }
+}
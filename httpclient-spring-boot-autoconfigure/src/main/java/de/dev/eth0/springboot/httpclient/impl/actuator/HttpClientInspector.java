@@ -0,0 +1,31 @@
+/*
+ * Copyright (c) 2020. dev-eth0.de All rights reserved.
+ */
+
+package de.dev.eth0.springboot.httpclient.impl.actuator;
+
+import java.util.Optional;
+import java.util.OptionalInt;
+
+/**
+ * Inspects the shared connection pool and proxy selector of a client for the {@link HttpClientEndpoint}
+ */
+public interface HttpClientInspector {
+
+  /**
+   * @return name of the client
+   */
+  String getClient();
+
+  /**
+   * @return current state of the client, empty if the client isn't configured
+   */
+  Optional<HttpClientEndpoint.ClientDescriptor> describe();
+
+  /**
+   * Closes all idle connections of the pool
+   *
+   * @return number of closed connections, empty if the client isn't configured
+   */
+  OptionalInt evictIdleConnections();
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright (c) 2020. dev-eth0.de All rights reserved.
+ */
+
+package de.dev.eth0.springboot.httpclient.impl.actuator;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.OptionalInt;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.cloud.commons.httpclient.OkHttpClientFactory;
+
+import de.dev.eth0.springboot.httpclient.impl.ConfigurableOkHttpClientFactory;
+import de.dev.eth0.springboot.httpclient.impl.OkHttpStreamTracker;
+import de.dev.eth0.springboot.httpclient.impl.proxy.ConfigurableProxySelector;
+import okhttp3.Call;
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+import okhttp3.OkHttpClient;
+
+/**
+ * Inspects the shared client of the {@link ConfigurableOkHttpClientFactory}
+ * <p>
+ * OkHttp doesn't expose the connections per route, so the routes are the hosts of the running (leased) and queued
+ * (pending) calls of the dispatcher, idle connections are only known for the whole pool. The protocol and streams per
+ * host are tracked by the {@link OkHttpStreamTracker} of the factory.
+ */
+public class OkHttpClientInspector implements HttpClientInspector {
+
+  public static final String CLIENT = "okhttp";
+
+  private final ObjectProvider<OkHttpClientFactory> factoryProvider;
+
+  /**
+   * @param factoryProvider provider of the factory, only a {@link ConfigurableOkHttpClientFactory} is inspected
+   */
+  public OkHttpClientInspector(ObjectProvider<OkHttpClientFactory> factoryProvider) {
+    this.factoryProvider = factoryProvider;
+  }
+
+  @Override
+  public String getClient() {
+    return CLIENT;
+  }
+
+  @Override
+  public Optional<HttpClientEndpoint.ClientDescriptor> describe() {
+    return getFactory().map(factory -> {
+      OkHttpClient client = factory.getRegistry().getClient();
+      ConnectionPool connectionPool = client.connectionPool();
+      Dispatcher dispatcher = client.dispatcher();
+      HttpClientEndpoint.PoolDescriptor pool = new HttpClientEndpoint.PoolDescriptor(null,
+          connectionPool.connectionCount() - connectionPool.idleConnectionCount(), connectionPool.idleConnectionCount(),
+          dispatcher.queuedCallsCount(), dispatcher.getMaxRequests());
+      Map<String, Long> running = countByHost(dispatcher.runningCalls());
+      Map<String, Long> queued = countByHost(dispatcher.queuedCalls());
+      Set<String> hosts = new TreeSet<>(running.keySet());
+      hosts.addAll(queued.keySet());
+      List<HttpClientEndpoint.PoolDescriptor> routes = hosts.stream()
+          .map(host -> toDescriptor(host, running, queued, dispatcher))
+          .collect(Collectors.toList());
+      ConfigurableProxySelector proxySelector = factory.getProxySelector();
+      return new HttpClientEndpoint.ClientDescriptor(CLIENT, pool, routes,
+          proxySelector != null ? HttpClientEndpoint.ProxiesDescriptor.of(proxySelector) : null,
+          HttpClientEndpoint.ClientDescriptor.tlsOf(factory.getSslContext()),
+          toDescriptors(factory.getStreamTracker(), dispatcher));
+    });
+  }
+
+  @Override
+  public OptionalInt evictIdleConnections() {
+    Optional<ConfigurableOkHttpClientFactory> factory = getFactory();
+    if (factory.isEmpty()) {
+      return OptionalInt.empty();
+    }
+    ConnectionPool connectionPool = factory.get().getRegistry().getClient().connectionPool();
+    int idle = connectionPool.idleConnectionCount();
+    connectionPool.evictAll();
+    return OptionalInt.of(Math.max(idle - connectionPool.idleConnectionCount(), 0));
+  }
+
+  private Optional<ConfigurableOkHttpClientFactory> getFactory() {
+    OkHttpClientFactory factory = factoryProvider.getIfAvailable();
+    return factory instanceof ConfigurableOkHttpClientFactory ? Optional.of((ConfigurableOkHttpClientFactory)factory) : Optional.empty();
+  }
+
+  private static Map<String, Long> countByHost(List<Call> calls) {
+    return calls.stream().collect(Collectors.groupingBy(call -> call.request().url().host(), Collectors.counting()));
+  }
+
+  private static List<HttpClientEndpoint.StreamsDescriptor> toDescriptors(OkHttpStreamTracker streamTracker, Dispatcher dispatcher) {
+    return streamTracker.getHosts().entrySet().stream()
+        .map(host -> new HttpClientEndpoint.StreamsDescriptor(host.getKey(),
+            host.getValue().getProtocol() != null ? host.getValue().getProtocol().toString() : null,
+            host.getValue().getConnections(), host.getValue().getActiveStreams(), host.getValue().getMaxStreamsPerConnection(),
+            dispatcher.getMaxRequestsPerHost()))
+        .collect(Collectors.toList());
+  }
+
+  private static HttpClientEndpoint.PoolDescriptor toDescriptor(String host, Map<String, Long> running, Map<String, Long> queued,
+      Dispatcher dispatcher) {
+    return new HttpClientEndpoint.PoolDescriptor(host, running.getOrDefault(host, 0L).intValue(), null,
+        queued.getOrDefault(host, 0L).intValue(), dispatcher.getMaxRequestsPerHost());
+  }
+}
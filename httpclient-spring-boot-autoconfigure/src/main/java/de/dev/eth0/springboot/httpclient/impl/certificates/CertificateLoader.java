@@ -4,34 +4,98 @@
 
 package de.dev.eth0.springboot.httpclient.impl.certificates;
 
+import java.io.Closeable;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.security.KeyManagementException;
 import java.security.KeyStore;
 import java.security.KeyStoreException;
 import java.security.NoSuchAlgorithmException;
+import java.security.Provider;
+import java.security.Security;
 import java.security.UnrecoverableKeyException;
+import java.security.cert.Certificate;
 import java.security.cert.CertificateException;
+import java.security.cert.X509Certificate;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import javax.net.ssl.KeyManager;
 import javax.net.ssl.KeyManagerFactory;
 import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLParameters;
+import javax.net.ssl.SSLSessionContext;
+import javax.net.ssl.TrustManager;
 import javax.net.ssl.TrustManagerFactory;
+import javax.net.ssl.X509ExtendedKeyManager;
+import javax.net.ssl.X509ExtendedTrustManager;
+import javax.net.ssl.X509TrustManager;
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.BeanInstantiationException;
+import org.springframework.beans.BeanUtils;
+import org.springframework.util.ClassUtils;
 import org.springframework.util.ResourceUtils;
 
 import de.dev.eth0.springboot.httpclient.HttpClientProperties;
 
 /**
  * Loader for certificate (trust/keystore) related stuff
+ * <p>
+ * The {@link SharedSSLContext}s are cached by their configuration, the key and truststore are only loaded once for all
+ * clients using the same configuration. A configuration which could not be built is cached as well, so its stores are
+ * not loaded again for each client until the contexts are cleared. If enabled, the stores are watched and reloaded once
+ * they changed and the sessions of the warmup hosts are established before the context is returned to the thread which
+ * built it.
  */
 public class CertificateLoader {
 
   private static final Logger LOG = LoggerFactory.getLogger(CertificateLoader.class);
+  private static final Map<List<Object>, Optional<SharedSSLContext>> SHARED_SSL_CONTEXTS = new ConcurrentHashMap<>();
+  private static final Map<String, Provider> PROVIDERS = new ConcurrentHashMap<>();
 
   private CertificateLoader() {
   }
 
+  /**
+   * @param httpClientProperties
+   * @return SSL context shared by all clients with the same SSL configuration or null if it could not be built
+   */
+  public static SharedSSLContext getSharedSSLContext(HttpClientProperties httpClientProperties) {
+    List<Object> key = getKey(httpClientProperties);
+    Optional<SharedSSLContext> cached = SHARED_SSL_CONTEXTS.get(key);
+    if (cached != null) {
+      return cached.orElse(null);
+    }
+    boolean[] built = new boolean[1];
+    SharedSSLContext sharedSSLContext = SHARED_SSL_CONTEXTS.computeIfAbsent(key, ignored -> {
+      built[0] = true;
+      return Optional.ofNullable(buildSharedSSLContext(httpClientProperties));
+    }).orElse(null);
+    // the warmup connects to the hosts, so it is done by the thread which built the context outside of the map
+    if (built[0] && sharedSSLContext != null) {
+      warmup(sharedSSLContext, httpClientProperties);
+    }
+    return sharedSSLContext;
+  }
+
+  /**
+   * Removes all shared SSL contexts and stops watching their key and truststores, clients which are created afterwards
+   * use new contexts
+   */
+  public static void clearSharedSSLContexts() {
+    SHARED_SSL_CONTEXTS.values().forEach(sharedSSLContext -> sharedSSLContext.ifPresent(CertificateLoader::close));
+    SHARED_SSL_CONTEXTS.clear();
+  }
+
   /**
    * @param httpClientProperties
    * @param keyManagerFactory
@@ -41,11 +105,17 @@ public class CertificateLoader {
   public static SSLContext buildSSLContext(HttpClientProperties httpClientProperties,
       KeyManagerFactory keyManagerFactory,
       TrustManagerFactory trustManagerFactory) {
+    return buildSSLContext(httpClientProperties, getKeyManagers(keyManagerFactory), getTrustManagers(trustManagerFactory));
+  }
+
+  private static SSLContext buildSSLContext(HttpClientProperties httpClientProperties, KeyManager[] keyManagers, TrustManager[] trustManagers) {
     try {
-      SSLContext sslContext = SSLContext.getInstance(httpClientProperties.getSslContext());
-      sslContext.init(keyManagerFactory != null ? keyManagerFactory.getKeyManagers() : null,
-          trustManagerFactory != null ? trustManagerFactory.getTrustManagers() : null,
-          null);
+      Provider provider = getProvider(httpClientProperties.getSsl().getProvider());
+      SSLContext sslContext = provider != null
+          ? SSLContext.getInstance(httpClientProperties.getSslContext(), provider)
+          : SSLContext.getInstance(httpClientProperties.getSslContext());
+      sslContext.init(keyManagers, trustManagers, null);
+      configureSessionCache(sslContext.getClientSessionContext(), httpClientProperties.getSsl());
       return sslContext;
     }
     catch (NoSuchAlgorithmException | KeyManagementException ex) {
@@ -54,6 +124,208 @@ public class CertificateLoader {
     return null;
   }
 
+  private static void configureSessionCache(SSLSessionContext sessionContext, HttpClientProperties.SslConfiguration sslConfiguration) {
+    if (sessionContext != null) {
+      sessionContext.setSessionCacheSize(sslConfiguration.getSessionCacheSize());
+      sessionContext.setSessionTimeout((int)Math.min(TimeUnit.MILLISECONDS.toSeconds(sslConfiguration.getSessionTimeout()), Integer.MAX_VALUE));
+    }
+  }
+
+  private static SharedSSLContext buildSharedSSLContext(HttpClientProperties httpClientProperties) {
+    TrustManagerFactory trustManagerFactory = getTrustManagerFactory(httpClientProperties);
+    KeyManagerFactory keyManagerFactory = getKeyManagerFactory(httpClientProperties);
+    KeyManager[] keyManagers = getKeyManagers(keyManagerFactory);
+    TrustManager[] trustManagers = getTrustManagers(trustManagerFactory);
+    X509TrustManager trustManager = getX509TrustManager(trustManagerFactory);
+    Map<String, BooleanSupplier> reloads = new LinkedHashMap<>();
+    if (httpClientProperties.getSsl().isReload()) {
+      X509ExtendedKeyManager keyManager = getManager(keyManagers, X509ExtendedKeyManager.class);
+      if (keyManager != null) {
+        ReloadingX509KeyManager reloadingKeyManager = new ReloadingX509KeyManager(keyManager,
+            () -> getManager(getKeyManagers(getKeyManagerFactory(httpClientProperties)), X509ExtendedKeyManager.class));
+        keyManagers = new KeyManager[] { reloadingKeyManager };
+        reloads.put(httpClientProperties.getKeystore().getPath(), reloadingKeyManager::reload);
+      }
+      X509ExtendedTrustManager extendedTrustManager = getManager(trustManagers, X509ExtendedTrustManager.class);
+      if (extendedTrustManager != null) {
+        ReloadingX509TrustManager reloadingTrustManager = new ReloadingX509TrustManager(extendedTrustManager,
+            () -> getManager(getTrustManagers(getTrustManagerFactory(httpClientProperties)), X509ExtendedTrustManager.class));
+        trustManagers = new TrustManager[] { reloadingTrustManager };
+        trustManager = reloadingTrustManager;
+        // key and truststore may be the same file
+        reloads.merge(httpClientProperties.getTruststore().getPath(), reloadingTrustManager::reload,
+            (first, second) -> () -> first.getAsBoolean() & second.getAsBoolean());
+      }
+    }
+    SSLContext sslContext = buildSSLContext(httpClientProperties, keyManagers, trustManagers);
+    if (sslContext == null) {
+      return null;
+    }
+    HttpClientProperties.SslConfiguration ssl = httpClientProperties.getSsl();
+    SSLParameters supported = sslContext.getSupportedSSLParameters();
+    // derived contexts share the (reloading) key managers
+    KeyManager[] sharedKeyManagers = keyManagers;
+    SharedSSLContext sharedSSLContext = new SharedSSLContext(sslContext, trustManager,
+        getSupported(ssl.getProtocols(), supported.getProtocols(), "protocol"),
+        getSupported(ssl.getCipherSuites(), supported.getCipherSuites(), "cipher suite"),
+        derivedTrustManagers -> buildSSLContext(httpClientProperties, sharedKeyManagers, derivedTrustManagers));
+    sharedSSLContext.setWatcher(watch(reloads, sharedSSLContext));
+    return sharedSSLContext;
+  }
+
+  private static void warmup(SharedSSLContext sharedSSLContext, HttpClientProperties httpClientProperties) {
+    String[] warmupHosts = httpClientProperties.getSsl().getWarmupHosts();
+    if (warmupHosts.length > 0) {
+      TlsSessionWarmup.warmup(sharedSSLContext.getSocketFactory(), warmupHosts,
+          httpClientProperties.getTimeouts().getConnectionTimeout(), httpClientProperties.getTimeouts().getSocketTimeout());
+    }
+  }
+
+  /**
+   * @return supported values of the configured ones in the configured order, null if none are configured or supported
+   */
+  private static String[] getSupported(String[] configured, String[] supported, String name) {
+    if (configured.length == 0) {
+      return null;
+    }
+    List<String> supportedValues = Arrays.asList(supported);
+    String[] values = Arrays.stream(configured)
+        .filter(value -> {
+          if (!supportedValues.contains(value)) {
+            LOG.warn("Unsupported {} {}, skipping", name, value);
+            return false;
+          }
+          return true;
+        })
+        .toArray(String[]::new);
+    if (values.length == 0) {
+      LOG.warn("No supported {} configured, using defaults", name);
+      return null;
+    }
+    return values;
+  }
+
+  /**
+   * @param provider name of a registered security provider or class name of a provider, e.g.
+   *          org.conscrypt.OpenSSLProvider
+   * @return provider or null for the default provider
+   */
+  private static Provider getProvider(String provider) {
+    if (StringUtils.isBlank(provider)) {
+      return null;
+    }
+    return PROVIDERS.computeIfAbsent(provider, name -> {
+      Provider registered = Security.getProvider(name);
+      if (registered != null) {
+        return registered;
+      }
+      ClassLoader classLoader = CertificateLoader.class.getClassLoader();
+      if (ClassUtils.isPresent(name, classLoader)) {
+        try {
+          return (Provider)BeanUtils.instantiateClass(ClassUtils.resolveClassName(name, classLoader));
+        }
+        catch (BeanInstantiationException | ClassCastException ex) {
+          LOG.error("Security provider {} could not be created, using default", name, ex);
+          return null;
+        }
+      }
+      LOG.error("Security provider {} not found, using default", name);
+      return null;
+    });
+  }
+
+  /**
+   * Watches the key and truststores, a successful reload invalidates the cached sessions so new connections perform a
+   * full handshake with the reloaded certificates. Established connections are kept.
+   * @return watcher or null if there is nothing to watch
+   */
+  private static KeyStoreWatcher watch(Map<String, BooleanSupplier> reloads, SharedSSLContext sharedSSLContext) {
+    if (reloads.isEmpty()) {
+      return null;
+    }
+    KeyStoreWatcher watcher = null;
+    try {
+      watcher = new KeyStoreWatcher();
+      for (Map.Entry<String, BooleanSupplier> reload : reloads.entrySet()) {
+        BooleanSupplier storeReload = reload.getValue();
+        watcher.watch(ResourceUtils.getFile(reload.getKey()).toPath(), () -> {
+          if (!storeReload.getAsBoolean()) {
+            return false;
+          }
+          sharedSSLContext.invalidateSessions();
+          return true;
+        });
+      }
+      return watcher;
+    }
+    catch (IOException ex) {
+      // classpath resources within a jar can't be watched
+      LOG.warn("Key or truststore can't be watched, certificates are not reloaded", ex);
+      close(watcher);
+      return null;
+    }
+  }
+
+  private static void close(Closeable closeable) {
+    if (closeable == null) {
+      return;
+    }
+    try {
+      closeable.close();
+    }
+    catch (IOException ex) {
+      LOG.warn("Could not stop watching key and truststores", ex);
+    }
+  }
+
+  /**
+   * @return first X.509 trust manager of the factory or of the JVMs default factory, null if there is none
+   */
+  private static X509TrustManager getX509TrustManager(TrustManagerFactory trustManagerFactory) {
+    try {
+      TrustManagerFactory factory = trustManagerFactory;
+      if (factory == null) {
+        factory = TrustManagerFactory.getInstance(TrustManagerFactory.getDefaultAlgorithm());
+        factory.init((KeyStore)null);
+      }
+      return getManager(factory.getTrustManagers(), X509TrustManager.class);
+    }
+    catch (NoSuchAlgorithmException | KeyStoreException ex) {
+      LOG.error("Default Truststore could not be loaded", ex);
+      return null;
+    }
+  }
+
+  private static KeyManager[] getKeyManagers(KeyManagerFactory keyManagerFactory) {
+    return keyManagerFactory != null ? keyManagerFactory.getKeyManagers() : null;
+  }
+
+  private static TrustManager[] getTrustManagers(TrustManagerFactory trustManagerFactory) {
+    return trustManagerFactory != null ? trustManagerFactory.getTrustManagers() : null;
+  }
+
+  private static <T> T getManager(Object[] managers, Class<T> type) {
+    if (managers == null) {
+      return null;
+    }
+    return Arrays.stream(managers)
+        .filter(type::isInstance)
+        .map(type::cast)
+        .findFirst()
+        .orElse(null);
+  }
+
+  private static List<Object> getKey(HttpClientProperties httpClientProperties) {
+    HttpClientProperties.KeystoreConfiguration keystore = httpClientProperties.getKeystore();
+    HttpClientProperties.TruststoreConfiguration truststore = httpClientProperties.getTruststore();
+    HttpClientProperties.SslConfiguration ssl = httpClientProperties.getSsl();
+    return Arrays.asList(httpClientProperties.getSslContext(),
+        keystore.getPath(), keystore.getPassword(), keystore.getType(),
+        truststore.getPath(), truststore.getPassword(), truststore.getType(),
+        ssl.getSessionCacheSize(), ssl.getSessionTimeout(), ssl.isReload(), Arrays.asList(ssl.getWarmupHosts()),
+        Arrays.asList(ssl.getProtocols()), Arrays.asList(ssl.getCipherSuites()), ssl.getProvider());
+  }
+
   /**
    * @param httpClientProperties
    * @return configured {@link TrustManagerFactory} or JVMs default Trust Managers
@@ -104,4 +376,33 @@ public class CertificateLoader {
     }
   }
 
+  /**
+   * @param path path of the key or truststore
+   * @param password password of the store
+   * @param type type of the store
+   * @return X.509 certificates of the store by alias, the first certificate of the chain for keys, empty if the store
+   *         could not be loaded
+   */
+  public static Map<String, X509Certificate> loadCertificates(String path, String password, String type) {
+    if (StringUtils.isAnyBlank(path, password)) {
+      return Collections.emptyMap();
+    }
+    try (FileInputStream is = new FileInputStream(ResourceUtils.getFile(path))) {
+      KeyStore keyStore = KeyStore.getInstance(type);
+      keyStore.load(is, password.toCharArray());
+      Map<String, X509Certificate> certificates = new TreeMap<>();
+      for (String alias : Collections.list(keyStore.aliases())) {
+        Certificate certificate = keyStore.getCertificate(alias);
+        if (certificate instanceof X509Certificate) {
+          certificates.put(alias, (X509Certificate)certificate);
+        }
+      }
+      return certificates;
+    }
+    catch (NoSuchAlgorithmException | KeyStoreException | CertificateException | IOException ex) {
+      LOG.error("Certificates of {} could not be loaded", path, ex);
+      return Collections.emptyMap();
+    }
+  }
+
 }
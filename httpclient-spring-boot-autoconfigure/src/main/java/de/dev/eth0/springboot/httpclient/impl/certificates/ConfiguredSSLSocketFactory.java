@@ -0,0 +1,94 @@
+/*
+ * Copyright (c) 2020. dev-eth0.de All rights reserved.
+ */
+
+package de.dev.eth0.springboot.httpclient.impl.certificates;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.SSLSocketFactory;
+
+/**
+ * Socket factory enabling the configured protocols and cipher suites of each created socket in the configured order
+ * <p>
+ * OkHttp keeps the order of the enabled cipher suites of the socket, so the order of its connection spec is not
+ * sufficient to prefer cipher suites.
+ */
+class ConfiguredSSLSocketFactory extends SSLSocketFactory {
+
+  private final SSLSocketFactory delegate;
+  private final String[] protocols;
+  private final String[] cipherSuites;
+
+  /**
+   * @param delegate factory creating the sockets
+   * @param protocols supported protocols to enable, null for the defaults
+   * @param cipherSuites supported cipher suites to enable, null for the defaults
+   */
+  ConfiguredSSLSocketFactory(SSLSocketFactory delegate, String[] protocols, String[] cipherSuites) {
+    this.delegate = delegate;
+    this.protocols = protocols;
+    this.cipherSuites = cipherSuites;
+  }
+
+  @Override
+  public String[] getDefaultCipherSuites() {
+    return cipherSuites != null ? cipherSuites.clone() : delegate.getDefaultCipherSuites();
+  }
+
+  @Override
+  public String[] getSupportedCipherSuites() {
+    return delegate.getSupportedCipherSuites();
+  }
+
+  @Override
+  public Socket createSocket() throws IOException {
+    return configure(delegate.createSocket());
+  }
+
+  @Override
+  public Socket createSocket(Socket socket, String host, int port, boolean autoClose) throws IOException {
+    return configure(delegate.createSocket(socket, host, port, autoClose));
+  }
+
+  @Override
+  public Socket createSocket(Socket socket, InputStream consumed, boolean autoClose) throws IOException {
+    return configure(delegate.createSocket(socket, consumed, autoClose));
+  }
+
+  @Override
+  public Socket createSocket(String host, int port) throws IOException {
+    return configure(delegate.createSocket(host, port));
+  }
+
+  @Override
+  public Socket createSocket(String host, int port, InetAddress localHost, int localPort) throws IOException {
+    return configure(delegate.createSocket(host, port, localHost, localPort));
+  }
+
+  @Override
+  public Socket createSocket(InetAddress host, int port) throws IOException {
+    return configure(delegate.createSocket(host, port));
+  }
+
+  @Override
+  public Socket createSocket(InetAddress address, int port, InetAddress localAddress, int localPort) throws IOException {
+    return configure(delegate.createSocket(address, port, localAddress, localPort));
+  }
+
+  private Socket configure(Socket socket) {
+    if (socket instanceof SSLSocket) {
+      SSLSocket sslSocket = (SSLSocket)socket;
+      if (protocols != null) {
+        sslSocket.setEnabledProtocols(protocols);
+      }
+      if (cipherSuites != null) {
+        sslSocket.setEnabledCipherSuites(cipherSuites);
+      }
+    }
+    return socket;
+  }
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright (c) 2020. dev-eth0.de All rights reserved.
+ */
+
+package de.dev.eth0.springboot.httpclient.impl.certificates;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BooleanSupplier;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Watches key and truststore files and reloads them once their content changed
+ * <p>
+ * Any event in the directory of a file checks the checksums of all files of the directory, so files replaced by moving
+ * them or by switching a symlinked directory, as done for mounted secrets, are detected as well. The checksum is only
+ * updated if the reload succeeded, so a partially written file is reloaded again with the next change.
+ */
+class KeyStoreWatcher implements Closeable {
+
+  private static final Logger LOG = LoggerFactory.getLogger(KeyStoreWatcher.class);
+
+  private final WatchService watchService;
+  private final Map<Path, WatchedFile> files = new ConcurrentHashMap<>();
+
+  KeyStoreWatcher() throws IOException {
+    this.watchService = FileSystems.getDefault().newWatchService();
+    Thread thread = new Thread(this::run, "httpclient-keystore-watcher");
+    thread.setDaemon(true);
+    thread.start();
+  }
+
+  /**
+   * @param file watched file
+   * @param reload called on the watcher thread once the file changed, returns whether the reload succeeded
+   */
+  void watch(Path file, BooleanSupplier reload) throws IOException {
+    Path path = file.toAbsolutePath().normalize();
+    files.put(path, new WatchedFile(checksum(path), reload));
+    path.getParent().register(watchService, ENTRY_CREATE, ENTRY_MODIFY);
+  }
+
+  @Override
+  public void close() throws IOException {
+    watchService.close();
+  }
+
+  private void run() {
+    try {
+      while (true) {
+        WatchKey key = watchService.take();
+        // the events are only used as trigger, their context may be a symlink or temporary file
+        key.pollEvents();
+        Path directory = (Path)key.watchable();
+        files.forEach((path, watchedFile) -> {
+          if (path.getParent().equals(directory)) {
+            check(path, watchedFile);
+          }
+        });
+        key.reset();
+      }
+    }
+    catch (ClosedWatchServiceException | InterruptedException ex) {
+      LOG.debug("Stopped watching key and truststores");
+    }
+  }
+
+  private void check(Path path, WatchedFile watchedFile) {
+    byte[] checksum = checksum(path);
+    if (checksum == null || Arrays.equals(checksum, watchedFile.checksum)) {
+      return;
+    }
+    LOG.info("{} changed, reloading", path);
+    if (watchedFile.reload.getAsBoolean()) {
+      watchedFile.checksum = checksum;
+    }
+  }
+
+  private static byte[] checksum(Path path) {
+    try {
+      return MessageDigest.getInstance("SHA-256").digest(Files.readAllBytes(path));
+    }
+    catch (IOException | NoSuchAlgorithmException ex) {
+      LOG.warn("Could not read {}", path, ex);
+      return null;
+    }
+  }
+
+  private static final class WatchedFile {
+
+    private final BooleanSupplier reload;
+    private volatile byte[] checksum;
+
+    private WatchedFile(byte[] checksum, BooleanSupplier reload) {
+      this.checksum = checksum;
+      this.reload = reload;
+    }
+  }
+}
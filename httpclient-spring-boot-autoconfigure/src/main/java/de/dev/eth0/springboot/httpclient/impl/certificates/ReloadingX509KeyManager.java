@@ -0,0 +1,85 @@
+/*
+ * Copyright (c) 2020. dev-eth0.de All rights reserved.
+ */
+
+package de.dev.eth0.springboot.httpclient.impl.certificates;
+
+import java.net.Socket;
+import java.security.Principal;
+import java.security.PrivateKey;
+import java.security.cert.X509Certificate;
+import java.util.function.Supplier;
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.X509ExtendedKeyManager;
+
+/**
+ * Key manager delegating to the key manager of the current keystore, which is replaced on {@link #reload()}
+ * <p>
+ * Only new handshakes use the reloaded keys, established connections keep the identity they were created with.
+ */
+class ReloadingX509KeyManager extends X509ExtendedKeyManager {
+
+  private final Supplier<X509ExtendedKeyManager> loader;
+  private volatile X509ExtendedKeyManager delegate;
+
+  /**
+   * @param delegate key manager of the current keystore
+   * @param loader loads the key manager of the changed keystore, null if it could not be loaded
+   */
+  ReloadingX509KeyManager(X509ExtendedKeyManager delegate, Supplier<X509ExtendedKeyManager> loader) {
+    this.delegate = delegate;
+    this.loader = loader;
+  }
+
+  /**
+   * @return true if the keystore was reloaded, false if the current keys are kept
+   */
+  boolean reload() {
+    X509ExtendedKeyManager keyManager = loader.get();
+    if (keyManager == null) {
+      return false;
+    }
+    delegate = keyManager;
+    return true;
+  }
+
+  @Override
+  public String[] getClientAliases(String keyType, Principal[] issuers) {
+    return delegate.getClientAliases(keyType, issuers);
+  }
+
+  @Override
+  public String chooseClientAlias(String[] keyType, Principal[] issuers, Socket socket) {
+    return delegate.chooseClientAlias(keyType, issuers, socket);
+  }
+
+  @Override
+  public String[] getServerAliases(String keyType, Principal[] issuers) {
+    return delegate.getServerAliases(keyType, issuers);
+  }
+
+  @Override
+  public String chooseServerAlias(String keyType, Principal[] issuers, Socket socket) {
+    return delegate.chooseServerAlias(keyType, issuers, socket);
+  }
+
+  @Override
+  public X509Certificate[] getCertificateChain(String alias) {
+    return delegate.getCertificateChain(alias);
+  }
+
+  @Override
+  public PrivateKey getPrivateKey(String alias) {
+    return delegate.getPrivateKey(alias);
+  }
+
+  @Override
+  public String chooseEngineClientAlias(String[] keyType, Principal[] issuers, SSLEngine engine) {
+    return delegate.chooseEngineClientAlias(keyType, issuers, engine);
+  }
+
+  @Override
+  public String chooseEngineServerAlias(String keyType, Principal[] issuers, SSLEngine engine) {
+    return delegate.chooseEngineServerAlias(keyType, issuers, engine);
+  }
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright (c) 2020. dev-eth0.de All rights reserved.
+ */
+
+package de.dev.eth0.springboot.httpclient.impl.certificates;
+
+import java.net.Socket;
+import java.security.cert.CertificateException;
+import java.security.cert.X509Certificate;
+import java.util.function.Supplier;
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.X509ExtendedTrustManager;
+
+/**
+ * Trust manager delegating to the trust manager of the current truststore, which is replaced on {@link #reload()}
+ * <p>
+ * Only new handshakes are verified against the reloaded certificates, established connections are kept.
+ */
+class ReloadingX509TrustManager extends X509ExtendedTrustManager {
+
+  private final Supplier<X509ExtendedTrustManager> loader;
+  private volatile X509ExtendedTrustManager delegate;
+
+  /**
+   * @param delegate trust manager of the current truststore
+   * @param loader loads the trust manager of the changed truststore, null if it could not be loaded
+   */
+  ReloadingX509TrustManager(X509ExtendedTrustManager delegate, Supplier<X509ExtendedTrustManager> loader) {
+    this.delegate = delegate;
+    this.loader = loader;
+  }
+
+  /**
+   * @return true if the truststore was reloaded, false if the current certificates are kept
+   */
+  boolean reload() {
+    X509ExtendedTrustManager trustManager = loader.get();
+    if (trustManager == null) {
+      return false;
+    }
+    delegate = trustManager;
+    return true;
+  }
+
+  @Override
+  public void checkClientTrusted(X509Certificate[] chain, String authType) throws CertificateException {
+    delegate.checkClientTrusted(chain, authType);
+  }
+
+  @Override
+  public void checkClientTrusted(X509Certificate[] chain, String authType, Socket socket) throws CertificateException {
+    delegate.checkClientTrusted(chain, authType, socket);
+  }
+
+  @Override
+  public void checkClientTrusted(X509Certificate[] chain, String authType, SSLEngine engine) throws CertificateException {
+    delegate.checkClientTrusted(chain, authType, engine);
+  }
+
+  @Override
+  public void checkServerTrusted(X509Certificate[] chain, String authType) throws CertificateException {
+    delegate.checkServerTrusted(chain, authType);
+  }
+
+  @Override
+  public void checkServerTrusted(X509Certificate[] chain, String authType, Socket socket) throws CertificateException {
+    delegate.checkServerTrusted(chain, authType, socket);
+  }
+
+  @Override
+  public void checkServerTrusted(X509Certificate[] chain, String authType, SSLEngine engine) throws CertificateException {
+    delegate.checkServerTrusted(chain, authType, engine);
+  }
+
+  @Override
+  public X509Certificate[] getAcceptedIssuers() {
+    return delegate.getAcceptedIssuers();
+  }
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright (c) 2020. dev-eth0.de All rights reserved.
+ */
+
+package de.dev.eth0.springboot.httpclient.impl.certificates;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import javax.net.ssl.SSLSocketFactory;
+
+/**
+ * Socket factory starting a handshake of the {@link SessionResumptionStatistics} for each created socket
+ */
+class ResumptionTrackingSSLSocketFactory extends SSLSocketFactory {
+
+  private final SSLSocketFactory delegate;
+  private final SessionResumptionStatistics statistics;
+
+  ResumptionTrackingSSLSocketFactory(SSLSocketFactory delegate, SessionResumptionStatistics statistics) {
+    this.delegate = delegate;
+    this.statistics = statistics;
+  }
+
+  @Override
+  public String[] getDefaultCipherSuites() {
+    return delegate.getDefaultCipherSuites();
+  }
+
+  @Override
+  public String[] getSupportedCipherSuites() {
+    return delegate.getSupportedCipherSuites();
+  }
+
+  @Override
+  public Socket createSocket() throws IOException {
+    statistics.handshakeStarted();
+    return delegate.createSocket();
+  }
+
+  @Override
+  public Socket createSocket(Socket socket, String host, int port, boolean autoClose) throws IOException {
+    statistics.handshakeStarted();
+    return delegate.createSocket(socket, host, port, autoClose);
+  }
+
+  @Override
+  public Socket createSocket(Socket socket, InputStream consumed, boolean autoClose) throws IOException {
+    statistics.handshakeStarted();
+    return delegate.createSocket(socket, consumed, autoClose);
+  }
+
+  @Override
+  public Socket createSocket(String host, int port) throws IOException {
+    statistics.handshakeStarted();
+    return delegate.createSocket(host, port);
+  }
+
+  @Override
+  public Socket createSocket(String host, int port, InetAddress localHost, int localPort) throws IOException {
+    statistics.handshakeStarted();
+    return delegate.createSocket(host, port, localHost, localPort);
+  }
+
+  @Override
+  public Socket createSocket(InetAddress host, int port) throws IOException {
+    statistics.handshakeStarted();
+    return delegate.createSocket(host, port);
+  }
+
+  @Override
+  public Socket createSocket(InetAddress address, int port, InetAddress localAddress, int localPort) throws IOException {
+    statistics.handshakeStarted();
+    return delegate.createSocket(address, port, localAddress, localPort);
+  }
+}
@@ -0,0 +1,54 @@
+/*
+ * Copyright (c) 2020. dev-eth0.de All rights reserved.
+ */
+
+package de.dev.eth0.springboot.httpclient.impl.certificates;
+
+import java.util.concurrent.atomic.LongAdder;
+import javax.net.ssl.SSLSession;
+
+/**
+ * Counts of the TLS handshakes of a shared SSL context, by whether a cached session was resumed
+ * <p>
+ * A handshake starts when the SSL socket is created and completes when the hostname of its session is verified, both
+ * on the thread connecting the socket. A session created before its handshake started was resumed, this works for
+ * TLSv1.2 session ids and TLSv1.3 session tickets alike.
+ */
+public class SessionResumptionStatistics {
+
+  private final ThreadLocal<long[]> handshakeStart = ThreadLocal.withInitial(() -> new long[1]);
+  private final LongAdder resumed = new LongAdder();
+  private final LongAdder full = new LongAdder();
+
+  void handshakeStarted() {
+    handshakeStart.get()[0] = System.currentTimeMillis();
+  }
+
+  void handshakeCompleted(SSLSession session) {
+    long[] start = handshakeStart.get();
+    if (start[0] == 0 || session == null) {
+      return;
+    }
+    if (session.getCreationTime() < start[0]) {
+      resumed.increment();
+    }
+    else {
+      full.increment();
+    }
+    start[0] = 0;
+  }
+
+  /**
+   * @return number of abbreviated handshakes resuming a cached session
+   */
+  public long getResumedCount() {
+    return resumed.sum();
+  }
+
+  /**
+   * @return number of full handshakes creating a new session
+   */
+  public long getFullCount() {
+    return full.sum();
+  }
+}
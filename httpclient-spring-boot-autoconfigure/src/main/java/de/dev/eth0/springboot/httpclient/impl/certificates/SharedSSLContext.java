@@ -0,0 +1,172 @@
+/*
+ * Copyright (c) 2020. dev-eth0.de All rights reserved.
+ */
+
+package de.dev.eth0.springboot.httpclient.impl.certificates;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import javax.net.ssl.HostnameVerifier;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSession;
+import javax.net.ssl.SSLSessionContext;
+import javax.net.ssl.SSLSocketFactory;
+import javax.net.ssl.TrustManager;
+import javax.net.ssl.X509TrustManager;
+
+/**
+ * SSL context shared by all clients with the same SSL configuration, so each client can resume the TLS sessions of the
+ * others
+ * <p>
+ * The resumed sessions are only counted for sockets created by {@link #getSocketFactory()} and verified by a
+ * {@link #trackResumption(HostnameVerifier) tracking} hostname verifier. If the key and truststores are reloaded,
+ * closing the context stops watching them. Contexts with another trust manager, e.g. trusting all certificates, are
+ * derived with the same configuration and key managers, see {@link #getSocketFactory(X509TrustManager)}.
+ */
+public class SharedSSLContext implements Closeable {
+
+  private final SSLContext sslContext;
+  private final X509TrustManager trustManager;
+  private final SessionResumptionStatistics statistics = new SessionResumptionStatistics();
+  private final String[] protocols;
+  private final String[] cipherSuites;
+  private final SSLSocketFactory socketFactory;
+  private final Function<TrustManager[], SSLContext> derivedContextFactory;
+  private final Map<X509TrustManager, SSLSocketFactory> derivedSocketFactories = new IdentityHashMap<>();
+  private final List<SSLContext> derivedContexts = Collections.synchronizedList(new ArrayList<>());
+  private volatile KeyStoreWatcher watcher;
+
+  SharedSSLContext(SSLContext sslContext, X509TrustManager trustManager, String[] protocols, String[] cipherSuites,
+      Function<TrustManager[], SSLContext> derivedContextFactory) {
+    this.sslContext = sslContext;
+    this.trustManager = trustManager;
+    this.protocols = protocols;
+    this.cipherSuites = cipherSuites;
+    this.derivedContextFactory = derivedContextFactory;
+    this.socketFactory = createSocketFactory(sslContext);
+  }
+
+  void setWatcher(KeyStoreWatcher watcher) {
+    this.watcher = watcher;
+  }
+
+  /**
+   * @return shared SSL context
+   */
+  public SSLContext getSslContext() {
+    return sslContext;
+  }
+
+  /**
+   * @return trust manager of the context, the JVMs default if no truststore is configured, null if none was found
+   */
+  public X509TrustManager getTrustManager() {
+    return trustManager;
+  }
+
+  /**
+   * @return enabled protocols in the order of preference, null for the defaults of the context
+   */
+  public String[] getProtocols() {
+    return protocols != null ? protocols.clone() : null;
+  }
+
+  /**
+   * @return enabled cipher suites in the order of preference, null for the defaults of the context
+   */
+  public String[] getCipherSuites() {
+    return cipherSuites != null ? cipherSuites.clone() : null;
+  }
+
+  /**
+   * @return socket factory of the context enabling the configured protocols and cipher suites, starting the handshakes
+   *         counted by the statistics
+   */
+  public SSLSocketFactory getSocketFactory() {
+    return socketFactory;
+  }
+
+  /**
+   * @param derivedTrustManager trust manager replacing the one of this context
+   * @return socket factory of a context derived with the given trust manager, enabling the configured protocols and
+   *         cipher suites and counted by the statistics of this context, null if it could not be built
+   */
+  public synchronized SSLSocketFactory getSocketFactory(X509TrustManager derivedTrustManager) {
+    SSLSocketFactory derivedSocketFactory = derivedSocketFactories.get(derivedTrustManager);
+    if (derivedSocketFactory == null) {
+      SSLContext derivedContext = derivedContextFactory.apply(new TrustManager[] { derivedTrustManager });
+      if (derivedContext == null) {
+        return null;
+      }
+      derivedContexts.add(derivedContext);
+      derivedSocketFactory = createSocketFactory(derivedContext);
+      derivedSocketFactories.put(derivedTrustManager, derivedSocketFactory);
+    }
+    return derivedSocketFactory;
+  }
+
+  /**
+   * @param hostnameVerifier verifier of the client
+   * @return verifier completing the handshakes counted by the statistics before calling the given verifier
+   */
+  public HostnameVerifier trackResumption(HostnameVerifier hostnameVerifier) {
+    return (hostname, session) -> {
+      statistics.handshakeCompleted(session);
+      return hostnameVerifier.verify(hostname, session);
+    };
+  }
+
+  /**
+   * @return statistics of the resumed sessions
+   */
+  public SessionResumptionStatistics getStatistics() {
+    return statistics;
+  }
+
+  /**
+   * @return true if the key and truststores are reloaded once they changed
+   */
+  public boolean isReloading() {
+    return watcher != null;
+  }
+
+  /**
+   * Invalidates the cached sessions of this and the derived contexts, so new connections perform a full handshake
+   */
+  void invalidateSessions() {
+    invalidateSessions(sslContext.getClientSessionContext());
+    synchronized (derivedContexts) {
+      derivedContexts.forEach(derivedContext -> invalidateSessions(derivedContext.getClientSessionContext()));
+    }
+  }
+
+  private SSLSocketFactory createSocketFactory(SSLContext context) {
+    SSLSocketFactory sslSocketFactory = context.getSocketFactory();
+    if (protocols != null || cipherSuites != null) {
+      sslSocketFactory = new ConfiguredSSLSocketFactory(sslSocketFactory, protocols, cipherSuites);
+    }
+    return new ResumptionTrackingSSLSocketFactory(sslSocketFactory, statistics);
+  }
+
+  private static void invalidateSessions(SSLSessionContext sessionContext) {
+    for (byte[] id : Collections.list(sessionContext.getIds())) {
+      SSLSession session = sessionContext.getSession(id);
+      if (session != null) {
+        session.invalidate();
+      }
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    if (watcher != null) {
+      watcher.close();
+    }
+  }
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright (c) 2020. dev-eth0.de All rights reserved.
+ */
+
+package de.dev.eth0.springboot.httpclient.impl.certificates;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import javax.net.ssl.SSLParameters;
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.SSLSocketFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+/**
+ * Establishes the TLS sessions of the configured hosts once the shared SSL context is built, so the first connections
+ * of the clients resume these sessions instead of each of them doing a full handshake
+ * <p>
+ * The hosts are connected directly without proxy and the certificate and hostname are verified like by the clients. A
+ * HEAD request is sent, since TLSv1.3 servers send the session tickets after the handshake. The hosts are connected in
+ * parallel, the warmup waits at most for the connection and socket timeout, slower hosts complete in the background.
+ */
+final class TlsSessionWarmup {
+
+  static final int DEFAULT_PORT = 443;
+
+  private static final Logger LOG = LoggerFactory.getLogger(TlsSessionWarmup.class);
+
+  private TlsSessionWarmup() {
+  }
+
+  /**
+   * @param socketFactory socket factory of the context caching the sessions
+   * @param hosts hosts as host or host:port
+   * @param connectionTimeout timeout in ms to connect
+   * @param socketTimeout timeout in ms for the handshake and the response
+   * @return number of hosts with an established session
+   */
+  static int warmup(SSLSocketFactory socketFactory, String[] hosts, int connectionTimeout, int socketTimeout) {
+    CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("tls-warmup-");
+    threadFactory.setDaemon(true);
+    ExecutorService executor = Executors.newFixedThreadPool(Math.max(hosts.length, 1), threadFactory);
+    List<Callable<Boolean>> tasks = Arrays.stream(hosts)
+        .map(host -> (Callable<Boolean>)() -> warmup(socketFactory, host, connectionTimeout, socketTimeout))
+        .collect(Collectors.toList());
+    int established = 0;
+    try {
+      // a timeout of 0 is infinite
+      List<Future<Boolean>> results = connectionTimeout > 0 && socketTimeout > 0
+          ? executor.invokeAll(tasks, (long)connectionTimeout + socketTimeout, TimeUnit.MILLISECONDS)
+          : executor.invokeAll(tasks);
+      for (Future<Boolean> result : results) {
+        if (isEstablished(result)) {
+          established++;
+        }
+      }
+    }
+    catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+    }
+    finally {
+      executor.shutdown();
+    }
+    LOG.info("Established TLS sessions of {} of {} hosts", established, hosts.length);
+    return established;
+  }
+
+  private static boolean isEstablished(Future<Boolean> result) throws InterruptedException {
+    try {
+      return result.get();
+    }
+    catch (CancellationException | ExecutionException ex) {
+      // still connecting after the timeout
+      return false;
+    }
+  }
+
+  private static boolean warmup(SSLSocketFactory socketFactory, String host, int connectionTimeout, int socketTimeout) {
+    int separator = host.lastIndexOf(':');
+    String hostname = separator > 0 ? host.substring(0, separator) : host;
+    try (Socket socket = new Socket()) {
+      int port = separator > 0 ? Integer.parseInt(host.substring(separator + 1)) : DEFAULT_PORT;
+      socket.connect(new InetSocketAddress(hostname, port), connectionTimeout);
+      socket.setSoTimeout(socketTimeout);
+      try (SSLSocket sslSocket = (SSLSocket)socketFactory.createSocket(socket, hostname, port, true)) {
+        SSLParameters sslParameters = sslSocket.getSSLParameters();
+        sslParameters.setEndpointIdentificationAlgorithm("HTTPS");
+        sslSocket.setSSLParameters(sslParameters);
+        sslSocket.startHandshake();
+        OutputStream os = sslSocket.getOutputStream();
+        os.write(("HEAD / HTTP/1.1\r\nHost: " + hostname + "\r\nConnection: close\r\n\r\n").getBytes(StandardCharsets.US_ASCII));
+        os.flush();
+        // the session tickets precede the response
+        sslSocket.getInputStream().read();
+      }
+      LOG.debug("Established TLS session of {}", host);
+      return true;
+    }
+    catch (IOException | NumberFormatException ex) {
+      LOG.warn("Could not establish TLS session of {}", host, ex);
+      return false;
+    }
+  }
+}
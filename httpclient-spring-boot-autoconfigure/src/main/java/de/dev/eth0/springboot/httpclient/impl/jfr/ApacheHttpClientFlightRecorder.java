@@ -0,0 +1,52 @@
+/*
+ * Copyright (c) 2020. dev-eth0.de All rights reserved.
+ */
+
+package de.dev.eth0.springboot.httpclient.impl.jfr;
+
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpEntityEnclosingRequest;
+import org.apache.http.HttpHost;
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpResponse;
+import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.protocol.HttpContext;
+import org.apache.http.protocol.HttpCoreContext;
+
+import de.dev.eth0.springboot.httpclient.impl.ApacheHttpClientCustomizer;
+import de.dev.eth0.springboot.httpclient.impl.ConfigurableApacheHttpClientFactory;
+
+/**
+ * Flight recorder instrumentation of the Apache HttpClient
+ * <p>
+ * The request events are started and ended by a pair of protocol interceptors, from before the connection is leased
+ * until the response head was received. Requests failing with an exception are not recorded, as the response
+ * interceptors are not called for them.
+ */
+public class ApacheHttpClientFlightRecorder implements ApacheHttpClientCustomizer {
+
+  public static final String CLIENT = "apache";
+
+  private final HttpClientFlightRecorder recorder = new HttpClientFlightRecorder(CLIENT);
+
+  @Override
+  public void customize(HttpClientBuilder builder, ConfigurableApacheHttpClientFactory factory) {
+    builder.addInterceptorFirst(this::requestStarted);
+    builder.addInterceptorLast(this::responseReceived);
+    factory.addRequestPhaseListener(recorder);
+  }
+
+  private void requestStarted(HttpRequest request, HttpContext context) {
+    HttpHost target = (HttpHost)context.getAttribute(HttpCoreContext.HTTP_TARGET_HOST);
+    long requestBytes = request instanceof HttpEntityEnclosingRequest ? getContentLength(((HttpEntityEnclosingRequest)request).getEntity()) : 0;
+    recorder.requestStarted(request.getRequestLine().getMethod(), target != null ? target.getHostName() : null, requestBytes);
+  }
+
+  private void responseReceived(HttpResponse response, HttpContext context) {
+    recorder.requestFinished(response.getStatusLine().getStatusCode(), getContentLength(response.getEntity()));
+  }
+
+  private static long getContentLength(HttpEntity entity) {
+    return entity != null ? entity.getContentLength() : 0;
+  }
+}
@@ -0,0 +1,29 @@
+/*
+ * Copyright (c) 2020. dev-eth0.de All rights reserved.
+ */
+
+package de.dev.eth0.springboot.httpclient.impl.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Threshold;
+
+/**
+ * Flight recorder event of the wait for a pooled connection, for OkHttp including connecting new connections
+ */
+@Name(HttpClientFlightRecorder.EVENT_PREFIX + "ConnectionLease")
+@Label("HTTP Client Connection Lease")
+@Category(HttpClientFlightRecorder.CATEGORY)
+@Description("Wait for a connection from the pool")
+@Threshold("10 ms")
+class ConnectionLeaseEvent extends Event {
+
+  @Label("Client")
+  String client;
+
+  @Label("Host")
+  String host;
+}
@@ -0,0 +1,158 @@
+/*
+ * Copyright (c) 2020. dev-eth0.de All rights reserved.
+ */
+
+package de.dev.eth0.springboot.httpclient.impl.jfr;
+
+import jdk.jfr.Event;
+
+import de.dev.eth0.springboot.httpclient.impl.RequestPhase;
+import de.dev.eth0.springboot.httpclient.impl.RequestPhaseListener;
+
+/**
+ * Flight recorder events shared by the instrumentation of both clients
+ * <p>
+ * The request event is kept per thread, as the interceptors of a request and the phases adding their durations to it
+ * are executed by a single thread. The lease and TLS handshake events are the state of their phase, the lease of an
+ * asynchronous OkHttp call is completed by another thread than the one which started it, an abandoned phase discards
+ * its event. Events are only created while they are enabled in a recording, and only committed if they exceed their
+ * threshold, see {@link jdk.jfr.Threshold}.
+ */
+public class HttpClientFlightRecorder implements RequestPhaseListener {
+
+  public static final String CATEGORY = "HTTP Client";
+  public static final String EVENT_PREFIX = "de.dev.eth0.httpclient.";
+
+  // used to check if the event types are enabled without creating an event
+  private static final HttpRequestEvent REQUEST_PROBE = new HttpRequestEvent();
+  private static final ConnectionLeaseEvent LEASE_PROBE = new ConnectionLeaseEvent();
+  private static final TlsHandshakeEvent TLS_PROBE = new TlsHandshakeEvent();
+
+  private final String client;
+  private final ThreadLocal<Recording> recordings = ThreadLocal.withInitial(Recording::new);
+
+  /**
+   * @param client name of the client, added to all events
+   */
+  public HttpClientFlightRecorder(String client) {
+    this.client = client;
+  }
+
+  /**
+   * Starts the request event of the current thread, a request which wasn't finished is discarded
+   *
+   * @param method request method
+   * @param host requested host
+   * @param requestBytes length of the request body, -1 if unknown
+   */
+  public void requestStarted(String method, String host, long requestBytes) {
+    Recording recording = recordings.get();
+    recording.request = null;
+    if (!REQUEST_PROBE.isEnabled()) {
+      return;
+    }
+    HttpRequestEvent event = new HttpRequestEvent();
+    event.client = client;
+    event.method = method;
+    event.host = host;
+    event.requestBytes = requestBytes;
+    event.begin();
+    recording.request = event;
+  }
+
+  /**
+   * Ends the request event of the current thread
+   *
+   * @param status status code of the response, negative if the request failed
+   * @param responseBytes length of the response body, -1 if unknown
+   */
+  public void requestFinished(int status, long responseBytes) {
+    Recording recording = recordings.get();
+    HttpRequestEvent event = recording.request;
+    if (event == null) {
+      return;
+    }
+    recording.request = null;
+    event.end();
+    if (event.shouldCommit()) {
+      event.status = status;
+      event.responseBytes = responseBytes;
+      event.commit();
+    }
+  }
+
+  @Override
+  public Object startPhase(RequestPhase phase, String host) {
+    if (phase == RequestPhase.LEASE && LEASE_PROBE.isEnabled()) {
+      ConnectionLeaseEvent event = new ConnectionLeaseEvent();
+      event.client = client;
+      event.host = host;
+      event.begin();
+      return event;
+    }
+    if (phase == RequestPhase.TLS && TLS_PROBE.isEnabled()) {
+      TlsHandshakeEvent event = new TlsHandshakeEvent();
+      event.client = client;
+      event.host = host;
+      event.begin();
+      return event;
+    }
+    return null;
+  }
+
+  @Override
+  public void completePhase(RequestPhase phase, String host, long durationNanos, Object state) {
+    HttpRequestEvent request = recordings.get().request;
+    if (request != null) {
+      addPhase(request, phase, durationNanos);
+    }
+    if (state instanceof Event) {
+      commit((Event)state);
+    }
+  }
+
+  @Override
+  public void phaseCompleted(RequestPhase phase, String host, long durationNanos) {
+    completePhase(phase, host, durationNanos, null);
+  }
+
+  private static void addPhase(HttpRequestEvent event, RequestPhase phase, long durationNanos) {
+    switch (phase) {
+      case LEASE:
+        event.lease += durationNanos;
+        break;
+      case DNS:
+        event.dns += durationNanos;
+        break;
+      case CONNECT:
+        event.connect += durationNanos;
+        break;
+      case TLS:
+        event.tls += durationNanos;
+        break;
+      case TUNNEL:
+        event.tunnel += durationNanos;
+        break;
+      case TTFB:
+        event.ttfb += durationNanos;
+        break;
+      default:
+        break;
+    }
+  }
+
+  private static void commit(Event event) {
+    event.end();
+    if (event.shouldCommit()) {
+      event.commit();
+    }
+  }
+
+  /**
+   * Events of the current thread
+   */
+  private static final class Recording {
+
+    private HttpRequestEvent request;
+  }
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright (c) 2020. dev-eth0.de All rights reserved.
+ */
+
+package de.dev.eth0.springboot.httpclient.impl.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Threshold;
+import jdk.jfr.Timespan;
+
+/**
+ * Flight recorder event of a request from its start until the response head was received
+ * <p>
+ * The phases are summed up over all exchanges of the request, e.g. retries or redirects followed by OkHttp.
+ */
+@Name(HttpClientFlightRecorder.EVENT_PREFIX + "Request")
+@Label("HTTP Client Request")
+@Category(HttpClientFlightRecorder.CATEGORY)
+@Description("Outbound HTTP request until the response head was received")
+@Threshold("20 ms")
+class HttpRequestEvent extends Event {
+
+  @Label("Client")
+  String client;
+
+  @Label("Method")
+  String method;
+
+  @Label("Host")
+  String host;
+
+  @Label("Status")
+  @Description("Status code of the response, -1 if the request failed")
+  int status = -1;
+
+  @Label("Request Bytes")
+  @Description("Length of the request body, -1 if unknown")
+  @DataAmount
+  long requestBytes;
+
+  @Label("Response Bytes")
+  @Description("Length of the response body, -1 if unknown")
+  @DataAmount
+  long responseBytes = -1;
+
+  @Label("Lease")
+  @Timespan
+  long lease;
+
+  @Label("DNS")
+  @Timespan
+  long dns;
+
+  @Label("Connect")
+  @Timespan
+  long connect;
+
+  @Label("TLS Handshake")
+  @Timespan
+  long tls;
+
+  @Label("Tunnel")
+  @Timespan
+  long tunnel;
+
+  @Label("Time to First Byte")
+  @Timespan
+  long ttfb;
+}
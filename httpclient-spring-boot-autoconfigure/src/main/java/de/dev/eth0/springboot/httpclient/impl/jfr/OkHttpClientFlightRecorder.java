@@ -0,0 +1,53 @@
+/*
+ * Copyright (c) 2020. dev-eth0.de All rights reserved.
+ */
+
+package de.dev.eth0.springboot.httpclient.impl.jfr;
+
+import java.io.IOException;
+
+import de.dev.eth0.springboot.httpclient.impl.ConfigurableOkHttpClientFactory;
+import de.dev.eth0.springboot.httpclient.impl.OkHttpClientCustomizer;
+import okhttp3.Interceptor;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+
+/**
+ * Flight recorder instrumentation of OkHttp
+ * <p>
+ * The request events are started and ended by an application interceptor until the response head was received,
+ * including retries and redirects. Failed requests are recorded with status -1.
+ */
+public class OkHttpClientFlightRecorder implements OkHttpClientCustomizer {
+
+  public static final String CLIENT = "okhttp";
+
+  private final HttpClientFlightRecorder recorder = new HttpClientFlightRecorder(CLIENT);
+
+  @Override
+  public void customize(OkHttpClient.Builder builder, ConfigurableOkHttpClientFactory factory) {
+    builder.addInterceptor(new RecordingInterceptor());
+    factory.addRequestPhaseListener(recorder);
+  }
+
+  private final class RecordingInterceptor implements Interceptor {
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+      Request request = chain.request();
+      RequestBody body = request.body();
+      recorder.requestStarted(request.method(), request.url().host(), body != null ? body.contentLength() : 0);
+      try {
+        Response response = chain.proceed(request);
+        recorder.requestFinished(response.code(), response.body() != null ? response.body().contentLength() : 0);
+        return response;
+      }
+      catch (IOException | RuntimeException ex) {
+        recorder.requestFinished(-1, -1);
+        throw ex;
+      }
+    }
+  }
+}
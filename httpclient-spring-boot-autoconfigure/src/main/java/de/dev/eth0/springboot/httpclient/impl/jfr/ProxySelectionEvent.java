@@ -0,0 +1,44 @@
+/*
+ * Copyright (c) 2020. dev-eth0.de All rights reserved.
+ */
+
+package de.dev.eth0.springboot.httpclient.impl.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Threshold;
+
+/**
+ * Flight recorder event of a proxy selection, only selections slower than the threshold are recorded by default
+ */
+@Name(HttpClientFlightRecorder.EVENT_PREFIX + "ProxySelection")
+@Label("HTTP Client Proxy Selection")
+@Category(HttpClientFlightRecorder.CATEGORY)
+@Description("Selection of the proxies for a request")
+@Threshold("1 ms")
+public class ProxySelectionEvent extends Event {
+
+  @Label("Host")
+  String host;
+
+  @Label("Proxy")
+  @Description("Key of the first selected proxy or DIRECT")
+  String proxy;
+
+  @Label("Proxy Count")
+  int proxyCount;
+
+  /**
+   * @param host host of the request
+   * @param proxy key of the first selected proxy, null for DIRECT
+   * @param proxyCount number of selected proxies
+   */
+  public void setSelection(String host, String proxy, int proxyCount) {
+    this.host = host;
+    this.proxy = proxy;
+    this.proxyCount = proxyCount;
+  }
+}
@@ -0,0 +1,29 @@
+/*
+ * Copyright (c) 2020. dev-eth0.de All rights reserved.
+ */
+
+package de.dev.eth0.springboot.httpclient.impl.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Threshold;
+
+/**
+ * Flight recorder event of a TLS handshake of a new connection
+ */
+@Name(HttpClientFlightRecorder.EVENT_PREFIX + "TlsHandshake")
+@Label("HTTP Client TLS Handshake")
+@Category(HttpClientFlightRecorder.CATEGORY)
+@Description("TLS handshake of a new connection")
+@Threshold("10 ms")
+class TlsHandshakeEvent extends Event {
+
+  @Label("Client")
+  String client;
+
+  @Label("Host")
+  String host;
+}
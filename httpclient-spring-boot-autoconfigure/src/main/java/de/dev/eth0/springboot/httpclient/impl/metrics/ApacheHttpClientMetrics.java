@@ -0,0 +1,142 @@
+/*
+ * Copyright (c) 2020. dev-eth0.de All rights reserved.
+ */
+
+package de.dev.eth0.springboot.httpclient.impl.metrics;
+
+import java.util.Arrays;
+import java.util.function.BiConsumer;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.apache.http.HttpHost;
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpResponse;
+import org.apache.http.conn.HttpClientConnectionManager;
+import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.protocol.HttpContext;
+import org.apache.http.protocol.HttpCoreContext;
+
+import de.dev.eth0.springboot.httpclient.HttpClientProperties;
+import de.dev.eth0.springboot.httpclient.impl.ApacheHttpClientCustomizer;
+import de.dev.eth0.springboot.httpclient.impl.ConfigurableApacheHttpClientFactory;
+import de.dev.eth0.springboot.httpclient.impl.RequestPhaseListener;
+import de.dev.eth0.springboot.httpclient.impl.certificates.SharedSSLContext;
+import de.dev.eth0.springboot.httpclient.impl.pool.ConfigurablePoolingHttpClientConnectionManager;
+import de.dev.eth0.springboot.httpclient.impl.proxy.ConfigurableProxySelector;
+
+/**
+ * Micrometer instrumentation of the Apache HttpClient
+ * <p>
+ * The requests are timed by a pair of protocol interceptors, from before the connection is leased until the response
+ * head was received. The response interceptors are not called for requests failing with an exception, so these are
+ * recorded with the status {@value HttpClientMetrics#IO_ERROR} by the request failure listener of the factory, once for
+ * each failed attempt. The pool gauges are bound to the shared connection manager, the lease and the other phases are
+ * reported by the phase listener of the factory. The maximum per route is reported for the default limit and for each
+ * configured route, tagged with its host patterns.
+ */
+public class ApacheHttpClientMetrics implements ApacheHttpClientCustomizer {
+
+  public static final String CLIENT = "apache";
+
+  private static final String REQUEST_START = ApacheHttpClientMetrics.class.getName() + ".requestStart";
+
+  private final HttpClientMetrics metrics;
+  private final RequestPhaseListener phaseListener;
+  private final BiConsumer<HttpContext, Exception> failureListener;
+
+  public ApacheHttpClientMetrics(MeterRegistry registry, HttpClientProperties.MetricsConfiguration metricsConfiguration) {
+    this.metrics = new HttpClientMetrics(registry, CLIENT, metricsConfiguration);
+    this.phaseListener = metrics::recordPhase;
+    this.failureListener = this::requestFailed;
+  }
+
+  @Override
+  public void customize(HttpClientBuilder builder, ConfigurableApacheHttpClientFactory factory) {
+    builder.addInterceptorFirst(this::requestStarted);
+    builder.addInterceptorLast(this::responseReceived);
+
+    HttpClientConnectionManager connectionManager = factory.getRegistry().getConnectionManager();
+    if (connectionManager instanceof PoolingHttpClientConnectionManager) {
+      bindPool((PoolingHttpClientConnectionManager)connectionManager);
+    }
+    factory.addRequestPhaseListener(phaseListener);
+    factory.addRequestFailureListener(failureListener);
+    ConfigurableProxySelector proxySelector = factory.getProxySelector();
+    if (proxySelector != null) {
+      metrics.bindProxySelector(proxySelector);
+    }
+    SharedSSLContext sslContext = factory.getSslContext();
+    if (sslContext != null) {
+      metrics.bindSessionResumption(sslContext.getStatistics());
+    }
+  }
+
+  private void requestStarted(HttpRequest request, HttpContext context) {
+    context.setAttribute(REQUEST_START, new RequestStart(request.getRequestLine().getMethod(), System.nanoTime()));
+  }
+
+  private void responseReceived(HttpResponse response, HttpContext context) {
+    recordRequest(context, response.getStatusLine().getStatusCode());
+  }
+
+  private void requestFailed(HttpContext context, Exception ex) {
+    recordRequest(context, -1);
+  }
+
+  /**
+   * The start is removed, so each attempt is recorded once
+   */
+  private void recordRequest(HttpContext context, int status) {
+    Object attribute = context.removeAttribute(REQUEST_START);
+    if (!(attribute instanceof RequestStart)) {
+      return;
+    }
+    RequestStart start = (RequestStart)attribute;
+    HttpHost target = (HttpHost)context.getAttribute(HttpCoreContext.HTTP_TARGET_HOST);
+    metrics.recordRequest(target != null ? target.getHostName() : null, start.method, status, System.nanoTime() - start.nanoTime);
+  }
+
+  private void bindPool(PoolingHttpClientConnectionManager connectionManager) {
+    MeterRegistry registry = metrics.getRegistry();
+    Gauge.builder(HttpClientMetrics.POOL_LEASED, connectionManager, cm -> cm.getTotalStats().getLeased())
+        .description("Number of leased connections")
+        .tags(metrics.getTags())
+        .register(registry);
+    Gauge.builder(HttpClientMetrics.POOL_IDLE, connectionManager, cm -> cm.getTotalStats().getAvailable())
+        .description("Number of idle connections")
+        .tags(metrics.getTags())
+        .register(registry);
+    Gauge.builder(HttpClientMetrics.POOL_PENDING, connectionManager, cm -> cm.getTotalStats().getPending())
+        .description("Number of requests waiting for a connection")
+        .tags(metrics.getTags())
+        .register(registry);
+    Gauge.builder(HttpClientMetrics.POOL_MAX_PER_ROUTE, connectionManager, PoolingHttpClientConnectionManager::getDefaultMaxPerRoute)
+        .description("Maximum number of connections per route")
+        .tags(metrics.getTags())
+        .tag("route", HttpClientMetrics.DEFAULT_ROUTE)
+        .register(registry);
+    if (connectionManager instanceof ConfigurablePoolingHttpClientConnectionManager) {
+      for (HttpClientProperties.RouteConfiguration route : ((ConfigurablePoolingHttpClientConnectionManager)connectionManager).getRouteConfigurations()) {
+        Gauge.builder(HttpClientMetrics.POOL_MAX_PER_ROUTE, route, HttpClientProperties.RouteConfiguration::getMaxPerRoute)
+            .description("Maximum number of connections per route")
+            .tags(metrics.getTags())
+            .tag("route", Arrays.stream(route.getHostPatterns()).map(Pattern::pattern).collect(Collectors.joining(",")))
+            .register(registry);
+      }
+    }
+  }
+
+  private static final class RequestStart {
+
+    private final String method;
+    private final long nanoTime;
+
+    private RequestStart(String method, long nanoTime) {
+      this.method = method;
+      this.nanoTime = nanoTime;
+    }
+  }
+}
@@ -0,0 +1,204 @@
+/*
+ * Copyright (c) 2020. dev-eth0.de All rights reserved.
+ */
+
+package de.dev.eth0.springboot.httpclient.impl.metrics;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+
+import de.dev.eth0.springboot.httpclient.HttpClientProperties;
+import de.dev.eth0.springboot.httpclient.impl.RequestPhase;
+import de.dev.eth0.springboot.httpclient.impl.certificates.SessionResumptionStatistics;
+import de.dev.eth0.springboot.httpclient.impl.proxy.ConfigurableProxySelector;
+import de.dev.eth0.springboot.httpclient.impl.proxy.ProxySelectionCache;
+import de.dev.eth0.springboot.httpclient.impl.proxy.ProxySelectionStatistics;
+
+/**
+ * Meters shared by the instrumentation of both clients
+ * <p>
+ * Only the hosts of the allow-list are used as tag, all other hosts are tagged as {@link #OTHER_HOST}. The request
+ * and phase timers are looked up without allocations once they were registered. The phases other than the lease are
+ * only recorded if enabled, as each of them publishes a histogram per host.
+ */
+public class HttpClientMetrics {
+
+  public static final String REQUESTS = "httpclient.requests";
+  public static final String POOL_LEASED = "httpclient.pool.leased";
+  public static final String POOL_IDLE = "httpclient.pool.idle";
+  public static final String POOL_PENDING = "httpclient.pool.pending";
+  public static final String POOL_MAX_PER_ROUTE = "httpclient.pool.max.per.route";
+  public static final String POOL_LEASE = "httpclient.pool.lease";
+  public static final String REQUEST_PHASES = "httpclient.request.phases";
+  public static final String PROXY_SELECTIONS = "httpclient.proxy.selections";
+  public static final String PROXY_CACHE = "httpclient.proxy.cache";
+  public static final String TLS_HANDSHAKES = "httpclient.tls.handshakes";
+
+  public static final String OTHER_HOST = "other";
+  public static final String DEFAULT_ROUTE = "default";
+  public static final String IO_ERROR = "IO_ERROR";
+
+  private static final int ERROR_INDEX = 600;
+
+  private final MeterRegistry registry;
+  private final Tags tags;
+  private final Set<String> hosts;
+  private final boolean phases;
+  private final Map<String, Map<String, Timer[]>> requestTimers = new ConcurrentHashMap<>();
+  private final Map<String, Timer[]> phaseTimers = new ConcurrentHashMap<>();
+  private final Timer leaseTimer;
+
+  /**
+   * @param registry registry of the meters
+   * @param client name of the client, added as tag to all meters
+   * @param metricsConfiguration configuration of the host allow-list and phases
+   */
+  public HttpClientMetrics(MeterRegistry registry, String client, HttpClientProperties.MetricsConfiguration metricsConfiguration) {
+    this.registry = registry;
+    this.tags = Tags.of("client", client);
+    this.hosts = Optional.ofNullable(metricsConfiguration.getHosts()).stream()
+        .flatMap(Arrays::stream)
+        .map(host -> host.toLowerCase(Locale.ROOT))
+        .collect(Collectors.toUnmodifiableSet());
+    this.phases = metricsConfiguration.isPhases();
+    this.leaseTimer = Timer.builder(POOL_LEASE)
+        .description("Time waited for a connection from the pool")
+        .tags(tags)
+        .register(registry);
+  }
+
+  /**
+   * @param host requested host
+   * @param method request method
+   * @param status status code of the response, negative if the request failed
+   * @param durationNanos duration of the request in ns
+   */
+  public void recordRequest(String host, String method, int status, long durationNanos) {
+    Timer[] timers = requestTimers.computeIfAbsent(hostTag(host), key -> new ConcurrentHashMap<>())
+        .computeIfAbsent(method, key -> new Timer[ERROR_INDEX + 1]);
+    int index = status >= 0 && status < ERROR_INDEX ? status : ERROR_INDEX;
+    Timer timer = timers[index];
+    if (timer == null) {
+      // concurrent registrations return the same timer
+      timer = Timer.builder(REQUESTS)
+          .description("Time until the response of a request was received")
+          .tags(tags)
+          .tag("host", hostTag(host))
+          .tag("method", method)
+          .tag("status", index == ERROR_INDEX ? IO_ERROR : Integer.toString(status))
+          .register(registry);
+      timers[index] = timer;
+    }
+    timer.record(durationNanos, TimeUnit.NANOSECONDS);
+  }
+
+  /**
+   * @param durationNanos time in ns waited for a connection
+   */
+  public void recordLease(long durationNanos) {
+    leaseTimer.record(durationNanos, TimeUnit.NANOSECONDS);
+  }
+
+  /**
+   * @param phase completed phase, the lease is recorded by the lease timer
+   * @param host requested host
+   * @param durationNanos duration of the phase in ns
+   */
+  public void recordPhase(RequestPhase phase, String host, long durationNanos) {
+    if (phase == RequestPhase.LEASE) {
+      recordLease(durationNanos);
+      return;
+    }
+    if (!phases) {
+      return;
+    }
+    Timer[] timers = phaseTimers.computeIfAbsent(hostTag(host), key -> new Timer[RequestPhase.values().length]);
+    Timer timer = timers[phase.ordinal()];
+    if (timer == null) {
+      timer = Timer.builder(REQUEST_PHASES)
+          .description("Duration of the phases of a request")
+          .tags(tags)
+          .tag("host", hostTag(host))
+          .tag("phase", phase.name().toLowerCase(Locale.ROOT))
+          .publishPercentileHistogram()
+          .register(registry);
+      timers[phase.ordinal()] = timer;
+    }
+    timer.record(durationNanos, TimeUnit.NANOSECONDS);
+  }
+
+  /**
+   * Registers the counters of the selected proxies and the proxy cache
+   *
+   * @param proxySelector proxy selector of the client
+   */
+  public void bindProxySelector(ConfigurableProxySelector proxySelector) {
+    ProxySelectionStatistics statistics = proxySelector.getStatistics();
+    statistics.getKeys().forEach(key -> FunctionCounter.builder(PROXY_SELECTIONS, statistics, stats -> stats.getCount(key))
+        .description("Number of requests for which the proxy was selected first")
+        .tags(tags)
+        .tag("proxy", key)
+        .register(registry));
+    ProxySelectionCache cache = proxySelector.getCache();
+    FunctionCounter.builder(PROXY_CACHE, cache, ProxySelectionCache::getHitCount)
+        .description("Number of proxy selections by cache result")
+        .tags(tags)
+        .tag("result", "hit")
+        .register(registry);
+    FunctionCounter.builder(PROXY_CACHE, cache, ProxySelectionCache::getMissCount)
+        .description("Number of proxy selections by cache result")
+        .tags(tags)
+        .tag("result", "miss")
+        .register(registry);
+  }
+
+  /**
+   * Registers the counters of the TLS handshakes by whether a session was resumed
+   *
+   * @param statistics statistics of the SSL context of the client
+   */
+  public void bindSessionResumption(SessionResumptionStatistics statistics) {
+    FunctionCounter.builder(TLS_HANDSHAKES, statistics, SessionResumptionStatistics::getResumedCount)
+        .description("Number of TLS handshakes by whether a cached session was resumed")
+        .tags(tags)
+        .tag("session", "resumed")
+        .register(registry);
+    FunctionCounter.builder(TLS_HANDSHAKES, statistics, SessionResumptionStatistics::getFullCount)
+        .description("Number of TLS handshakes by whether a cached session was resumed")
+        .tags(tags)
+        .tag("session", "full")
+        .register(registry);
+  }
+
+  /**
+   * @return registry of the meters
+   */
+  public MeterRegistry getRegistry() {
+    return registry;
+  }
+
+  /**
+   * @return common tags of all meters
+   */
+  public Tags getTags() {
+    return tags;
+  }
+
+  String hostTag(String host) {
+    if (host == null || hosts.isEmpty()) {
+      return OTHER_HOST;
+    }
+    String normalized = host.toLowerCase(Locale.ROOT);
+    return hosts.contains(normalized) ? normalized : OTHER_HOST;
+  }
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright (c) 2020. dev-eth0.de All rights reserved.
+ */
+
+package de.dev.eth0.springboot.httpclient.impl.metrics;
+
+import java.io.IOException;
+import java.util.function.ToDoubleFunction;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import de.dev.eth0.springboot.httpclient.HttpClientProperties;
+import de.dev.eth0.springboot.httpclient.impl.ConfigurableOkHttpClientFactory;
+import de.dev.eth0.springboot.httpclient.impl.OkHttpClientCustomizer;
+import de.dev.eth0.springboot.httpclient.impl.OkHttpClientRegistry;
+import de.dev.eth0.springboot.httpclient.impl.RequestPhaseListener;
+import de.dev.eth0.springboot.httpclient.impl.certificates.SharedSSLContext;
+import de.dev.eth0.springboot.httpclient.impl.proxy.ConfigurableProxySelector;
+import okhttp3.Interceptor;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * Micrometer instrumentation of OkHttp
+ * <p>
+ * The requests are timed by an application interceptor until the response head was received, including retries and
+ * redirects. The lease time is the time until a connection was acquired, which includes connecting if no pooled
+ * connection was available. OkHttp has no queue for connections, so the calls queued by the dispatcher are reported as
+ * pending and the limit of requests per host as maximum per route. The gauges read the shared client of the registry
+ * once it was built, so a scrape never builds it, before that no connections or calls are reported.
+ * The lease and the other phases are reported by the phase listener of the factory.
+ */
+public class OkHttpClientMetrics implements OkHttpClientCustomizer {
+
+  public static final String CLIENT = "okhttp";
+
+  private final HttpClientMetrics metrics;
+  private final RequestPhaseListener phaseListener;
+
+  public OkHttpClientMetrics(MeterRegistry registry, HttpClientProperties.MetricsConfiguration metricsConfiguration) {
+    this.metrics = new HttpClientMetrics(registry, CLIENT, metricsConfiguration);
+    this.phaseListener = metrics::recordPhase;
+  }
+
+  @Override
+  public void customize(OkHttpClient.Builder builder, ConfigurableOkHttpClientFactory factory) {
+    builder.addInterceptor(new RequestTimingInterceptor());
+    factory.addRequestPhaseListener(phaseListener);
+    bindPool(factory.getRegistry());
+    ConfigurableProxySelector proxySelector = factory.getProxySelector();
+    if (proxySelector != null) {
+      metrics.bindProxySelector(proxySelector);
+    }
+    SharedSSLContext sslContext = factory.getSslContext();
+    if (sslContext != null) {
+      metrics.bindSessionResumption(sslContext.getStatistics());
+    }
+  }
+
+  private void bindPool(OkHttpClientRegistry clientRegistry) {
+    MeterRegistry registry = metrics.getRegistry();
+    Gauge.builder(HttpClientMetrics.POOL_LEASED, clientRegistry,
+        ifBuilt(client -> client.connectionPool().connectionCount() - client.connectionPool().idleConnectionCount(), 0))
+        .description("Number of connections in use")
+        .tags(metrics.getTags())
+        .register(registry);
+    Gauge.builder(HttpClientMetrics.POOL_IDLE, clientRegistry, ifBuilt(client -> client.connectionPool().idleConnectionCount(), 0))
+        .description("Number of idle connections")
+        .tags(metrics.getTags())
+        .register(registry);
+    Gauge.builder(HttpClientMetrics.POOL_PENDING, clientRegistry, ifBuilt(client -> client.dispatcher().queuedCallsCount(), 0))
+        .description("Number of calls waiting for execution")
+        .tags(metrics.getTags())
+        .register(registry);
+    Gauge.builder(HttpClientMetrics.POOL_MAX_PER_ROUTE, clientRegistry,
+        ifBuilt(client -> client.dispatcher().getMaxRequestsPerHost(), Double.NaN))
+        .description("Maximum number of concurrent requests per host")
+        .tags(metrics.getTags())
+        .tag("route", HttpClientMetrics.DEFAULT_ROUTE)
+        .register(registry);
+  }
+
+  private static ToDoubleFunction<OkHttpClientRegistry> ifBuilt(ToDoubleFunction<OkHttpClient> value, double defaultValue) {
+    return clientRegistry -> {
+      OkHttpClient client = clientRegistry.getClientIfBuilt();
+      return client != null ? value.applyAsDouble(client) : defaultValue;
+    };
+  }
+
+  private final class RequestTimingInterceptor implements Interceptor {
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+      Request request = chain.request();
+      long start = System.nanoTime();
+      try {
+        Response response = chain.proceed(request);
+        metrics.recordRequest(request.url().host(), request.method(), response.code(), System.nanoTime() - start);
+        return response;
+      }
+      catch (IOException | RuntimeException ex) {
+        metrics.recordRequest(request.url().host(), request.method(), -1, System.nanoTime() - start);
+        throw ex;
+      }
+    }
+  }
+}
@@ -0,0 +1,191 @@
+/*
+ * Copyright (c) 2020. dev-eth0.de All rights reserved.
+ */
+
+package de.dev.eth0.springboot.httpclient.impl.pool;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import org.apache.http.HttpClientConnection;
+import org.apache.http.config.Registry;
+import org.apache.http.conn.ConnectionPoolTimeoutException;
+import org.apache.http.conn.ConnectionRequest;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.conn.socket.ConnectionSocketFactory;
+import org.apache.http.impl.conn.DefaultHttpClientConnectionOperator;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.protocol.HttpContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import de.dev.eth0.springboot.httpclient.HttpClientProperties;
+import de.dev.eth0.springboot.httpclient.impl.HostPatternMatcher;
+import de.dev.eth0.springboot.httpclient.impl.RequestPhase;
+import de.dev.eth0.springboot.httpclient.impl.RequestPhaseListener;
+
+/**
+ * Pooling connection manager which applies the per route limits of the {@link HttpClientProperties.PoolConfiguration}.
+ * <p>
+ * The routes are not known upfront, therefore the matching route configuration is applied when a route is requested for
+ * the first time. The routes with a matching configuration are remembered like their limits by the pool, the other
+ * routes in a bounded set, which is cleared once it is full, so they are only matched again after many other routes.
+ * Failed connections to a proxy are reported to the connect failure listener, as the route planner doesn't report them
+ * to the proxy selector, all failed connections to the request failure listener.
+ * The time waited for a connection and the phases of new connections are reported to the request phase listener.
+ */
+public class ConfigurablePoolingHttpClientConnectionManager extends PoolingHttpClientConnectionManager {
+
+  private static final Logger LOG = LoggerFactory.getLogger(ConfigurablePoolingHttpClientConnectionManager.class);
+  private static final int MAX_UNCONFIGURED_ROUTES = 1024;
+
+  private final List<HttpClientProperties.RouteConfiguration> routeConfigurations;
+  private final HostPatternMatcher<HttpClientProperties.RouteConfiguration> hostPatternMatcher;
+  private final Set<HttpRoute> configuredRoutes = ConcurrentHashMap.newKeySet();
+  private final Set<HttpRoute> unconfiguredRoutes = ConcurrentHashMap.newKeySet();
+  private final ConnectPhaseTiming connectPhaseTiming;
+  private volatile BiConsumer<HttpRoute, IOException> connectFailureListener;
+  private volatile Consumer<HttpRoute> connectSuccessListener;
+  private volatile BiConsumer<HttpContext, Exception> requestFailureListener;
+  private volatile RequestPhaseListener requestPhaseListener;
+
+  public ConfigurablePoolingHttpClientConnectionManager(Registry<ConnectionSocketFactory> socketFactoryRegistry,
+      HttpClientProperties.PoolConfiguration poolConfiguration) {
+    this(new ConnectPhaseTiming(socketFactoryRegistry), poolConfiguration);
+  }
+
+  private ConfigurablePoolingHttpClientConnectionManager(ConnectPhaseTiming connectPhaseTiming,
+      HttpClientProperties.PoolConfiguration poolConfiguration) {
+    super(new DefaultHttpClientConnectionOperator(connectPhaseTiming, null, connectPhaseTiming), null, -1, TimeUnit.MILLISECONDS);
+    this.connectPhaseTiming = connectPhaseTiming;
+    setMaxTotal(poolConfiguration.getMaxTotal());
+    setDefaultMaxPerRoute(poolConfiguration.getDefaultMaxPerRoute());
+    this.routeConfigurations = Optional.ofNullable(poolConfiguration.getRoutes()).map(Arrays::asList).orElse(List.of());
+    this.hostPatternMatcher = HostPatternMatcher.compile(routeConfigurations, HttpClientProperties.RouteConfiguration::getHostPatterns);
+  }
+
+  /**
+   * @return the configured routes, the first matching one is applied to a route
+   */
+  public List<HttpClientProperties.RouteConfiguration> getRouteConfigurations() {
+    return routeConfigurations;
+  }
+
+  @Override
+  public ConnectionRequest requestConnection(HttpRoute route, Object state) {
+    if (!configuredRoutes.contains(route) && !unconfiguredRoutes.contains(route)) {
+      configureRoute(route);
+    }
+    ConnectionRequest request = super.requestConnection(route, state);
+    RequestPhaseListener listener = requestPhaseListener;
+    return listener != null ? new TimedConnectionRequest(request, route.getTargetHost().getHostName(), listener) : request;
+  }
+
+  @Override
+  public void connect(HttpClientConnection managedConn, HttpRoute route, int connectTimeout, HttpContext context) throws IOException {
+    try {
+      super.connect(managedConn, route, connectTimeout, context);
+    }
+    catch (IOException ex) {
+      BiConsumer<HttpRoute, IOException> listener = connectFailureListener;
+      if (listener != null && route.getProxyHost() != null) {
+        listener.accept(route, ex);
+      }
+      BiConsumer<HttpContext, Exception> failureListener = requestFailureListener;
+      if (failureListener != null) {
+        failureListener.accept(context, ex);
+      }
+      throw ex;
+    }
+    Consumer<HttpRoute> successListener = connectSuccessListener;
+    if (successListener != null && route.getProxyHost() != null) {
+      successListener.accept(route);
+    }
+  }
+
+  /**
+   * @param connectFailureListener called if the connection to the proxy of a route fails
+   */
+  public void setConnectFailureListener(BiConsumer<HttpRoute, IOException> connectFailureListener) {
+    this.connectFailureListener = connectFailureListener;
+  }
+
+  /**
+   * @param connectSuccessListener called once a connection to the proxy of a route was established
+   */
+  public void setConnectSuccessListener(Consumer<HttpRoute> connectSuccessListener) {
+    this.connectSuccessListener = connectSuccessListener;
+  }
+
+  /**
+   * @param requestFailureListener called with the context of the request if connecting fails
+   */
+  public void setRequestFailureListener(BiConsumer<HttpContext, Exception> requestFailureListener) {
+    this.requestFailureListener = requestFailureListener;
+  }
+
+  /**
+   * @param requestPhaseListener called with the time waited for each leased connection and the DNS lookup, connect and
+   *          TLS handshake of new connections
+   */
+  public void setRequestPhaseListener(RequestPhaseListener requestPhaseListener) {
+    this.requestPhaseListener = requestPhaseListener;
+    this.connectPhaseTiming.setListener(requestPhaseListener);
+  }
+
+  private void configureRoute(HttpRoute route) {
+    String host = route.getTargetHost().getHostName();
+    Optional<HttpClientProperties.RouteConfiguration> config = hostPatternMatcher.matchFirst(host);
+    if (config.isEmpty()) {
+      if (unconfiguredRoutes.size() >= MAX_UNCONFIGURED_ROUTES) {
+        unconfiguredRoutes.clear();
+      }
+      unconfiguredRoutes.add(route);
+    }
+    else if (configuredRoutes.add(route)) {
+      LOG.debug("Using max {} connections for route {}", config.get().getMaxPerRoute(), route);
+      setMaxPerRoute(route, config.get().getMaxPerRoute());
+    }
+  }
+
+  /**
+   * Connection request reporting the time waited for the connection, also if the lease failed
+   */
+  private static final class TimedConnectionRequest implements ConnectionRequest {
+
+    private final ConnectionRequest delegate;
+    private final String host;
+    private final RequestPhaseListener listener;
+
+    private TimedConnectionRequest(ConnectionRequest delegate, String host, RequestPhaseListener listener) {
+      this.delegate = delegate;
+      this.host = host;
+      this.listener = listener;
+    }
+
+    @Override
+    public HttpClientConnection get(long timeout, TimeUnit timeUnit)
+        throws InterruptedException, ExecutionException, ConnectionPoolTimeoutException {
+      Object state = listener.startPhase(RequestPhase.LEASE, host);
+      long start = System.nanoTime();
+      try {
+        return delegate.get(timeout, timeUnit);
+      }
+      finally {
+        listener.completePhase(RequestPhase.LEASE, host, System.nanoTime() - start, state);
+      }
+    }
+
+    @Override
+    public boolean cancel() {
+      return delegate.cancel();
+    }
+  }
+}
@@ -0,0 +1,172 @@
+/*
+ * Copyright (c) 2020. dev-eth0.de All rights reserved.
+ */
+
+package de.dev.eth0.springboot.httpclient.impl.pool;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketAddress;
+import java.net.UnknownHostException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import org.apache.http.HttpHost;
+import org.apache.http.config.Lookup;
+import org.apache.http.conn.DnsResolver;
+import org.apache.http.conn.socket.ConnectionSocketFactory;
+import org.apache.http.conn.socket.LayeredConnectionSocketFactory;
+import org.apache.http.conn.socket.PlainConnectionSocketFactory;
+import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
+import org.apache.http.impl.conn.SystemDefaultDnsResolver;
+import org.apache.http.protocol.HttpContext;
+
+import de.dev.eth0.springboot.httpclient.impl.RequestPhase;
+import de.dev.eth0.springboot.httpclient.impl.RequestPhaseListener;
+
+/**
+ * Hooks of the connection operator timing the DNS lookup, TCP connect and TLS handshake of new connections
+ * <p>
+ * The plain and SSL socket factories are wrapped, so the TCP connect is timed by the created socket and the remaining
+ * time of the connect is the TLS handshake for the SSL socket factory. Other socket factories may create special sockets and are not timed. Without
+ * listener, all calls are passed to the original resolver and socket factories.
+ */
+final class ConnectPhaseTiming implements DnsResolver, Lookup<ConnectionSocketFactory> {
+
+  private final Lookup<ConnectionSocketFactory> socketFactoryRegistry;
+  private final Map<String, ConnectionSocketFactory> socketFactories = new ConcurrentHashMap<>();
+  private volatile RequestPhaseListener listener;
+
+  ConnectPhaseTiming(Lookup<ConnectionSocketFactory> socketFactoryRegistry) {
+    this.socketFactoryRegistry = socketFactoryRegistry;
+  }
+
+  void setListener(RequestPhaseListener listener) {
+    this.listener = listener;
+  }
+
+  @Override
+  public InetAddress[] resolve(String host) throws UnknownHostException {
+    RequestPhaseListener current = listener;
+    if (current == null) {
+      return SystemDefaultDnsResolver.INSTANCE.resolve(host);
+    }
+    Object state = current.startPhase(RequestPhase.DNS, host);
+    long start = System.nanoTime();
+    InetAddress[] addresses = SystemDefaultDnsResolver.INSTANCE.resolve(host);
+    current.completePhase(RequestPhase.DNS, host, System.nanoTime() - start, state);
+    return addresses;
+  }
+
+  @Override
+  public ConnectionSocketFactory lookup(String name) {
+    ConnectionSocketFactory socketFactory = socketFactories.get(name);
+    if (socketFactory == null) {
+      ConnectionSocketFactory delegate = socketFactoryRegistry.lookup(name);
+      if (delegate instanceof SSLConnectionSocketFactory) {
+        socketFactory = new TimedLayeredConnectionSocketFactory((SSLConnectionSocketFactory)delegate);
+      }
+      else if (delegate instanceof PlainConnectionSocketFactory) {
+        socketFactory = new TimedConnectionSocketFactory(delegate);
+      }
+      else {
+        return delegate;
+      }
+      socketFactories.putIfAbsent(name, socketFactory);
+    }
+    return socketFactory;
+  }
+
+  private class TimedConnectionSocketFactory implements ConnectionSocketFactory {
+
+    private final ConnectionSocketFactory delegate;
+
+    TimedConnectionSocketFactory(ConnectionSocketFactory delegate) {
+      this.delegate = delegate;
+    }
+
+    @Override
+    public Socket createSocket(HttpContext context) throws IOException {
+      return listener != null ? new TimedSocket() : delegate.createSocket(context);
+    }
+
+    @Override
+    public Socket connectSocket(int connectTimeout, Socket sock, HttpHost host, InetSocketAddress remoteAddress,
+        InetSocketAddress localAddress, HttpContext context) throws IOException {
+      RequestPhaseListener current = listener;
+      if (current == null || !(sock instanceof TimedSocket)) {
+        return delegate.connectSocket(connectTimeout, sock, host, remoteAddress, localAddress, context);
+      }
+      TimedSocket timedSocket = (TimedSocket)sock;
+      timedSocket.listener = current;
+      timedSocket.host = host.getHostName();
+      timedSocket.tls = isLayered();
+      Socket socket = delegate.connectSocket(connectTimeout, sock, host, remoteAddress, localAddress, context);
+      if (timedSocket.tls) {
+        current.completePhase(RequestPhase.TLS, timedSocket.host, System.nanoTime() - timedSocket.connected, timedSocket.tlsState);
+      }
+      return socket;
+    }
+
+    boolean isLayered() {
+      return false;
+    }
+  }
+
+  private final class TimedLayeredConnectionSocketFactory extends TimedConnectionSocketFactory implements LayeredConnectionSocketFactory {
+
+    private final LayeredConnectionSocketFactory delegate;
+
+    TimedLayeredConnectionSocketFactory(LayeredConnectionSocketFactory delegate) {
+      super(delegate);
+      this.delegate = delegate;
+    }
+
+    @Override
+    boolean isLayered() {
+      return true;
+    }
+
+    @Override
+    public Socket createLayeredSocket(Socket socket, String target, int port, HttpContext context) throws IOException {
+      RequestPhaseListener current = listener;
+      if (current == null) {
+        return delegate.createLayeredSocket(socket, target, port, context);
+      }
+      Object state = current.startPhase(RequestPhase.TLS, target);
+      long start = System.nanoTime();
+      Socket layeredSocket = delegate.createLayeredSocket(socket, target, port, context);
+      current.completePhase(RequestPhase.TLS, target, System.nanoTime() - start, state);
+      return layeredSocket;
+    }
+  }
+
+  /**
+   * Plain socket reporting its connect, for TLS connections the handshake starts once connected
+   */
+  private static final class TimedSocket extends Socket {
+
+    private RequestPhaseListener listener;
+    private String host;
+    private boolean tls;
+    private long connected;
+    private Object tlsState;
+
+    @Override
+    public void connect(SocketAddress endpoint, int timeout) throws IOException {
+      if (listener == null) {
+        super.connect(endpoint, timeout);
+        return;
+      }
+      Object state = listener.startPhase(RequestPhase.CONNECT, host);
+      long start = System.nanoTime();
+      super.connect(endpoint, timeout);
+      connected = System.nanoTime();
+      listener.completePhase(RequestPhase.CONNECT, host, connected - start, state);
+      if (tls) {
+        tlsState = listener.startPhase(RequestPhase.TLS, host);
+      }
+    }
+  }
+}
@@ -4,6 +4,7 @@
 
 package de.dev.eth0.springboot.httpclient.impl.proxy;
 
+import java.io.Closeable;
 import java.io.IOException;
 import java.net.InetSocketAddress;
 import java.net.Proxy;
@@ -13,43 +14,182 @@ import java.net.URI;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import de.dev.eth0.springboot.httpclient.HttpClientProperties;
+import de.dev.eth0.springboot.httpclient.impl.jfr.ProxySelectionEvent;
 
 /**
  * Custom proxy selector
+ * <p>
+ * The selected proxies are cached per host, see {@link ProxySelectionCache}, and ordered for each request by the
+ * {@link ProxyLoadBalancer}. Hosts matching the {@link NoProxyMatcher} are accessed directly without any pattern
+ * matching. The proxy addresses are resolved in the background by the {@link ProxyAddressResolver}. Failed connections
+ * to a proxy are tracked by the {@link ProxyHealthTracker}, proxies which are down are moved to the end of the selected
+ * proxies, a successful connection resets the failures of a proxy. The first selected proxy is counted by the
+ * {@link ProxySelectionStatistics}, slow selections are recorded as {@link ProxySelectionEvent}.
  */
-public class ConfigurableProxySelector extends ProxySelector {
+public class ConfigurableProxySelector extends ProxySelector implements Closeable {
 
   private static final Logger LOG = LoggerFactory.getLogger(ConfigurableProxySelector.class);
+  private static final List<Proxy> DIRECT = Collections.singletonList(Proxy.NO_PROXY);
+  private static final ProxySelectionEvent SELECTION_PROBE = new ProxySelectionEvent();
 
   private final ProxyConfigurationSelector proxyConfigurationSelector;
+  private final ProxySelectionCache cache;
+  private final ProxyAddressResolver addressResolver;
+  private final ProxyHealthTracker healthTracker;
+  private final ProxyLoadBalancer loadBalancer;
+  private final NoProxyMatcher noProxyMatcher;
+  private final ProxySelectionStatistics statistics;
 
 
   public ConfigurableProxySelector(HttpClientProperties.ProxyConfiguration[] proxyConfigurations) {
+    this(proxyConfigurations, new HttpClientProperties.ProxySelectorConfiguration());
+  }
+
+  public ConfigurableProxySelector(HttpClientProperties.ProxyConfiguration[] proxyConfigurations,
+      HttpClientProperties.ProxySelectorConfiguration proxySelectorConfiguration) {
+    this(proxyConfigurations, proxySelectorConfiguration, null);
+  }
+
+  public ConfigurableProxySelector(HttpClientProperties.ProxyConfiguration[] proxyConfigurations,
+      HttpClientProperties.ProxySelectorConfiguration proxySelectorConfiguration, String[] noProxy) {
     super();
+    HttpClientProperties.ProxySelectorConfiguration configuration = Optional.ofNullable(proxySelectorConfiguration)
+        .orElseGet(HttpClientProperties.ProxySelectorConfiguration::new);
     this.proxyConfigurationSelector = new ProxyConfigurationSelector(Arrays.asList(proxyConfigurations));
+    this.cache = new ProxySelectionCache(configuration.getCacheSize());
+    this.addressResolver = new ProxyAddressResolver(Arrays.asList(proxyConfigurations), configuration.getDnsRefreshInterval());
+    this.addressResolver.addChangeListener(cache::invalidateAll);
+    this.healthTracker = new ProxyHealthTracker(configuration);
+    this.addressResolver.addChangeListener(() -> healthTracker.updateAddresses(addressResolver::getAddress));
+    this.loadBalancer = new ProxyLoadBalancer(Arrays.asList(proxyConfigurations));
+    this.noProxyMatcher = new NoProxyMatcher(noProxy);
+    this.statistics = new ProxySelectionStatistics(Arrays.asList(proxyConfigurations), addressResolver);
   }
 
   @Override
   public List<Proxy> select(URI uri) {
-    List<Proxy> proxies = this.proxyConfigurationSelector.select(uri.getHost())
-        .filter(config -> StringUtils.isNoneBlank(config.getProxyHost()))
-        .map(config -> new Proxy(Proxy.Type.HTTP, new InetSocketAddress(config.getProxyHost(), config.getProxyPort())))
-        .collect(Collectors.collectingAndThen(
-            Collectors.toList(),
-            proxyList -> proxyList.isEmpty() ? Collections.singletonList(Proxy.NO_PROXY) : proxyList
-        ));
-    LOG.debug("Matching proxies: {}", proxies);
+    String host = uri.getHost();
+    if (!SELECTION_PROBE.isEnabled()) {
+      List<Proxy> proxies = selectProxies(host);
+      statistics.record(proxies);
+      return proxies;
+    }
+    ProxySelectionEvent event = new ProxySelectionEvent();
+    event.begin();
+    List<Proxy> proxies = selectProxies(host);
+    statistics.record(proxies);
+    event.end();
+    if (event.shouldCommit()) {
+      event.setSelection(host, proxies.isEmpty() ? null : statistics.getKey(proxies.get(0)), proxies.size());
+      event.commit();
+    }
     return proxies;
   }
 
+  private List<Proxy> selectProxies(String host) {
+    if (noProxyMatcher.matches(host)) {
+      return DIRECT;
+    }
+    ProxySelection selection = host != null ? cache.get(host, this::createSelection) : createSelection(host);
+    return healthTracker.prioritize(selection.select());
+  }
+
+  /**
+   * @return cache of the selected proxies
+   */
+  public ProxySelectionCache getCache() {
+    return cache;
+  }
+
+  /**
+   * @return resolver of the proxy addresses
+   */
+  public ProxyAddressResolver getAddressResolver() {
+    return addressResolver;
+  }
+
+  /**
+   * @return tracker of the failed proxy connections
+   */
+  public ProxyHealthTracker getHealthTracker() {
+    return healthTracker;
+  }
+
+  /**
+   * @return load balancer of the matching proxies
+   */
+  public ProxyLoadBalancer getLoadBalancer() {
+    return loadBalancer;
+  }
+
+  /**
+   * @return counters of the selected proxies
+   */
+  public ProxySelectionStatistics getStatistics() {
+    return statistics;
+  }
+
+  /**
+   * @param proxyAddress address of a proxy, either with the configured host or the resolved IP
+   * @return counter of the requests in flight to the proxy, null if it is unknown
+   */
+  public AtomicInteger getInFlightCounter(SocketAddress proxyAddress) {
+    String key = proxyAddress instanceof InetSocketAddress ? addressResolver.findKey((InetSocketAddress)proxyAddress) : null;
+    return key != null ? loadBalancer.getInFlightCounter(key) : null;
+  }
+
+  @Override
+  public void close() {
+    addressResolver.close();
+  }
+
+  private ProxySelection createSelection(String host) {
+    List<HttpClientProperties.ProxyConfiguration> configurations = this.proxyConfigurationSelector.select(host)
+        .filter(config -> StringUtils.isNoneBlank(config.getProxyHost()))
+        .collect(Collectors.toList());
+    if (configurations.isEmpty()) {
+      LOG.debug("No matching proxies for {}", host);
+      return ProxySelection.ordered(DIRECT);
+    }
+    List<Proxy> proxies = configurations.stream()
+        .map(config -> addressResolver.getProxy(config.getProxyHost(), config.getProxyPort()))
+        .collect(Collectors.toUnmodifiableList());
+    LOG.debug("Matching proxies for {}: {}", host, proxies);
+    return loadBalancer.createSelection(host, configurations, proxies);
+  }
+
+  /**
+   * Resets the failures of a proxy once a connection through it succeeded
+   *
+   * @param sa address of the proxy, either the selected address or with the resolved IP
+   */
+  public void connectSucceeded(SocketAddress sa) {
+    if (!(sa instanceof InetSocketAddress) || !healthTracker.hasFailures() || healthTracker.connectSucceeded((InetSocketAddress)sa)) {
+      return;
+    }
+    String key = addressResolver.findKey((InetSocketAddress)sa);
+    InetSocketAddress address = key != null ? addressResolver.getAddress(key) : null;
+    if (address != null) {
+      healthTracker.connectSucceeded(address);
+    }
+  }
+
   @Override
   public void connectFailed(URI uri, SocketAddress sa, IOException ioe) {
-    getDefault().connectFailed(uri, sa, ioe);
+    String key = sa instanceof InetSocketAddress ? addressResolver.findKey((InetSocketAddress)sa) : null;
+    if (key == null) {
+      getDefault().connectFailed(uri, sa, ioe);
+      return;
+    }
+    LOG.debug("Connection to proxy {} failed for {}: {}", key, uri, ioe == null ? null : ioe.getMessage());
+    healthTracker.connectFailed(key, addressResolver.getAddress(key));
   }
 }
@@ -0,0 +1,74 @@
+/*
+ * Copyright (c) 2020. dev-eth0.de All rights reserved.
+ */
+
+package de.dev.eth0.springboot.httpclient.impl.proxy;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+import org.apache.http.HttpClientConnection;
+import org.apache.http.HttpException;
+import org.apache.http.HttpHost;
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.protocol.HttpClientContext;
+import org.apache.http.conn.routing.RouteInfo;
+import org.apache.http.protocol.HttpContext;
+
+import de.dev.eth0.springboot.httpclient.impl.PhaseTimingHttpRequestExecutor;
+import de.dev.eth0.springboot.httpclient.impl.RequestPhaseListener;
+
+/**
+ * Request executor counting the requests in flight per proxy, used to balance by the least requests in flight
+ * <p>
+ * A request is in flight until its response headers are received. The request phases are timed as well, as a client
+ * only has one request executor.
+ */
+public class InFlightTrackingHttpRequestExecutor extends PhaseTimingHttpRequestExecutor {
+
+  private final ConfigurableProxySelector proxySelector;
+
+  public InFlightTrackingHttpRequestExecutor(ConfigurableProxySelector proxySelector) {
+    this(proxySelector, null);
+  }
+
+  /**
+   * @param proxySelector proxy selector holding the counters
+   * @param requestPhaseListener listener of the phases, null disables the timing
+   */
+  public InFlightTrackingHttpRequestExecutor(ConfigurableProxySelector proxySelector, RequestPhaseListener requestPhaseListener) {
+    this(proxySelector, requestPhaseListener, null);
+  }
+
+  /**
+   * @param proxySelector proxy selector holding the counters
+   * @param requestPhaseListener listener of the phases, null disables the timing
+   * @param requestFailureListener listener of the failed executions, may be null
+   */
+  public InFlightTrackingHttpRequestExecutor(ConfigurableProxySelector proxySelector, RequestPhaseListener requestPhaseListener,
+      BiConsumer<HttpContext, Exception> requestFailureListener) {
+    super(requestPhaseListener, requestFailureListener);
+    this.proxySelector = proxySelector;
+  }
+
+  @Override
+  public HttpResponse execute(HttpRequest request, HttpClientConnection conn, HttpContext context) throws IOException, HttpException {
+    RouteInfo route = HttpClientContext.adapt(context).getHttpRoute();
+    HttpHost proxy = route != null ? route.getProxyHost() : null;
+    AtomicInteger inFlight = proxy != null
+        ? proxySelector.getInFlightCounter(InetSocketAddress.createUnresolved(proxy.getHostName(), proxy.getPort()))
+        : null;
+    if (inFlight == null) {
+      return super.execute(request, conn, context);
+    }
+    inFlight.incrementAndGet();
+    try {
+      return super.execute(request, conn, context);
+    }
+    finally {
+      inFlight.decrementAndGet();
+    }
+  }
+}
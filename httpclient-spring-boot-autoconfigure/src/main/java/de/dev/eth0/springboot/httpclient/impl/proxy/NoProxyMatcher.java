@@ -0,0 +1,396 @@
+/*
+ * Copyright (c) 2020. dev-eth0.de All rights reserved.
+ */
+
+package de.dev.eth0.springboot.httpclient.impl.proxy;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Matches hosts which are accessed without a proxy.
+ * <p>
+ * Supported entries:
+ * <ul>
+ * <li><code>*</code> matches all hosts</li>
+ * <li>hostnames (e.g. <code>intranet.example.com</code>) match exactly</li>
+ * <li>domain suffixes (e.g. <code>.example.com</code> or <code>*.example.com</code>) match the domain and all subdomains</li>
+ * <li>IP addresses (e.g. <code>10.1.2.3</code>) and CIDR ranges (e.g. <code>10.0.0.0/8</code> or <code>fd00::/8</code>)
+ * match IP literals, IPv4-mapped IPv6 literals (e.g. <code>::ffff:10.1.2.3</code>) also match the IPv4 entries</li>
+ * </ul>
+ * The hostnames are stored in a trie of the reversed hostname, the CIDR ranges in binary prefix tries, so the lookup only
+ * depends on the length of the host and not on the number of entries.
+ */
+public class NoProxyMatcher {
+
+  private static final Logger LOG = LoggerFactory.getLogger(NoProxyMatcher.class);
+
+  private static final String WILDCARD = "*";
+  private static final String WILDCARD_SUFFIX_PREFIX = "*.";
+  private static final int IPV4_BITS = 32;
+  private static final int IPV6_BITS = 128;
+  private static final int IPV4_MAPPED_BITS = IPV6_BITS - IPV4_BITS;
+  private static final int IPV6_BYTES = IPV6_BITS / 8;
+
+  private final HostNode hosts = new HostNode();
+  private final PrefixNode ipv4Ranges = new PrefixNode();
+  private final PrefixNode ipv6Ranges = new PrefixNode();
+  private boolean matchAll;
+  private boolean empty = true;
+
+  /**
+   * @param entries configured entries, invalid entries are skipped
+   */
+  public NoProxyMatcher(String[] entries) {
+    if (entries == null) {
+      return;
+    }
+    for (String entry : entries) {
+      if (StringUtils.isNotBlank(entry)) {
+        add(entry.trim().toLowerCase(Locale.ROOT));
+      }
+    }
+  }
+
+  /**
+   * @param host requested host, IPv6 literals may be enclosed in brackets
+   * @return true if the host should be accessed without a proxy
+   */
+  public boolean matches(String host) {
+    if (empty || host == null || host.isEmpty()) {
+      return false;
+    }
+    if (matchAll) {
+      return true;
+    }
+    String normalizedHost = normalize(host);
+    long ipv4 = parseIpv4(normalizedHost);
+    if (ipv4 >= 0) {
+      return ipv4Ranges.matches(ipv4, IPV4_BITS);
+    }
+    if (normalizedHost.indexOf(':') >= 0) {
+      byte[] ipv6 = parseIpv6(normalizedHost);
+      if (ipv6 == null) {
+        return false;
+      }
+      return isIpv4Mapped(ipv6) && ipv4Ranges.matches(toIpv4(ipv6), IPV4_BITS) || ipv6Ranges.matches(ipv6);
+    }
+    return hosts.matches(normalizedHost);
+  }
+
+  /**
+   * @return true if no entries are configured
+   */
+  public boolean isEmpty() {
+    return empty;
+  }
+
+  private void add(String entry) {
+    empty = false;
+    if (WILDCARD.equals(entry)) {
+      matchAll = true;
+      return;
+    }
+    int slash = entry.indexOf('/');
+    String address = normalize(slash >= 0 ? entry.substring(0, slash) : entry);
+    long ipv4 = parseIpv4(address);
+    byte[] ipv6 = ipv4 < 0 && address.indexOf(':') >= 0 ? parseIpv6(address) : null;
+    if (ipv4 < 0 && ipv6 == null) {
+      if (slash >= 0) {
+        LOG.warn("Invalid no proxy entry {}, skipping", entry);
+      }
+      else if (address.startsWith(WILDCARD_SUFFIX_PREFIX)) {
+        hosts.add(address.substring(WILDCARD_SUFFIX_PREFIX.length()), true);
+      }
+      else if (address.startsWith(".")) {
+        hosts.add(address.substring(1), true);
+      }
+      else {
+        hosts.add(address, false);
+      }
+      return;
+    }
+    int bits = ipv4 >= 0 ? IPV4_BITS : IPV6_BITS;
+    int prefixLength = slash >= 0 ? parsePrefixLength(entry.substring(slash + 1), bits) : bits;
+    if (prefixLength < 0) {
+      LOG.warn("Invalid prefix length in no proxy entry {}, skipping", entry);
+    }
+    else if (ipv4 >= 0) {
+      ipv4Ranges.add(ipv4, IPV4_BITS, prefixLength);
+    }
+    else if (isIpv4Mapped(ipv6) && prefixLength >= IPV4_MAPPED_BITS) {
+      ipv4Ranges.add(toIpv4(ipv6), IPV4_BITS, prefixLength - IPV4_MAPPED_BITS);
+    }
+    else {
+      ipv6Ranges.add(ipv6, prefixLength);
+    }
+  }
+
+  /**
+   * Removes the brackets of IPv6 literals and the trailing dot of fully qualified hostnames
+   */
+  private static String normalize(String host) {
+    String result = host;
+    if (result.length() > 1 && result.charAt(0) == '[' && result.charAt(result.length() - 1) == ']') {
+      result = result.substring(1, result.length() - 1);
+    }
+    if (result.length() > 1 && result.charAt(result.length() - 1) == '.') {
+      result = result.substring(0, result.length() - 1);
+    }
+    return result;
+  }
+
+  private static int parsePrefixLength(String value, int bits) {
+    try {
+      int prefixLength = Integer.parseInt(value.trim());
+      return prefixLength >= 0 && prefixLength <= bits ? prefixLength : -1;
+    }
+    catch (NumberFormatException ex) {
+      return -1;
+    }
+  }
+
+  /**
+   * Parses dotted decimal IPv4 literals without allocating
+   *
+   * @return the address as unsigned value, -1 if the host is no IPv4 literal
+   */
+  static long parseIpv4(String host) {
+    return parseIpv4(host, 0, host.length());
+  }
+
+  private static long parseIpv4(String host, int start, int end) {
+    long address = 0;
+    int octet = -1;
+    int dots = 0;
+    for (int i = start; i < end; i++) {
+      char c = host.charAt(i);
+      if (c >= '0' && c <= '9') {
+        octet = (octet < 0 ? 0 : octet * 10) + (c - '0');
+        if (octet > 255) {
+          return -1;
+        }
+      }
+      else if (c == '.' && octet >= 0 && dots < 3) {
+        address = address << 8 | octet;
+        octet = -1;
+        dots++;
+      }
+      else {
+        return -1;
+      }
+    }
+    return dots == 3 && octet >= 0 ? address << 8 | octet : -1;
+  }
+
+  /**
+   * Parses IPv6 literals with an optional zone id, without looking them up by DNS
+   *
+   * @return the address bytes, null if the host is no IPv6 literal
+   */
+  static byte[] parseIpv6(String host) {
+    int end = host.indexOf('%');
+    if (end < 0) {
+      end = host.length();
+    }
+    byte[] address = new byte[IPV6_BYTES];
+    int length = 0;
+    int compressed = -1;
+    int i = 0;
+    if (host.startsWith("::")) {
+      compressed = 0;
+      i = 2;
+    }
+    while (i < end) {
+      int groupStart = i;
+      int group = 0;
+      while (i < end && i - groupStart < 4 && hexDigit(host.charAt(i)) >= 0) {
+        group = group << 4 | hexDigit(host.charAt(i));
+        i++;
+      }
+      if (i < end && host.charAt(i) == '.') {
+        // an embedded IPv4 address ends the literal
+        long ipv4 = parseIpv4(host, groupStart, end);
+        if (ipv4 < 0 || length > IPV6_BYTES - 4) {
+          return null;
+        }
+        for (int shift = 24; shift >= 0; shift -= 8) {
+          address[length++] = (byte)(ipv4 >>> shift);
+        }
+        break;
+      }
+      if (i == groupStart || length > IPV6_BYTES - 2) {
+        return null;
+      }
+      address[length++] = (byte)(group >>> 8);
+      address[length++] = (byte)group;
+      if (i == end) {
+        break;
+      }
+      if (host.charAt(i) != ':' || ++i == end) {
+        return null;
+      }
+      if (host.charAt(i) == ':') {
+        if (compressed >= 0) {
+          return null;
+        }
+        compressed = length;
+        i++;
+      }
+    }
+    if (compressed < 0) {
+      return length == IPV6_BYTES ? address : null;
+    }
+    if (length == IPV6_BYTES) {
+      return null;
+    }
+    int tail = length - compressed;
+    System.arraycopy(address, compressed, address, IPV6_BYTES - tail, tail);
+    Arrays.fill(address, compressed, IPV6_BYTES - tail, (byte)0);
+    return address;
+  }
+
+  private static int hexDigit(char c) {
+    if (c >= '0' && c <= '9') {
+      return c - '0';
+    }
+    if (c >= 'a' && c <= 'f') {
+      return c - 'a' + 10;
+    }
+    if (c >= 'A' && c <= 'F') {
+      return c - 'A' + 10;
+    }
+    return -1;
+  }
+
+  /**
+   * @return true for addresses of the form <code>::ffff:a.b.c.d</code>
+   */
+  private static boolean isIpv4Mapped(byte[] address) {
+    for (int i = 0; i < 10; i++) {
+      if (address[i] != 0) {
+        return false;
+      }
+    }
+    return address[10] == (byte)0xff && address[11] == (byte)0xff;
+  }
+
+  private static long toIpv4(byte[] address) {
+    return (address[12] & 0xffL) << 24 | (address[13] & 0xffL) << 16 | (address[14] & 0xffL) << 8 | address[15] & 0xffL;
+  }
+
+  /**
+   * Node in the trie of the reversed hostname
+   */
+  private static final class HostNode {
+
+    private final Map<Character, HostNode> children = new HashMap<>();
+    /** an entry ends at this node */
+    private boolean exact;
+    /** a domain suffix ends at this node */
+    private boolean suffix;
+
+    private void add(String host, boolean isSuffix) {
+      HostNode node = this;
+      for (int i = host.length() - 1; i >= 0; i--) {
+        node = node.children.computeIfAbsent(host.charAt(i), key -> new HostNode());
+      }
+      if (isSuffix) {
+        node.suffix = true;
+      }
+      else {
+        node.exact = true;
+      }
+    }
+
+    private boolean matches(String host) {
+      HostNode node = this;
+      for (int i = host.length() - 1; i >= 0; i--) {
+        node = node.children.get(Character.toLowerCase(host.charAt(i)));
+        if (node == null) {
+          return false;
+        }
+        if (node.suffix && (i == 0 || host.charAt(i - 1) == '.')) {
+          return true;
+        }
+      }
+      return node.exact;
+    }
+  }
+
+  /**
+   * Node in a binary trie of the address bits, a range matches if the walk passes a node terminating a prefix
+   */
+  private static final class PrefixNode {
+
+    private PrefixNode zero;
+    private PrefixNode one;
+    private boolean terminal;
+
+    private void add(long address, int bits, int prefixLength) {
+      PrefixNode node = this;
+      for (int i = 0; i < prefixLength && !node.terminal; i++) {
+        node = node.child((address >>> (bits - 1 - i) & 1) == 1);
+      }
+      node.terminal = true;
+    }
+
+    private void add(byte[] address, int prefixLength) {
+      PrefixNode node = this;
+      for (int i = 0; i < prefixLength && !node.terminal; i++) {
+        node = node.child(bit(address, i));
+      }
+      node.terminal = true;
+    }
+
+    private boolean matches(long address, int bits) {
+      PrefixNode node = this;
+      for (int i = 0; node != null; i++) {
+        if (node.terminal) {
+          return true;
+        }
+        if (i == bits) {
+          return false;
+        }
+        node = (address >>> (bits - 1 - i) & 1) == 1 ? node.one : node.zero;
+      }
+      return false;
+    }
+
+    private boolean matches(byte[] address) {
+      PrefixNode node = this;
+      for (int i = 0; node != null; i++) {
+        if (node.terminal) {
+          return true;
+        }
+        if (i == address.length * 8) {
+          return false;
+        }
+        node = bit(address, i) ? node.one : node.zero;
+      }
+      return false;
+    }
+
+    private PrefixNode child(boolean bit) {
+      if (bit) {
+        if (one == null) {
+          one = new PrefixNode();
+        }
+        return one;
+      }
+      if (zero == null) {
+        zero = new PrefixNode();
+      }
+      return zero;
+    }
+
+    private static boolean bit(byte[] address, int index) {
+      return (address[index / 8] >>> (7 - index % 8) & 1) == 1;
+    }
+  }
+}
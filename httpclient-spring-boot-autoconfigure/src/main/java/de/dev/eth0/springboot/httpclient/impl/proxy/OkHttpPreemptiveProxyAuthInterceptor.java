@@ -0,0 +1,46 @@
+/*
+ * Copyright (c) 2020. dev-eth0.de All rights reserved.
+ */
+
+package de.dev.eth0.springboot.httpclient.impl.proxy;
+
+import java.io.IOException;
+import java.net.Proxy;
+
+import okhttp3.Connection;
+import okhttp3.Interceptor;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.Route;
+
+/**
+ * Network interceptor adding the precomputed proxy credentials to plain HTTP requests sent through a proxy
+ * <p>
+ * Requests through a tunnel are authenticated by the {@link OkHttpProxyAuthenticator} when the tunnel is created.
+ */
+public class OkHttpPreemptiveProxyAuthInterceptor implements Interceptor {
+
+  private final OkHttpProxyAuthenticator authenticator;
+
+  public OkHttpPreemptiveProxyAuthInterceptor(OkHttpProxyAuthenticator authenticator) {
+    this.authenticator = authenticator;
+  }
+
+  @Override
+  public Response intercept(Chain chain) throws IOException {
+    Request request = chain.request();
+    Connection connection = chain.connection();
+    if (connection == null || request.header("Proxy-Authorization") != null) {
+      return chain.proceed(request);
+    }
+    Route route = connection.route();
+    if (route.requiresTunnel() || route.proxy().type() != Proxy.Type.HTTP) {
+      return chain.proceed(request);
+    }
+    String credentials = authenticator.getPreemptiveCredentials(route.proxy());
+    if (credentials == null) {
+      return chain.proceed(request);
+    }
+    return chain.proceed(request.newBuilder().header("Proxy-Authorization", credentials).build());
+  }
+}
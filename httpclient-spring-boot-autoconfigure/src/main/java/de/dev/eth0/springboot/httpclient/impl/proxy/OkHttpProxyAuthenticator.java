@@ -9,7 +9,6 @@ import java.net.Proxy;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.function.Function;
 import java.util.stream.Collectors;
 import org.apache.commons.lang3.StringUtils;
 
@@ -22,38 +21,80 @@ import okhttp3.Route;
 
 /**
  * Authenticator for Proxy requests
+ * <p>
+ * The configurations are looked up by the proxies hostname and port, so they stay valid if the resolved address changes.
+ * The credentials are computed once. Before a tunnel is created, OkHttp asks for credentials with a preemptive challenge,
+ * which is answered for all proxies with credentials, so the CONNECT is sent with them. The preemptive authentication of
+ * a proxy only affects plain HTTP requests, see {@link OkHttpPreemptiveProxyAuthInterceptor}.
  */
 public class OkHttpProxyAuthenticator implements Authenticator {
 
-  private final Map<Proxy, HttpClientProperties.ProxyConfiguration> proxyConfigurations;
+  static final String PREEMPTIVE_CHALLENGE = "OkHttp-Preemptive";
+
+  private final Map<String, ProxyCredentials> proxyCredentials;
 
   public OkHttpProxyAuthenticator(HttpClientProperties.ProxyConfiguration[] proxyConfig) {
-    this.proxyConfigurations = proxyConfig != null
+    this.proxyCredentials = proxyConfig != null
         ? Arrays.stream(proxyConfig)
         .filter(
             proxyConfiguration -> StringUtils.isNoneBlank(proxyConfiguration.getProxyUser(), proxyConfiguration.getProxyPassword()))
         .collect(Collectors.toMap(
-            proxyConfiguration -> new Proxy(Proxy.Type.HTTP, new InetSocketAddress(proxyConfiguration.getProxyHost(), proxyConfiguration.getProxyPort())),
-            Function.identity()))
+            proxyConfiguration -> ProxyAddressResolver.key(proxyConfiguration.getProxyHost(), proxyConfiguration.getProxyPort()),
+            ProxyCredentials::new,
+            (first, second) -> first))
         : new HashMap<>();
   }
 
   @Override
   public Request authenticate(Route route, Response response) {
-    if (proxyConfigurations.isEmpty()) {
+    if (proxyCredentials.isEmpty()) {
       return null;
     }
     if (response.request().header("Proxy-Authorization") != null) {
       // Give up, we already failed to authenticate
       return null;
     }
-    HttpClientProperties.ProxyConfiguration matchingConfig = this.proxyConfigurations.get(route.proxy());
-    if (matchingConfig != null) {
-      String credential = Credentials.basic(matchingConfig.getProxyUser(), matchingConfig.getProxyPassword());
-      return response.request().newBuilder()
-          .header("Proxy-Authorization", credential)
-          .build();
+    ProxyCredentials credentials = getCredentials(route.proxy());
+    if (credentials == null) {
+      return null;
+    }
+    return response.request().newBuilder()
+        .header("Proxy-Authorization", credentials.credential)
+        .build();
+  }
+
+  /**
+   * @param proxy proxy of the route
+   * @return precomputed credentials, if the proxy has enabled preemptive authentication
+   */
+  public String getPreemptiveCredentials(Proxy proxy) {
+    ProxyCredentials credentials = getCredentials(proxy);
+    return credentials != null && credentials.preemptive ? credentials.credential : null;
+  }
+
+  /**
+   * @return true if at least one proxy has enabled preemptive authentication
+   */
+  public boolean isPreemptive() {
+    return proxyCredentials.values().stream().anyMatch(credentials -> credentials.preemptive);
+  }
+
+  private ProxyCredentials getCredentials(Proxy proxy) {
+    if (!(proxy.address() instanceof InetSocketAddress)) {
+      return null;
+    }
+    InetSocketAddress proxyAddress = (InetSocketAddress)proxy.address();
+    return this.proxyCredentials.get(ProxyAddressResolver.key(proxyAddress.getHostString(), proxyAddress.getPort()));
+  }
+
+  private static final class ProxyCredentials {
+
+    private final String credential;
+    private final boolean preemptive;
+
+    private ProxyCredentials(HttpClientProperties.ProxyConfiguration proxyConfiguration) {
+      this.credential = Credentials.basic(proxyConfiguration.getProxyUser(), proxyConfiguration.getProxyPassword());
+      this.preemptive = proxyConfiguration.isPreemptiveAuthentication();
     }
-    return null;
   }
 }
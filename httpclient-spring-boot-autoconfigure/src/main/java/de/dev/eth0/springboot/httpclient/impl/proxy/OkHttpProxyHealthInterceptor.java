@@ -0,0 +1,34 @@
+/*
+ * Copyright (c) 2020. dev-eth0.de All rights reserved.
+ */
+
+package de.dev.eth0.springboot.httpclient.impl.proxy;
+
+import java.io.IOException;
+
+import okhttp3.Connection;
+import okhttp3.Interceptor;
+import okhttp3.Response;
+
+/**
+ * Network interceptor reporting the connections through a proxy as succeeded, so the failures of the proxy are reset
+ * <p>
+ * Nothing is looked up while no proxy has failures.
+ */
+public class OkHttpProxyHealthInterceptor implements Interceptor {
+
+  private final ConfigurableProxySelector proxySelector;
+
+  public OkHttpProxyHealthInterceptor(ConfigurableProxySelector proxySelector) {
+    this.proxySelector = proxySelector;
+  }
+
+  @Override
+  public Response intercept(Chain chain) throws IOException {
+    Connection connection = chain.connection();
+    if (connection != null && proxySelector.getHealthTracker().hasFailures()) {
+      proxySelector.connectSucceeded(connection.route().proxy().address());
+    }
+    return chain.proceed(chain.request());
+  }
+}
@@ -0,0 +1,42 @@
+/*
+ * Copyright (c) 2020. dev-eth0.de All rights reserved.
+ */
+
+package de.dev.eth0.springboot.httpclient.impl.proxy;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import okhttp3.Connection;
+import okhttp3.Interceptor;
+import okhttp3.Response;
+
+/**
+ * Network interceptor counting the requests in flight per proxy, used to balance by the least requests in flight
+ * <p>
+ * A request is in flight until its response headers are received.
+ */
+public class OkHttpProxyInFlightInterceptor implements Interceptor {
+
+  private final ConfigurableProxySelector proxySelector;
+
+  public OkHttpProxyInFlightInterceptor(ConfigurableProxySelector proxySelector) {
+    this.proxySelector = proxySelector;
+  }
+
+  @Override
+  public Response intercept(Chain chain) throws IOException {
+    Connection connection = chain.connection();
+    AtomicInteger inFlight = connection != null ? proxySelector.getInFlightCounter(connection.route().proxy().address()) : null;
+    if (inFlight == null) {
+      return chain.proceed(chain.request());
+    }
+    inFlight.incrementAndGet();
+    try {
+      return chain.proceed(chain.request());
+    }
+    finally {
+      inFlight.decrementAndGet();
+    }
+  }
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright (c) 2020. dev-eth0.de All rights reserved.
+ */
+
+package de.dev.eth0.springboot.httpclient.impl.proxy;
+
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Map;
+import java.util.Objects;
+import java.util.stream.Collectors;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.http.Header;
+import org.apache.http.HttpHost;
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpRequestInterceptor;
+import org.apache.http.auth.AUTH;
+import org.apache.http.auth.AuthScheme;
+import org.apache.http.auth.Credentials;
+import org.apache.http.client.protocol.HttpClientContext;
+import org.apache.http.impl.auth.BasicScheme;
+import org.apache.http.impl.client.BasicAuthCache;
+import org.apache.http.message.BasicHeader;
+import org.apache.http.protocol.HttpContext;
+
+import de.dev.eth0.springboot.httpclient.HttpClientProperties;
+
+/**
+ * Request interceptor enabling preemptive authentication for proxies
+ * <p>
+ * Each request without an auth cache gets one which already contains a basic scheme for all proxies with enabled
+ * preemptive authentication. This way the credentials are sent with the first request or CONNECT to the proxy instead of
+ * waiting for a 407 challenge. The interceptor has to run before the auth cache is evaluated, therefore it needs to be
+ * added as first interceptor.
+ */
+public class PreemptiveProxyAuthInterceptor implements HttpRequestInterceptor {
+
+  private final Map<String, AuthScheme> authSchemes;
+  private final ProxyAddressResolver addressResolver;
+
+  public PreemptiveProxyAuthInterceptor(HttpClientProperties.ProxyConfiguration[] proxyConfigurations, ProxyAddressResolver addressResolver) {
+    this.addressResolver = addressResolver;
+    this.authSchemes = Arrays.stream(proxyConfigurations)
+        .filter(HttpClientProperties.ProxyConfiguration::isPreemptiveAuthentication)
+        .filter(config -> StringUtils.isNoneBlank(config.getProxyHost(), config.getProxyUser(), config.getProxyPassword()))
+        .collect(Collectors.toMap(
+            config -> ProxyAddressResolver.key(config.getProxyHost(), config.getProxyPort()),
+            PrecomputedBasicScheme::new,
+            (first, second) -> first));
+  }
+
+  @Override
+  public void process(HttpRequest request, HttpContext context) {
+    HttpClientContext clientContext = HttpClientContext.adapt(context);
+    if (clientContext.getAuthCache() == null) {
+      clientContext.setAuthCache(new ProxyAuthCache());
+    }
+  }
+
+  /**
+   * @return true if at least one proxy has enabled preemptive authentication
+   */
+  public boolean isEnabled() {
+    return !authSchemes.isEmpty();
+  }
+
+  /**
+   * Auth cache returning the preemptive schemes for the proxies, all other hosts are cached as usual
+   */
+  private final class ProxyAuthCache extends BasicAuthCache {
+
+    @Override
+    public AuthScheme get(HttpHost host) {
+      AuthScheme authScheme = super.get(host);
+      if (authScheme != null || host == null) {
+        return authScheme;
+      }
+      String key = addressResolver.findKey(InetSocketAddress.createUnresolved(host.getHostName(), host.getPort()));
+      return key != null ? authSchemes.get(key) : null;
+    }
+  }
+
+  /**
+   * Basic scheme with the header computed upfront, the credentials of a proxy don't change
+   */
+  private static final class PrecomputedBasicScheme extends BasicScheme {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String user;
+    private final String password;
+    private final Header header;
+
+    private PrecomputedBasicScheme(HttpClientProperties.ProxyConfiguration proxyConfiguration) {
+      super(StandardCharsets.ISO_8859_1);
+      this.user = proxyConfiguration.getProxyUser();
+      this.password = proxyConfiguration.getProxyPassword();
+      this.header = createHeader(user, password);
+    }
+
+    @Override
+    public Header authenticate(Credentials credentials, HttpRequest request, HttpContext context) {
+      String credentialsUser = credentials.getUserPrincipal() != null ? credentials.getUserPrincipal().getName() : null;
+      if (Objects.equals(user, credentialsUser) && Objects.equals(password, credentials.getPassword())) {
+        return header;
+      }
+      return createHeader(credentialsUser, credentials.getPassword());
+    }
+
+    private static Header createHeader(String user, String password) {
+      String encoded = Base64.getEncoder().encodeToString((user + ":" + password).getBytes(StandardCharsets.ISO_8859_1));
+      return new BasicHeader(AUTH.PROXY_AUTH_RESP, "Basic " + encoded);
+    }
+  }
+}
@@ -0,0 +1,148 @@
+/*
+ * Copyright (c) 2020. dev-eth0.de All rights reserved.
+ */
+
+package de.dev.eth0.springboot.httpclient.impl.proxy;
+
+import java.io.Closeable;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.net.UnknownHostException;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import de.dev.eth0.springboot.httpclient.HttpClientProperties;
+
+/**
+ * Resolves the addresses of the configured proxies.
+ * <p>
+ * The proxies are resolved once on startup and refreshed in the background, so selecting a proxy never blocks on a DNS
+ * lookup. If a proxy can't be resolved, an unresolved address is used and the client resolves it on connect.
+ */
+public class ProxyAddressResolver implements Closeable {
+
+  private static final Logger LOG = LoggerFactory.getLogger(ProxyAddressResolver.class);
+
+  private final Map<String, Proxy> proxies = new ConcurrentHashMap<>();
+  private final List<Runnable> changeListeners = new CopyOnWriteArrayList<>();
+  private final ScheduledExecutorService scheduler;
+
+  /**
+   * @param proxyConfigurations configured proxies
+   * @param refreshInterval interval in ms in which the addresses are refreshed, 0 disables the refresh
+   */
+  public ProxyAddressResolver(Collection<HttpClientProperties.ProxyConfiguration> proxyConfigurations, long refreshInterval) {
+    proxyConfigurations.stream()
+        .filter(config -> StringUtils.isNotBlank(config.getProxyHost()))
+        .forEach(config -> getProxy(config.getProxyHost(), config.getProxyPort()));
+    if (refreshInterval > 0 && !proxies.isEmpty()) {
+      CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("proxy-address-resolver-");
+      threadFactory.setDaemon(true);
+      this.scheduler = Executors.newSingleThreadScheduledExecutor(threadFactory);
+      this.scheduler.scheduleWithFixedDelay(this::refresh, refreshInterval, refreshInterval, TimeUnit.MILLISECONDS);
+    }
+    else {
+      this.scheduler = null;
+    }
+  }
+
+  /**
+   * @param host hostname or IP of the proxy
+   * @param port port of the proxy
+   * @return proxy with the last resolved address
+   */
+  public Proxy getProxy(String host, int port) {
+    return proxies.computeIfAbsent(key(host, port), key -> new Proxy(Proxy.Type.HTTP, resolve(host, port, null)));
+  }
+
+  /**
+   * @param key key of the proxy, see {@link #key(String, int)}
+   * @return last resolved address of the proxy, null if it is unknown
+   */
+  public InetSocketAddress getAddress(String key) {
+    Proxy proxy = proxies.get(key);
+    return proxy != null ? (InetSocketAddress)proxy.address() : null;
+  }
+
+  /**
+   * @param address address of a proxy, either with the configured host or the resolved IP
+   * @return key of the matching configured proxy, null if it is unknown
+   */
+  public String findKey(InetSocketAddress address) {
+    String key = key(address.getHostString(), address.getPort());
+    if (proxies.containsKey(key)) {
+      return key;
+    }
+    for (Map.Entry<String, Proxy> entry : proxies.entrySet()) {
+      InetSocketAddress current = (InetSocketAddress)entry.getValue().address();
+      if (current.getPort() == address.getPort() && !current.isUnresolved()
+          && current.getAddress().getHostAddress().equals(address.getHostString())) {
+        return entry.getKey();
+      }
+    }
+    return null;
+  }
+
+  /**
+   * @param listener called after the address of at least one proxy changed
+   */
+  public void addChangeListener(Runnable listener) {
+    changeListeners.add(listener);
+  }
+
+  /**
+   * Resolves all proxies again, the previous address is kept if the resolution fails
+   */
+  public void refresh() {
+    boolean changed = false;
+    for (Map.Entry<String, Proxy> entry : proxies.entrySet()) {
+      InetSocketAddress current = (InetSocketAddress)entry.getValue().address();
+      InetSocketAddress resolved = resolve(current.getHostString(), current.getPort(), current);
+      if (!resolved.equals(current)) {
+        LOG.info("Address of proxy {} changed to {}", entry.getKey(), resolved);
+        entry.setValue(new Proxy(Proxy.Type.HTTP, resolved));
+        changed = true;
+      }
+    }
+    if (changed) {
+      changeListeners.forEach(Runnable::run);
+    }
+  }
+
+  @Override
+  public void close() {
+    if (scheduler != null) {
+      scheduler.shutdownNow();
+    }
+  }
+
+  /**
+   * @param host hostname or IP of the proxy
+   * @param port port of the proxy
+   * @return key identifying the proxy, independent of its resolved address
+   */
+  public static String key(String host, int port) {
+    return host + ":" + port;
+  }
+
+  private static InetSocketAddress resolve(String host, int port, InetSocketAddress fallback) {
+    try {
+      return new InetSocketAddress(InetAddress.getByName(host), port);
+    }
+    catch (UnknownHostException ex) {
+      LOG.warn("Could not resolve proxy {}: {}", key(host, port), ex.getMessage());
+      return fallback != null ? fallback : InetSocketAddress.createUnresolved(host, port);
+    }
+  }
+}
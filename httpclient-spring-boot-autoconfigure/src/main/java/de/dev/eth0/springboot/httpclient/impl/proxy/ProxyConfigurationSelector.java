@@ -4,22 +4,25 @@
 
 package de.dev.eth0.springboot.httpclient.impl.proxy;
 
-import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
 import java.util.stream.Stream;
 
 import de.dev.eth0.springboot.httpclient.HttpClientProperties;
+import de.dev.eth0.springboot.httpclient.impl.HostPatternMatcher;
 
 /**
  * Selector for HostConfigurations based on their pattern
+ * <p>
+ * The patterns are compiled once into a {@link HostPatternMatcher}.
  */
 public class ProxyConfigurationSelector {
 
-  private final List<HttpClientProperties.ProxyConfiguration> proxyConfigurations;
+  private final HostPatternMatcher<HttpClientProperties.ProxyConfiguration> hostPatternMatcher;
 
   public ProxyConfigurationSelector(List<HttpClientProperties.ProxyConfiguration> proxyConfigurations) {
-    this.proxyConfigurations = Optional.ofNullable(proxyConfigurations).orElse(List.of());
+    this.hostPatternMatcher = HostPatternMatcher.compile(Optional.ofNullable(proxyConfigurations).orElse(List.of()),
+        HttpClientProperties.ProxyConfiguration::getHostPatterns);
   }
 
   /**
@@ -27,14 +30,7 @@ public class ProxyConfigurationSelector {
    * @return Stream with all {@link HttpClientProperties.ProxyConfiguration} that match the given hostPattern
    */
   public Stream<HttpClientProperties.ProxyConfiguration> select(String host) {
-    return proxyConfigurations.stream().filter(config -> matches(config, host));
-  }
-
-  private boolean matches(HttpClientProperties.ProxyConfiguration config, String host) {
-    if (config.getHostPatterns().length == 0) {
-      return true;
-    }
-    return Arrays.stream(config.getHostPatterns()).anyMatch(pattern -> pattern.matcher(host).matches());
+    return hostPatternMatcher.matchAll(host).stream();
   }
 
 }
@@ -0,0 +1,40 @@
+/*
+ * Copyright (c) 2020. dev-eth0.de All rights reserved.
+ */
+
+package de.dev.eth0.springboot.httpclient.impl.proxy;
+
+import java.net.InetSocketAddress;
+import org.apache.http.auth.AuthScope;
+import org.apache.http.auth.Credentials;
+import org.apache.http.impl.client.BasicCredentialsProvider;
+
+/**
+ * Credentials provider for the configured proxies
+ * <p>
+ * The route planner uses the resolved IP of a proxy, so credentials stored for the configured hostname are also returned
+ * for the current address of the proxy.
+ */
+public class ProxyCredentialsProvider extends BasicCredentialsProvider {
+
+  private final ProxyAddressResolver addressResolver;
+
+  public ProxyCredentialsProvider(ProxyAddressResolver addressResolver) {
+    super();
+    this.addressResolver = addressResolver;
+  }
+
+  @Override
+  public Credentials getCredentials(AuthScope authscope) {
+    Credentials credentials = super.getCredentials(authscope);
+    if (credentials != null || authscope.getHost() == null || authscope.getPort() < 0) {
+      return credentials;
+    }
+    String key = addressResolver.findKey(InetSocketAddress.createUnresolved(authscope.getHost(), authscope.getPort()));
+    if (key == null) {
+      return null;
+    }
+    String proxyHost = key.substring(0, key.lastIndexOf(':'));
+    return super.getCredentials(new AuthScope(proxyHost, authscope.getPort(), authscope.getRealm(), authscope.getScheme()));
+  }
+}
@@ -0,0 +1,236 @@
+/*
+ * Copyright (c) 2020. dev-eth0.de All rights reserved.
+ */
+
+package de.dev.eth0.springboot.httpclient.impl.proxy;
+
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+import java.util.stream.Collectors;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import de.dev.eth0.springboot.httpclient.HttpClientProperties;
+
+/**
+ * Tracks failed connections to the configured proxies.
+ * <p>
+ * A proxy is marked as down after a number of consecutive failures. Proxies which are down are moved to the end of the
+ * selected proxies, so they are only used if no other proxy is available. After the retry interval the proxy is used
+ * again, if it fails again it is marked as down with a doubled retry interval. A proxy without failures for the maximum
+ * retry interval or with a successful connection is considered healthy again.
+ * <p>
+ * The health is kept by the address of the proxies, as selected by the {@link ProxyAddressResolver}, so the selected
+ * proxies are looked up without creating their key.
+ */
+public class ProxyHealthTracker {
+
+  private static final Logger LOG = LoggerFactory.getLogger(ProxyHealthTracker.class);
+
+  private final Map<InetSocketAddress, ProxyHealth> health = new ConcurrentHashMap<>();
+  private final int failureThreshold;
+  private final long initialRetryInterval;
+  private final long maxRetryInterval;
+  private final LongSupplier clock;
+
+  public ProxyHealthTracker(HttpClientProperties.ProxySelectorConfiguration configuration) {
+    this(configuration, System::nanoTime);
+  }
+
+  ProxyHealthTracker(HttpClientProperties.ProxySelectorConfiguration configuration, LongSupplier clock) {
+    this.failureThreshold = Math.max(1, configuration.getFailureThreshold());
+    this.initialRetryInterval = TimeUnit.MILLISECONDS.toNanos(configuration.getInitialRetryInterval());
+    this.maxRetryInterval = Math.max(initialRetryInterval, TimeUnit.MILLISECONDS.toNanos(configuration.getMaxRetryInterval()));
+    this.clock = clock;
+  }
+
+  /**
+   * @param key key of the proxy, see {@link ProxyAddressResolver#key(String, int)}
+   * @param address current address of the proxy, see {@link ProxyAddressResolver#getAddress(String)}
+   */
+  public void connectFailed(String key, InetSocketAddress address) {
+    health.computeIfAbsent(address, a -> new ProxyHealth(key)).failed(clock.getAsLong());
+  }
+
+  /**
+   * Resets the failures and retry interval of a proxy
+   *
+   * @param address current address of the proxy
+   * @return true if the proxy had failures
+   */
+  public boolean connectSucceeded(InetSocketAddress address) {
+    if (health.isEmpty()) {
+      return false;
+    }
+    ProxyHealth proxyHealth = health.remove(address);
+    if (proxyHealth != null && proxyHealth.isDown(clock.getAsLong())) {
+      LOG.info("Proxy {} is available again", proxyHealth.key);
+    }
+    return proxyHealth != null;
+  }
+
+  /**
+   * @return true if any proxy has failures
+   */
+  public boolean hasFailures() {
+    return !health.isEmpty();
+  }
+
+  /**
+   * @param address current address of the proxy
+   * @return true if the proxy is not marked as down
+   */
+  public boolean isAvailable(InetSocketAddress address) {
+    ProxyHealth proxyHealth = health.get(address);
+    return proxyHealth == null || !proxyHealth.isDown(clock.getAsLong());
+  }
+
+  /**
+   * Moves the health of the proxies with a changed address to their new address
+   *
+   * @param addresses current address by key of the proxies
+   */
+  public void updateAddresses(Function<String, InetSocketAddress> addresses) {
+    for (Map.Entry<InetSocketAddress, ProxyHealth> entry : health.entrySet()) {
+      InetSocketAddress address = addresses.apply(entry.getValue().key);
+      if (address != null && !address.equals(entry.getKey()) && health.remove(entry.getKey(), entry.getValue())) {
+        health.putIfAbsent(address, entry.getValue());
+      }
+    }
+  }
+
+  /**
+   * @param proxies selected proxies
+   * @return the given list if all proxies are available, otherwise a copy with the proxies marked as down at the end
+   */
+  public List<Proxy> prioritize(List<Proxy> proxies) {
+    if (health.isEmpty() || proxies.size() < 2) {
+      return proxies;
+    }
+    long now = clock.getAsLong();
+    List<Proxy> available = null;
+    List<Proxy> down = null;
+    for (int i = 0; i < proxies.size(); i++) {
+      Proxy proxy = proxies.get(i);
+      if (isDown(proxy, now)) {
+        if (down == null) {
+          available = new ArrayList<>(proxies.subList(0, i));
+          down = new ArrayList<>();
+        }
+        down.add(proxy);
+      }
+      else if (available != null) {
+        available.add(proxy);
+      }
+    }
+    if (down == null) {
+      return proxies;
+    }
+    available.addAll(down);
+    return Collections.unmodifiableList(available);
+  }
+
+  /**
+   * @return current state of all proxies with failed connections
+   */
+  public List<ProxyState> getStates() {
+    long now = clock.getAsLong();
+    return health.entrySet().stream()
+        .map(entry -> entry.getValue().getState(now))
+        .collect(Collectors.toList());
+  }
+
+  private boolean isDown(Proxy proxy, long now) {
+    if (!(proxy.address() instanceof InetSocketAddress)) {
+      return false;
+    }
+    ProxyHealth proxyHealth = health.get(proxy.address());
+    return proxyHealth != null && proxyHealth.isDown(now);
+  }
+
+  private final class ProxyHealth {
+
+    private final String key;
+    private int consecutiveFailures;
+    private int retries;
+    private long lastFailure;
+    private volatile long downUntil;
+    private volatile boolean down;
+
+    private ProxyHealth(String key) {
+      this.key = key;
+    }
+
+    private synchronized void failed(long now) {
+      if (consecutiveFailures > 0 && now - (down ? Math.max(lastFailure, downUntil) : lastFailure) > maxRetryInterval) {
+        consecutiveFailures = 0;
+        retries = 0;
+      }
+      consecutiveFailures++;
+      lastFailure = now;
+      if (consecutiveFailures >= failureThreshold) {
+        long retryInterval = retries < Long.numberOfLeadingZeros(initialRetryInterval) - 1
+            ? Math.min(initialRetryInterval << retries, maxRetryInterval) : maxRetryInterval;
+        retries++;
+        downUntil = now + retryInterval;
+        down = true;
+        LOG.warn("Proxy {} marked as down for {} ms after {} consecutive failures", key,
+            TimeUnit.NANOSECONDS.toMillis(retryInterval), consecutiveFailures);
+      }
+    }
+
+    private boolean isDown(long now) {
+      return down && downUntil - now > 0;
+    }
+
+    private synchronized ProxyState getState(long now) {
+      return new ProxyState(key, !isDown(now), consecutiveFailures,
+          isDown(now) ? TimeUnit.NANOSECONDS.toMillis(downUntil - now) : 0);
+    }
+  }
+
+  /**
+   * Snapshot of the state of a proxy
+   */
+  public static final class ProxyState {
+
+    private final String proxy;
+    private final boolean available;
+    private final int consecutiveFailures;
+    private final long retryIn;
+
+    ProxyState(String proxy, boolean available, int consecutiveFailures, long retryIn) {
+      this.proxy = proxy;
+      this.available = available;
+      this.consecutiveFailures = consecutiveFailures;
+      this.retryIn = retryIn;
+    }
+
+    public String getProxy() {
+      return proxy;
+    }
+
+    public boolean isAvailable() {
+      return available;
+    }
+
+    public int getConsecutiveFailures() {
+      return consecutiveFailures;
+    }
+
+    /**
+     * @return time in ms until the proxy is used again, 0 if it is available
+     */
+    public long getRetryIn() {
+      return retryIn;
+    }
+  }
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright (c) 2020. dev-eth0.de All rights reserved.
+ */
+
+package de.dev.eth0.springboot.httpclient.impl.proxy;
+
+import java.net.Proxy;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.apache.commons.lang3.StringUtils;
+
+import de.dev.eth0.springboot.httpclient.HttpClientProperties;
+
+/**
+ * Distributes the requests across the proxies matching a host.
+ * <p>
+ * The strategy of the first matching proxy configuration is applied to all matching proxies. All counters are created
+ * upfront, so the maps are never modified after construction and selecting a proxy doesn't need any locks.
+ */
+public class ProxyLoadBalancer {
+
+  private final Map<HttpClientProperties.ProxyConfiguration, AtomicLong> requestCounters = new IdentityHashMap<>();
+  private final Map<String, AtomicInteger> inFlight = new HashMap<>();
+  private final boolean trackingInFlight;
+
+  public ProxyLoadBalancer(Collection<HttpClientProperties.ProxyConfiguration> proxyConfigurations) {
+    boolean leastInFlight = false;
+    for (HttpClientProperties.ProxyConfiguration config : proxyConfigurations) {
+      requestCounters.put(config, new AtomicLong());
+      if (StringUtils.isNotBlank(config.getProxyHost())) {
+        inFlight.putIfAbsent(ProxyAddressResolver.key(config.getProxyHost(), config.getProxyPort()), new AtomicInteger());
+      }
+      leastInFlight |= config.getLoadBalancing() == HttpClientProperties.LoadBalancingStrategy.LEAST_IN_FLIGHT;
+    }
+    this.trackingInFlight = leastInFlight;
+  }
+
+  /**
+   * @param host requested host
+   * @param configurations matching proxy configurations in declaration order
+   * @param proxies proxies of the matching configurations
+   * @return selection applying the strategy of the first configuration
+   */
+  public ProxySelection createSelection(String host, List<HttpClientProperties.ProxyConfiguration> configurations, List<Proxy> proxies) {
+    HttpClientProperties.ProxyConfiguration first = configurations.get(0);
+    HttpClientProperties.LoadBalancingStrategy strategy = first.getLoadBalancing();
+    if (strategy == null || strategy == HttpClientProperties.LoadBalancingStrategy.NONE || proxies.size() < 2) {
+      return ProxySelection.ordered(proxies);
+    }
+    AtomicInteger[] counters = configurations.stream()
+        .map(config -> inFlight.get(ProxyAddressResolver.key(config.getProxyHost(), config.getProxyPort())))
+        .toArray(AtomicInteger[]::new);
+    int hashIndex = strategy == HttpClientProperties.LoadBalancingStrategy.CONSISTENT_HASH ? hashIndex(host, configurations) : 0;
+    return new ProxySelection(proxies, strategy, requestCounters.get(first), counters, hashIndex);
+  }
+
+  /**
+   * @param key key of the proxy, see {@link ProxyAddressResolver#key(String, int)}
+   * @return counter of the requests in flight, null if the proxy is unknown
+   */
+  public AtomicInteger getInFlightCounter(String key) {
+    return inFlight.get(key);
+  }
+
+  /**
+   * @return true if at least one proxy configuration balances by the requests in flight
+   */
+  public boolean isTrackingInFlight() {
+    return trackingInFlight;
+  }
+
+  /**
+   * Rendezvous hashing, each host keeps its proxy as long as it matches, even if other proxies are added or removed
+   */
+  private static int hashIndex(String host, List<HttpClientProperties.ProxyConfiguration> configurations) {
+    if (host == null) {
+      return 0;
+    }
+    int best = 0;
+    long bestScore = Long.MIN_VALUE;
+    for (int i = 0; i < configurations.size(); i++) {
+      HttpClientProperties.ProxyConfiguration config = configurations.get(i);
+      String key = ProxyAddressResolver.key(config.getProxyHost(), config.getProxyPort());
+      long score = mix(((long)host.hashCode() << 32) | (key.hashCode() & 0xffffffffL));
+      if (score > bestScore) {
+        bestScore = score;
+        best = i;
+      }
+    }
+    return best;
+  }
+
+  /**
+   * Finalizer of MurmurHash3, spreads the combined hash codes
+   */
+  private static long mix(long value) {
+    long hash = value;
+    hash ^= hash >>> 33;
+    hash *= 0xff51afd7ed558ccdL;
+    hash ^= hash >>> 33;
+    hash *= 0xc4ceb9fe1a85ec53L;
+    hash ^= hash >>> 33;
+    return hash;
+  }
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright (c) 2020. dev-eth0.de All rights reserved.
+ */
+
+package de.dev.eth0.springboot.httpclient.impl.proxy;
+
+import java.net.ConnectException;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.net.URI;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.client.reactive.ClientHttpConnector;
+import org.springframework.http.client.reactive.ClientHttpRequest;
+import org.springframework.http.client.reactive.ClientHttpResponse;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+
+import de.dev.eth0.springboot.httpclient.HttpClientProperties;
+import reactor.core.publisher.Mono;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.transport.ProxyProvider;
+
+/**
+ * Connector selecting the proxy of each request with the {@link ConfigurableProxySelector}
+ * <p>
+ * Reactor Netty only supports a single proxy per client, so a client is derived for each selected proxy and shares the
+ * connection provider and event loops of the base client. Requests are sent through the first selected proxy, failed
+ * connects to a proxy and the responses received through it are reported to the selector. Tunnels are always created with CONNECT, also for plain HTTP. The
+ * derived clients are kept per configured proxy and replaced once the proxy resolves to another address.
+ */
+public class ProxyRoutingClientHttpConnector implements ClientHttpConnector {
+
+  private final HttpClient httpClient;
+  private final ConfigurableProxySelector proxySelector;
+  private final Map<String, HttpClientProperties.ProxyConfiguration> credentials;
+  private final long connectTimeout;
+  private final ClientHttpConnector directConnector;
+  private final Map<String, ProxyConnector> proxyConnectors = new ConcurrentHashMap<>();
+
+  /**
+   * @param httpClient base client of all requests
+   * @param proxySelector selector of the proxies
+   * @param proxyConfigurations configured proxies, used for their credentials
+   * @param connectTimeout timeout in ms for connecting and creating the tunnel through a proxy
+   */
+  public ProxyRoutingClientHttpConnector(HttpClient httpClient, ConfigurableProxySelector proxySelector,
+      HttpClientProperties.ProxyConfiguration[] proxyConfigurations, long connectTimeout) {
+    this.httpClient = httpClient;
+    this.proxySelector = proxySelector;
+    this.credentials = Arrays.stream(proxyConfigurations)
+        .filter(proxyConfiguration -> StringUtils.isNoneBlank(proxyConfiguration.getProxyUser(), proxyConfiguration.getProxyPassword()))
+        .collect(Collectors.toMap(
+            proxyConfiguration -> ProxyAddressResolver.key(proxyConfiguration.getProxyHost(), proxyConfiguration.getProxyPort()),
+            Function.identity(),
+            (first, second) -> first));
+    this.connectTimeout = connectTimeout;
+    this.directConnector = new ReactorClientHttpConnector(httpClient);
+  }
+
+  @Override
+  public Mono<ClientHttpResponse> connect(HttpMethod method, URI uri, Function<? super ClientHttpRequest, Mono<Void>> requestCallback) {
+    List<Proxy> proxies = proxySelector.select(uri);
+    Proxy proxy = proxies.isEmpty() ? Proxy.NO_PROXY : proxies.get(0);
+    if (proxy.type() != Proxy.Type.HTTP || !(proxy.address() instanceof InetSocketAddress)) {
+      return directConnector.connect(method, uri, requestCallback);
+    }
+    InetSocketAddress address = (InetSocketAddress)proxy.address();
+    String proxyKey = getKey(address);
+    ProxyConnector proxyConnector = proxyConnectors.get(proxyKey);
+    if (proxyConnector == null || !proxyConnector.address.equals(address)) {
+      proxyConnector = proxyConnectors.compute(proxyKey,
+          (key, current) -> current != null && current.address.equals(address) ? current : new ProxyConnector(address, createConnector(key, address)));
+    }
+    return proxyConnector.connector
+        .connect(method, uri, requestCallback)
+        .doOnSuccess(response -> proxySelector.connectSucceeded(address))
+        .doOnError(ConnectException.class, ex -> proxySelector.connectFailed(uri, address, ex));
+  }
+
+  /**
+   * @return number of proxies with a derived client
+   */
+  public int getProxyConnectorCount() {
+    return proxyConnectors.size();
+  }
+
+  private ClientHttpConnector createConnector(String key, InetSocketAddress address) {
+    HttpClientProperties.ProxyConfiguration proxyConfiguration = credentials.get(key);
+    return new ReactorClientHttpConnector(httpClient.proxy(spec -> {
+      ProxyProvider.Builder builder = spec.type(ProxyProvider.Proxy.HTTP)
+          .address(address)
+          .connectTimeoutMillis(connectTimeout);
+      if (proxyConfiguration != null) {
+        builder.username(proxyConfiguration.getProxyUser())
+            .password(user -> proxyConfiguration.getProxyPassword());
+      }
+    }));
+  }
+
+  /**
+   * The selected address may be the resolved IP of a proxy, so the configured proxy is looked up by the resolver
+   *
+   * @return key of the configured proxy, host:port of the address if it isn't configured
+   */
+  private String getKey(InetSocketAddress address) {
+    String key = proxySelector.getAddressResolver().findKey(address);
+    return key != null ? key : ProxyAddressResolver.key(address.getHostString(), address.getPort());
+  }
+
+  private static final class ProxyConnector {
+
+    private final InetSocketAddress address;
+    private final ClientHttpConnector connector;
+
+    ProxyConnector(InetSocketAddress address, ClientHttpConnector connector) {
+      this.address = address;
+      this.connector = connector;
+    }
+  }
+}
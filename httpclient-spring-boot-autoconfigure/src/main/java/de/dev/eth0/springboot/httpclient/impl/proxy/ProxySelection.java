@@ -0,0 +1,116 @@
+/*
+ * Copyright (c) 2020. dev-eth0.de All rights reserved.
+ */
+
+package de.dev.eth0.springboot.httpclient.impl.proxy;
+
+import java.net.Proxy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import de.dev.eth0.springboot.httpclient.HttpClientProperties;
+
+/**
+ * Proxies matching a host together with the load balancing strategy of the first matching proxy configuration.
+ * <p>
+ * The orders for each possible first proxy are precomputed, so selecting the proxies for a request only needs atomic
+ * counters and doesn't allocate.
+ */
+public final class ProxySelection {
+
+  private final List<Proxy> proxies;
+  private final HttpClientProperties.LoadBalancingStrategy strategy;
+  private final List<List<Proxy>> preferredOrders;
+  private final AtomicLong requestCounter;
+  private final AtomicInteger[] inFlight;
+  private final int hashIndex;
+
+  ProxySelection(List<Proxy> proxies, HttpClientProperties.LoadBalancingStrategy strategy, AtomicLong requestCounter,
+      AtomicInteger[] inFlight, int hashIndex) {
+    this.proxies = proxies;
+    this.strategy = strategy;
+    this.requestCounter = requestCounter;
+    this.inFlight = inFlight;
+    this.hashIndex = hashIndex;
+    this.preferredOrders = strategy == HttpClientProperties.LoadBalancingStrategy.NONE ? List.of() : createPreferredOrders(proxies);
+  }
+
+  /**
+   * @param proxies proxies which are always used in the given order
+   * @return selection without load balancing
+   */
+  public static ProxySelection ordered(List<Proxy> proxies) {
+    return new ProxySelection(proxies, HttpClientProperties.LoadBalancingStrategy.NONE, null, null, 0);
+  }
+
+  /**
+   * @return the proxies ordered by the load balancing strategy, the remaining proxies are kept in declaration order as
+   * fallback
+   */
+  public List<Proxy> select() {
+    switch (strategy) {
+      case ROUND_ROBIN:
+        return preferredOrders.get(nextIndex());
+      case LEAST_IN_FLIGHT:
+        return preferredOrders.get(leastInFlightIndex());
+      case CONSISTENT_HASH:
+        return preferredOrders.get(hashIndex);
+      default:
+        return proxies;
+    }
+  }
+
+  /**
+   * @return matching proxies in declaration order
+   */
+  public List<Proxy> getProxies() {
+    return proxies;
+  }
+
+  public HttpClientProperties.LoadBalancingStrategy getStrategy() {
+    return strategy;
+  }
+
+  /**
+   * @return for each proxy a list starting with it, followed by the other proxies in declaration order
+   */
+  private static List<List<Proxy>> createPreferredOrders(List<Proxy> proxies) {
+    List<List<Proxy>> orders = new ArrayList<>(proxies.size());
+    for (int first = 0; first < proxies.size(); first++) {
+      List<Proxy> order = new ArrayList<>(proxies.size());
+      order.add(proxies.get(first));
+      for (int i = 0; i < proxies.size(); i++) {
+        if (i != first) {
+          order.add(proxies.get(i));
+        }
+      }
+      orders.add(Collections.unmodifiableList(order));
+    }
+    return orders;
+  }
+
+  private int nextIndex() {
+    return (int)Long.remainderUnsigned(requestCounter.getAndIncrement(), proxies.size());
+  }
+
+  /**
+   * The search starts at a rotating index, so proxies with the same number of requests in flight are used in turn
+   */
+  private int leastInFlightIndex() {
+    int start = nextIndex();
+    int best = start;
+    int min = Integer.MAX_VALUE;
+    for (int offset = 0; offset < inFlight.length; offset++) {
+      int index = (start + offset) % inFlight.length;
+      int requests = inFlight[index].get();
+      if (requests < min) {
+        min = requests;
+        best = index;
+      }
+    }
+    return best;
+  }
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright (c) 2020. dev-eth0.de All rights reserved.
+ */
+
+package de.dev.eth0.springboot.httpclient.impl.proxy;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Bounded cache for the proxies selected per host.
+ * <p>
+ * Once the cache is full, an entry is evicted before a new one is added. The entries are evicted in a clock order, an
+ * entry which was hit since the clock passed it is skipped once, so frequently requested hosts stay cached. A hit only
+ * marks the entry and doesn't allocate or lock, the evictions are synchronized. The cached selections are shared by all
+ * callers.
+ */
+public class ProxySelectionCache {
+
+  private final int maxSize;
+  private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+  private final String[] clock;
+  private int hand;
+
+  private final LongAdder hitCount = new LongAdder();
+  private final LongAdder missCount = new LongAdder();
+  private final LongAdder evictionCount = new LongAdder();
+
+  /**
+   * @param maxSize maximum number of cached hosts, 0 disables the cache
+   */
+  public ProxySelectionCache(int maxSize) {
+    this.maxSize = Math.max(maxSize, 0);
+    this.clock = new String[this.maxSize];
+  }
+
+  /**
+   * @param host requested host
+   * @param loader function used to select the proxies if the host is not cached yet
+   * @return cached or newly selected proxies
+   */
+  public ProxySelection get(String host, Function<String, ProxySelection> loader) {
+    Entry entry = entries.get(host);
+    if (entry != null) {
+      hitCount.increment();
+      if (!entry.referenced) {
+        entry.referenced = true;
+      }
+      return entry.selection;
+    }
+    missCount.increment();
+    ProxySelection selection = loader.apply(host);
+    if (maxSize > 0) {
+      add(host, selection);
+    }
+    return selection;
+  }
+
+  /**
+   * Removes all cached entries, e.g. after the state of a proxy changed
+   */
+  public synchronized void invalidateAll() {
+    entries.clear();
+    Arrays.fill(clock, null);
+    hand = 0;
+  }
+
+  public int getMaxSize() {
+    return maxSize;
+  }
+
+  public int size() {
+    return entries.size();
+  }
+
+  public long getHitCount() {
+    return hitCount.sum();
+  }
+
+  public long getMissCount() {
+    return missCount.sum();
+  }
+
+  public long getEvictionCount() {
+    return evictionCount.sum();
+  }
+
+  private synchronized void add(String host, ProxySelection selection) {
+    if (entries.containsKey(host)) {
+      return;
+    }
+    // the slots are filled in order, so the hand only meets used slots once the cache is full
+    while (clock[hand] != null) {
+      Entry entry = entries.get(clock[hand]);
+      if (entry == null || !entry.referenced) {
+        entries.remove(clock[hand]);
+        evictionCount.increment();
+        break;
+      }
+      entry.referenced = false;
+      hand = (hand + 1) % maxSize;
+    }
+    clock[hand] = host;
+    entries.put(host, new Entry(selection));
+    hand = (hand + 1) % maxSize;
+  }
+
+  /**
+   * Cached selection with the reference bit of the clock
+   */
+  private static final class Entry {
+
+    private final ProxySelection selection;
+    private volatile boolean referenced;
+
+    private Entry(ProxySelection selection) {
+      this.selection = selection;
+    }
+  }
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright (c) 2020. dev-eth0.de All rights reserved.
+ */
+
+package de.dev.eth0.springboot.httpclient.impl.proxy;
+
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import org.apache.commons.lang3.StringUtils;
+
+import de.dev.eth0.springboot.httpclient.HttpClientProperties;
+
+/**
+ * Counts how often each proxy was selected first, direct connections are counted as {@link #DIRECT}
+ * <p>
+ * The counters are created upfront for all configured proxies, the resolved proxies are mapped to their counter once.
+ */
+public class ProxySelectionStatistics {
+
+  public static final String DIRECT = "DIRECT";
+
+  private final Map<String, LongAdder> counts;
+  private final Map<Proxy, LongAdder> countsByProxy = new ConcurrentHashMap<>();
+  private final ProxyAddressResolver addressResolver;
+
+  public ProxySelectionStatistics(Collection<HttpClientProperties.ProxyConfiguration> proxyConfigurations,
+      ProxyAddressResolver addressResolver) {
+    this.addressResolver = addressResolver;
+    Map<String, LongAdder> proxyCounts = new LinkedHashMap<>();
+    proxyConfigurations.stream()
+        .filter(config -> StringUtils.isNotBlank(config.getProxyHost()))
+        .forEach(config -> proxyCounts.putIfAbsent(ProxyAddressResolver.key(config.getProxyHost(), config.getProxyPort()), new LongAdder()));
+    proxyCounts.put(DIRECT, new LongAdder());
+    this.counts = Collections.unmodifiableMap(proxyCounts);
+    this.addressResolver.addChangeListener(countsByProxy::clear);
+  }
+
+  /**
+   * @param proxies selected proxies, the first one is counted
+   */
+  public void record(List<Proxy> proxies) {
+    Proxy proxy = proxies.isEmpty() ? Proxy.NO_PROXY : proxies.get(0);
+    LongAdder count = countsByProxy.get(proxy);
+    if (count == null) {
+      count = counts.get(getKey(proxy));
+      if (count == null) {
+        return;
+      }
+      countsByProxy.putIfAbsent(proxy, count);
+    }
+    count.increment();
+  }
+
+  /**
+   * @return keys of all configured proxies and {@link #DIRECT}
+   */
+  public Set<String> getKeys() {
+    return counts.keySet();
+  }
+
+  /**
+   * @param key key of the proxy, see {@link ProxyAddressResolver#key(String, int)}
+   * @return number of selections of the proxy
+   */
+  public long getCount(String key) {
+    LongAdder count = counts.get(key);
+    return count != null ? count.sum() : 0;
+  }
+
+  /**
+   * @param proxy selected proxy
+   * @return key of the configured proxy or {@link #DIRECT}, null for unknown proxies
+   */
+  public String getKey(Proxy proxy) {
+    if (proxy.type() == Proxy.Type.DIRECT) {
+      return DIRECT;
+    }
+    return proxy.address() instanceof InetSocketAddress ? addressResolver.findKey((InetSocketAddress)proxy.address()) : null;
+  }
+}
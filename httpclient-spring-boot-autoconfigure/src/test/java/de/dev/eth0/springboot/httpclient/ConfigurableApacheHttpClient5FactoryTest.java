@@ -0,0 +1,138 @@
+/*
+ * Copyright (c) 2020. dev-eth0.de All rights reserved.
+ */
+
+package de.dev.eth0.springboot.httpclient;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.when;
+
+import org.apache.hc.client5.http.auth.AuthScope;
+import org.apache.hc.client5.http.auth.Credentials;
+import org.apache.hc.client5.http.auth.CredentialsProvider;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.async.HttpAsyncClientBuilder;
+import org.apache.hc.client5.http.impl.classic.HttpClientBuilder;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.impl.nio.PoolingAsyncClientConnectionManager;
+import org.apache.hc.client5.http.impl.routing.SystemDefaultRoutePlanner;
+import org.apache.hc.core5.http2.HttpVersionPolicy;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import de.dev.eth0.springboot.httpclient.impl.ConfigurableApacheHttpClient5Factory;
+import de.dev.eth0.springboot.httpclient.impl.proxy.ConfigurableProxySelector;
+
+@ExtendWith(MockitoExtension.class)
+public class ConfigurableApacheHttpClient5FactoryTest {
+
+  @Mock
+  private HttpClientProperties httpClientProperties;
+
+  private final HttpClientProperties.TimeoutConfiguration timeoutConfiguration = new HttpClientProperties.TimeoutConfiguration();
+  private final HttpClientProperties.TruststoreConfiguration truststoreConfiguration = new HttpClientProperties.TruststoreConfiguration();
+  private final HttpClientProperties.KeystoreConfiguration keystoreConfiguration = new HttpClientProperties.KeystoreConfiguration();
+  private final HttpClientProperties.SslConfiguration sslConfiguration = new HttpClientProperties.SslConfiguration();
+  private final HttpClientProperties.PoolConfiguration poolConfiguration = new HttpClientProperties.PoolConfiguration();
+  private final HttpClientProperties.ProxyConfiguration[] proxyConfiguration = {};
+
+  private HttpClientProperties.ProxyConfiguration hostConfig;
+  private HttpClientProperties.ProxyConfiguration hostConfigWithAuth;
+  private ConfigurableApacheHttpClient5Factory underTest;
+
+  @BeforeEach
+  public void setup() {
+    when(httpClientProperties.getSslContext()).thenReturn("TLSv1.2");
+    when(httpClientProperties.getProxies()).thenReturn(proxyConfiguration);
+    when(httpClientProperties.getTimeouts()).thenReturn(timeoutConfiguration);
+    when(httpClientProperties.getKeystore()).thenReturn(keystoreConfiguration);
+    when(httpClientProperties.getTruststore()).thenReturn(truststoreConfiguration);
+    when(httpClientProperties.getSsl()).thenReturn(sslConfiguration);
+    when(httpClientProperties.getPool()).thenReturn(poolConfiguration);
+
+    hostConfig = new HttpClientProperties.ProxyConfiguration();
+    hostConfigWithAuth = new HttpClientProperties.ProxyConfiguration();
+    hostConfigWithAuth.setProxyHost("testProxyHost");
+    hostConfigWithAuth.setProxyPort(1234);
+    hostConfigWithAuth.setProxyUser("testUser");
+    hostConfigWithAuth.setProxyPassword("testPassword");
+
+    underTest = new ConfigurableApacheHttpClient5Factory(httpClientProperties);
+  }
+
+  @AfterEach
+  public void tearDown() {
+    underTest.destroy();
+  }
+
+  @Test
+  public void createBuilder_defaultConfiguration() {
+    HttpClientBuilder builder = underTest.createBuilder();
+
+    RequestConfig requestConfig = (RequestConfig)ReflectionTestUtils.getField(builder, "defaultRequestConfig");
+    assertThat(requestConfig.getConnectTimeout().toMilliseconds()).isEqualTo(HttpClientProperties.TimeoutConfiguration.DEFAULT_CONNECTION_TIMEOUT);
+    assertThat(requestConfig.getResponseTimeout().toMilliseconds()).isEqualTo(HttpClientProperties.TimeoutConfiguration.DEFAULT_SOCKET_TIMEOUT);
+    assertThat(requestConfig.getConnectionRequestTimeout().toMilliseconds()).isEqualTo(HttpClientProperties.PoolConfiguration.DEFAULT_LEASE_TIMEOUT);
+
+    PoolingHttpClientConnectionManager connectionManager = (PoolingHttpClientConnectionManager)ReflectionTestUtils.getField(builder, "connManager");
+    assertThat(connectionManager).isSameAs(underTest.getRegistry().getConnectionManager());
+    assertThat(connectionManager.getMaxTotal()).isEqualTo(HttpClientProperties.PoolConfiguration.DEFAULT_MAX_TOTAL);
+    assertThat(connectionManager.getDefaultMaxPerRoute()).isEqualTo(HttpClientProperties.PoolConfiguration.DEFAULT_MAX_PER_ROUTE);
+    assertThat(ReflectionTestUtils.getField(builder, "connManagerShared")).isEqualTo(true);
+    assertThat(ReflectionTestUtils.getField(builder, "routePlanner")).isNull();
+  }
+
+  @Test
+  public void createAsyncBuilder_defaultConfiguration() {
+    poolConfiguration.setMaxTotal(100);
+    poolConfiguration.setDefaultMaxPerRoute(50);
+    HttpAsyncClientBuilder builder = underTest.createAsyncBuilder();
+
+    assertThat(ReflectionTestUtils.getField(builder, "versionPolicy")).isEqualTo(HttpVersionPolicy.NEGOTIATE);
+    PoolingAsyncClientConnectionManager connectionManager = (PoolingAsyncClientConnectionManager)ReflectionTestUtils
+        .getField(builder, "connManager");
+    assertThat(connectionManager).isSameAs(underTest.getRegistry().getAsyncConnectionManager());
+    assertThat(connectionManager.getMaxTotal()).isEqualTo(100);
+    assertThat(connectionManager.getDefaultMaxPerRoute()).isEqualTo(50);
+    assertThat(ReflectionTestUtils.getField(builder, "connManagerShared")).isEqualTo(true);
+  }
+
+  @Test
+  public void createBuilder_sharedSSLContext() {
+    underTest.createBuilder();
+    underTest.createAsyncBuilder();
+
+    assertThat(underTest.getSslContext()).isNotNull();
+    assertThat(underTest.getSslContext().getSslContext().getClientSessionContext().getSessionCacheSize())
+        .isEqualTo(HttpClientProperties.SslConfiguration.DEFAULT_SESSION_CACHE_SIZE);
+  }
+
+  @Test
+  public void createBuilder_proxyConfiguration_noAuthentication() {
+    when(httpClientProperties.getProxies()).thenReturn(new HttpClientProperties.ProxyConfiguration[] { hostConfig });
+    HttpClientBuilder builder = underTest.createBuilder();
+
+    SystemDefaultRoutePlanner routePlanner = (SystemDefaultRoutePlanner)ReflectionTestUtils.getField(builder, "routePlanner");
+    assertThat(ReflectionTestUtils.getField(routePlanner, "proxySelector")).isInstanceOf(ConfigurableProxySelector.class);
+    assertThat(underTest.getProxySelector()).isNotNull();
+    assertThat(ReflectionTestUtils.getField(builder, "credentialsProvider")).isNull();
+  }
+
+  @Test
+  public void createAsyncBuilder_proxyConfiguration_authentication() {
+    when(httpClientProperties.getProxies()).thenReturn(new HttpClientProperties.ProxyConfiguration[] { hostConfigWithAuth, hostConfig });
+    HttpAsyncClientBuilder builder = underTest.createAsyncBuilder();
+
+    assertThat(ReflectionTestUtils.getField(builder, "routePlanner")).isInstanceOf(SystemDefaultRoutePlanner.class);
+    CredentialsProvider credentialsProvider = (CredentialsProvider)ReflectionTestUtils.getField(builder, "credentialsProvider");
+    Credentials credentials = credentialsProvider.getCredentials(new AuthScope("testProxyHost", 1234), null);
+    assertThat(credentials.getUserPrincipal().getName()).isEqualTo("testUser");
+    assertThat(credentials.getPassword()).isEqualTo("testPassword".toCharArray());
+    assertThat(credentialsProvider.getCredentials(new AuthScope("otherHost", 1234), null)).isNull();
+  }
+}
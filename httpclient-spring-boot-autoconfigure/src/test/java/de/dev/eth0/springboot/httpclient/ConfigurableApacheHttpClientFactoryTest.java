@@ -5,15 +5,20 @@
 package de.dev.eth0.springboot.httpclient;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.mockito.Mockito.when;
 
+import java.util.List;
 import org.apache.http.auth.AuthScope;
 import org.apache.http.auth.Credentials;
+import org.apache.http.HttpHost;
 import org.apache.http.client.config.RequestConfig;
+import org.apache.http.conn.routing.HttpRoute;
 import org.apache.http.conn.routing.HttpRoutePlanner;
 import org.apache.http.impl.client.BasicCredentialsProvider;
 import org.apache.http.impl.client.HttpClientBuilder;
 import org.apache.http.impl.client.ProxyAuthenticationStrategy;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
 import org.apache.http.impl.conn.SystemDefaultRoutePlanner;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -23,7 +28,11 @@ import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.test.util.ReflectionTestUtils;
 
 import de.dev.eth0.springboot.httpclient.impl.ConfigurableApacheHttpClientFactory;
+import de.dev.eth0.springboot.httpclient.impl.PhaseTimingHttpRequestExecutor;
+import de.dev.eth0.springboot.httpclient.impl.RequestPhaseListener;
+import de.dev.eth0.springboot.httpclient.impl.pool.ConfigurablePoolingHttpClientConnectionManager;
 import de.dev.eth0.springboot.httpclient.impl.proxy.ConfigurableProxySelector;
+import de.dev.eth0.springboot.httpclient.impl.proxy.PreemptiveProxyAuthInterceptor;
 
 @ExtendWith(MockitoExtension.class)
 public class ConfigurableApacheHttpClientFactoryTest {
@@ -34,6 +43,8 @@ public class ConfigurableApacheHttpClientFactoryTest {
   private final HttpClientProperties.TimeoutConfiguration timeoutConfiguration = new HttpClientProperties.TimeoutConfiguration();
   private final HttpClientProperties.TruststoreConfiguration truststoreConfiguration = new HttpClientProperties.TruststoreConfiguration();
   private final HttpClientProperties.KeystoreConfiguration keystoreConfiguration = new HttpClientProperties.KeystoreConfiguration();
+  private final HttpClientProperties.SslConfiguration sslConfiguration = new HttpClientProperties.SslConfiguration();
+  private final HttpClientProperties.PoolConfiguration poolConfiguration = new HttpClientProperties.PoolConfiguration();
   private final HttpClientProperties.ProxyConfiguration[] proxyConfiguration = {};
 
   private HttpClientProperties.ProxyConfiguration hostConfig;
@@ -46,6 +57,8 @@ public class ConfigurableApacheHttpClientFactoryTest {
     when(httpClientProperties.getTimeouts()).thenReturn(timeoutConfiguration);
     when(httpClientProperties.getKeystore()).thenReturn(keystoreConfiguration);
     when(httpClientProperties.getTruststore()).thenReturn(truststoreConfiguration);
+    when(httpClientProperties.getSsl()).thenReturn(sslConfiguration);
+    when(httpClientProperties.getPool()).thenReturn(poolConfiguration);
 
     hostConfig = new HttpClientProperties.ProxyConfiguration();
     hostConfigWithAuth = new HttpClientProperties.ProxyConfiguration();
@@ -63,12 +76,35 @@ public class ConfigurableApacheHttpClientFactoryTest {
     assertThat(requestConfig).isNotNull();
     assertThat(requestConfig.getConnectTimeout()).isEqualTo(HttpClientProperties.TimeoutConfiguration.DEFAULT_CONNECTION_TIMEOUT);
     assertThat(requestConfig.getSocketTimeout()).isEqualTo(HttpClientProperties.TimeoutConfiguration.DEFAULT_SOCKET_TIMEOUT);
+    assertThat(requestConfig.getConnectionRequestTimeout()).isEqualTo(HttpClientProperties.PoolConfiguration.DEFAULT_LEASE_TIMEOUT);
+
+    PoolingHttpClientConnectionManager connectionManager = (PoolingHttpClientConnectionManager)ReflectionTestUtils
+        .getField(builder, HttpClientBuilder.class, "connManager");
+    assertThat(connectionManager).isInstanceOf(ConfigurablePoolingHttpClientConnectionManager.class);
+    assertThat(connectionManager.getMaxTotal()).isEqualTo(HttpClientProperties.PoolConfiguration.DEFAULT_MAX_TOTAL);
+    assertThat(connectionManager.getDefaultMaxPerRoute()).isEqualTo(HttpClientProperties.PoolConfiguration.DEFAULT_MAX_PER_ROUTE);
 
     HttpRoutePlanner proxySelector = (SystemDefaultRoutePlanner)ReflectionTestUtils.getField(builder, HttpClientBuilder.class, "routePlanner");
     assertThat(proxySelector).isNull();
 
   }
 
+  @Test
+  public void createBuilder_requestPhaseListener() {
+    ConfigurableApacheHttpClientFactory underTest = new ConfigurableApacheHttpClientFactory(HttpClientBuilder.create(), httpClientProperties);
+    HttpClientBuilder builder = underTest.createBuilder();
+    assertThat(ReflectionTestUtils.getField(builder, HttpClientBuilder.class, "requestExec")).isNull();
+
+    RequestPhaseListener listener = (phase, host, durationNanos) -> { };
+    underTest.addRequestPhaseListener(listener);
+    underTest.addRequestPhaseListener(listener);
+    builder = underTest.createBuilder();
+
+    assertThat(ReflectionTestUtils.getField(builder, HttpClientBuilder.class, "requestExec")).isInstanceOf(PhaseTimingHttpRequestExecutor.class);
+    Object connectionManager = ReflectionTestUtils.getField(builder, HttpClientBuilder.class, "connManager");
+    assertThat(ReflectionTestUtils.getField(connectionManager, "requestPhaseListener")).isSameAs(listener);
+  }
+
   @Test
   public void createBuilder_timeoutConfiguration() {
     timeoutConfiguration.setConnectionTimeout(1234);
@@ -81,6 +117,58 @@ public class ConfigurableApacheHttpClientFactoryTest {
     assertThat(requestConfig.getSocketTimeout()).isEqualTo(5678);
   }
 
+  @Test
+  public void createBuilder_sharedConnectionManager() {
+    ConfigurableApacheHttpClientFactory underTest = new ConfigurableApacheHttpClientFactory(HttpClientBuilder.create(), httpClientProperties);
+    Object connectionManager = ReflectionTestUtils.getField(underTest.createBuilder(), HttpClientBuilder.class, "connManager");
+    Object secondConnectionManager = ReflectionTestUtils.getField(underTest.createBuilder(), HttpClientBuilder.class, "connManager");
+    Object connectionManagerShared = ReflectionTestUtils.getField(underTest.createBuilder(), HttpClientBuilder.class, "connManagerShared");
+
+    assertThat(connectionManager).isSameAs(underTest.getRegistry().getConnectionManager());
+    assertThat(secondConnectionManager).isSameAs(connectionManager);
+    assertThat(connectionManagerShared).isEqualTo(true);
+  }
+
+  @Test
+  public void createBuilder_sharedSSLContext() {
+    ConfigurableApacheHttpClientFactory underTest = new ConfigurableApacheHttpClientFactory(HttpClientBuilder.create(), httpClientProperties);
+    ConfigurableApacheHttpClientFactory secondFactory = new ConfigurableApacheHttpClientFactory(HttpClientBuilder.create(), httpClientProperties);
+    underTest.createBuilder();
+    secondFactory.createBuilder();
+
+    assertThat(underTest.getSslContext()).isNotNull();
+    assertThat(secondFactory.getSslContext()).isSameAs(underTest.getSslContext());
+    assertThat(underTest.getSslContext().getSslContext().getClientSessionContext().getSessionCacheSize())
+        .isEqualTo(HttpClientProperties.SslConfiguration.DEFAULT_SESSION_CACHE_SIZE);
+  }
+
+  @Test
+  public void destroy() {
+    ConfigurableApacheHttpClientFactory underTest = new ConfigurableApacheHttpClientFactory(HttpClientBuilder.create(), httpClientProperties);
+    underTest.createBuilder();
+    underTest.destroy();
+
+    assertThatThrownBy(() -> underTest.getRegistry().getConnectionManager().requestConnection(new HttpRoute(new HttpHost("example.com")), null))
+        .isInstanceOf(IllegalStateException.class);
+  }
+
+  @Test
+  public void createBuilder_poolConfiguration() {
+    poolConfiguration.setMaxTotal(100);
+    poolConfiguration.setDefaultMaxPerRoute(50);
+    poolConfiguration.setLeaseTimeout(1234);
+    ConfigurableApacheHttpClientFactory underTest = new ConfigurableApacheHttpClientFactory(HttpClientBuilder.create(), httpClientProperties);
+    HttpClientBuilder builder = underTest.createBuilder();
+
+    RequestConfig requestConfig = (RequestConfig)ReflectionTestUtils.getField(builder, HttpClientBuilder.class, "defaultRequestConfig");
+    assertThat(requestConfig.getConnectionRequestTimeout()).isEqualTo(1234);
+
+    PoolingHttpClientConnectionManager connectionManager = (PoolingHttpClientConnectionManager)ReflectionTestUtils
+        .getField(builder, HttpClientBuilder.class, "connManager");
+    assertThat(connectionManager.getMaxTotal()).isEqualTo(100);
+    assertThat(connectionManager.getDefaultMaxPerRoute()).isEqualTo(50);
+  }
+
 
   @Test
   public void createBuilder_proxyConfiguration() {
@@ -128,4 +216,18 @@ public class ConfigurableApacheHttpClientFactoryTest {
     Object proxyAuthStrategy = ReflectionTestUtils.getField(builder, HttpClientBuilder.class, "proxyAuthStrategy");
     assertThat(proxyAuthStrategy).isInstanceOf(ProxyAuthenticationStrategy.class);
   }
-}
\ No newline at end of file
+
+  @Test
+  public void createBuilder_proxyConfiguration_preemptiveAuthentication() {
+    hostConfigWithAuth.setPreemptiveAuthentication(true);
+    when(httpClientProperties.getProxies()).thenReturn(new HttpClientProperties.ProxyConfiguration[] { hostConfigWithAuth });
+
+    ConfigurableApacheHttpClientFactory underTest = new ConfigurableApacheHttpClientFactory(HttpClientBuilder.create(), httpClientProperties);
+    underTest.createBuilder();
+    HttpClientBuilder builder = underTest.createBuilder();
+
+    List<?> interceptors = (List<?>)ReflectionTestUtils.getField(builder, HttpClientBuilder.class, "requestFirst");
+    assertThat(interceptors).hasSize(1);
+    assertThat(interceptors.get(0)).isInstanceOf(PreemptiveProxyAuthInterceptor.class);
+  }
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright (c) 2020. dev-eth0.de All rights reserved.
+ */
+
+package de.dev.eth0.springboot.httpclient;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.when;
+
+import java.net.Authenticator;
+import java.net.PasswordAuthentication;
+import java.net.http.HttpClient;
+import java.time.Duration;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import de.dev.eth0.springboot.httpclient.impl.ConfigurableJdkHttpClientFactory;
+import de.dev.eth0.springboot.httpclient.impl.VirtualThreads;
+import de.dev.eth0.springboot.httpclient.impl.proxy.ConfigurableProxySelector;
+
+@ExtendWith(MockitoExtension.class)
+public class ConfigurableJdkHttpClientFactoryTest {
+
+  @Mock
+  private HttpClientProperties httpClientProperties;
+
+  private final HttpClientProperties.TimeoutConfiguration timeoutConfiguration = new HttpClientProperties.TimeoutConfiguration();
+  private final HttpClientProperties.TruststoreConfiguration truststoreConfiguration = new HttpClientProperties.TruststoreConfiguration();
+  private final HttpClientProperties.KeystoreConfiguration keystoreConfiguration = new HttpClientProperties.KeystoreConfiguration();
+  private final HttpClientProperties.SslConfiguration sslConfiguration = new HttpClientProperties.SslConfiguration();
+  private final HttpClientProperties.ProxyConfiguration[] proxyConfiguration = {};
+
+  private HttpClientProperties.ProxyConfiguration hostConfig;
+  private HttpClientProperties.ProxyConfiguration hostConfigWithAuth;
+  private ConfigurableJdkHttpClientFactory underTest;
+
+  @BeforeEach
+  public void setup() {
+    when(httpClientProperties.getSslContext()).thenReturn("TLSv1.2");
+    when(httpClientProperties.getProxies()).thenReturn(proxyConfiguration);
+    when(httpClientProperties.getTimeouts()).thenReturn(timeoutConfiguration);
+    when(httpClientProperties.getKeystore()).thenReturn(keystoreConfiguration);
+    when(httpClientProperties.getTruststore()).thenReturn(truststoreConfiguration);
+    when(httpClientProperties.getSsl()).thenReturn(sslConfiguration);
+
+    hostConfig = new HttpClientProperties.ProxyConfiguration();
+    hostConfigWithAuth = new HttpClientProperties.ProxyConfiguration();
+    hostConfigWithAuth.setProxyHost("testProxyHost");
+    hostConfigWithAuth.setProxyPort(1234);
+    hostConfigWithAuth.setProxyUser("testUser");
+    hostConfigWithAuth.setProxyPassword("testPassword");
+
+    underTest = new ConfigurableJdkHttpClientFactory(httpClientProperties);
+  }
+
+  @AfterEach
+  public void tearDown() {
+    underTest.destroy();
+  }
+
+  @Test
+  public void createBuilder_defaultConfiguration() {
+    HttpClient httpClient = underTest.createBuilder().build();
+
+    assertThat(httpClient.connectTimeout()).contains(Duration.ofMillis(HttpClientProperties.TimeoutConfiguration.DEFAULT_CONNECTION_TIMEOUT));
+    assertThat(httpClient.sslContext()).isSameAs(underTest.getSslContext().getSslContext());
+    assertThat(httpClient.proxy()).isEmpty();
+    assertThat(httpClient.authenticator()).isEmpty();
+  }
+
+  @Test
+  public void createBuilder_sharedExecutor() {
+    HttpClient first = underTest.createBuilder().build();
+    HttpClient second = underTest.createBuilder().build();
+
+    if (VirtualThreads.isSupported()) {
+      assertThat(first.executor()).containsSame(underTest.getExecutor());
+      assertThat(second.executor()).containsSame(underTest.getExecutor());
+    }
+    else {
+      assertThat(underTest.getExecutor()).isNull();
+      assertThat(first.executor()).isEmpty();
+    }
+  }
+
+  @Test
+  public void createBuilder_sslParameters() {
+    sslConfiguration.setProtocols(new String[] { "TLSv1.2" });
+    HttpClient httpClient = underTest.createBuilder().build();
+
+    assertThat(httpClient.sslParameters().getProtocols()).containsExactly("TLSv1.2");
+  }
+
+  @Test
+  public void createBuilder_proxyConfiguration_noAuthentication() {
+    when(httpClientProperties.getProxies()).thenReturn(new HttpClientProperties.ProxyConfiguration[] { hostConfig });
+    HttpClient httpClient = underTest.createBuilder().build();
+
+    assertThat(httpClient.proxy()).containsInstanceOf(ConfigurableProxySelector.class);
+    assertThat(underTest.getProxySelector()).isNotNull();
+    assertThat(httpClient.authenticator()).isEmpty();
+  }
+
+  @Test
+  public void createBuilder_proxyConfiguration_authentication() {
+    when(httpClientProperties.getProxies()).thenReturn(new HttpClientProperties.ProxyConfiguration[] { hostConfigWithAuth, hostConfig });
+    Authenticator authenticator = underTest.createBuilder().build().authenticator().orElseThrow();
+
+    PasswordAuthentication credentials = authenticator.requestPasswordAuthenticationInstance("testProxyHost", null, 1234,
+        "http", null, "Basic", null, Authenticator.RequestorType.PROXY);
+    assertThat(credentials.getUserName()).isEqualTo("testUser");
+    assertThat(credentials.getPassword()).isEqualTo("testPassword".toCharArray());
+    assertThat(authenticator.requestPasswordAuthenticationInstance("otherHost", null, 1234,
+        "http", null, "Basic", null, Authenticator.RequestorType.PROXY)).isNull();
+    assertThat(authenticator.requestPasswordAuthenticationInstance("testProxyHost", null, 1234,
+        "http", null, "Basic", null, Authenticator.RequestorType.SERVER)).isNull();
+  }
+}
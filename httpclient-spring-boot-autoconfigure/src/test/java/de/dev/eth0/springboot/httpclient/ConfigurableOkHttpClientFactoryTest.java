@@ -9,6 +9,8 @@ import static org.mockito.Mockito.when;
 
 import java.io.IOException;
 import java.net.ProxySelector;
+import java.util.concurrent.ThreadPoolExecutor;
+import javax.net.ssl.SSLSocket;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -16,9 +18,16 @@ import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
 import de.dev.eth0.springboot.httpclient.impl.ConfigurableOkHttpClientFactory;
+import de.dev.eth0.springboot.httpclient.impl.OkHttpPhaseEventListenerFactory;
+import de.dev.eth0.springboot.httpclient.impl.OkHttpProtocolRoutingInterceptor;
+import de.dev.eth0.springboot.httpclient.impl.VirtualThreads;
 import de.dev.eth0.springboot.httpclient.impl.proxy.ConfigurableProxySelector;
 import de.dev.eth0.springboot.httpclient.impl.proxy.OkHttpProxyAuthenticator;
+import okhttp3.CipherSuite;
+import okhttp3.ConnectionSpec;
 import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import okhttp3.TlsVersion;
 
 @ExtendWith(MockitoExtension.class)
 class ConfigurableOkHttpClientFactoryTest {
@@ -29,6 +38,10 @@ class ConfigurableOkHttpClientFactoryTest {
   private final HttpClientProperties.TimeoutConfiguration timeoutConfiguration = new HttpClientProperties.TimeoutConfiguration();
   private final HttpClientProperties.TruststoreConfiguration truststoreConfiguration = new HttpClientProperties.TruststoreConfiguration();
   private final HttpClientProperties.KeystoreConfiguration keystoreConfiguration = new HttpClientProperties.KeystoreConfiguration();
+  private final HttpClientProperties.SslConfiguration sslConfiguration = new HttpClientProperties.SslConfiguration();
+  private final HttpClientProperties.PoolConfiguration poolConfiguration = new HttpClientProperties.PoolConfiguration();
+  private final HttpClientProperties.DispatcherConfiguration dispatcherConfiguration = new HttpClientProperties.DispatcherConfiguration();
+  private final HttpClientProperties.Http2Configuration http2Configuration = new HttpClientProperties.Http2Configuration();
 
   private final HttpClientProperties.ProxyConfiguration[] proxyConfiguration = {};
 
@@ -42,6 +55,10 @@ class ConfigurableOkHttpClientFactoryTest {
     when(httpClientProperties.getProxies()).thenReturn(proxyConfiguration);
     when(httpClientProperties.getKeystore()).thenReturn(keystoreConfiguration);
     when(httpClientProperties.getTruststore()).thenReturn(truststoreConfiguration);
+    when(httpClientProperties.getSsl()).thenReturn(sslConfiguration);
+    when(httpClientProperties.getPool()).thenReturn(poolConfiguration);
+    when(httpClientProperties.getDispatcher()).thenReturn(dispatcherConfiguration);
+    when(httpClientProperties.getHttp2()).thenReturn(http2Configuration);
 
     hostConfig = new HttpClientProperties.ProxyConfiguration();
     hostConfigWithAuth = new HttpClientProperties.ProxyConfiguration();
@@ -62,6 +79,8 @@ class ConfigurableOkHttpClientFactoryTest {
     assertThat(client.writeTimeoutMillis()).isEqualTo(HttpClientProperties.TimeoutConfiguration.DEFAULT_SOCKET_TIMEOUT);
 
     assertThat(client.proxySelector()).isEqualTo(ProxySelector.getDefault());
+    assertThat(client.dispatcher().getMaxRequests()).isEqualTo(HttpClientProperties.DispatcherConfiguration.DEFAULT_MAX_REQUESTS);
+    assertThat(client.dispatcher().getMaxRequestsPerHost()).isEqualTo(HttpClientProperties.DispatcherConfiguration.DEFAULT_MAX_REQUESTS_PER_HOST);
   }
 
   @Test
@@ -77,6 +96,171 @@ class ConfigurableOkHttpClientFactoryTest {
     assertThat(client.writeTimeoutMillis()).isEqualTo(5678);
   }
 
+  @Test
+  public void createBuilder_sharedClient() {
+    ConfigurableOkHttpClientFactory underTest = new ConfigurableOkHttpClientFactory(new OkHttpClient.Builder(), httpClientProperties);
+    OkHttpClient client = underTest.createBuilder(false).build();
+    OkHttpClient secondClient = underTest.createBuilder(true).build();
+
+    assertThat(client.connectionPool()).isSameAs(underTest.getRegistry().getClient().connectionPool());
+    assertThat(secondClient.connectionPool()).isSameAs(client.connectionPool());
+    assertThat(secondClient.dispatcher()).isSameAs(client.dispatcher());
+    assertThat(secondClient.hostnameVerifier()).isNotSameAs(client.hostnameVerifier());
+  }
+
+  @Test
+  public void createBuilder_disableSslValidation_noTruststore() {
+    ConfigurableOkHttpClientFactory underTest = new ConfigurableOkHttpClientFactory(new OkHttpClient.Builder(), httpClientProperties);
+    OkHttpClient client = underTest.createBuilder(false).build();
+    OkHttpClient trustAllClient = underTest.createBuilder(true).build();
+
+    assertThat(trustAllClient.sslSocketFactory()).isNotSameAs(client.sslSocketFactory());
+    assertThat(underTest.createBuilder(true).build().sslSocketFactory()).isSameAs(trustAllClient.sslSocketFactory());
+    // derived from the shared context, so its sockets are configured and counted as well
+    assertThat(trustAllClient.sslSocketFactory().getClass()).isSameAs(client.sslSocketFactory().getClass());
+  }
+
+  @Test
+  public void createBuilder_disableSslValidation_truststore() {
+    truststoreConfiguration.setPath("classpath:truststore.jks");
+    truststoreConfiguration.setPassword("changeit");
+    ConfigurableOkHttpClientFactory underTest = new ConfigurableOkHttpClientFactory(new OkHttpClient.Builder(), httpClientProperties);
+    OkHttpClient client = underTest.createBuilder(false).build();
+    OkHttpClient secondClient = underTest.createBuilder(true).build();
+
+    assertThat(secondClient.sslSocketFactory()).isSameAs(client.sslSocketFactory());
+  }
+
+  @Test
+  public void createBuilder_sharedSSLContext() {
+    ConfigurableOkHttpClientFactory underTest = new ConfigurableOkHttpClientFactory(new OkHttpClient.Builder(), httpClientProperties);
+    ConfigurableOkHttpClientFactory secondFactory = new ConfigurableOkHttpClientFactory(new OkHttpClient.Builder(), httpClientProperties);
+    OkHttpClient client = underTest.createBuilder(false).build();
+    OkHttpClient secondClient = secondFactory.createBuilder(false).build();
+
+    assertThat(underTest.getSslContext()).isNotNull();
+    assertThat(secondFactory.getSslContext()).isSameAs(underTest.getSslContext());
+    assertThat(client.sslSocketFactory()).isSameAs(underTest.getSslContext().getSocketFactory());
+    assertThat(secondClient.sslSocketFactory()).isSameAs(client.sslSocketFactory());
+  }
+
+  @Test
+  public void createBuilder_protocolsAndCipherSuites() throws IOException {
+    sslConfiguration.setProtocols(new String[] { "TLSv1.3", "TLSv1.2" });
+    sslConfiguration.setCipherSuites(new String[] { "TLS_AES_256_GCM_SHA384", "TLS_ECDHE_RSA_WITH_AES_128_GCM_SHA256" });
+    ConfigurableOkHttpClientFactory underTest = new ConfigurableOkHttpClientFactory(new OkHttpClient.Builder(), httpClientProperties);
+    OkHttpClient client = underTest.createBuilder(false).build();
+
+    assertThat(client.connectionSpecs()).hasSize(2).contains(ConnectionSpec.CLEARTEXT);
+    ConnectionSpec connectionSpec = client.connectionSpecs().get(0);
+    assertThat(connectionSpec.tlsVersions()).containsExactly(TlsVersion.TLS_1_3, TlsVersion.TLS_1_2);
+    assertThat(connectionSpec.cipherSuites()).extracting(CipherSuite::javaName)
+        .containsExactly("TLS_AES_256_GCM_SHA384", "TLS_ECDHE_RSA_WITH_AES_128_GCM_SHA256");
+    try (SSLSocket socket = (SSLSocket)client.sslSocketFactory().createSocket()) {
+      assertThat(socket.getEnabledProtocols()).containsExactly("TLSv1.3", "TLSv1.2");
+    }
+  }
+
+  @Test
+  public void destroy() {
+    ConfigurableOkHttpClientFactory underTest = new ConfigurableOkHttpClientFactory(new OkHttpClient.Builder(), httpClientProperties);
+    OkHttpClient client = underTest.createBuilder(false).build();
+    underTest.destroy();
+
+    assertThat(client.dispatcher().executorService().isShutdown()).isTrue();
+  }
+
+  @Test
+  public void createBuilder_dispatcherConfiguration() {
+    dispatcherConfiguration.setMaxRequests(100);
+    dispatcherConfiguration.setMaxRequestsPerHost(50);
+    dispatcherConfiguration.setExecutorThreads(8);
+    ConfigurableOkHttpClientFactory underTest = new ConfigurableOkHttpClientFactory(new OkHttpClient.Builder(), httpClientProperties);
+    OkHttpClient.Builder builder = underTest.createBuilder(true);
+    OkHttpClient client = builder.build();
+
+    assertThat(client.dispatcher().getMaxRequests()).isEqualTo(100);
+    assertThat(client.dispatcher().getMaxRequestsPerHost()).isEqualTo(50);
+    assertThat(client.dispatcher().executorService()).isInstanceOf(ThreadPoolExecutor.class);
+    assertThat(((ThreadPoolExecutor)client.dispatcher().executorService()).getMaximumPoolSize()).isEqualTo(8);
+  }
+
+  @Test
+  public void createBuilder_boundedExecutor() {
+    dispatcherConfiguration.setMaxRequests(100);
+    dispatcherConfiguration.setExecutorMode(HttpClientProperties.ExecutorMode.BOUNDED);
+    ConfigurableOkHttpClientFactory underTest = new ConfigurableOkHttpClientFactory(new OkHttpClient.Builder(), httpClientProperties);
+    OkHttpClient client = underTest.createBuilder(true).build();
+
+    assertThat(client.dispatcher().getMaxRequests()).isEqualTo(100);
+    assertThat(((ThreadPoolExecutor)client.dispatcher().executorService()).getMaximumPoolSize()).isEqualTo(100);
+  }
+
+  @Test
+  public void createBuilder_virtualExecutor() {
+    dispatcherConfiguration.setMaxRequestsPerHost(50);
+    dispatcherConfiguration.setExecutorMode(HttpClientProperties.ExecutorMode.VIRTUAL);
+    ConfigurableOkHttpClientFactory underTest = new ConfigurableOkHttpClientFactory(new OkHttpClient.Builder(), httpClientProperties);
+    OkHttpClient client = underTest.createBuilder(true).build();
+
+    assertThat(client.dispatcher().getMaxRequestsPerHost()).isEqualTo(50);
+    if (VirtualThreads.isSupported()) {
+      assertThat(client.dispatcher().getMaxRequests()).isEqualTo(Integer.MAX_VALUE);
+      assertThat(client.dispatcher().executorService()).isNotInstanceOf(ThreadPoolExecutor.class);
+    }
+    else {
+      assertThat(client.dispatcher().getMaxRequests()).isEqualTo(HttpClientProperties.DispatcherConfiguration.DEFAULT_MAX_REQUESTS);
+    }
+  }
+
+  @Test
+  public void createBuilder_protocols() {
+    http2Configuration.setProtocols(new String[] { "http/1.1" });
+    http2Configuration.setPingInterval(30000);
+    ConfigurableOkHttpClientFactory underTest = new ConfigurableOkHttpClientFactory(new OkHttpClient.Builder(), httpClientProperties);
+    OkHttpClient client = underTest.createBuilder(true).build();
+
+    assertThat(client.protocols()).containsExactly(Protocol.HTTP_1_1);
+    assertThat(client.pingIntervalMillis()).isEqualTo(30000);
+    assertThat(client.networkInterceptors()).containsExactly(underTest.getStreamTracker());
+  }
+
+  @Test
+  public void createBuilder_invalidProtocols() {
+    http2Configuration.setProtocols(new String[] { "h2_prior_knowledge", "http/1.1" });
+    ConfigurableOkHttpClientFactory underTest = new ConfigurableOkHttpClientFactory(new OkHttpClient.Builder(), httpClientProperties);
+    OkHttpClient client = underTest.createBuilder(true).build();
+
+    assertThat(client.protocols()).containsExactly(Protocol.HTTP_2, Protocol.HTTP_1_1);
+  }
+
+  @Test
+  public void createBuilder_protocolRoutes() {
+    HttpClientProperties.Http2RouteConfiguration route = new HttpClientProperties.Http2RouteConfiguration();
+    route.setHostPatterns(new String[] { "localhost" });
+    route.setProtocols(new String[] { "h2_prior_knowledge" });
+    HttpClientProperties.Http2RouteConfiguration invalidRoute = new HttpClientProperties.Http2RouteConfiguration();
+    invalidRoute.setHostPatterns(new String[] { ".*" });
+    invalidRoute.setProtocols(new String[] { "spdy/4" });
+    http2Configuration.setRoutes(new HttpClientProperties.Http2RouteConfiguration[] { route, invalidRoute });
+    ConfigurableOkHttpClientFactory underTest = new ConfigurableOkHttpClientFactory(new OkHttpClient.Builder(), httpClientProperties);
+    OkHttpClient client = underTest.createBuilder(true)
+        .addInterceptor(chain -> chain.proceed(chain.request()))
+        .build();
+
+    assertThat(client.interceptors()).hasSize(2);
+    assertThat(client.interceptors().get(0)).isInstanceOf(OkHttpProtocolRoutingInterceptor.class);
+  }
+
+  @Test
+  public void createBuilder_requestPhaseListener() {
+    ConfigurableOkHttpClientFactory underTest = new ConfigurableOkHttpClientFactory(new OkHttpClient.Builder(), httpClientProperties);
+    underTest.addRequestPhaseListener((phase, host, durationNanos) -> { });
+    OkHttpClient client = underTest.createBuilder(true).build();
+
+    assertThat(client.eventListenerFactory()).isInstanceOf(OkHttpPhaseEventListenerFactory.class);
+  }
+
   @Test
   public void createBuilder_proxyConfiguration() {
     when(httpClientProperties.getProxies()).thenReturn(new HttpClientProperties.ProxyConfiguration[] { hostConfig });
@@ -0,0 +1,106 @@
+/*
+ * Copyright (c) 2020. dev-eth0.de All rights reserved.
+ */
+
+package de.dev.eth0.springboot.httpclient;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.when;
+
+import java.time.Duration;
+import io.netty.channel.ChannelOption;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.client.reactive.ClientHttpConnector;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+
+import de.dev.eth0.springboot.httpclient.impl.ConfigurableReactorNettyHttpClientFactory;
+import de.dev.eth0.springboot.httpclient.impl.proxy.ProxyRoutingClientHttpConnector;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+@ExtendWith(MockitoExtension.class)
+public class ConfigurableReactorNettyHttpClientFactoryTest {
+
+  @Mock
+  private HttpClientProperties httpClientProperties;
+
+  private final HttpClientProperties.TimeoutConfiguration timeoutConfiguration = new HttpClientProperties.TimeoutConfiguration();
+  private final HttpClientProperties.TruststoreConfiguration truststoreConfiguration = new HttpClientProperties.TruststoreConfiguration();
+  private final HttpClientProperties.KeystoreConfiguration keystoreConfiguration = new HttpClientProperties.KeystoreConfiguration();
+  private final HttpClientProperties.SslConfiguration sslConfiguration = new HttpClientProperties.SslConfiguration();
+  private final HttpClientProperties.PoolConfiguration poolConfiguration = new HttpClientProperties.PoolConfiguration();
+  private final HttpClientProperties.NettyConfiguration nettyConfiguration = new HttpClientProperties.NettyConfiguration();
+
+  private ConfigurableReactorNettyHttpClientFactory underTest;
+
+  @BeforeEach
+  public void setup() {
+    when(httpClientProperties.getSslContext()).thenReturn("TLSv1.2");
+    when(httpClientProperties.getTimeouts()).thenReturn(timeoutConfiguration);
+    when(httpClientProperties.getKeystore()).thenReturn(keystoreConfiguration);
+    when(httpClientProperties.getTruststore()).thenReturn(truststoreConfiguration);
+    when(httpClientProperties.getSsl()).thenReturn(sslConfiguration);
+    when(httpClientProperties.getPool()).thenReturn(poolConfiguration);
+    when(httpClientProperties.getNetty()).thenReturn(nettyConfiguration);
+
+    underTest = new ConfigurableReactorNettyHttpClientFactory(httpClientProperties);
+  }
+
+  @AfterEach
+  public void tearDown() {
+    underTest.destroy();
+  }
+
+  @Test
+  public void createHttpClient_defaultConfiguration() {
+    HttpClient httpClient = underTest.createHttpClient();
+
+    // the client wraps the provider, so the limits are read from the provider of the factory
+    assertThat(underTest.getConnectionProvider().maxConnections())
+        .isEqualTo(HttpClientProperties.PoolConfiguration.DEFAULT_MAX_PER_ROUTE);
+    assertThat(httpClient.configuration().options().get(ChannelOption.CONNECT_TIMEOUT_MILLIS))
+        .isEqualTo(HttpClientProperties.TimeoutConfiguration.DEFAULT_CONNECTION_TIMEOUT);
+    assertThat(httpClient.configuration().responseTimeout())
+        .isEqualTo(Duration.ofMillis(HttpClientProperties.TimeoutConfiguration.DEFAULT_SOCKET_TIMEOUT));
+    assertThat(httpClient.configuration().sslProvider()).isNotNull();
+    assertThat(underTest.getSslContext()).isNotNull();
+  }
+
+  @Test
+  public void createHttpClient_sharedResources() {
+    nettyConfiguration.setEventLoopThreads(2);
+    HttpClient first = underTest.createHttpClient();
+    ConnectionProvider connectionProvider = underTest.getConnectionProvider();
+    HttpClient second = underTest.createHttpClient();
+
+    assertThat(connectionProvider).isNotNull();
+    assertThat(underTest.getConnectionProvider()).isSameAs(connectionProvider);
+    assertThat(second.configuration().loopResources()).isSameAs(first.configuration().loopResources());
+  }
+
+  @Test
+  public void createConnector_noProxies() {
+    when(httpClientProperties.getProxies()).thenReturn(new HttpClientProperties.ProxyConfiguration[0]);
+    ClientHttpConnector connector = underTest.createConnector();
+
+    assertThat(connector).isInstanceOf(ReactorClientHttpConnector.class);
+    assertThat(underTest.getProxySelector()).isNull();
+  }
+
+  @Test
+  public void createConnector_proxies() {
+    HttpClientProperties.ProxyConfiguration proxyConfiguration = new HttpClientProperties.ProxyConfiguration();
+    proxyConfiguration.setProxyHost("testProxyHost");
+    proxyConfiguration.setProxyPort(1234);
+    when(httpClientProperties.getProxies()).thenReturn(new HttpClientProperties.ProxyConfiguration[] { proxyConfiguration });
+    ClientHttpConnector connector = underTest.createConnector();
+
+    assertThat(connector).isInstanceOf(ProxyRoutingClientHttpConnector.class);
+    assertThat(underTest.getProxySelector()).isNotNull();
+  }
+}
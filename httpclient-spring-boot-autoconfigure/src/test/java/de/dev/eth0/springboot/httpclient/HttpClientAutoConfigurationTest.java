@@ -6,6 +6,11 @@ package de.dev.eth0.springboot.httpclient;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
+import java.util.concurrent.atomic.AtomicReference;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.core5.reactive.ReactiveResponseConsumer;
 import org.apache.http.client.HttpClient;
 import org.apache.http.impl.client.HttpClientBuilder;
 import org.junit.jupiter.api.Test;
@@ -17,9 +22,26 @@ import org.springframework.cloud.commons.httpclient.OkHttpClientFactory;
 import org.springframework.http.client.ClientHttpRequestFactory;
 import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
 import org.springframework.http.client.OkHttp3ClientHttpRequestFactory;
+import org.springframework.http.client.reactive.ClientHttpConnector;
+import org.springframework.http.client.reactive.HttpComponentsClientHttpConnector;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
 
+import de.dev.eth0.springboot.httpclient.impl.ConfigurableApacheHttpClient5Factory;
 import de.dev.eth0.springboot.httpclient.impl.ConfigurableApacheHttpClientFactory;
+import de.dev.eth0.springboot.httpclient.impl.ConfigurableJdkHttpClientFactory;
 import de.dev.eth0.springboot.httpclient.impl.ConfigurableOkHttpClientFactory;
+import de.dev.eth0.springboot.httpclient.impl.ConfigurableReactorNettyHttpClientFactory;
+import de.dev.eth0.springboot.httpclient.impl.HttpComponents5ClientHttpRequestFactory;
+import de.dev.eth0.springboot.httpclient.impl.JdkClientHttpRequestFactory;
+import de.dev.eth0.springboot.httpclient.impl.actuator.ApacheHttpClientInspector;
+import de.dev.eth0.springboot.httpclient.impl.actuator.HttpClientEndpoint;
+import de.dev.eth0.springboot.httpclient.impl.certificates.CertificateLoader;
+import de.dev.eth0.springboot.httpclient.impl.certificates.SharedSSLContext;
+import de.dev.eth0.springboot.httpclient.impl.jfr.ApacheHttpClientFlightRecorder;
+import de.dev.eth0.springboot.httpclient.impl.jfr.OkHttpClientFlightRecorder;
+import de.dev.eth0.springboot.httpclient.impl.metrics.ApacheHttpClientMetrics;
+import de.dev.eth0.springboot.httpclient.impl.metrics.HttpClientMetrics;
+import de.dev.eth0.springboot.httpclient.impl.metrics.OkHttpClientMetrics;
 import okhttp3.OkHttpClient;
 
 public class HttpClientAutoConfigurationTest {
@@ -61,6 +83,115 @@ public class HttpClientAutoConfigurationTest {
         });
   }
 
+  @Test
+  public void apacheHttpClient5_enabled() {
+    this.contextRunner.withUserConfiguration(HttpClientAutoConfiguration.class)
+        .withPropertyValues("spring.cloud.httpclientfactories.apache5.enabled=true")
+        .run(ctx -> {
+          assertThat(ctx).hasSingleBean(ConfigurableApacheHttpClient5Factory.class);
+          // Spring Cloud defines its default 4.x factory, this starter only configures its own if enabled
+          assertThat(ctx).doesNotHaveBean(ConfigurableApacheHttpClientFactory.class);
+          assertThat(ctx.getBean(ClientHttpRequestFactory.class)).isInstanceOf(HttpComponents5ClientHttpRequestFactory.class);
+          assertThat(ctx.getBean(ClientHttpConnector.class)).isInstanceOf(HttpComponentsClientHttpConnector.class);
+        });
+  }
+
+  @Test
+  public void apacheHttpClient5_disabled() {
+    this.contextRunner.withUserConfiguration(HttpClientAutoConfiguration.class)
+        .run(ctx -> {
+          assertThat(ctx).doesNotHaveBean(ConfigurableApacheHttpClient5Factory.class);
+          assertThat(ctx).doesNotHaveBean(ClientHttpConnector.class);
+        });
+  }
+
+  @Test
+  public void apacheHttpClient5_missingClass() {
+    this.contextRunner.withUserConfiguration(HttpClientAutoConfiguration.class)
+        .withClassLoader(new FilteredClassLoader(CloseableHttpClient.class))
+        .withPropertyValues("spring.cloud.httpclientfactories.apache5.enabled=true")
+        .run(ctx -> {
+          assertThat(ctx).doesNotHaveBean(ConfigurableApacheHttpClient5Factory.class);
+          assertThat(ctx).doesNotHaveBean(ClientHttpRequestFactory.class);
+        });
+  }
+
+  @Test
+  public void apacheHttpClient5_missingReactiveStreams() {
+    this.contextRunner.withUserConfiguration(HttpClientAutoConfiguration.class)
+        .withClassLoader(new FilteredClassLoader(ReactiveResponseConsumer.class))
+        .withPropertyValues("spring.cloud.httpclientfactories.apache5.enabled=true")
+        .run(ctx -> {
+          assertThat(ctx).hasSingleBean(ClientHttpRequestFactory.class);
+          assertThat(ctx).doesNotHaveBean(ClientHttpConnector.class);
+        });
+  }
+
+  @Test
+  public void jdkHttpClient_enabled() {
+    this.contextRunner.withUserConfiguration(HttpClientAutoConfiguration.class)
+        .withPropertyValues("spring.cloud.httpclientfactories.jdk.enabled=true")
+        .run(ctx -> {
+          assertThat(ctx).hasSingleBean(ConfigurableJdkHttpClientFactory.class);
+          assertThat(ctx.getBean(ClientHttpRequestFactory.class)).isInstanceOf(JdkClientHttpRequestFactory.class);
+        });
+  }
+
+  @Test
+  public void sharedSSLContexts_closed() {
+    AtomicReference<HttpClientProperties> properties = new AtomicReference<>();
+    AtomicReference<SharedSSLContext> sslContext = new AtomicReference<>();
+    this.contextRunner.withUserConfiguration(HttpClientAutoConfiguration.class)
+        .withPropertyValues("spring.cloud.httpclientfactories.jdk.enabled=true")
+        .run(ctx -> {
+          properties.set(ctx.getBean(HttpClientProperties.class));
+          sslContext.set(ctx.getBean(ConfigurableJdkHttpClientFactory.class).getSslContext());
+          assertThat(CertificateLoader.getSharedSSLContext(properties.get())).isSameAs(sslContext.get());
+        });
+    try {
+      assertThat(CertificateLoader.getSharedSSLContext(properties.get())).isNotSameAs(sslContext.get());
+    }
+    finally {
+      CertificateLoader.clearSharedSSLContexts();
+    }
+  }
+
+  @Test
+  public void jdkHttpClient_disabled() {
+    this.contextRunner.withUserConfiguration(HttpClientAutoConfiguration.class)
+        .run(ctx -> {
+          assertThat(ctx).doesNotHaveBean(ConfigurableJdkHttpClientFactory.class);
+          assertThat(ctx).doesNotHaveBean(ClientHttpRequestFactory.class);
+        });
+  }
+
+  @Test
+  public void reactorNetty_enabled() {
+    this.contextRunner.withUserConfiguration(HttpClientAutoConfiguration.class)
+        .withPropertyValues("spring.cloud.httpclientfactories.netty.enabled=true")
+        .run(ctx -> {
+          assertThat(ctx).hasSingleBean(ConfigurableReactorNettyHttpClientFactory.class);
+          assertThat(ctx.getBean(ClientHttpConnector.class)).isInstanceOf(ReactorClientHttpConnector.class);
+        });
+  }
+
+  @Test
+  public void reactorNetty_disabled() {
+    this.contextRunner.withUserConfiguration(HttpClientAutoConfiguration.class)
+        .run(ctx -> {
+          assertThat(ctx).doesNotHaveBean(ConfigurableReactorNettyHttpClientFactory.class);
+          assertThat(ctx).doesNotHaveBean(ClientHttpConnector.class);
+        });
+  }
+
+  @Test
+  public void reactorNetty_missingClass() {
+    this.contextRunner.withUserConfiguration(HttpClientAutoConfiguration.class)
+        .withClassLoader(new FilteredClassLoader(reactor.netty.http.client.HttpClient.class))
+        .withPropertyValues("spring.cloud.httpclientfactories.netty.enabled=true")
+        .run(ctx -> assertThat(ctx).doesNotHaveBean(ConfigurableReactorNettyHttpClientFactory.class));
+  }
+
   @Test
   public void okHttpClient_enabled() {
     this.contextRunner.withUserConfiguration(HttpClientAutoConfiguration.class)
@@ -93,4 +224,96 @@ public class HttpClientAutoConfigurationTest {
         });
   }
 
-}
\ No newline at end of file
+  @Test
+  public void metrics_noMeterRegistry() {
+    this.contextRunner.withUserConfiguration(HttpClientAutoConfiguration.class)
+        .withPropertyValues("spring.cloud.httpclientfactories.apache.enabled=true")
+        .run(ctx -> {
+          assertThat(ctx).doesNotHaveBean(ApacheHttpClientMetrics.class);
+          assertThat(ctx).doesNotHaveBean(OkHttpClientMetrics.class);
+        });
+  }
+
+  @Test
+  public void metrics_apacheHttpClient() {
+    this.contextRunner.withUserConfiguration(HttpClientAutoConfiguration.class)
+        .withBean(SimpleMeterRegistry.class)
+        .withPropertyValues("spring.cloud.httpclientfactories.apache.enabled=true")
+        .run(ctx -> {
+          assertThat(ctx).hasSingleBean(ApacheHttpClientMetrics.class);
+          assertThat(ctx.getBean(MeterRegistry.class).find(HttpClientMetrics.POOL_LEASED).tag("client", ApacheHttpClientMetrics.CLIENT).gauge())
+              .isNotNull();
+        });
+  }
+
+  @Test
+  public void metrics_okHttpClient() {
+    this.contextRunner.withUserConfiguration(HttpClientAutoConfiguration.class)
+        .withBean(SimpleMeterRegistry.class)
+        .withPropertyValues("spring.cloud.httpclientfactories.ok.enabled=true")
+        .run(ctx -> {
+          assertThat(ctx).hasSingleBean(OkHttpClientMetrics.class);
+          assertThat(ctx.getBean(MeterRegistry.class).find(HttpClientMetrics.POOL_LEASED).tag("client", OkHttpClientMetrics.CLIENT).gauge())
+              .isNotNull();
+        });
+  }
+
+  @Test
+  public void metrics_disabled() {
+    this.contextRunner.withUserConfiguration(HttpClientAutoConfiguration.class)
+        .withBean(SimpleMeterRegistry.class)
+        .withPropertyValues("spring.cloud.httpclientfactories.apache.enabled=true", "http.client.metrics.enabled=false")
+        .run(ctx -> assertThat(ctx).doesNotHaveBean(ApacheHttpClientMetrics.class));
+  }
+
+  @Test
+  public void jfr_apacheHttpClient() {
+    this.contextRunner.withUserConfiguration(HttpClientAutoConfiguration.class)
+        .withPropertyValues("spring.cloud.httpclientfactories.apache.enabled=true")
+        .run(ctx -> {
+          assertThat(ctx).hasSingleBean(ApacheHttpClientFlightRecorder.class);
+          assertThat(ctx).hasSingleBean(OkHttpClientFlightRecorder.class);
+        });
+  }
+
+  @Test
+  public void jfr_disabled() {
+    this.contextRunner.withUserConfiguration(HttpClientAutoConfiguration.class)
+        .withPropertyValues("spring.cloud.httpclientfactories.apache.enabled=true", "http.client.jfr.enabled=false")
+        .run(ctx -> {
+          assertThat(ctx).hasSingleBean(ApacheHttpClientFactory.class);
+          assertThat(ctx).doesNotHaveBean(ApacheHttpClientFlightRecorder.class);
+        });
+  }
+
+  @Test
+  public void endpoint_exposed() {
+    this.contextRunner.withUserConfiguration(HttpClientAutoConfiguration.class)
+        .withPropertyValues("spring.cloud.httpclientfactories.apache.enabled=true", "management.endpoints.web.exposure.include=httpclient")
+        .run(ctx -> {
+          assertThat(ctx).hasSingleBean(HttpClientEndpoint.class);
+          assertThat(ctx).hasSingleBean(ApacheHttpClientInspector.class);
+          assertThat(ctx.getBean(HttpClientEndpoint.class).httpClient().getClients())
+              .extracting(HttpClientEndpoint.ClientDescriptor::getClient)
+              .containsExactly(ApacheHttpClientInspector.CLIENT);
+        });
+  }
+
+  @Test
+  public void endpoint_notExposed() {
+    this.contextRunner.withUserConfiguration(HttpClientAutoConfiguration.class)
+        .withPropertyValues("spring.cloud.httpclientfactories.apache.enabled=true")
+        .run(ctx -> assertThat(ctx).doesNotHaveBean(HttpClientEndpoint.class));
+  }
+
+  @Test
+  public void metrics_missingClass() {
+    this.contextRunner.withUserConfiguration(HttpClientAutoConfiguration.class)
+        .withClassLoader(new FilteredClassLoader(MeterRegistry.class))
+        .withPropertyValues("spring.cloud.httpclientfactories.apache.enabled=true")
+        .run(ctx -> {
+          assertThat(ctx).hasSingleBean(ApacheHttpClientFactory.class);
+          assertThat(ctx).doesNotHaveBean(ApacheHttpClientMetrics.class);
+        });
+  }
+}
@@ -0,0 +1,51 @@
+/*
+ * Copyright (c) 2020. dev-eth0.de All rights reserved.
+ */
+
+package de.dev.eth0.springboot.httpclient.impl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.verify;
+
+import org.apache.http.conn.HttpClientConnectionManager;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+public class ApacheHttpClientRegistryTest {
+
+  @Mock
+  private HttpClientConnectionManager connectionManager;
+
+  private int supplierCount;
+
+  @Test
+  public void getConnectionManager_builtOnce() {
+    ApacheHttpClientRegistry underTest = new ApacheHttpClientRegistry(this::createConnectionManager);
+    assertThat(underTest.getConnectionManager()).isSameAs(connectionManager);
+    assertThat(underTest.getConnectionManager()).isSameAs(connectionManager);
+    assertThat(supplierCount).isEqualTo(1);
+  }
+
+  @Test
+  public void close_notBuilt() {
+    ApacheHttpClientRegistry underTest = new ApacheHttpClientRegistry(this::createConnectionManager);
+    underTest.close();
+    assertThat(supplierCount).isZero();
+  }
+
+  @Test
+  public void close() {
+    ApacheHttpClientRegistry underTest = new ApacheHttpClientRegistry(this::createConnectionManager);
+    underTest.getConnectionManager();
+    underTest.close();
+    verify(connectionManager).shutdown();
+  }
+
+  private HttpClientConnectionManager createConnectionManager() {
+    supplierCount++;
+    return connectionManager;
+  }
+}
@@ -0,0 +1,143 @@
+/*
+ * Copyright (c) 2020. dev-eth0.de All rights reserved.
+ */
+
+package de.dev.eth0.springboot.httpclient.impl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.Test;
+
+public class HostPatternMatcherTest {
+
+  private static final String[] NO_PATTERN = {};
+  private static final String[] LITERAL = { "example\\.com" };
+  private static final String[] UNESCAPED_LITERAL = { "example.com" };
+  private static final String[] SUFFIX = { ".*\\.example\\.com" };
+  private static final String[] WILDCARD = { ".*" };
+  private static final String[] REGEX = { "(foo|bar)\\.de" };
+  private static final String[] REGEX_WITH_GROUPS = { "(a)(b)c\\.de", "(foo)\\.de" };
+  private static final String[] CASE_INSENSITIVE = { "(?i)EXAMPLE\\.org" };
+  private static final String[] UNTERMINATED_QUOTE = { "\\Qquoted.de" };
+  private static final String[] COMMENT = { "(?x) comment \\.de # trailing comment" };
+  private static final String[] BACK_REFERENCE = { "(a+)\\1\\.de" };
+  private static final String[] RANDOM_PARTS = { "a", "b", "ab", "-", "1", "example", "com", "de", "." };
+  private static final String[] RANDOM_PATTERNS = {
+      "example\\.com", "a.b", ".*\\.de", ".*", "(a|b)+\\.com", "[a-b]{1,3}\\.de", "(?i)AB\\.com", "\\Qa.b\\E",
+      "\\Qab", "(?x) a b # comment", "(a)\\1", "(?<name>a)b", "(?:ab)*", "a(?=b)b", "(a)(b)?\\.de", ".*b", "-1"
+  };
+
+  @Test
+  public void matchAll_noPattern() {
+    HostPatternMatcher<String[]> underTest = compile(NO_PATTERN, LITERAL);
+    assertThat(underTest.matchAll("foobar.com")).containsExactly(NO_PATTERN);
+    assertThat(underTest.matchAll("example.com")).containsExactly(NO_PATTERN, LITERAL);
+  }
+
+  @Test
+  public void matchAll_literal() {
+    HostPatternMatcher<String[]> underTest = compile(LITERAL, UNESCAPED_LITERAL);
+    assertThat(underTest.matchAll("example.com")).containsExactly(LITERAL, UNESCAPED_LITERAL);
+    assertThat(underTest.matchAll("exampleXcom")).containsExactly(UNESCAPED_LITERAL);
+    assertThat(underTest.matchAll("www.example.com")).isEmpty();
+  }
+
+  @Test
+  public void matchAll_suffix() {
+    HostPatternMatcher<String[]> underTest = compile(SUFFIX, WILDCARD);
+    assertThat(underTest.matchAll("www.example.com")).containsExactly(SUFFIX, WILDCARD);
+    assertThat(underTest.matchAll("example.com")).containsExactly(WILDCARD);
+  }
+
+  @Test
+  public void matchAll_regex() {
+    HostPatternMatcher<String[]> underTest = compile(REGEX_WITH_GROUPS, REGEX, CASE_INSENSITIVE, LITERAL);
+    assertThat(underTest.matchAll("foo.de")).containsExactly(REGEX_WITH_GROUPS, REGEX);
+    assertThat(underTest.matchAll("bar.de")).containsExactly(REGEX);
+    assertThat(underTest.matchAll("abc.de")).containsExactly(REGEX_WITH_GROUPS);
+    assertThat(underTest.matchAll("example.ORG")).containsExactly(CASE_INSENSITIVE);
+    assertThat(underTest.matchAll("example.com")).containsExactly(LITERAL);
+  }
+
+  @Test
+  public void matchAll_sameAsRegex() {
+    List<String[]> entries = List.of(REGEX, LITERAL, SUFFIX, UNESCAPED_LITERAL, WILDCARD, REGEX_WITH_GROUPS, CASE_INSENSITIVE);
+    HostPatternMatcher<String[]> underTest = HostPatternMatcher.compile(entries, HostPatternMatcherTest::toPatterns);
+    for (String host : List.of("example.com", "www.example.com", "foo.de", "abc.de", "EXAMPLE.org", "exampleXcom", "other.net")) {
+      List<String[]> expected = entries.stream()
+          .filter(entry -> Arrays.stream(toPatterns(entry)).anyMatch(pattern -> pattern.matcher(host).matches()))
+          .collect(Collectors.toList());
+      assertThat(underTest.matchAll(host)).containsExactlyElementsOf(expected);
+    }
+  }
+
+  @Test
+  public void matchAll_standalonePatterns() {
+    HostPatternMatcher<String[]> underTest = compile(UNTERMINATED_QUOTE, COMMENT, BACK_REFERENCE, REGEX);
+    assertThat(underTest.matchAll("quoted.de")).containsExactly(UNTERMINATED_QUOTE);
+    assertThat(underTest.matchAll("comment.de")).containsExactly(COMMENT);
+    assertThat(underTest.matchAll("aaaa.de")).containsExactly(BACK_REFERENCE);
+    assertThat(underTest.matchAll("foo.de")).containsExactly(REGEX);
+  }
+
+  @Test
+  public void matchAll_randomizedSameAsRegex() {
+    Random random = new Random(42);
+    for (int run = 0; run < 200; run++) {
+      List<String[]> entries = IntStream.range(0, 1 + random.nextInt(20))
+          .mapToObj(i -> IntStream.range(0, random.nextInt(3))
+              .mapToObj(j -> RANDOM_PATTERNS[random.nextInt(RANDOM_PATTERNS.length)])
+              .toArray(String[]::new))
+          .collect(Collectors.toList());
+      HostPatternMatcher<String[]> underTest = HostPatternMatcher.compile(entries, HostPatternMatcherTest::toPatterns);
+      for (int i = 0; i < 50; i++) {
+        String host = IntStream.range(0, 1 + random.nextInt(4))
+            .mapToObj(j -> RANDOM_PARTS[random.nextInt(RANDOM_PARTS.length)])
+            .collect(Collectors.joining());
+        List<String[]> expected = entries.stream()
+            .filter(entry -> entry.length == 0 || Arrays.stream(toPatterns(entry)).anyMatch(pattern -> pattern.matcher(host).matches()))
+            .collect(Collectors.toList());
+        assertThat(underTest.matchAll(host)).as("%s in %s", host, entries).containsExactlyElementsOf(expected);
+        assertThat(underTest.matchFirst(host)).isEqualTo(expected.stream().findFirst());
+      }
+    }
+  }
+
+  @Test
+  public void matchFirst() {
+    HostPatternMatcher<String[]> underTest = compile(REGEX, SUFFIX, WILDCARD);
+    assertThat(underTest.matchFirst("www.example.com")).contains(SUFFIX);
+    assertThat(underTest.matchFirst("foo.de")).contains(REGEX);
+  }
+
+  @Test
+  public void matchFirst_noMatch() {
+    HostPatternMatcher<String[]> underTest = compile(REGEX, SUFFIX);
+    assertThat(underTest.matchFirst("example.com")).isEmpty();
+  }
+
+  @Test
+  public void matchAll_manyPatterns() {
+    List<String[]> entries = IntStream.range(0, 1000)
+        .mapToObj(i -> new String[] { "partner" + i + "\\.example\\.com", ".*\\.partner" + i + "\\.com" })
+        .collect(Collectors.toList());
+    HostPatternMatcher<String[]> underTest = HostPatternMatcher.compile(entries, HostPatternMatcherTest::toPatterns);
+    assertThat(underTest.matchAll("partner42.example.com")).containsExactly(entries.get(42));
+    assertThat(underTest.matchAll("api.partner999.com")).containsExactly(entries.get(999));
+    assertThat(underTest.matchAll("partner1000.example.com")).isEmpty();
+  }
+
+  private static HostPatternMatcher<String[]> compile(String[]... entries) {
+    return HostPatternMatcher.compile(Arrays.asList(entries), HostPatternMatcherTest::toPatterns);
+  }
+
+  private static Pattern[] toPatterns(String[] patterns) {
+    return Arrays.stream(patterns).map(Pattern::compile).toArray(Pattern[]::new);
+  }
+}
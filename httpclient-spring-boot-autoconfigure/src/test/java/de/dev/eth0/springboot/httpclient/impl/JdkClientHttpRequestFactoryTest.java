@@ -0,0 +1,125 @@
+/*
+ * Copyright (c) 2020. dev-eth0.de All rights reserved.
+ */
+
+package de.dev.eth0.springboot.httpclient.impl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.ClientHttpRequest;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.util.StreamUtils;
+
+public class JdkClientHttpRequestFactoryTest {
+
+  private final List<String> requestLines = new ArrayList<>();
+  private ServerSocket serverSocket;
+  private JdkClientHttpRequestFactory underTest;
+
+  @BeforeEach
+  public void setup() throws IOException {
+    serverSocket = new ServerSocket(0);
+    Thread server = new Thread(this::serve);
+    server.setDaemon(true);
+    server.start();
+    underTest = new JdkClientHttpRequestFactory(HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build(), Duration.ofSeconds(5));
+  }
+
+  @AfterEach
+  public void tearDown() throws IOException {
+    serverSocket.close();
+  }
+
+  @Test
+  public void createRequest_get() throws IOException {
+    ClientHttpRequest request = underTest.createRequest(uri("/get"), HttpMethod.GET);
+    request.getHeaders().add("X-Test", "value");
+    request.getHeaders().add(HttpHeaders.CONNECTION, "close");
+
+    try (ClientHttpResponse response = request.execute()) {
+      assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+      assertThat(response.getStatusText()).isEqualTo("OK");
+      assertThat(response.getHeaders().getFirst("X-Request")).isEqualTo("GET /get HTTP/1.1");
+      assertThat(StreamUtils.copyToString(response.getBody(), StandardCharsets.US_ASCII)).isEmpty();
+    }
+    assertThat(requestLines).contains("X-Test: value").doesNotContain("Connection: close");
+  }
+
+  @Test
+  public void createRequest_post() throws IOException {
+    ClientHttpRequest request = underTest.createRequest(uri("/post"), HttpMethod.POST);
+    request.getHeaders().setContentType(MediaType.TEXT_PLAIN);
+    request.getHeaders().setContentLength(4);
+    StreamUtils.copy("body", StandardCharsets.US_ASCII, request.getBody());
+
+    try (ClientHttpResponse response = request.execute()) {
+      assertThat(response.getRawStatusCode()).isEqualTo(200);
+      assertThat(response.getHeaders().getContentType()).isEqualTo(MediaType.TEXT_PLAIN);
+      assertThat(StreamUtils.copyToString(response.getBody(), StandardCharsets.US_ASCII)).isEqualTo("body");
+    }
+    assertThat(requestLines).contains("Content-Length: 4", "Content-Type: text/plain");
+  }
+
+  private URI uri(String path) {
+    return URI.create("http://127.0.0.1:" + serverSocket.getLocalPort() + path);
+  }
+
+  /**
+   * Responds to each request on its own connection, echoing the request line as header and the body
+   */
+  private void serve() {
+    while (!serverSocket.isClosed()) {
+      try (Socket socket = serverSocket.accept()) {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII));
+        String requestLine = reader.readLine();
+        int contentLength = 0;
+        String contentType = null;
+        String line;
+        while ((line = reader.readLine()) != null && !line.isEmpty()) {
+          synchronized (requestLines) {
+            requestLines.add(line);
+          }
+          if (line.regionMatches(true, 0, HttpHeaders.CONTENT_LENGTH + ":", 0, 15)) {
+            contentLength = Integer.parseInt(line.substring(15).trim());
+          }
+          else if (line.regionMatches(true, 0, HttpHeaders.CONTENT_TYPE + ":", 0, 13)) {
+            contentType = line.substring(13).trim();
+          }
+        }
+        char[] body = new char[contentLength];
+        int read = 0;
+        while (read < contentLength) {
+          read += reader.read(body, read, contentLength - read);
+        }
+        OutputStream out = socket.getOutputStream();
+        out.write(("HTTP/1.1 200 OK\r\nX-Request: " + requestLine + "\r\n"
+            + (contentType != null ? "Content-Type: " + contentType + "\r\n" : "")
+            + "Content-Length: " + contentLength + "\r\nConnection: close\r\n\r\n" + new String(body))
+            .getBytes(StandardCharsets.US_ASCII));
+        out.flush();
+      }
+      catch (IOException ex) {
+        // closed server
+      }
+    }
+  }
+}
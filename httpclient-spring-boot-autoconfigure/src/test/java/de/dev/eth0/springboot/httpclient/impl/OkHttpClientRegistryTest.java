@@ -0,0 +1,61 @@
+/*
+ * Copyright (c) 2020. dev-eth0.de All rights reserved.
+ */
+
+package de.dev.eth0.springboot.httpclient.impl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+
+import okhttp3.OkHttpClient;
+
+public class OkHttpClientRegistryTest {
+
+  private final AtomicInteger builderCount = new AtomicInteger();
+
+  private final OkHttpClientRegistry underTest = new OkHttpClientRegistry(() -> {
+    builderCount.incrementAndGet();
+    return new OkHttpClient.Builder();
+  });
+
+  @Test
+  public void getClient_builtOnce() {
+    OkHttpClient client = underTest.getClient();
+    assertThat(underTest.getClient()).isSameAs(client);
+    assertThat(builderCount).hasValue(1);
+  }
+
+  @Test
+  public void getClientIfBuilt() {
+    assertThat(underTest.getClientIfBuilt()).isNull();
+    OkHttpClient client = underTest.getClient();
+    assertThat(underTest.getClientIfBuilt()).isSameAs(client);
+    assertThat(builderCount).hasValue(1);
+  }
+
+  @Test
+  public void newBuilder_sharesPoolAndDispatcher() {
+    OkHttpClient client = underTest.newBuilder().build();
+    OkHttpClient secondClient = underTest.newBuilder().build();
+
+    assertThat(client).isNotSameAs(secondClient);
+    assertThat(client.connectionPool()).isSameAs(secondClient.connectionPool());
+    assertThat(client.dispatcher()).isSameAs(secondClient.dispatcher());
+    assertThat(builderCount).hasValue(1);
+  }
+
+  @Test
+  public void close_notBuilt() {
+    underTest.close();
+    assertThat(builderCount).hasValue(0);
+  }
+
+  @Test
+  public void close() {
+    OkHttpClient client = underTest.getClient();
+    underTest.close();
+    assertThat(client.dispatcher().executorService().isShutdown()).isTrue();
+  }
+}
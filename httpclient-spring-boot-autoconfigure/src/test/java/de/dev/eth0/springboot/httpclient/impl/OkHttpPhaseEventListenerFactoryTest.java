@@ -0,0 +1,156 @@
+/*
+ * Copyright (c) 2020. dev-eth0.de All rights reserved.
+ */
+
+package de.dev.eth0.springboot.httpclient.impl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import okhttp3.Call;
+import okhttp3.Connection;
+import okhttp3.EventListener;
+import okhttp3.Protocol;
+import okhttp3.Request;
+
+public class OkHttpPhaseEventListenerFactoryTest {
+
+  private static final InetSocketAddress ADDRESS = InetSocketAddress.createUnresolved("example.com", 443);
+
+  private final List<RequestPhase> phases = new ArrayList<>();
+  private final List<String> hosts = new ArrayList<>();
+
+  private Call call;
+  private OkHttpPhaseEventListenerFactory underTest;
+
+  @BeforeEach
+  public void setup() {
+    Request request = new Request.Builder().url("https://example.com/").build();
+    call = mock(Call.class);
+    when(call.request()).thenReturn(request);
+    underTest = new OkHttpPhaseEventListenerFactory(this::phaseCompleted, 2);
+  }
+
+  @Test
+  public void create_phasesReported() {
+    EventListener listener = underTest.create(call);
+
+    listener.callStart(call);
+    listener.dnsStart(call, "example.com");
+    listener.dnsEnd(call, "example.com", List.of());
+    listener.connectStart(call, ADDRESS, Proxy.NO_PROXY);
+    listener.secureConnectStart(call);
+    listener.secureConnectEnd(call, null);
+    listener.connectEnd(call, ADDRESS, Proxy.NO_PROXY, Protocol.HTTP_1_1);
+    listener.connectionAcquired(call, mock(Connection.class));
+    listener.requestHeadersEnd(call, call.request());
+    listener.responseHeadersStart(call);
+    listener.callEnd(call);
+
+    assertThat(phases).containsExactly(RequestPhase.DNS, RequestPhase.CONNECT, RequestPhase.TLS, RequestPhase.LEASE, RequestPhase.TTFB);
+    assertThat(hosts).containsOnly("example.com");
+  }
+
+  @Test
+  public void create_followUpLeaseNotReported() {
+    EventListener listener = underTest.create(call);
+
+    listener.callStart(call);
+    listener.connectionAcquired(call, mock(Connection.class));
+    listener.connectionReleased(call, mock(Connection.class));
+    listener.connectionAcquired(call, mock(Connection.class));
+    listener.callEnd(call);
+
+    assertThat(phases).containsExactly(RequestPhase.LEASE);
+  }
+
+  @Test
+  public void create_stateOfPhasePassed() {
+    List<Object> completed = new ArrayList<>();
+    List<Object> abandoned = new ArrayList<>();
+    underTest = new OkHttpPhaseEventListenerFactory(new RequestPhaseListener() {
+
+      @Override
+      public Object startPhase(RequestPhase phase, String host) {
+        return phase;
+      }
+
+      @Override
+      public void completePhase(RequestPhase phase, String host, long durationNanos, Object state) {
+        completed.add(state);
+      }
+
+      @Override
+      public void abandonPhase(RequestPhase phase, String host, Object state) {
+        abandoned.add(state);
+      }
+
+      @Override
+      public void phaseCompleted(RequestPhase phase, String host, long durationNanos) {
+        throw new AssertionError();
+      }
+    }, 2);
+    EventListener listener = underTest.create(call);
+
+    listener.callStart(call);
+    listener.connectStart(call, ADDRESS, Proxy.NO_PROXY);
+    listener.secureConnectStart(call);
+    listener.connectFailed(call, ADDRESS, Proxy.NO_PROXY, null, new IOException());
+    listener.callFailed(call, new IOException());
+
+    assertThat(completed).containsExactly(RequestPhase.CONNECT);
+    assertThat(abandoned).containsExactly(RequestPhase.TLS, RequestPhase.LEASE);
+  }
+
+  @Test
+  public void create_plainConnect() {
+    EventListener listener = underTest.create(call);
+
+    listener.connectStart(call, ADDRESS, Proxy.NO_PROXY);
+    listener.connectEnd(call, ADDRESS, Proxy.NO_PROXY, Protocol.HTTP_1_1);
+
+    assertThat(phases).containsExactly(RequestPhase.CONNECT);
+  }
+
+  @Test
+  public void create_listenersReused() {
+    EventListener first = underTest.create(call);
+    first.callEnd(call);
+    first.callEnd(call);
+    assertThat(underTest.getPooledCount()).isEqualTo(1);
+
+    EventListener second = underTest.create(call);
+    assertThat(second).isSameAs(first);
+    assertThat(underTest.getPooledCount()).isZero();
+
+    EventListener third = underTest.create(call);
+    assertThat(third).isNotSameAs(first);
+    second.callFailed(call, new IOException());
+    third.callEnd(call);
+    assertThat(underTest.getPooledCount()).isEqualTo(2);
+  }
+
+  @Test
+  public void create_skipped() {
+    underTest = new OkHttpPhaseEventListenerFactory(this::phaseCompleted, 2, request -> true);
+    EventListener listener = underTest.create(call);
+
+    assertThat(listener).isSameAs(EventListener.NONE);
+    listener.callEnd(call);
+    assertThat(underTest.getPooledCount()).isZero();
+  }
+
+  private void phaseCompleted(RequestPhase phase, String host, long durationNanos) {
+    phases.add(phase);
+    hosts.add(host);
+  }
+}
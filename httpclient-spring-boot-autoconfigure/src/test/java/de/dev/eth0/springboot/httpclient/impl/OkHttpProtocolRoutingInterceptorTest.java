@@ -0,0 +1,180 @@
+/*
+ * Copyright (c) 2020. dev-eth0.de All rights reserved.
+ */
+
+package de.dev.eth0.springboot.httpclient.impl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import de.dev.eth0.springboot.httpclient.HttpClientProperties;
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.Interceptor;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.Response;
+import okio.Timeout;
+
+public class OkHttpProtocolRoutingInterceptorTest {
+
+  private final List<RequestPhase> startedPhases = Collections.synchronizedList(new ArrayList<>());
+  private final List<RequestPhase> completedPhases = Collections.synchronizedList(new ArrayList<>());
+
+  private ServerSocket serverSocket;
+  private OkHttpClient sharedClient;
+  private OkHttpProtocolRoutingInterceptor underTest;
+
+  @BeforeEach
+  public void setup() throws IOException {
+    serverSocket = new ServerSocket(0);
+    Thread server = new Thread(this::serve);
+    server.setDaemon(true);
+    server.start();
+
+    HttpClientProperties.Http2RouteConfiguration route = new HttpClientProperties.Http2RouteConfiguration();
+    route.setHostPatterns(new String[] { "127\\.0\\.0\\.1" });
+    route.setProtocols(new String[] { "http/1.1" });
+    underTest = new OkHttpProtocolRoutingInterceptor(Map.of(route, List.of(Protocol.HTTP_1_1)), () -> sharedClient);
+    RequestPhaseListener listener = new RequestPhaseListener() {
+
+      @Override
+      public void phaseStarted(RequestPhase phase, String host) {
+        startedPhases.add(phase);
+      }
+
+      @Override
+      public void phaseCompleted(RequestPhase phase, String host, long durationNanos) {
+        completedPhases.add(phase);
+      }
+    };
+    sharedClient = new OkHttpClient.Builder()
+        .protocols(List.of(Protocol.H2_PRIOR_KNOWLEDGE))
+        .addInterceptor(underTest)
+        .eventListenerFactory(new OkHttpPhaseEventListenerFactory(listener, 2, underTest::isRouted))
+        .build();
+  }
+
+  @AfterEach
+  public void tearDown() throws IOException {
+    serverSocket.close();
+  }
+
+  @Test
+  public void intercept_notRouted() throws IOException {
+    Interceptor.Chain chain = mockChain("http://example.com/");
+    Request request = chain.request();
+    underTest.intercept(chain);
+    verify(chain).proceed(request);
+  }
+
+  @Test
+  public void intercept_routed() throws IOException {
+    Interceptor.Chain chain = mockChain("http://127.0.0.1:" + serverSocket.getLocalPort() + "/");
+    try (Response response = underTest.intercept(chain)) {
+      assertThat(response.code()).isEqualTo(204);
+      assertThat(response.protocol()).isEqualTo(Protocol.HTTP_1_1);
+    }
+    verify(chain, never()).proceed(any());
+  }
+
+  @Test
+  public void intercept_routedBySharedClient() throws IOException {
+    Request request = new Request.Builder().url("http://127.0.0.1:" + serverSocket.getLocalPort() + "/").build();
+    try (Response response = sharedClient.newCall(request).execute()) {
+      assertThat(response.code()).isEqualTo(204);
+      assertThat(response.protocol()).isEqualTo(Protocol.HTTP_1_1);
+    }
+    // the intercepted call is not reported, the lease phase is only started once
+    assertThat(startedPhases).containsOnlyOnce(RequestPhase.LEASE);
+    assertThat(completedPhases).containsExactlyInAnyOrderElementsOf(startedPhases);
+  }
+
+  @Test
+  public void intercept_routedBySharedClient_enqueued() throws Exception {
+    Request request = new Request.Builder().url("http://127.0.0.1:" + serverSocket.getLocalPort() + "/").build();
+    CompletableFuture<Response> future = new CompletableFuture<>();
+    sharedClient.newCall(request).enqueue(new Callback() {
+
+      @Override
+      public void onFailure(Call call, IOException ex) {
+        future.completeExceptionally(ex);
+      }
+
+      @Override
+      public void onResponse(Call call, Response response) {
+        future.complete(response);
+      }
+    });
+    try (Response response = future.get(10, TimeUnit.SECONDS)) {
+      assertThat(response.code()).isEqualTo(204);
+    }
+    assertThat(startedPhases).containsOnlyOnce(RequestPhase.LEASE);
+    assertThat(completedPhases).containsExactlyInAnyOrderElementsOf(startedPhases);
+  }
+
+  @Test
+  public void intercept_canceled() throws IOException {
+    Interceptor.Chain chain = mockChain("http://127.0.0.1:" + serverSocket.getLocalPort() + "/");
+    when(chain.call().isCanceled()).thenReturn(true);
+    assertThatThrownBy(() -> underTest.intercept(chain)).isInstanceOf(IOException.class).hasMessage("Canceled");
+  }
+
+  @Test
+  public void isRouted() {
+    assertThat(underTest.isRouted(new Request.Builder().url("http://127.0.0.1/").build())).isTrue();
+    assertThat(underTest.isRouted(new Request.Builder().url("http://example.com/").build())).isFalse();
+  }
+
+  private static Interceptor.Chain mockChain(String url) throws IOException {
+    Interceptor.Chain chain = mock(Interceptor.Chain.class);
+    Call call = mock(Call.class);
+    when(call.timeout()).thenReturn(new Timeout());
+    when(chain.call()).thenReturn(call);
+    when(chain.request()).thenReturn(new Request.Builder().url(url).build());
+    when(chain.connectTimeoutMillis()).thenReturn(10000);
+    when(chain.readTimeoutMillis()).thenReturn(10000);
+    when(chain.writeTimeoutMillis()).thenReturn(10000);
+    return chain;
+  }
+
+  private void serve() {
+    while (!serverSocket.isClosed()) {
+      try (Socket socket = serverSocket.accept()) {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII));
+        String line;
+        do {
+          line = reader.readLine();
+        }
+        while (line != null && !line.isEmpty());
+        socket.getOutputStream().write("HTTP/1.1 204 No Content\r\nConnection: close\r\n\r\n".getBytes(StandardCharsets.US_ASCII));
+        socket.getOutputStream().flush();
+      }
+      catch (IOException ex) {
+        // closed server
+      }
+    }
+  }
+}
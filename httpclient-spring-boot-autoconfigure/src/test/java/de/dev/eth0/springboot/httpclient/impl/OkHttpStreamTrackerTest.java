@@ -0,0 +1,99 @@
+/*
+ * Copyright (c) 2020. dev-eth0.de All rights reserved.
+ */
+
+package de.dev.eth0.springboot.httpclient.impl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import org.junit.jupiter.api.Test;
+
+import okhttp3.Connection;
+import okhttp3.Interceptor;
+import okhttp3.Protocol;
+import okhttp3.Request;
+
+public class OkHttpStreamTrackerTest {
+
+  private final OkHttpStreamTracker underTest = new OkHttpStreamTracker();
+
+  @Test
+  public void intercept_multiplexed() throws IOException {
+    Connection connection = mockConnection(Protocol.HTTP_2);
+    Interceptor.Chain second = mockChain(connection, chain -> {
+      OkHttpStreamTracker.HostStreams streams = underTest.getHosts().get("example.com");
+      assertThat(streams.getConnections()).isEqualTo(1);
+      assertThat(streams.getActiveStreams()).isEqualTo(2);
+    });
+    Interceptor.Chain first = mockChain(connection, chain -> underTest.intercept(second));
+
+    underTest.intercept(first);
+
+    OkHttpStreamTracker.HostStreams streams = underTest.getHosts().get("example.com");
+    assertThat(streams.getProtocol()).isEqualTo(Protocol.HTTP_2);
+    assertThat(streams.getConnections()).isZero();
+    assertThat(streams.getActiveStreams()).isZero();
+    assertThat(streams.getMaxStreamsPerConnection()).isEqualTo(2);
+  }
+
+  @Test
+  public void intercept_connectionPerStream() throws IOException {
+    Interceptor.Chain second = mockChain(mockConnection(Protocol.HTTP_1_1), chain -> {
+      OkHttpStreamTracker.HostStreams streams = underTest.getHosts().get("example.com");
+      assertThat(streams.getConnections()).isEqualTo(2);
+      assertThat(streams.getActiveStreams()).isEqualTo(2);
+    });
+    Interceptor.Chain first = mockChain(mockConnection(Protocol.HTTP_1_1), chain -> underTest.intercept(second));
+
+    underTest.intercept(first);
+
+    OkHttpStreamTracker.HostStreams streams = underTest.getHosts().get("example.com");
+    assertThat(streams.getProtocol()).isEqualTo(Protocol.HTTP_1_1);
+    assertThat(streams.getConnections()).isZero();
+    assertThat(streams.getMaxStreamsPerConnection()).isEqualTo(1);
+  }
+
+  @Test
+  public void intercept_failedStreamCompleted() throws IOException {
+    Interceptor.Chain chain = mockChain(mockConnection(Protocol.HTTP_2), c -> {
+      throw new IOException("stream reset");
+    });
+
+    try {
+      underTest.intercept(chain);
+    }
+    catch (IOException ex) {
+      // expected
+    }
+
+    assertThat(underTest.getHosts().get("example.com").getActiveStreams()).isZero();
+  }
+
+  private static Connection mockConnection(Protocol protocol) {
+    Connection connection = mock(Connection.class);
+    when(connection.protocol()).thenReturn(protocol);
+    return connection;
+  }
+
+  private static Interceptor.Chain mockChain(Connection connection, ChainAction action) throws IOException {
+    Request request = new Request.Builder().url("https://example.com/").build();
+    Interceptor.Chain chain = mock(Interceptor.Chain.class);
+    when(chain.request()).thenReturn(request);
+    when(chain.connection()).thenReturn(connection);
+    when(chain.proceed(any())).thenAnswer(invocation -> {
+      action.run(chain);
+      return null;
+    });
+    return chain;
+  }
+
+  @FunctionalInterface
+  private interface ChainAction {
+
+    void run(Interceptor.Chain chain) throws IOException;
+  }
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright (c) 2020. dev-eth0.de All rights reserved.
+ */
+
+package de.dev.eth0.springboot.httpclient.impl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.net.SocketTimeoutException;
+import java.util.ArrayList;
+import java.util.List;
+import org.apache.http.HttpClientConnection;
+import org.apache.http.HttpHost;
+import org.apache.http.HttpVersion;
+import org.apache.http.message.BasicHttpRequest;
+import org.apache.http.message.BasicHttpResponse;
+import org.apache.http.protocol.BasicHttpContext;
+import org.apache.http.protocol.HttpContext;
+import org.apache.http.protocol.HttpCoreContext;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class PhaseTimingHttpRequestExecutorTest {
+
+  private final List<RequestPhase> phases = new ArrayList<>();
+  private final List<String> hosts = new ArrayList<>();
+
+  private HttpClientConnection connection;
+  private HttpContext context;
+
+  @BeforeEach
+  public void setup() throws Exception {
+    connection = mock(HttpClientConnection.class);
+    when(connection.receiveResponseHeader()).thenReturn(new BasicHttpResponse(HttpVersion.HTTP_1_1, 204, "No Content"));
+    context = new BasicHttpContext();
+    context.setAttribute(HttpCoreContext.HTTP_TARGET_HOST, new HttpHost("example.com", 443, "https"));
+  }
+
+  @Test
+  public void execute_timeToFirstByte() throws Exception {
+    PhaseTimingHttpRequestExecutor underTest = new PhaseTimingHttpRequestExecutor(this::phaseCompleted);
+
+    underTest.execute(new BasicHttpRequest("GET", "/"), connection, context);
+
+    assertThat(phases).containsExactly(RequestPhase.TTFB);
+    assertThat(hosts).containsExactly("example.com");
+  }
+
+  @Test
+  public void execute_tunnel() throws Exception {
+    PhaseTimingHttpRequestExecutor underTest = new PhaseTimingHttpRequestExecutor(this::phaseCompleted);
+
+    underTest.execute(new BasicHttpRequest("CONNECT", "example.com:443"), connection, context);
+
+    assertThat(phases).containsExactly(RequestPhase.TUNNEL);
+  }
+
+  @Test
+  public void execute_failedPhaseAbandoned() throws Exception {
+    List<RequestPhase> abandoned = new ArrayList<>();
+    when(connection.receiveResponseHeader()).thenThrow(new SocketTimeoutException());
+    PhaseTimingHttpRequestExecutor underTest = new PhaseTimingHttpRequestExecutor(new RequestPhaseListener() {
+
+      @Override
+      public void phaseCompleted(RequestPhase phase, String host, long durationNanos) {
+        phases.add(phase);
+      }
+
+      @Override
+      public void abandonPhase(RequestPhase phase, String host, Object state) {
+        abandoned.add(phase);
+      }
+    });
+
+    assertThatThrownBy(() -> underTest.execute(new BasicHttpRequest("GET", "/"), connection, context))
+        .isInstanceOf(SocketTimeoutException.class);
+
+    assertThat(phases).isEmpty();
+    assertThat(abandoned).containsExactly(RequestPhase.TTFB);
+  }
+
+  @Test
+  public void execute_noListener() throws Exception {
+    PhaseTimingHttpRequestExecutor underTest = new PhaseTimingHttpRequestExecutor(null);
+
+    assertThat(underTest.execute(new BasicHttpRequest("GET", "/"), connection, context).getStatusLine().getStatusCode()).isEqualTo(204);
+  }
+
+  private void phaseCompleted(RequestPhase phase, String host, long durationNanos) {
+    assertThat(durationNanos).isNotNegative();
+    phases.add(phase);
+    hosts.add(host);
+  }
+}
@@ -0,0 +1,29 @@
+/*
+ * Copyright (c) 2020. dev-eth0.de All rights reserved.
+ */
+
+package de.dev.eth0.springboot.httpclient.impl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.concurrent.ExecutorService;
+import org.junit.jupiter.api.Test;
+
+public class VirtualThreadsTest {
+
+  @Test
+  public void newVirtualThreadPerTaskExecutor() throws Exception {
+    ExecutorService executor = VirtualThreads.newVirtualThreadPerTaskExecutor();
+    if (!VirtualThreads.isSupported()) {
+      assertThat(executor).isNull();
+      return;
+    }
+    try {
+      Object virtual = executor.submit(() -> Thread.class.getMethod("isVirtual").invoke(Thread.currentThread())).get();
+      assertThat(virtual).isEqualTo(true);
+    }
+    finally {
+      executor.shutdown();
+    }
+  }
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright (c) 2020. dev-eth0.de All rights reserved.
+ */
+
+package de.dev.eth0.springboot.httpclient.impl.actuator;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.concurrent.TimeUnit;
+import org.apache.http.HttpClientConnection;
+import org.apache.http.HttpHost;
+import org.apache.http.conn.HttpClientConnectionManager;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.impl.client.HttpClientBuilder;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.cloud.commons.httpclient.ApacheHttpClientFactory;
+
+import de.dev.eth0.springboot.httpclient.HttpClientProperties;
+import de.dev.eth0.springboot.httpclient.impl.ConfigurableApacheHttpClientFactory;
+
+public class ApacheHttpClientInspectorTest {
+
+  private final StaticListableBeanFactory beanFactory = new StaticListableBeanFactory();
+
+  private ConfigurableApacheHttpClientFactory factory;
+  private ApacheHttpClientInspector underTest;
+
+  @BeforeEach
+  public void setup() {
+    factory = new ConfigurableApacheHttpClientFactory(HttpClientBuilder.create(), new HttpClientProperties());
+    underTest = new ApacheHttpClientInspector(beanFactory.getBeanProvider(ApacheHttpClientFactory.class));
+  }
+
+  @AfterEach
+  public void tearDown() {
+    factory.destroy();
+  }
+
+  @Test
+  public void describe_noFactory() {
+    assertThat(underTest.describe()).isEmpty();
+    assertThat(underTest.evictIdleConnections()).isEmpty();
+  }
+
+  @Test
+  public void describe_routes() throws Exception {
+    beanFactory.addBean("apacheHttpClientFactory", factory);
+    HttpClientConnectionManager connectionManager = factory.getRegistry().getConnectionManager();
+    HttpRoute route = new HttpRoute(new HttpHost("example.com", 80));
+    HttpClientConnection connection = connectionManager.requestConnection(route, null).get(1, TimeUnit.SECONDS);
+
+    HttpClientEndpoint.ClientDescriptor descriptor = underTest.describe().orElseThrow();
+
+    assertThat(descriptor.getClient()).isEqualTo(ApacheHttpClientInspector.CLIENT);
+    assertThat(descriptor.getPool().getLeased()).isEqualTo(1);
+    assertThat(descriptor.getPool().getMax()).isEqualTo(HttpClientProperties.PoolConfiguration.DEFAULT_MAX_TOTAL);
+    assertThat(descriptor.getRoutes()).hasSize(1);
+    assertThat(descriptor.getRoutes().get(0).getRoute()).isEqualTo(route.toString());
+    assertThat(descriptor.getRoutes().get(0).getLeased()).isEqualTo(1);
+    assertThat(descriptor.getProxies()).isNull();
+    assertThat(descriptor.getTls()).containsEntry("sessionCacheSize", (long)HttpClientProperties.SslConfiguration.DEFAULT_SESSION_CACHE_SIZE);
+    connectionManager.releaseConnection(connection, null, 0, TimeUnit.MILLISECONDS);
+  }
+
+  @Test
+  public void evictIdleConnections() {
+    beanFactory.addBean("apacheHttpClientFactory", factory);
+
+    assertThat(underTest.evictIdleConnections()).hasValue(0);
+  }
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright (c) 2020. dev-eth0.de All rights reserved.
+ */
+
+package de.dev.eth0.springboot.httpclient.impl.actuator;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.OptionalInt;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import de.dev.eth0.springboot.httpclient.HttpClientProperties;
+
+@ExtendWith(MockitoExtension.class)
+public class HttpClientEndpointTest {
+
+  @Mock
+  private HttpClientInspector inspector;
+
+  private final HttpClientProperties httpClientProperties = new HttpClientProperties();
+
+  private HttpClientEndpoint underTest;
+
+  @BeforeEach
+  public void setup() {
+    underTest = new HttpClientEndpoint(httpClientProperties, List.of(inspector));
+  }
+
+  @Test
+  public void httpClient_propertiesMasked() {
+    HttpClientProperties.ProxyConfiguration proxyConfiguration = new HttpClientProperties.ProxyConfiguration();
+    proxyConfiguration.setProxyHost("localhost");
+    proxyConfiguration.setProxyUser("user");
+    proxyConfiguration.setProxyPassword("secret");
+    httpClientProperties.setProxies(new HttpClientProperties.ProxyConfiguration[] { proxyConfiguration });
+    when(inspector.describe()).thenReturn(Optional.empty());
+
+    Map<String, Object> properties = underTest.httpClient().getProperties();
+
+    assertThat(properties).containsEntry("sslContext", "TLSv1.2");
+    Map<?, ?> proxy = (Map<?, ?>)((List<?>)properties.get("proxies")).get(0);
+    assertThat(proxy.get("proxyHost")).isEqualTo("localhost");
+    assertThat(proxy.get("proxyUser")).isEqualTo("user");
+    assertThat(proxy.get("proxyPassword")).isEqualTo("******");
+    assertThat(((Map<?, ?>)properties.get("pool")).get("maxTotal")).isEqualTo(HttpClientProperties.PoolConfiguration.DEFAULT_MAX_TOTAL);
+  }
+
+  @Test
+  public void httpClient_clients() {
+    HttpClientEndpoint.ClientDescriptor client = new HttpClientEndpoint.ClientDescriptor("test",
+        new HttpClientEndpoint.PoolDescriptor(null, 1, 2, 3, 4), List.of(), null, null, null);
+    when(inspector.describe()).thenReturn(Optional.of(client));
+
+    assertThat(underTest.httpClient().getClients()).containsExactly(client);
+  }
+
+  @Test
+  public void httpClient_certificates() {
+    httpClientProperties.getTruststore().setPath("classpath:truststore.jks");
+    httpClientProperties.getTruststore().setPassword("changeit");
+    when(inspector.describe()).thenReturn(Optional.empty());
+
+    List<HttpClientEndpoint.CertificateDescriptor> certificates = underTest.httpClient().getCertificates();
+
+    assertThat(certificates).hasSize(1);
+    assertThat(certificates.get(0).getStore()).isEqualTo("truststore");
+    assertThat(certificates.get(0).getAlias()).isEqualTo("foobar");
+    assertThat(certificates.get(0).getNotAfter()).isNotBlank();
+  }
+
+  @Test
+  public void evictIdleConnections() {
+    when(inspector.getClient()).thenReturn("test");
+    when(inspector.evictIdleConnections()).thenReturn(OptionalInt.of(2));
+
+    assertThat(underTest.evictIdleConnections()).containsExactly(Map.entry("test", 2));
+  }
+}
@@ -0,0 +1,64 @@
+/*
+ * Copyright (c) 2020. dev-eth0.de All rights reserved.
+ */
+
+package de.dev.eth0.springboot.httpclient.impl.actuator;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.cloud.commons.httpclient.OkHttpClientFactory;
+
+import de.dev.eth0.springboot.httpclient.HttpClientProperties;
+import de.dev.eth0.springboot.httpclient.impl.ConfigurableOkHttpClientFactory;
+import okhttp3.OkHttpClient;
+
+public class OkHttpClientInspectorTest {
+
+  private final StaticListableBeanFactory beanFactory = new StaticListableBeanFactory();
+
+  private ConfigurableOkHttpClientFactory factory;
+  private OkHttpClientInspector underTest;
+
+  @BeforeEach
+  public void setup() {
+    factory = new ConfigurableOkHttpClientFactory(new OkHttpClient.Builder(), new HttpClientProperties());
+    underTest = new OkHttpClientInspector(beanFactory.getBeanProvider(OkHttpClientFactory.class));
+  }
+
+  @AfterEach
+  public void tearDown() {
+    factory.destroy();
+  }
+
+  @Test
+  public void describe_noFactory() {
+    assertThat(underTest.describe()).isEmpty();
+    assertThat(underTest.evictIdleConnections()).isEmpty();
+  }
+
+  @Test
+  public void describe_pool() {
+    beanFactory.addBean("okHttpClientFactory", factory);
+
+    HttpClientEndpoint.ClientDescriptor descriptor = underTest.describe().orElseThrow();
+
+    assertThat(descriptor.getClient()).isEqualTo(OkHttpClientInspector.CLIENT);
+    assertThat(descriptor.getPool().getLeased()).isZero();
+    assertThat(descriptor.getPool().getIdle()).isZero();
+    assertThat(descriptor.getPool().getMax()).isEqualTo(HttpClientProperties.DispatcherConfiguration.DEFAULT_MAX_REQUESTS);
+    assertThat(descriptor.getRoutes()).isEmpty();
+    assertThat(descriptor.getTls()).containsEntry("sessionCacheSize", (long)HttpClientProperties.SslConfiguration.DEFAULT_SESSION_CACHE_SIZE);
+    assertThat(descriptor.getStreams()).isEmpty();
+  }
+
+  @Test
+  public void evictIdleConnections() {
+    beanFactory.addBean("okHttpClientFactory", factory);
+
+    assertThat(underTest.evictIdleConnections()).hasValue(0);
+  }
+}
@@ -5,19 +5,30 @@
 package de.dev.eth0.springboot.httpclient.impl.certificates;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.clearInvocations;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.security.KeyStore;
 import javax.net.ssl.KeyManagerFactory;
 import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSocket;
 import javax.net.ssl.TrustManagerFactory;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.mockito.junit.jupiter.MockitoSettings;
 import org.mockito.quality.Strictness;
+import org.springframework.util.ResourceUtils;
 
 import de.dev.eth0.springboot.httpclient.HttpClientProperties;
 
@@ -34,6 +45,8 @@ public class CertificateLoaderTest {
   @Mock
   private HttpClientProperties.TruststoreConfiguration truststoreConfiguration;
 
+  private final HttpClientProperties.SslConfiguration sslConfiguration = new HttpClientProperties.SslConfiguration();
+
   @BeforeEach
   public void setup() {
     when(httpClientProperties.getSslContext()).thenReturn("TLSv1.3");
@@ -45,6 +58,12 @@ public class CertificateLoaderTest {
     when(keystoreConfiguration.getPath()).thenReturn(null);
     when(keystoreConfiguration.getType()).thenReturn("PKCS12");
     when(httpClientProperties.getKeystore()).thenReturn(keystoreConfiguration);
+    when(httpClientProperties.getSsl()).thenReturn(sslConfiguration);
+  }
+
+  @AfterEach
+  public void tearDown() {
+    CertificateLoader.clearSharedSSLContexts();
   }
 
   @Test
@@ -83,6 +102,140 @@ public class CertificateLoaderTest {
     assertThat(underTest.getProtocol()).isEqualTo("TLSv1.3");
   }
 
+  @Test
+  public void sslContext_sessionCache() {
+    sslConfiguration.setSessionCacheSize(100);
+    sslConfiguration.setSessionTimeout(60000);
+    SSLContext underTest = CertificateLoader.buildSSLContext(httpClientProperties, null, null);
+    assertThat(underTest).isNotNull();
+    assertThat(underTest.getClientSessionContext().getSessionCacheSize()).isEqualTo(100);
+    assertThat(underTest.getClientSessionContext().getSessionTimeout()).isEqualTo(60);
+  }
+
+  @Test
+  public void sharedSSLContext_cached() {
+    SharedSSLContext underTest = CertificateLoader.getSharedSSLContext(httpClientProperties);
+    assertThat(underTest).isNotNull();
+    assertThat(CertificateLoader.getSharedSSLContext(httpClientProperties)).isSameAs(underTest);
+
+    sslConfiguration.setSessionCacheSize(100);
+    assertThat(CertificateLoader.getSharedSSLContext(httpClientProperties)).isNotSameAs(underTest);
+  }
+
+  @Test
+  public void sharedSSLContext_defaultTrustManager() {
+    SharedSSLContext underTest = CertificateLoader.getSharedSSLContext(httpClientProperties);
+    assertThat(underTest.getTrustManager()).isNotNull();
+    assertThat(underTest.getTrustManager().getAcceptedIssuers()).hasSizeGreaterThan(1);
+  }
+
+  @Test
+  public void sharedSSLContext_truststore() {
+    mockValidTruststoreConfiguration();
+    SharedSSLContext underTest = CertificateLoader.getSharedSSLContext(httpClientProperties);
+    assertThat(underTest.getTrustManager()).isNotNull();
+    assertThat(underTest.getTrustManager().getAcceptedIssuers()).hasSize(1);
+  }
+
+  @Test
+  public void sharedSSLContext_notReloading() {
+    mockValidTruststoreConfiguration();
+    SharedSSLContext underTest = CertificateLoader.getSharedSSLContext(httpClientProperties);
+    assertThat(underTest.isReloading()).isFalse();
+    assertThat(underTest.getTrustManager()).isNotInstanceOf(ReloadingX509TrustManager.class);
+  }
+
+  @Test
+  public void sharedSSLContext_reloadTruststore(@TempDir Path directory) throws Exception {
+    Path truststore = directory.resolve("truststore.jks");
+    Files.copy(ResourceUtils.getFile("classpath:truststore.jks").toPath(), truststore);
+    when(truststoreConfiguration.getPath()).thenReturn(truststore.toString());
+    when(truststoreConfiguration.getPassword()).thenReturn("changeit");
+    sslConfiguration.setReload(true);
+    SharedSSLContext underTest = CertificateLoader.getSharedSSLContext(httpClientProperties);
+    assertThat(underTest.isReloading()).isTrue();
+    assertThat(underTest.getTrustManager()).isInstanceOf(ReloadingX509TrustManager.class);
+    assertThat(underTest.getTrustManager().getAcceptedIssuers()).hasSize(1);
+
+    // an incomplete store is skipped, the current certificates are kept
+    Path temp = Files.write(directory.resolve("truststore.tmp"), new byte[] { 1, 2, 3 });
+    Files.move(temp, truststore, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    KeyStore emptyStore = KeyStore.getInstance("JKS");
+    emptyStore.load(null, null);
+    try (OutputStream os = Files.newOutputStream(temp)) {
+      emptyStore.store(os, "changeit".toCharArray());
+    }
+    Files.move(temp, truststore, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    long timeout = System.currentTimeMillis() + 10000;
+    while (underTest.getTrustManager().getAcceptedIssuers().length > 0 && System.currentTimeMillis() < timeout) {
+      Thread.sleep(50);
+    }
+    assertThat(underTest.getTrustManager().getAcceptedIssuers()).isEmpty();
+  }
+
+  @Test
+  public void sharedSSLContext_reloadKeystore() {
+    mockValidKeystoreConfiguration();
+    sslConfiguration.setReload(true);
+    SharedSSLContext underTest = CertificateLoader.getSharedSSLContext(httpClientProperties);
+    assertThat(underTest.isReloading()).isTrue();
+    // the JVMs default trust manager isn't reloaded
+    assertThat(underTest.getTrustManager()).isNotInstanceOf(ReloadingX509TrustManager.class);
+  }
+
+  @Test
+  public void sharedSSLContext_protocolsAndCipherSuites() throws Exception {
+    sslConfiguration.setProtocols(new String[] { "TLSv1.3", "invalid", "TLSv1.2" });
+    sslConfiguration.setCipherSuites(new String[] { "TLS_AES_256_GCM_SHA384", "invalid", "TLS_AES_128_GCM_SHA256" });
+    SharedSSLContext underTest = CertificateLoader.getSharedSSLContext(httpClientProperties);
+    assertThat(underTest.getProtocols()).containsExactly("TLSv1.3", "TLSv1.2");
+    assertThat(underTest.getCipherSuites()).containsExactly("TLS_AES_256_GCM_SHA384", "TLS_AES_128_GCM_SHA256");
+    try (SSLSocket socket = (SSLSocket)underTest.getSocketFactory().createSocket()) {
+      assertThat(socket.getEnabledProtocols()).containsExactly("TLSv1.3", "TLSv1.2");
+      assertThat(socket.getEnabledCipherSuites()).containsExactly("TLS_AES_256_GCM_SHA384", "TLS_AES_128_GCM_SHA256");
+    }
+  }
+
+  @Test
+  public void sharedSSLContext_unsupportedProtocols() {
+    sslConfiguration.setProtocols(new String[] { "invalid" });
+    SharedSSLContext underTest = CertificateLoader.getSharedSSLContext(httpClientProperties);
+    assertThat(underTest.getProtocols()).isNull();
+    assertThat(underTest.getCipherSuites()).isNull();
+  }
+
+  @Test
+  public void sharedSSLContext_provider() {
+    sslConfiguration.setProvider("SunJSSE");
+    SharedSSLContext underTest = CertificateLoader.getSharedSSLContext(httpClientProperties);
+    assertThat(underTest.getSslContext().getProvider().getName()).isEqualTo("SunJSSE");
+  }
+
+  @Test
+  public void sharedSSLContext_invalidProvider() {
+    sslConfiguration.setProvider("invalid");
+    SharedSSLContext underTest = CertificateLoader.getSharedSSLContext(httpClientProperties);
+    assertThat(underTest).isNotNull();
+    assertThat(underTest.getSslContext().getProtocol()).isEqualTo("TLSv1.3");
+  }
+
+  @Test
+  public void sharedSSLContext_invalidProtocol() {
+    when(httpClientProperties.getSslContext()).thenReturn("invalid");
+    assertThat(CertificateLoader.getSharedSSLContext(httpClientProperties)).isNull();
+  }
+
+  @Test
+  public void sharedSSLContext_failureCached() {
+    when(httpClientProperties.getSslContext()).thenReturn("invalid");
+    assertThat(CertificateLoader.getSharedSSLContext(httpClientProperties)).isNull();
+    clearInvocations(httpClientProperties);
+
+    assertThat(CertificateLoader.getSharedSSLContext(httpClientProperties)).isNull();
+    // only read for the key of the cache, the stores are not loaded again
+    verify(httpClientProperties, times(1)).getTruststore();
+  }
+
   @Test
   public void trustManagerFactory_nullPath() {
     mockValidTruststoreConfiguration();
@@ -0,0 +1,87 @@
+/*
+ * Copyright (c) 2020. dev-eth0.de All rights reserved.
+ */
+
+package de.dev.eth0.springboot.httpclient.impl.certificates;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class KeyStoreWatcherTest {
+
+  @TempDir
+  Path directory;
+
+  private KeyStoreWatcher underTest;
+  private Path file;
+  private final BlockingQueue<String> reloads = new LinkedBlockingQueue<>();
+
+  @BeforeEach
+  public void setup() throws Exception {
+    file = directory.resolve("keystore.p12");
+    replace(file, "initial");
+    underTest = new KeyStoreWatcher();
+  }
+
+  @AfterEach
+  public void tearDown() throws Exception {
+    underTest.close();
+  }
+
+  @Test
+  public void watch_changed() throws Exception {
+    underTest.watch(file, () -> reloads.add(read(file)));
+    replace(file, "changed");
+    assertThat(reloads.poll(10, TimeUnit.SECONDS)).isEqualTo("changed");
+  }
+
+  @Test
+  public void watch_unchangedContent() throws Exception {
+    underTest.watch(file, () -> reloads.add(read(file)));
+    replace(file, "initial");
+    replace(directory.resolve("other.p12"), "other");
+    replace(file, "changed");
+    assertThat(reloads.poll(10, TimeUnit.SECONDS)).isEqualTo("changed");
+    assertThat(reloads).isEmpty();
+  }
+
+  @Test
+  public void watch_failedReloadRetried() throws Exception {
+    underTest.watch(file, () -> {
+      reloads.add(read(file));
+      return reloads.size() > 1;
+    });
+    replace(file, "changed");
+    assertThat(reloads.poll(10, TimeUnit.SECONDS)).isEqualTo("changed");
+    replace(file, "changed");
+    assertThat(reloads.poll(10, TimeUnit.SECONDS)).isEqualTo("changed");
+  }
+
+  /**
+   * Replaces the file atomically, a file written in place may be read while it is truncated
+   */
+  private void replace(Path path, String content) throws Exception {
+    Path temp = Files.write(directory.resolve("replace.tmp"), content.getBytes(StandardCharsets.UTF_8));
+    Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+  }
+
+  private static String read(Path path) {
+    try {
+      return new String(Files.readAllBytes(path), StandardCharsets.UTF_8);
+    }
+    catch (Exception ex) {
+      return null;
+    }
+  }
+}
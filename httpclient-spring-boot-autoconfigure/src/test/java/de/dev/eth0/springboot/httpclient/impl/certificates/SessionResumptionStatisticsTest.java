@@ -0,0 +1,59 @@
+/*
+ * Copyright (c) 2020. dev-eth0.de All rights reserved.
+ */
+
+package de.dev.eth0.springboot.httpclient.impl.certificates;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import javax.net.ssl.SSLSession;
+import org.junit.jupiter.api.Test;
+
+public class SessionResumptionStatisticsTest {
+
+  private final SessionResumptionStatistics underTest = new SessionResumptionStatistics();
+
+  @Test
+  public void handshakeCompleted_full() {
+    underTest.handshakeStarted();
+    underTest.handshakeCompleted(session(System.currentTimeMillis()));
+
+    assertThat(underTest.getFullCount()).isEqualTo(1);
+    assertThat(underTest.getResumedCount()).isZero();
+  }
+
+  @Test
+  public void handshakeCompleted_resumed() {
+    underTest.handshakeStarted();
+    underTest.handshakeCompleted(session(System.currentTimeMillis() - 60000));
+
+    assertThat(underTest.getFullCount()).isZero();
+    assertThat(underTest.getResumedCount()).isEqualTo(1);
+  }
+
+  @Test
+  public void handshakeCompleted_notStarted() {
+    underTest.handshakeCompleted(session(System.currentTimeMillis() - 60000));
+
+    assertThat(underTest.getFullCount()).isZero();
+    assertThat(underTest.getResumedCount()).isZero();
+  }
+
+  @Test
+  public void handshakeCompleted_onlyOnce() {
+    underTest.handshakeStarted();
+    SSLSession session = session(System.currentTimeMillis());
+    underTest.handshakeCompleted(session);
+    underTest.handshakeCompleted(session);
+
+    assertThat(underTest.getFullCount()).isEqualTo(1);
+  }
+
+  private static SSLSession session(long creationTime) {
+    SSLSession session = mock(SSLSession.class);
+    when(session.getCreationTime()).thenReturn(creationTime);
+    return session;
+  }
+}
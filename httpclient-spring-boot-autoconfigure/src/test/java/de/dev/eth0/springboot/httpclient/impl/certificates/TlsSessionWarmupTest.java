@@ -0,0 +1,135 @@
+/*
+ * Copyright (c) 2020. dev-eth0.de All rights reserved.
+ */
+
+package de.dev.eth0.springboot.httpclient.impl.certificates;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.BufferedReader;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.ServerSocket;
+import java.nio.charset.StandardCharsets;
+import java.security.KeyStore;
+import java.util.Collections;
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLServerSocket;
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.TrustManagerFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.util.ResourceUtils;
+
+public class TlsSessionWarmupTest {
+
+  private static final String PASSWORD = "changeit";
+
+  private SSLServerSocket serverSocket;
+
+  @BeforeEach
+  public void setup() throws Exception {
+    KeyManagerFactory keyManagerFactory = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+    keyManagerFactory.init(loadStore("classpath:server.p12", "PKCS12"), PASSWORD.toCharArray());
+    SSLContext serverContext = SSLContext.getInstance("TLS");
+    serverContext.init(keyManagerFactory.getKeyManagers(), null, null);
+    serverSocket = (SSLServerSocket)serverContext.getServerSocketFactory().createServerSocket(0);
+    Thread server = new Thread(this::serve);
+    server.setDaemon(true);
+    server.start();
+  }
+
+  @AfterEach
+  public void tearDown() throws Exception {
+    serverSocket.close();
+  }
+
+  @Test
+  public void warmup_tls12() throws Exception {
+    assertResumable("TLSv1.2");
+  }
+
+  @Test
+  public void warmup_tls13() throws Exception {
+    // the session tickets are sent after the handshake
+    assertResumable("TLSv1.3");
+  }
+
+  @Test
+  public void warmup_invalidHosts() throws Exception {
+    SSLContext underTest = buildClientContext("TLSv1.2");
+    assertThat(TlsSessionWarmup.warmup(underTest.getSocketFactory(), new String[] { "localhost:invalid", "localhost:1" }, 1000, 1000)).isZero();
+    assertThat(Collections.list(underTest.getClientSessionContext().getIds())).isEmpty();
+  }
+
+  @Test
+  public void warmup_untrustedCertificate() throws Exception {
+    SSLContext underTest = SSLContext.getInstance("TLSv1.2");
+    underTest.init(null, null, null);
+    assertThat(TlsSessionWarmup.warmup(underTest.getSocketFactory(), new String[] { "localhost:" + serverSocket.getLocalPort() }, 1000, 1000)).isZero();
+  }
+
+  @Test
+  public void warmup_parallel() throws Exception {
+    SSLContext underTest = buildClientContext("TLSv1.2");
+    // the connections are accepted, but the handshakes are not answered
+    try (ServerSocket first = new ServerSocket(0); ServerSocket second = new ServerSocket(0)) {
+      long start = System.currentTimeMillis();
+      assertThat(TlsSessionWarmup.warmup(underTest.getSocketFactory(),
+          new String[] { "localhost:" + first.getLocalPort(), "localhost:" + second.getLocalPort() }, 500, 500)).isZero();
+      assertThat(System.currentTimeMillis() - start).isLessThan(1000);
+    }
+  }
+
+  private void assertResumable(String protocol) throws Exception {
+    SSLContext underTest = buildClientContext(protocol);
+    assertThat(TlsSessionWarmup.warmup(underTest.getSocketFactory(), new String[] { "localhost:" + serverSocket.getLocalPort() }, 1000, 1000)).isEqualTo(1);
+    assertThat(Collections.list(underTest.getClientSessionContext().getIds())).isNotEmpty();
+
+    // the creation time of a resumed session is the one of the warmup
+    Thread.sleep(10);
+    try (SSLSocket socket = (SSLSocket)underTest.getSocketFactory().createSocket("localhost", serverSocket.getLocalPort())) {
+      long start = System.currentTimeMillis();
+      socket.startHandshake();
+      assertThat(socket.getSession().getCreationTime()).isLessThan(start);
+    }
+  }
+
+  private static SSLContext buildClientContext(String protocol) throws Exception {
+    TrustManagerFactory trustManagerFactory = TrustManagerFactory.getInstance(TrustManagerFactory.getDefaultAlgorithm());
+    trustManagerFactory.init(loadStore("classpath:server-truststore.jks", "JKS"));
+    SSLContext sslContext = SSLContext.getInstance(protocol);
+    sslContext.init(null, trustManagerFactory.getTrustManagers(), null);
+    return sslContext;
+  }
+
+  private static KeyStore loadStore(String path, String type) throws Exception {
+    try (InputStream is = new FileInputStream(ResourceUtils.getFile(path))) {
+      KeyStore keyStore = KeyStore.getInstance(type);
+      keyStore.load(is, PASSWORD.toCharArray());
+      return keyStore;
+    }
+  }
+
+  private void serve() {
+    while (!serverSocket.isClosed()) {
+      try (SSLSocket socket = (SSLSocket)serverSocket.accept()) {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII));
+        String line;
+        do {
+          line = reader.readLine();
+        }
+        while (line != null && !line.isEmpty());
+        socket.getOutputStream().write("HTTP/1.1 204 No Content\r\nConnection: close\r\n\r\n".getBytes(StandardCharsets.US_ASCII));
+        socket.getOutputStream().flush();
+      }
+      catch (IOException ex) {
+        // handshake of a client rejecting the certificate or closed server
+      }
+    }
+  }
+}
@@ -0,0 +1,46 @@
+/*
+ * Copyright (c) 2020. dev-eth0.de All rights reserved.
+ */
+
+package de.dev.eth0.springboot.httpclient.impl.jfr;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+import org.apache.http.impl.client.HttpClientBuilder;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import de.dev.eth0.springboot.httpclient.HttpClientProperties;
+import de.dev.eth0.springboot.httpclient.impl.ConfigurableApacheHttpClientFactory;
+import de.dev.eth0.springboot.httpclient.impl.PhaseTimingHttpRequestExecutor;
+
+public class ApacheHttpClientFlightRecorderTest {
+
+  private ConfigurableApacheHttpClientFactory factory;
+
+  @BeforeEach
+  public void setup() {
+    factory = new ConfigurableApacheHttpClientFactory(HttpClientBuilder.create(), new HttpClientProperties(),
+        List.of(new ApacheHttpClientFlightRecorder()));
+  }
+
+  @AfterEach
+  public void tearDown() {
+    factory.destroy();
+  }
+
+  @Test
+  public void customize() {
+    HttpClientBuilder builder = factory.createBuilder();
+    factory.createBuilder();
+
+    assertThat((List<?>)ReflectionTestUtils.getField(builder, "requestFirst")).hasSize(1);
+    assertThat((List<?>)ReflectionTestUtils.getField(builder, "responseLast")).hasSize(1);
+    assertThat(ReflectionTestUtils.getField(builder, "requestExec")).isInstanceOf(PhaseTimingHttpRequestExecutor.class);
+    Object connectionManager = ReflectionTestUtils.getField(builder, "connManager");
+    assertThat(ReflectionTestUtils.getField(connectionManager, "requestPhaseListener")).isInstanceOf(HttpClientFlightRecorder.class);
+  }
+}
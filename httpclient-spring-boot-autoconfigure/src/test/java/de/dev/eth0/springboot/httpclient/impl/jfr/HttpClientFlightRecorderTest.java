@@ -0,0 +1,122 @@
+/*
+ * Copyright (c) 2020. dev-eth0.de All rights reserved.
+ */
+
+package de.dev.eth0.springboot.httpclient.impl.jfr;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import jdk.jfr.Name;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import de.dev.eth0.springboot.httpclient.impl.RequestPhase;
+
+public class HttpClientFlightRecorderTest {
+
+  @TempDir
+  Path tempDir;
+
+  private final HttpClientFlightRecorder underTest = new HttpClientFlightRecorder("test");
+
+  private Recording recording;
+
+  @BeforeEach
+  public void setup() {
+    recording = new Recording();
+    recording.enable(HttpRequestEvent.class).withThreshold(Duration.ZERO);
+    recording.enable(ConnectionLeaseEvent.class).withThreshold(Duration.ZERO);
+    recording.enable(TlsHandshakeEvent.class).withThreshold(Duration.ZERO);
+    recording.start();
+  }
+
+  @AfterEach
+  public void tearDown() {
+    recording.close();
+  }
+
+  @Test
+  public void requestFinished_phasesRecorded() throws IOException {
+    underTest.requestStarted("GET", "example.com", 0);
+    Object lease = underTest.startPhase(RequestPhase.LEASE, "example.com");
+    underTest.phaseCompleted(RequestPhase.DNS, "example.com", TimeUnit.MILLISECONDS.toNanos(2));
+    Object tls = underTest.startPhase(RequestPhase.TLS, "example.com");
+    underTest.completePhase(RequestPhase.TLS, "example.com", TimeUnit.MILLISECONDS.toNanos(3), tls);
+    underTest.completePhase(RequestPhase.LEASE, "example.com", TimeUnit.MILLISECONDS.toNanos(5), lease);
+    underTest.phaseCompleted(RequestPhase.TTFB, "example.com", TimeUnit.MILLISECONDS.toNanos(7));
+    underTest.requestFinished(200, 42);
+
+    List<RecordedEvent> events = stopRecording();
+    RecordedEvent request = findEvent(events, HttpRequestEvent.class);
+    assertThat(request.getString("client")).isEqualTo("test");
+    assertThat(request.getString("method")).isEqualTo("GET");
+    assertThat(request.getString("host")).isEqualTo("example.com");
+    assertThat(request.getInt("status")).isEqualTo(200);
+    assertThat(request.getLong("responseBytes")).isEqualTo(42);
+    assertThat(request.getDuration("dns")).isEqualTo(Duration.ofMillis(2));
+    assertThat(request.getDuration("tls")).isEqualTo(Duration.ofMillis(3));
+    assertThat(request.getDuration("lease")).isEqualTo(Duration.ofMillis(5));
+    assertThat(request.getDuration("ttfb")).isEqualTo(Duration.ofMillis(7));
+    assertThat(findEvent(events, ConnectionLeaseEvent.class).getString("host")).isEqualTo("example.com");
+    assertThat(findEvent(events, TlsHandshakeEvent.class).getString("client")).isEqualTo("test");
+  }
+
+  @Test
+  public void completePhase_leaseStartedByOtherThread() throws Exception {
+    Object[] lease = new Object[1];
+    Thread caller = new Thread(() -> lease[0] = underTest.startPhase(RequestPhase.LEASE, "example.com"));
+    caller.start();
+    caller.join();
+    Object abandoned = underTest.startPhase(RequestPhase.LEASE, "other.com");
+
+    underTest.completePhase(RequestPhase.LEASE, "example.com", 1, lease[0]);
+    underTest.abandonPhase(RequestPhase.LEASE, "other.com", abandoned);
+
+    List<RecordedEvent> events = stopRecording();
+    assertThat(events).hasSize(1);
+    assertThat(findEvent(events, ConnectionLeaseEvent.class).getString("host")).isEqualTo("example.com");
+  }
+
+  @Test
+  public void requestFinished_notStarted() throws IOException {
+    underTest.requestFinished(200, 0);
+    underTest.phaseCompleted(RequestPhase.LEASE, "example.com", 1);
+
+    assertThat(stopRecording()).isEmpty();
+  }
+
+  @Test
+  public void requestStarted_disabled() throws IOException {
+    recording.disable(HttpRequestEvent.class);
+
+    underTest.requestStarted("GET", "example.com", 0);
+    underTest.requestFinished(200, 0);
+
+    assertThat(stopRecording()).isEmpty();
+  }
+
+  private List<RecordedEvent> stopRecording() throws IOException {
+    Path file = tempDir.resolve("recording.jfr");
+    recording.stop();
+    recording.dump(file);
+    return RecordingFile.readAllEvents(file);
+  }
+
+  private static RecordedEvent findEvent(List<RecordedEvent> events, Class<?> eventClass) {
+    String name = eventClass.getAnnotation(Name.class).value();
+    return events.stream()
+        .filter(event -> event.getEventType().getName().equals(name))
+        .findFirst()
+        .orElseThrow(() -> new AssertionError("No event " + name));
+  }
+}
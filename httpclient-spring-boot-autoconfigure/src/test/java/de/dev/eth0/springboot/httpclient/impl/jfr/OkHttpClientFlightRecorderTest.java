@@ -0,0 +1,41 @@
+/*
+ * Copyright (c) 2020. dev-eth0.de All rights reserved.
+ */
+
+package de.dev.eth0.springboot.httpclient.impl.jfr;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import de.dev.eth0.springboot.httpclient.HttpClientProperties;
+import de.dev.eth0.springboot.httpclient.impl.ConfigurableOkHttpClientFactory;
+import de.dev.eth0.springboot.httpclient.impl.OkHttpPhaseEventListenerFactory;
+import okhttp3.OkHttpClient;
+
+public class OkHttpClientFlightRecorderTest {
+
+  private ConfigurableOkHttpClientFactory factory;
+
+  @BeforeEach
+  public void setup() {
+    factory = new ConfigurableOkHttpClientFactory(new OkHttpClient.Builder(), new HttpClientProperties(),
+        List.of(new OkHttpClientFlightRecorder()));
+  }
+
+  @AfterEach
+  public void tearDown() {
+    factory.destroy();
+  }
+
+  @Test
+  public void customize() {
+    OkHttpClient client = factory.createBuilder(false).build();
+
+    assertThat(client.interceptors()).hasSize(1);
+    assertThat(client.eventListenerFactory()).isInstanceOf(OkHttpPhaseEventListenerFactory.class);
+  }
+}
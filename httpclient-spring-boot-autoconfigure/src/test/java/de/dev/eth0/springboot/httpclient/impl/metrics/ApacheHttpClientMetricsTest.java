@@ -0,0 +1,143 @@
+/*
+ * Copyright (c) 2020. dev-eth0.de All rights reserved.
+ */
+
+package de.dev.eth0.springboot.httpclient.impl.metrics;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.http.HttpClientConnection;
+import org.apache.http.HttpHost;
+import org.apache.http.HttpRequestInterceptor;
+import org.apache.http.HttpResponseInterceptor;
+import org.apache.http.HttpVersion;
+import org.apache.http.conn.HttpClientConnectionManager;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.message.BasicHttpRequest;
+import org.apache.http.message.BasicHttpResponse;
+import org.apache.http.protocol.BasicHttpContext;
+import org.apache.http.protocol.HttpContext;
+import org.apache.http.protocol.HttpCoreContext;
+import org.apache.http.protocol.HttpRequestExecutor;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import de.dev.eth0.springboot.httpclient.HttpClientProperties;
+import de.dev.eth0.springboot.httpclient.impl.ConfigurableApacheHttpClientFactory;
+
+public class ApacheHttpClientMetricsTest {
+
+  private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+  private final HttpClientProperties httpClientProperties = new HttpClientProperties();
+
+  private ConfigurableApacheHttpClientFactory factory;
+
+  @BeforeEach
+  public void setup() {
+    httpClientProperties.getMetrics().setHosts(new String[] { "example.com" });
+    ApacheHttpClientMetrics underTest = new ApacheHttpClientMetrics(registry, httpClientProperties.getMetrics());
+    factory = new ConfigurableApacheHttpClientFactory(HttpClientBuilder.create(), httpClientProperties, List.of(underTest));
+  }
+
+  @AfterEach
+  public void tearDown() {
+    factory.destroy();
+  }
+
+  @Test
+  public void customize_interceptorsAddedOnce() {
+    HttpClientBuilder builder = factory.createBuilder();
+    factory.createBuilder();
+
+    assertThat((List<?>)ReflectionTestUtils.getField(builder, "requestFirst")).hasSize(1);
+    assertThat((List<?>)ReflectionTestUtils.getField(builder, "responseLast")).hasSize(1);
+  }
+
+  @Test
+  public void customize_requestTimed() throws Exception {
+    HttpClientBuilder builder = factory.createBuilder();
+    HttpRequestInterceptor requestInterceptor = (HttpRequestInterceptor)((List<?>)ReflectionTestUtils.getField(builder, "requestFirst")).get(0);
+    HttpResponseInterceptor responseInterceptor = (HttpResponseInterceptor)((List<?>)ReflectionTestUtils.getField(builder, "responseLast")).get(0);
+
+    HttpContext context = new BasicHttpContext();
+    context.setAttribute(HttpCoreContext.HTTP_TARGET_HOST, new HttpHost("example.com", 443, "https"));
+    requestInterceptor.process(new BasicHttpRequest("GET", "/"), context);
+    responseInterceptor.process(new BasicHttpResponse(HttpVersion.HTTP_1_1, 204, "No Content"), context);
+
+    assertThat(registry.get(HttpClientMetrics.REQUESTS)
+        .tags("client", ApacheHttpClientMetrics.CLIENT, "host", "example.com", "method", "GET", "status", "204")
+        .timer().count()).isEqualTo(1);
+  }
+
+  @Test
+  public void customize_requestFailed() throws Exception {
+    HttpClientBuilder builder = factory.createBuilder();
+    HttpRequestInterceptor requestInterceptor = (HttpRequestInterceptor)((List<?>)ReflectionTestUtils.getField(builder, "requestFirst")).get(0);
+    HttpRequestExecutor requestExecutor = (HttpRequestExecutor)ReflectionTestUtils.getField(builder, "requestExec");
+    HttpClientConnection connection = mock(HttpClientConnection.class);
+    doThrow(new IOException("Connection reset")).when(connection).sendRequestHeader(any());
+
+    HttpContext context = new BasicHttpContext();
+    context.setAttribute(HttpCoreContext.HTTP_TARGET_HOST, new HttpHost("example.com", 443, "https"));
+    BasicHttpRequest request = new BasicHttpRequest("GET", "/");
+    requestInterceptor.process(request, context);
+    assertThatThrownBy(() -> requestExecutor.execute(request, connection, context)).isInstanceOf(IOException.class);
+
+    assertThat(registry.get(HttpClientMetrics.REQUESTS)
+        .tags("client", ApacheHttpClientMetrics.CLIENT, "host", "example.com", "method", "GET", "status", HttpClientMetrics.IO_ERROR)
+        .timer().count()).isEqualTo(1);
+  }
+
+  @Test
+  public void customize_poolGauges() {
+    factory.createBuilder();
+
+    assertThat(registry.get(HttpClientMetrics.POOL_LEASED).tag("client", ApacheHttpClientMetrics.CLIENT).gauge().value()).isZero();
+    assertThat(registry.get(HttpClientMetrics.POOL_IDLE).tag("client", ApacheHttpClientMetrics.CLIENT).gauge().value()).isZero();
+    assertThat(registry.get(HttpClientMetrics.POOL_PENDING).tag("client", ApacheHttpClientMetrics.CLIENT).gauge().value()).isZero();
+    assertThat(registry.get(HttpClientMetrics.POOL_MAX_PER_ROUTE).tag("client", ApacheHttpClientMetrics.CLIENT)
+        .tag("route", HttpClientMetrics.DEFAULT_ROUTE).gauge().value())
+        .isEqualTo(HttpClientProperties.PoolConfiguration.DEFAULT_MAX_PER_ROUTE);
+  }
+
+  @Test
+  public void customize_maxPerConfiguredRoute() {
+    factory.destroy();
+    HttpClientProperties.RouteConfiguration route = new HttpClientProperties.RouteConfiguration();
+    route.setHostPatterns(new String[] { "example\\.com", ".*\\.example\\.org" });
+    route.setMaxPerRoute(42);
+    httpClientProperties.getPool().setRoutes(new HttpClientProperties.RouteConfiguration[] { route });
+    ApacheHttpClientMetrics underTest = new ApacheHttpClientMetrics(registry, httpClientProperties.getMetrics());
+    factory = new ConfigurableApacheHttpClientFactory(HttpClientBuilder.create(), httpClientProperties, List.of(underTest));
+    factory.createBuilder();
+
+    assertThat(registry.get(HttpClientMetrics.POOL_MAX_PER_ROUTE).tag("client", ApacheHttpClientMetrics.CLIENT)
+        .tag("route", "example\\.com,.*\\.example\\.org").gauge().value()).isEqualTo(42);
+    assertThat(registry.get(HttpClientMetrics.POOL_MAX_PER_ROUTE).tag("route", HttpClientMetrics.DEFAULT_ROUTE).gauge().value())
+        .isEqualTo(HttpClientProperties.PoolConfiguration.DEFAULT_MAX_PER_ROUTE);
+  }
+
+  @Test
+  public void customize_leaseTimed() throws Exception {
+    factory.createBuilder();
+    HttpClientConnectionManager connectionManager = factory.getRegistry().getConnectionManager();
+    HttpRoute route = new HttpRoute(new HttpHost("example.com", 80));
+
+    HttpClientConnection connection = connectionManager.requestConnection(route, null).get(1, TimeUnit.SECONDS);
+
+    assertThat(registry.get(HttpClientMetrics.POOL_LEASED).gauge().value()).isEqualTo(1);
+    assertThat(registry.get(HttpClientMetrics.POOL_LEASE).tag("client", ApacheHttpClientMetrics.CLIENT).timer().count()).isEqualTo(1);
+    connectionManager.releaseConnection(connection, null, 0, TimeUnit.MILLISECONDS);
+  }
+}
@@ -0,0 +1,143 @@
+/*
+ * Copyright (c) 2020. dev-eth0.de All rights reserved.
+ */
+
+package de.dev.eth0.springboot.httpclient.impl.metrics;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.net.URI;
+import java.util.concurrent.TimeUnit;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import de.dev.eth0.springboot.httpclient.HttpClientProperties;
+import de.dev.eth0.springboot.httpclient.impl.RequestPhase;
+import de.dev.eth0.springboot.httpclient.impl.certificates.SessionResumptionStatistics;
+import de.dev.eth0.springboot.httpclient.impl.proxy.ConfigurableProxySelector;
+
+public class HttpClientMetricsTest {
+
+  private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+  private final HttpClientProperties.MetricsConfiguration metricsConfiguration = new HttpClientProperties.MetricsConfiguration();
+
+  @Test
+  public void recordRequest_allowedHost() {
+    metricsConfiguration.setHosts(new String[] { "Example.com" });
+    HttpClientMetrics underTest = new HttpClientMetrics(registry, "test", metricsConfiguration);
+
+    underTest.recordRequest("example.com", "GET", 200, TimeUnit.MILLISECONDS.toNanos(5));
+    underTest.recordRequest("EXAMPLE.com", "GET", 200, TimeUnit.MILLISECONDS.toNanos(7));
+
+    Timer timer = registry.get(HttpClientMetrics.REQUESTS)
+        .tags("client", "test", "host", "example.com", "method", "GET", "status", "200")
+        .timer();
+    assertThat(timer.count()).isEqualTo(2);
+    assertThat(timer.totalTime(TimeUnit.MILLISECONDS)).isEqualTo(12);
+  }
+
+  @Test
+  public void recordRequest_otherHost() {
+    metricsConfiguration.setHosts(new String[] { "example.com" });
+    HttpClientMetrics underTest = new HttpClientMetrics(registry, "test", metricsConfiguration);
+
+    underTest.recordRequest("foo.com", "GET", 200, 1);
+    underTest.recordRequest("bar.com", "GET", 200, 1);
+    underTest.recordRequest(null, "GET", 200, 1);
+
+    assertThat(registry.get(HttpClientMetrics.REQUESTS).tag("host", HttpClientMetrics.OTHER_HOST).timer().count()).isEqualTo(3);
+    assertThat(registry.find(HttpClientMetrics.REQUESTS).tag("host", "foo.com").timer()).isNull();
+  }
+
+  @Test
+  public void recordRequest_statusAndMethod() {
+    HttpClientMetrics underTest = new HttpClientMetrics(registry, "test", metricsConfiguration);
+
+    underTest.recordRequest("example.com", "GET", 200, 1);
+    underTest.recordRequest("example.com", "GET", 404, 1);
+    underTest.recordRequest("example.com", "POST", 200, 1);
+    underTest.recordRequest("example.com", "POST", -1, 1);
+
+    assertThat(registry.get(HttpClientMetrics.REQUESTS).timers()).hasSize(4);
+    assertThat(registry.get(HttpClientMetrics.REQUESTS).tags("method", "GET", "status", "404").timer().count()).isEqualTo(1);
+    assertThat(registry.get(HttpClientMetrics.REQUESTS).tags("method", "POST", "status", HttpClientMetrics.IO_ERROR).timer().count())
+        .isEqualTo(1);
+  }
+
+  @Test
+  public void recordLease() {
+    HttpClientMetrics underTest = new HttpClientMetrics(registry, "test", metricsConfiguration);
+
+    underTest.recordLease(TimeUnit.MILLISECONDS.toNanos(3));
+
+    Timer timer = registry.get(HttpClientMetrics.POOL_LEASE).tag("client", "test").timer();
+    assertThat(timer.count()).isEqualTo(1);
+    assertThat(timer.totalTime(TimeUnit.MILLISECONDS)).isEqualTo(3);
+  }
+
+  @Test
+  public void recordPhase_lease() {
+    HttpClientMetrics underTest = new HttpClientMetrics(registry, "test", metricsConfiguration);
+
+    underTest.recordPhase(RequestPhase.LEASE, "example.com", 1);
+    underTest.recordPhase(RequestPhase.TTFB, "example.com", 1);
+
+    assertThat(registry.get(HttpClientMetrics.POOL_LEASE).timer().count()).isEqualTo(1);
+    assertThat(registry.find(HttpClientMetrics.REQUEST_PHASES).timer()).isNull();
+  }
+
+  @Test
+  public void recordPhase_phasesEnabled() {
+    metricsConfiguration.setHosts(new String[] { "example.com" });
+    metricsConfiguration.setPhases(true);
+    HttpClientMetrics underTest = new HttpClientMetrics(registry, "test", metricsConfiguration);
+
+    underTest.recordPhase(RequestPhase.DNS, "example.com", TimeUnit.MILLISECONDS.toNanos(2));
+    underTest.recordPhase(RequestPhase.TLS, "example.com", TimeUnit.MILLISECONDS.toNanos(4));
+    underTest.recordPhase(RequestPhase.TLS, "foo.com", TimeUnit.MILLISECONDS.toNanos(4));
+
+    assertThat(registry.get(HttpClientMetrics.REQUEST_PHASES).timers()).hasSize(3);
+    Timer timer = registry.get(HttpClientMetrics.REQUEST_PHASES).tags("client", "test", "host", "example.com", "phase", "dns").timer();
+    assertThat(timer.count()).isEqualTo(1);
+    assertThat(timer.totalTime(TimeUnit.MILLISECONDS)).isEqualTo(2);
+    assertThat(registry.get(HttpClientMetrics.REQUEST_PHASES).tags("host", HttpClientMetrics.OTHER_HOST, "phase", "tls").timer().count())
+        .isEqualTo(1);
+  }
+
+  @Test
+  public void bindProxySelector() {
+    HttpClientProperties.ProxyConfiguration proxyConfiguration = new HttpClientProperties.ProxyConfiguration();
+    proxyConfiguration.setHostPatterns(new String[] { "example.com" });
+    proxyConfiguration.setProxyHost("localhost");
+    proxyConfiguration.setProxyPort(3128);
+    ConfigurableProxySelector proxySelector = new ConfigurableProxySelector(
+        new HttpClientProperties.ProxyConfiguration[] { proxyConfiguration });
+    try {
+      HttpClientMetrics underTest = new HttpClientMetrics(registry, "test", metricsConfiguration);
+      underTest.bindProxySelector(proxySelector);
+
+      proxySelector.select(URI.create("http://example.com"));
+      proxySelector.select(URI.create("http://example.com"));
+      proxySelector.select(URI.create("http://foo.com"));
+
+      assertThat(registry.get(HttpClientMetrics.PROXY_SELECTIONS).tag("proxy", "localhost:3128").functionCounter().count()).isEqualTo(2);
+      assertThat(registry.get(HttpClientMetrics.PROXY_SELECTIONS).tag("proxy", "DIRECT").functionCounter().count()).isEqualTo(1);
+      assertThat(registry.get(HttpClientMetrics.PROXY_CACHE).tag("result", "hit").functionCounter().count()).isEqualTo(1);
+      assertThat(registry.get(HttpClientMetrics.PROXY_CACHE).tag("result", "miss").functionCounter().count()).isEqualTo(2);
+    }
+    finally {
+      proxySelector.close();
+    }
+  }
+
+  @Test
+  public void bindSessionResumption() {
+    SessionResumptionStatistics statistics = new SessionResumptionStatistics();
+    HttpClientMetrics underTest = new HttpClientMetrics(registry, "test", metricsConfiguration);
+    underTest.bindSessionResumption(statistics);
+
+    assertThat(registry.get(HttpClientMetrics.TLS_HANDSHAKES).tag("session", "resumed").functionCounter().count()).isZero();
+    assertThat(registry.get(HttpClientMetrics.TLS_HANDSHAKES).tag("session", "full").functionCounter().count()).isZero();
+  }
+}
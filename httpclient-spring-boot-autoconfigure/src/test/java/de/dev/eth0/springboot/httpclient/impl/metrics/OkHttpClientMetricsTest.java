@@ -0,0 +1,105 @@
+/*
+ * Copyright (c) 2020. dev-eth0.de All rights reserved.
+ */
+
+package de.dev.eth0.springboot.httpclient.impl.metrics;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.util.List;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import de.dev.eth0.springboot.httpclient.HttpClientProperties;
+import de.dev.eth0.springboot.httpclient.impl.ConfigurableOkHttpClientFactory;
+import de.dev.eth0.springboot.httpclient.impl.OkHttpPhaseEventListenerFactory;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+
+public class OkHttpClientMetricsTest {
+
+  private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+  private final HttpClientProperties httpClientProperties = new HttpClientProperties();
+
+  private ConfigurableOkHttpClientFactory factory;
+
+  @BeforeEach
+  public void setup() {
+    httpClientProperties.getMetrics().setHosts(new String[] { "localhost" });
+    httpClientProperties.getTimeouts().setConnectionTimeout(1000);
+    OkHttpClientMetrics underTest = new OkHttpClientMetrics(registry, httpClientProperties.getMetrics());
+    factory = new ConfigurableOkHttpClientFactory(new OkHttpClient.Builder(), httpClientProperties, List.of(underTest));
+  }
+
+  @AfterEach
+  public void tearDown() {
+    factory.destroy();
+  }
+
+  @Test
+  public void customize_interceptorAdded() {
+    OkHttpClient client = factory.createBuilder(false).build();
+
+    assertThat(client.interceptors()).hasSize(1);
+    assertThat(factory.createBuilder(false).build().interceptors()).hasSize(1);
+  }
+
+  @Test
+  public void customize_eventListenerFactory() {
+    OkHttpClient client = factory.createBuilder(false).build();
+
+    assertThat(client.eventListenerFactory()).isInstanceOf(OkHttpPhaseEventListenerFactory.class);
+  }
+
+  @Test
+  public void customize_poolGauges() {
+    factory.createBuilder(false);
+
+    assertThat(registry.get(HttpClientMetrics.POOL_LEASED).tag("client", OkHttpClientMetrics.CLIENT).gauge().value()).isZero();
+    assertThat(registry.get(HttpClientMetrics.POOL_IDLE).tag("client", OkHttpClientMetrics.CLIENT).gauge().value()).isZero();
+    assertThat(registry.get(HttpClientMetrics.POOL_PENDING).tag("client", OkHttpClientMetrics.CLIENT).gauge().value()).isZero();
+    assertThat(registry.get(HttpClientMetrics.POOL_MAX_PER_ROUTE).tag("client", OkHttpClientMetrics.CLIENT)
+        .tag("route", HttpClientMetrics.DEFAULT_ROUTE).gauge().value())
+        .isEqualTo(HttpClientProperties.DispatcherConfiguration.DEFAULT_MAX_REQUESTS_PER_HOST);
+  }
+
+  @Test
+  public void customize_poolGaugesDontBuildClient() {
+    SimpleMeterRegistry otherRegistry = new SimpleMeterRegistry();
+    new OkHttpClientMetrics(otherRegistry, httpClientProperties.getMetrics()).customize(new OkHttpClient.Builder(), factory);
+
+    assertThat(otherRegistry.get(HttpClientMetrics.POOL_LEASED).gauge().value()).isZero();
+    assertThat(otherRegistry.get(HttpClientMetrics.POOL_PENDING).gauge().value()).isZero();
+    assertThat(otherRegistry.get(HttpClientMetrics.POOL_MAX_PER_ROUTE).gauge().value()).isNaN();
+    assertThat(factory.getRegistry().getClientIfBuilt()).isNull();
+  }
+
+  @Test
+  public void customize_tlsHandshakeCounters() {
+    factory.createBuilder(false);
+
+    assertThat(registry.get(HttpClientMetrics.TLS_HANDSHAKES).tag("client", OkHttpClientMetrics.CLIENT).tag("session", "resumed")
+        .functionCounter().count()).isZero();
+  }
+
+  @Test
+  public void customize_failedRequestTimed() throws IOException {
+    int port;
+    try (ServerSocket socket = new ServerSocket(0)) {
+      port = socket.getLocalPort();
+    }
+    OkHttpClient client = factory.createBuilder(false).retryOnConnectionFailure(false).build();
+    Request request = new Request.Builder().url("http://localhost:" + port + "/").build();
+
+    assertThatThrownBy(() -> client.newCall(request).execute()).isInstanceOf(IOException.class);
+
+    assertThat(registry.get(HttpClientMetrics.REQUESTS)
+        .tags("client", OkHttpClientMetrics.CLIENT, "host", "localhost", "method", "GET", "status", HttpClientMetrics.IO_ERROR)
+        .timer().count()).isEqualTo(1);
+  }
+}
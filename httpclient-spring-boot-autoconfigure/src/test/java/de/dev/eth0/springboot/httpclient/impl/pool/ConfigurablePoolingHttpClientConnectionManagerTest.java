@@ -0,0 +1,139 @@
+/*
+ * Copyright (c) 2020. dev-eth0.de All rights reserved.
+ */
+
+package de.dev.eth0.springboot.httpclient.impl.pool;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import org.apache.http.HttpClientConnection;
+import org.apache.http.HttpHost;
+import org.apache.http.config.Registry;
+import org.apache.http.config.RegistryBuilder;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.conn.socket.ConnectionSocketFactory;
+import org.apache.http.conn.socket.PlainConnectionSocketFactory;
+import org.apache.http.protocol.BasicHttpContext;
+import org.apache.http.protocol.HttpContext;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import de.dev.eth0.springboot.httpclient.HttpClientProperties;
+import de.dev.eth0.springboot.httpclient.impl.RequestPhase;
+
+public class ConfigurablePoolingHttpClientConnectionManagerTest {
+
+  private static final HttpRoute MATCHING_ROUTE = new HttpRoute(new HttpHost("example.com", 80));
+  private static final HttpRoute NON_MATCHING_ROUTE = new HttpRoute(new HttpHost("foobar.com", 80));
+
+  private final Registry<ConnectionSocketFactory> socketFactoryRegistry = RegistryBuilder.<ConnectionSocketFactory>create()
+      .register("http", PlainConnectionSocketFactory.getSocketFactory())
+      .build();
+
+  private HttpClientProperties.PoolConfiguration poolConfiguration;
+
+  private ConfigurablePoolingHttpClientConnectionManager underTest;
+
+  @BeforeEach
+  public void setup() {
+    HttpClientProperties.RouteConfiguration routeConfiguration = new HttpClientProperties.RouteConfiguration();
+    routeConfiguration.setHostPatterns(new String[] { "example.com" });
+    routeConfiguration.setMaxPerRoute(42);
+
+    poolConfiguration = new HttpClientProperties.PoolConfiguration();
+    poolConfiguration.setMaxTotal(100);
+    poolConfiguration.setDefaultMaxPerRoute(10);
+    poolConfiguration.setRoutes(new HttpClientProperties.RouteConfiguration[] { routeConfiguration });
+  }
+
+  @AfterEach
+  public void tearDown() {
+    if (underTest != null) {
+      underTest.shutdown();
+    }
+  }
+
+  @Test
+  public void limits() {
+    underTest = new ConfigurablePoolingHttpClientConnectionManager(socketFactoryRegistry, poolConfiguration);
+    assertThat(underTest.getMaxTotal()).isEqualTo(100);
+    assertThat(underTest.getDefaultMaxPerRoute()).isEqualTo(10);
+  }
+
+  @Test
+  public void requestConnection_matchingRoute() {
+    underTest = new ConfigurablePoolingHttpClientConnectionManager(socketFactoryRegistry, poolConfiguration);
+    underTest.requestConnection(MATCHING_ROUTE, null).cancel();
+    assertThat(underTest.getMaxPerRoute(MATCHING_ROUTE)).isEqualTo(42);
+  }
+
+  @Test
+  public void requestConnection_nonMatchingRoute() {
+    underTest = new ConfigurablePoolingHttpClientConnectionManager(socketFactoryRegistry, poolConfiguration);
+    underTest.requestConnection(NON_MATCHING_ROUTE, null).cancel();
+    assertThat(underTest.getMaxPerRoute(NON_MATCHING_ROUTE)).isEqualTo(10);
+  }
+
+  @Test
+  public void requestConnection_manyNonMatchingRoutes() {
+    underTest = new ConfigurablePoolingHttpClientConnectionManager(socketFactoryRegistry, poolConfiguration);
+    for (int i = 0; i < 2000; i++) {
+      underTest.requestConnection(new HttpRoute(new HttpHost("host" + i + ".foobar.com", 80)), null).cancel();
+    }
+    underTest.requestConnection(NON_MATCHING_ROUTE, null).cancel();
+    underTest.requestConnection(NON_MATCHING_ROUTE, null).cancel();
+    underTest.requestConnection(MATCHING_ROUTE, null).cancel();
+    assertThat(underTest.getMaxPerRoute(NON_MATCHING_ROUTE)).isEqualTo(10);
+    assertThat(underTest.getMaxPerRoute(MATCHING_ROUTE)).isEqualTo(42);
+  }
+
+  @Test
+  public void requestConnection_noRoutes() {
+    poolConfiguration.setRoutes(null);
+    underTest = new ConfigurablePoolingHttpClientConnectionManager(socketFactoryRegistry, poolConfiguration);
+    underTest.requestConnection(MATCHING_ROUTE, null).cancel();
+    assertThat(underTest.getMaxPerRoute(MATCHING_ROUTE)).isEqualTo(10);
+  }
+
+  @Test
+  public void requestConnection_requestPhaseListener() throws Exception {
+    AtomicInteger leases = new AtomicInteger();
+    underTest = new ConfigurablePoolingHttpClientConnectionManager(socketFactoryRegistry, poolConfiguration);
+    underTest.setRequestPhaseListener((phase, host, duration) -> {
+      assertThat(phase).isEqualTo(RequestPhase.LEASE);
+      assertThat(host).isEqualTo("example.com");
+      assertThat(duration).isNotNegative();
+      leases.incrementAndGet();
+    });
+
+    HttpClientConnection connection = underTest.requestConnection(MATCHING_ROUTE, null).get(1, TimeUnit.SECONDS);
+    underTest.releaseConnection(connection, null, 0, TimeUnit.MILLISECONDS);
+
+    assertThat(leases).hasValue(1);
+  }
+
+  @Test
+  public void connect_requestFailureListener() throws Exception {
+    AtomicReference<HttpContext> failedContext = new AtomicReference<>();
+    underTest = new ConfigurablePoolingHttpClientConnectionManager(socketFactoryRegistry, poolConfiguration);
+    underTest.setRequestFailureListener((context, ex) -> failedContext.set(context));
+    int port;
+    try (ServerSocket serverSocket = new ServerSocket(0)) {
+      port = serverSocket.getLocalPort();
+    }
+    HttpRoute route = new HttpRoute(new HttpHost("127.0.0.1", port));
+    HttpClientConnection connection = underTest.requestConnection(route, null).get(1, TimeUnit.SECONDS);
+    HttpContext context = new BasicHttpContext();
+
+    assertThatThrownBy(() -> underTest.connect(connection, route, 1000, context)).isInstanceOf(IOException.class);
+    assertThat(failedContext).hasValue(context);
+    underTest.releaseConnection(connection, null, 0, TimeUnit.MILLISECONDS);
+  }
+}
@@ -6,14 +6,23 @@ package de.dev.eth0.springboot.httpclient.impl.proxy;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
+import java.io.IOException;
+import java.net.ConnectException;
 import java.net.InetSocketAddress;
 import java.net.Proxy;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.nio.file.Path;
+import java.time.Duration;
 import java.util.List;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
 import de.dev.eth0.springboot.httpclient.HttpClientProperties;
+import de.dev.eth0.springboot.httpclient.impl.jfr.ProxySelectionEvent;
 
 public class ConfigurableProxySelectorTest {
 
@@ -141,4 +150,117 @@ public class ConfigurableProxySelectorTest {
     assertThat(proxies).containsExactly(MATCHING_PROXY, WILDCARD_PROXY, NO_PATTERN_PROXY);
   }
 
-}
\ No newline at end of file
+  @Test
+  public void select_cached() throws URISyntaxException {
+    HttpClientProperties.ProxyConfiguration[] proxyConfigs = {
+        MATCHING_CONFIG,
+        NON_MATCHING_CONFIG
+    };
+
+    ConfigurableProxySelector underTest = new ConfigurableProxySelector(proxyConfigs);
+
+    List<Proxy> proxies = underTest.select(new URI(MATCHING_URI));
+    assertThat(underTest.select(new URI(MATCHING_URI))).isSameAs(proxies);
+    assertThat(underTest.getCache().getHitCount()).isEqualTo(1);
+    assertThat(underTest.getCache().getMissCount()).isEqualTo(1);
+  }
+
+  @Test
+  public void select_cacheDisabled() throws URISyntaxException {
+    HttpClientProperties.ProxyConfiguration[] proxyConfigs = {
+        MATCHING_CONFIG,
+        NON_MATCHING_CONFIG
+    };
+    HttpClientProperties.ProxySelectorConfiguration proxySelectorConfiguration = new HttpClientProperties.ProxySelectorConfiguration();
+    proxySelectorConfiguration.setCacheSize(0);
+
+    ConfigurableProxySelector underTest = new ConfigurableProxySelector(proxyConfigs, proxySelectorConfiguration);
+
+    List<Proxy> proxies = underTest.select(new URI(MATCHING_URI));
+    assertThat(underTest.select(new URI(MATCHING_URI))).isNotSameAs(proxies).isEqualTo(proxies);
+    assertThat(underTest.getCache().size()).isZero();
+  }
+
+  @Test
+  public void connectFailed_proxyDeprioritized() throws URISyntaxException {
+    HttpClientProperties.ProxyConfiguration[] proxyConfigs = {
+        MATCHING_CONFIG,
+        WILDCARD_CONFIG
+    };
+    HttpClientProperties.ProxySelectorConfiguration proxySelectorConfiguration = new HttpClientProperties.ProxySelectorConfiguration();
+    proxySelectorConfiguration.setFailureThreshold(1);
+
+    ConfigurableProxySelector underTest = new ConfigurableProxySelector(proxyConfigs, proxySelectorConfiguration);
+
+    URI uri = new URI(MATCHING_URI);
+    assertThat(underTest.select(uri)).containsExactly(MATCHING_PROXY, WILDCARD_PROXY);
+
+    underTest.connectFailed(uri, MATCHING_PROXY.address(), new ConnectException("refused"));
+
+    assertThat(underTest.select(uri)).containsExactly(WILDCARD_PROXY, MATCHING_PROXY);
+    assertThat(underTest.getHealthTracker().getStates()).hasSize(1);
+
+    underTest.connectSucceeded(MATCHING_PROXY.address());
+
+    assertThat(underTest.select(uri)).containsExactly(MATCHING_PROXY, WILDCARD_PROXY);
+    assertThat(underTest.getHealthTracker().getStates()).isEmpty();
+  }
+
+  @Test
+  public void select_roundRobin() throws URISyntaxException {
+    HttpClientProperties.ProxyConfiguration roundRobinConfig = getHostConfiguration("localhost", 3128, MATCHING_HOST_PATTERN);
+    roundRobinConfig.setLoadBalancing(HttpClientProperties.LoadBalancingStrategy.ROUND_ROBIN);
+    HttpClientProperties.ProxyConfiguration[] proxyConfigs = {
+        roundRobinConfig,
+        WILDCARD_CONFIG
+    };
+
+    ConfigurableProxySelector underTest = new ConfigurableProxySelector(proxyConfigs);
+
+    URI uri = new URI(MATCHING_URI);
+    assertThat(underTest.select(uri)).containsExactly(MATCHING_PROXY, WILDCARD_PROXY);
+    assertThat(underTest.select(uri)).containsExactly(WILDCARD_PROXY, MATCHING_PROXY);
+    assertThat(underTest.select(uri)).containsExactly(MATCHING_PROXY, WILDCARD_PROXY);
+    assertThat(underTest.getCache().getMissCount()).isEqualTo(1);
+  }
+
+  @Test
+  public void select_noProxy() throws URISyntaxException {
+    HttpClientProperties.ProxyConfiguration[] proxyConfigs = {
+        WILDCARD_CONFIG
+    };
+
+    ConfigurableProxySelector underTest = new ConfigurableProxySelector(proxyConfigs, null, new String[] { ".example.com", "10.0.0.0/8" });
+
+    assertThat(underTest.select(new URI(MATCHING_URI))).containsOnly(Proxy.NO_PROXY);
+    assertThat(underTest.select(new URI("http://10.1.2.3/foo"))).containsOnly(Proxy.NO_PROXY);
+    assertThat(underTest.select(new URI(NON_MATCHING_URI))).containsExactly(WILDCARD_PROXY);
+    assertThat(underTest.getCache().getMissCount()).isEqualTo(1);
+  }
+
+  @Test
+  public void select_recorded(@TempDir Path tempDir) throws URISyntaxException, IOException {
+    HttpClientProperties.ProxyConfiguration[] proxyConfigs = {
+        MATCHING_CONFIG,
+        WILDCARD_CONFIG
+    };
+    ConfigurableProxySelector underTest = new ConfigurableProxySelector(proxyConfigs);
+
+    List<RecordedEvent> events;
+    try (Recording recording = new Recording()) {
+      recording.enable(ProxySelectionEvent.class).withThreshold(Duration.ZERO);
+      recording.start();
+      underTest.select(new URI(MATCHING_URI));
+      recording.stop();
+      Path file = tempDir.resolve("recording.jfr");
+      recording.dump(file);
+      events = RecordingFile.readAllEvents(file);
+    }
+
+    assertThat(events).hasSize(1);
+    assertThat(events.get(0).getString("host")).isEqualTo("example.com");
+    assertThat(events.get(0).getString("proxy")).isNotNull();
+    assertThat(events.get(0).getInt("proxyCount")).isEqualTo(2);
+  }
+
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright (c) 2020. dev-eth0.de All rights reserved.
+ */
+
+package de.dev.eth0.springboot.httpclient.impl.proxy;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.net.InetAddress;
+import org.junit.jupiter.api.Test;
+
+public class NoProxyMatcherTest {
+
+  @Test
+  public void matches_noEntries() {
+    assertThat(new NoProxyMatcher(null).matches("example.com")).isFalse();
+    assertThat(new NoProxyMatcher(new String[] {}).isEmpty()).isTrue();
+  }
+
+  @Test
+  public void matches_wildcard() {
+    NoProxyMatcher underTest = new NoProxyMatcher(new String[] { "*" });
+
+    assertThat(underTest.matches("example.com")).isTrue();
+    assertThat(underTest.matches("10.0.0.1")).isTrue();
+  }
+
+  @Test
+  public void matches_exactHost() {
+    NoProxyMatcher underTest = new NoProxyMatcher(new String[] { "Intranet.Example.com" });
+
+    assertThat(underTest.matches("intranet.example.com")).isTrue();
+    assertThat(underTest.matches("INTRANET.example.com.")).isTrue();
+    assertThat(underTest.matches("example.com")).isFalse();
+    assertThat(underTest.matches("foo.intranet.example.com")).isFalse();
+  }
+
+  @Test
+  public void matches_domainSuffix() {
+    NoProxyMatcher underTest = new NoProxyMatcher(new String[] { ".corp.local", "*.svc.cluster" });
+
+    assertThat(underTest.matches("corp.local")).isTrue();
+    assertThat(underTest.matches("a.b.corp.local")).isTrue();
+    assertThat(underTest.matches("x.svc.cluster")).isTrue();
+    assertThat(underTest.matches("xcorp.local")).isFalse();
+    assertThat(underTest.matches("local")).isFalse();
+  }
+
+  @Test
+  public void matches_ipv4() {
+    NoProxyMatcher underTest = new NoProxyMatcher(new String[] { "10.0.0.0/8", "172.16.0.0/12", "192.168.1.17" });
+
+    assertThat(underTest.matches("10.1.2.3")).isTrue();
+    assertThat(underTest.matches("10.255.255.255")).isTrue();
+    assertThat(underTest.matches("172.31.255.255")).isTrue();
+    assertThat(underTest.matches("192.168.1.17")).isTrue();
+    assertThat(underTest.matches("11.0.0.1")).isFalse();
+    assertThat(underTest.matches("172.32.0.0")).isFalse();
+    assertThat(underTest.matches("192.168.1.18")).isFalse();
+  }
+
+  @Test
+  public void matches_ipv6() {
+    NoProxyMatcher underTest = new NoProxyMatcher(new String[] { "fd00::/8", "::1" });
+
+    assertThat(underTest.matches("[fd12::1]")).isTrue();
+    assertThat(underTest.matches("fd12::1")).isTrue();
+    assertThat(underTest.matches("[::1]")).isTrue();
+    assertThat(underTest.matches("[::2]")).isFalse();
+    assertThat(underTest.matches("[fe80::1]")).isFalse();
+  }
+
+  @Test
+  public void matches_ipv4MappedIpv6() {
+    NoProxyMatcher underTest = new NoProxyMatcher(new String[] { "10.0.0.0/8", "::ffff:192.168.0.0/112" });
+
+    assertThat(underTest.matches("[::ffff:10.1.2.3]")).isTrue();
+    assertThat(underTest.matches("::ffff:a01:203")).isTrue();
+    assertThat(underTest.matches("192.168.1.1")).isTrue();
+    assertThat(underTest.matches("[::ffff:192.168.1.1]")).isTrue();
+    assertThat(underTest.matches("[::ffff:11.1.2.3]")).isFalse();
+    assertThat(underTest.matches("[::10.1.2.3]")).isFalse();
+  }
+
+  @Test
+  public void matches_invalidEntriesSkipped() {
+    NoProxyMatcher underTest = new NoProxyMatcher(new String[] { "example.com/8", "10.0.0.0/33", "" });
+
+    assertThat(underTest.matches("example.com")).isFalse();
+    assertThat(underTest.matches("10.0.0.1")).isFalse();
+  }
+
+  @Test
+  public void parseIpv4() {
+    assertThat(NoProxyMatcher.parseIpv4("10.1.2.3")).isEqualTo(0x0A010203L);
+    assertThat(NoProxyMatcher.parseIpv4("255.255.255.255")).isEqualTo(0xFFFFFFFFL);
+    assertThat(NoProxyMatcher.parseIpv4("256.1.1.1")).isNegative();
+    assertThat(NoProxyMatcher.parseIpv4("1.2.3")).isNegative();
+    assertThat(NoProxyMatcher.parseIpv4("1.2.3.4.5")).isNegative();
+    assertThat(NoProxyMatcher.parseIpv4("1.2.3.a")).isNegative();
+  }
+
+  @Test
+  public void parseIpv6() throws Exception {
+    for (String host : new String[] { "::", "::1", "1::", "fd12::1", "1:2:3:4:5:6:7:8", "1:0:0:2::3", "FE80::1%eth0",
+        "64:ff9b::10.1.2.3" }) {
+      assertThat(NoProxyMatcher.parseIpv6(host)).as(host).isEqualTo(InetAddress.getByName("[" + host + "]").getAddress());
+    }
+    assertThat(NoProxyMatcher.parseIpv6("::ffff:10.1.2.3"))
+        .isEqualTo(new byte[] { 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, (byte)0xff, (byte)0xff, 10, 1, 2, 3 });
+    for (String host : new String[] { ":", ":1", "1:", "1:::2", "1::2::3", "12345::", "1:2:3:4:5:6:7:8:9", "1:2:3:4:5:6:7",
+        "1:2:3:4:5:6:7::8", "::1.2.3", "::1.2.3.4:5", "g::1", "example.com:80" }) {
+      assertThat(NoProxyMatcher.parseIpv6(host)).as(host).isNull();
+    }
+  }
+}
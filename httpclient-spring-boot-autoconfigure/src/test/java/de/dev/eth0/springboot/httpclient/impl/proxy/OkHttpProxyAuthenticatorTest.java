@@ -7,6 +7,7 @@ package de.dev.eth0.springboot.httpclient.impl.proxy;
 import static okhttp3.Protocol.HTTP_1_1;
 import static org.assertj.core.api.Assertions.assertThat;
 
+import java.net.InetAddress;
 import java.net.InetSocketAddress;
 import java.net.Proxy;
 import java.util.List;
@@ -91,4 +92,47 @@ public class OkHttpProxyAuthenticatorTest {
     assertThat(authenticationRequest.header("Proxy-Authorization"))
         .isEqualTo(Credentials.basic(proxyConfigWithAuth.getProxyUser(), proxyConfigWithAuth.getProxyPassword()));
   }
-}
\ No newline at end of file
+
+  @Test
+  public void authenticate_changedAddress() throws Exception {
+    Route resolvedRoute = new Route(routeWithAuth.address(),
+        new Proxy(Proxy.Type.HTTP, new InetSocketAddress(InetAddress.getByAddress(proxyConfigWithAuth.getProxyHost(), new byte[] { 10, 0, 0, 1 }),
+            proxyConfigWithAuth.getProxyPort())),
+        InetSocketAddress.createUnresolved("example.com", 443));
+    Request request = new Request.Builder().url("http://example.com/sample").build();
+
+    Request authenticationRequest = underTest.authenticate(resolvedRoute, responseBuilder.request(request).build());
+    assertThat(authenticationRequest).isNotNull();
+    assertThat(authenticationRequest.header("Proxy-Authorization"))
+        .isEqualTo(Credentials.basic(proxyConfigWithAuth.getProxyUser(), proxyConfigWithAuth.getProxyPassword()));
+  }
+
+  @Test
+  public void authenticate_preemptiveChallenge_disabled() {
+    Request request = new Request.Builder().url("http://example.com/sample").build();
+
+    Request authenticationRequest = underTest.authenticate(routeWithAuth, responseBuilder.request(request)
+        .header("Proxy-Authenticate", OkHttpProxyAuthenticator.PREEMPTIVE_CHALLENGE).build());
+    assertThat(authenticationRequest).isNotNull();
+    assertThat(authenticationRequest.header("Proxy-Authorization"))
+        .isEqualTo(Credentials.basic(proxyConfigWithAuth.getProxyUser(), proxyConfigWithAuth.getProxyPassword()));
+    assertThat(underTest.getPreemptiveCredentials(routeWithAuth.proxy())).isNull();
+    assertThat(underTest.isPreemptive()).isFalse();
+  }
+
+  @Test
+  public void authenticate_preemptiveChallenge_enabled() {
+    proxyConfigWithAuth.setPreemptiveAuthentication(true);
+    underTest = new OkHttpProxyAuthenticator(new HttpClientProperties.ProxyConfiguration[] { proxyConfigWithAuth, proxyConfigWithoutAuth });
+    Request request = new Request.Builder().url("http://example.com/sample").build();
+
+    Request authenticationRequest = underTest.authenticate(routeWithAuth, responseBuilder.request(request)
+        .header("Proxy-Authenticate", OkHttpProxyAuthenticator.PREEMPTIVE_CHALLENGE).build());
+    String credentials = Credentials.basic(proxyConfigWithAuth.getProxyUser(), proxyConfigWithAuth.getProxyPassword());
+    assertThat(authenticationRequest).isNotNull();
+    assertThat(authenticationRequest.header("Proxy-Authorization")).isEqualTo(credentials);
+    assertThat(underTest.getPreemptiveCredentials(routeWithAuth.proxy())).isEqualTo(credentials);
+    assertThat(underTest.getPreemptiveCredentials(routeWithoutAuth.proxy())).isNull();
+    assertThat(underTest.isPreemptive()).isTrue();
+  }
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright (c) 2020. dev-eth0.de All rights reserved.
+ */
+
+package de.dev.eth0.springboot.httpclient.impl.proxy;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.net.InetSocketAddress;
+import java.util.List;
+import org.apache.http.Header;
+import org.apache.http.HttpHost;
+import org.apache.http.auth.AUTH;
+import org.apache.http.auth.AuthScheme;
+import org.apache.http.auth.ContextAwareAuthScheme;
+import org.apache.http.auth.UsernamePasswordCredentials;
+import org.apache.http.client.AuthCache;
+import org.apache.http.client.protocol.HttpClientContext;
+import org.apache.http.impl.client.BasicAuthCache;
+import org.apache.http.message.BasicHttpRequest;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import de.dev.eth0.springboot.httpclient.HttpClientProperties;
+public class PreemptiveProxyAuthInterceptorTest {
+
+  private HttpClientProperties.ProxyConfiguration config;
+  private ProxyAddressResolver addressResolver;
+
+  @BeforeEach
+  public void setUp() {
+    config = new HttpClientProperties.ProxyConfiguration();
+    config.setProxyHost("localhost");
+    config.setProxyPort(3128);
+    config.setProxyUser("testUser");
+    config.setProxyPassword("testPassword");
+    addressResolver = new ProxyAddressResolver(List.of(config), 0);
+  }
+
+  @AfterEach
+  public void tearDown() {
+    addressResolver.close();
+  }
+
+  @Test
+  public void process_disabled() {
+    PreemptiveProxyAuthInterceptor underTest = new PreemptiveProxyAuthInterceptor(new HttpClientProperties.ProxyConfiguration[] { config },
+        addressResolver);
+    assertThat(underTest.isEnabled()).isFalse();
+  }
+
+  @Test
+  public void process_authCache() throws Exception {
+    config.setPreemptiveAuthentication(true);
+    PreemptiveProxyAuthInterceptor underTest = new PreemptiveProxyAuthInterceptor(new HttpClientProperties.ProxyConfiguration[] { config },
+        addressResolver);
+    assertThat(underTest.isEnabled()).isTrue();
+
+    HttpClientContext context = HttpClientContext.create();
+    underTest.process(new BasicHttpRequest("GET", "http://example.com"), context);
+
+    AuthCache authCache = context.getAuthCache();
+    assertThat(authCache).isNotNull();
+    assertThat(authCache.get(new HttpHost("example.com", 80))).isNull();
+
+    InetSocketAddress address = (InetSocketAddress)addressResolver.getProxy("localhost", 3128).address();
+    AuthScheme authScheme = authCache.get(new HttpHost(address.getAddress().getHostAddress(), 3128));
+    assertThat(authScheme).isNotNull();
+    assertThat(authCache.get(new HttpHost("localhost", 3128))).isSameAs(authScheme);
+
+    Header header = ((ContextAwareAuthScheme)authScheme).authenticate(
+        new UsernamePasswordCredentials("testUser", "testPassword"), new BasicHttpRequest("CONNECT", "example.com:443"), context);
+    assertThat(header.getName()).isEqualTo(AUTH.PROXY_AUTH_RESP);
+    assertThat(header.getValue()).isEqualTo("Basic dGVzdFVzZXI6dGVzdFBhc3N3b3Jk");
+  }
+
+  @Test
+  public void process_existingAuthCache() throws Exception {
+    config.setPreemptiveAuthentication(true);
+    PreemptiveProxyAuthInterceptor underTest = new PreemptiveProxyAuthInterceptor(new HttpClientProperties.ProxyConfiguration[] { config },
+        addressResolver);
+    HttpClientContext context = HttpClientContext.create();
+    BasicAuthCache authCache = new BasicAuthCache();
+    context.setAuthCache(authCache);
+
+    underTest.process(new BasicHttpRequest("GET", "http://example.com"), context);
+    assertThat(context.getAuthCache()).isSameAs(authCache);
+  }
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright (c) 2020. dev-eth0.de All rights reserved.
+ */
+
+package de.dev.eth0.springboot.httpclient.impl.proxy;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import de.dev.eth0.springboot.httpclient.HttpClientProperties;
+
+public class ProxyAddressResolverTest {
+
+  private ProxyAddressResolver underTest;
+
+  @AfterEach
+  public void tearDown() {
+    if (underTest != null) {
+      underTest.close();
+    }
+  }
+
+  @Test
+  public void getProxy_resolved() {
+    underTest = new ProxyAddressResolver(List.of(getProxyConfiguration("localhost", 3128)), 0);
+
+    Proxy proxy = underTest.getProxy("localhost", 3128);
+    InetSocketAddress address = (InetSocketAddress)proxy.address();
+    assertThat(address.isUnresolved()).isFalse();
+    assertThat(address.getHostString()).isEqualTo("localhost");
+    assertThat(address.getPort()).isEqualTo(3128);
+    assertThat(underTest.getProxy("localhost", 3128)).isSameAs(proxy);
+  }
+
+  @Test
+  public void getProxy_unresolved() {
+    underTest = new ProxyAddressResolver(List.of(getProxyConfiguration("unknown.invalid", 3128)), 0);
+
+    InetSocketAddress address = (InetSocketAddress)underTest.getProxy("unknown.invalid", 3128).address();
+    assertThat(address.isUnresolved()).isTrue();
+    assertThat(address.getHostString()).isEqualTo("unknown.invalid");
+  }
+
+  @Test
+  public void refresh_unchanged() {
+    AtomicInteger changes = new AtomicInteger();
+    underTest = new ProxyAddressResolver(List.of(getProxyConfiguration("localhost", 3128)), 60000);
+    underTest.addChangeListener(changes::incrementAndGet);
+
+    Proxy proxy = underTest.getProxy("localhost", 3128);
+    underTest.refresh();
+
+    assertThat(underTest.getProxy("localhost", 3128)).isSameAs(proxy);
+    assertThat(changes).hasValue(0);
+  }
+
+  @Test
+  public void refresh_unresolvedKept() {
+    underTest = new ProxyAddressResolver(List.of(getProxyConfiguration("unknown.invalid", 3128)), 0);
+
+    Proxy proxy = underTest.getProxy("unknown.invalid", 3128);
+    underTest.refresh();
+
+    assertThat(underTest.getProxy("unknown.invalid", 3128)).isSameAs(proxy);
+  }
+
+  @Test
+  public void findKey() {
+    underTest = new ProxyAddressResolver(List.of(getProxyConfiguration("localhost", 3128)), 0);
+
+    InetSocketAddress address = (InetSocketAddress)underTest.getProxy("localhost", 3128).address();
+    assertThat(underTest.findKey(address)).isEqualTo("localhost:3128");
+    assertThat(underTest.findKey(InetSocketAddress.createUnresolved(address.getAddress().getHostAddress(), 3128))).isEqualTo("localhost:3128");
+    assertThat(underTest.findKey(InetSocketAddress.createUnresolved("localhost", 8080))).isNull();
+  }
+
+  private static HttpClientProperties.ProxyConfiguration getProxyConfiguration(String proxyHost, int proxyPort) {
+    HttpClientProperties.ProxyConfiguration config = new HttpClientProperties.ProxyConfiguration();
+    config.setProxyHost(proxyHost);
+    config.setProxyPort(proxyPort);
+    return config;
+  }
+}
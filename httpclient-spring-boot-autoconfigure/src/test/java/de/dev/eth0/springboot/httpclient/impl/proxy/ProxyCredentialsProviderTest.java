@@ -0,0 +1,61 @@
+/*
+ * Copyright (c) 2020. dev-eth0.de All rights reserved.
+ */
+
+package de.dev.eth0.springboot.httpclient.impl.proxy;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.net.InetSocketAddress;
+import java.util.List;
+import org.apache.http.auth.AuthScope;
+import org.apache.http.auth.Credentials;
+import org.apache.http.auth.UsernamePasswordCredentials;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import de.dev.eth0.springboot.httpclient.HttpClientProperties;
+
+public class ProxyCredentialsProviderTest {
+
+  private ProxyAddressResolver addressResolver;
+  private ProxyCredentialsProvider underTest;
+
+  @BeforeEach
+  public void setUp() {
+    HttpClientProperties.ProxyConfiguration config = new HttpClientProperties.ProxyConfiguration();
+    config.setProxyHost("localhost");
+    config.setProxyPort(3128);
+    addressResolver = new ProxyAddressResolver(List.of(config), 0);
+    underTest = new ProxyCredentialsProvider(addressResolver);
+    underTest.setCredentials(new AuthScope("localhost", 3128), new UsernamePasswordCredentials("testUser", "testPassword"));
+  }
+
+  @AfterEach
+  public void tearDown() {
+    addressResolver.close();
+  }
+
+  @Test
+  public void getCredentials_hostname() {
+    Credentials credentials = underTest.getCredentials(new AuthScope("localhost", 3128));
+    assertThat(credentials).isNotNull();
+    assertThat(credentials.getUserPrincipal().getName()).isEqualTo("testUser");
+  }
+
+  @Test
+  public void getCredentials_resolvedAddress() {
+    InetSocketAddress address = (InetSocketAddress)addressResolver.getProxy("localhost", 3128).address();
+
+    Credentials credentials = underTest.getCredentials(new AuthScope(address.getAddress().getHostAddress(), 3128));
+    assertThat(credentials).isNotNull();
+    assertThat(credentials.getPassword()).isEqualTo("testPassword");
+  }
+
+  @Test
+  public void getCredentials_unknown() {
+    assertThat(underTest.getCredentials(new AuthScope("example.com", 3128))).isNull();
+    assertThat(underTest.getCredentials(new AuthScope("localhost", 8080))).isNull();
+  }
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright (c) 2020. dev-eth0.de All rights reserved.
+ */
+
+package de.dev.eth0.springboot.httpclient.impl.proxy;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import de.dev.eth0.springboot.httpclient.HttpClientProperties;
+
+public class ProxyHealthTrackerTest {
+
+  private static final InetSocketAddress FIRST_ADDRESS = InetSocketAddress.createUnresolved("first", 3128);
+  private static final Proxy FIRST_PROXY = new Proxy(Proxy.Type.HTTP, FIRST_ADDRESS);
+  private static final Proxy SECOND_PROXY = new Proxy(Proxy.Type.HTTP, InetSocketAddress.createUnresolved("second", 3128));
+  private static final String FIRST_KEY = ProxyAddressResolver.key("first", 3128);
+
+  private final AtomicLong clock = new AtomicLong();
+  private ProxyHealthTracker underTest;
+
+  @BeforeEach
+  public void setUp() {
+    HttpClientProperties.ProxySelectorConfiguration configuration = new HttpClientProperties.ProxySelectorConfiguration();
+    configuration.setFailureThreshold(2);
+    configuration.setInitialRetryInterval(1000);
+    configuration.setMaxRetryInterval(3000);
+    underTest = new ProxyHealthTracker(configuration, clock::get);
+  }
+
+  @Test
+  public void prioritize_noFailures() {
+    List<Proxy> proxies = List.of(FIRST_PROXY, SECOND_PROXY);
+    assertThat(underTest.prioritize(proxies)).isSameAs(proxies);
+    assertThat(underTest.getStates()).isEmpty();
+  }
+
+  @Test
+  public void prioritize_belowThreshold() {
+    underTest.connectFailed(FIRST_KEY, FIRST_ADDRESS);
+
+    List<Proxy> proxies = List.of(FIRST_PROXY, SECOND_PROXY);
+    assertThat(underTest.isAvailable(FIRST_ADDRESS)).isTrue();
+    assertThat(underTest.prioritize(proxies)).isSameAs(proxies);
+  }
+
+  @Test
+  public void prioritize_down() {
+    underTest.connectFailed(FIRST_KEY, FIRST_ADDRESS);
+    underTest.connectFailed(FIRST_KEY, FIRST_ADDRESS);
+
+    assertThat(underTest.isAvailable(FIRST_ADDRESS)).isFalse();
+    assertThat(underTest.prioritize(List.of(FIRST_PROXY, SECOND_PROXY))).containsExactly(SECOND_PROXY, FIRST_PROXY);
+    assertThat(underTest.prioritize(List.of(FIRST_PROXY))).containsExactly(FIRST_PROXY);
+
+    ProxyHealthTracker.ProxyState state = underTest.getStates().get(0);
+    assertThat(state.getProxy()).isEqualTo(FIRST_KEY);
+    assertThat(state.isAvailable()).isFalse();
+    assertThat(state.getConsecutiveFailures()).isEqualTo(2);
+    assertThat(state.getRetryIn()).isEqualTo(1000);
+  }
+
+  @Test
+  public void connectFailed_exponentialBackoff() {
+    underTest.connectFailed(FIRST_KEY, FIRST_ADDRESS);
+    underTest.connectFailed(FIRST_KEY, FIRST_ADDRESS);
+    advance(1000);
+    assertThat(underTest.isAvailable(FIRST_ADDRESS)).isTrue();
+
+    underTest.connectFailed(FIRST_KEY, FIRST_ADDRESS);
+    assertThat(underTest.getStates().get(0).getRetryIn()).isEqualTo(2000);
+    advance(2000);
+
+    underTest.connectFailed(FIRST_KEY, FIRST_ADDRESS);
+    assertThat(underTest.getStates().get(0).getRetryIn()).isEqualTo(3000);
+  }
+
+  @Test
+  public void connectFailed_recovered() {
+    underTest.connectFailed(FIRST_KEY, FIRST_ADDRESS);
+    underTest.connectFailed(FIRST_KEY, FIRST_ADDRESS);
+    advance(1000 + 3001);
+
+    underTest.connectFailed(FIRST_KEY, FIRST_ADDRESS);
+    assertThat(underTest.isAvailable(FIRST_ADDRESS)).isTrue();
+    assertThat(underTest.getStates().get(0).getConsecutiveFailures()).isEqualTo(1);
+  }
+
+  @Test
+  public void connectSucceeded_failuresReset() {
+    assertThat(underTest.connectSucceeded(FIRST_ADDRESS)).isFalse();
+    underTest.connectFailed(FIRST_KEY, FIRST_ADDRESS);
+    underTest.connectFailed(FIRST_KEY, FIRST_ADDRESS);
+    advance(1000);
+    underTest.connectFailed(FIRST_KEY, FIRST_ADDRESS);
+    assertThat(underTest.getStates().get(0).getRetryIn()).isEqualTo(2000);
+
+    assertThat(underTest.connectSucceeded(FIRST_ADDRESS)).isTrue();
+
+    assertThat(underTest.hasFailures()).isFalse();
+    assertThat(underTest.isAvailable(FIRST_ADDRESS)).isTrue();
+    underTest.connectFailed(FIRST_KEY, FIRST_ADDRESS);
+    underTest.connectFailed(FIRST_KEY, FIRST_ADDRESS);
+    assertThat(underTest.getStates().get(0).getRetryIn()).isEqualTo(1000);
+  }
+
+  @Test
+  public void updateAddresses_healthMoved() {
+    InetSocketAddress changed = InetSocketAddress.createUnresolved("changed", 3128);
+    underTest.connectFailed(FIRST_KEY, FIRST_ADDRESS);
+    underTest.connectFailed(FIRST_KEY, FIRST_ADDRESS);
+
+    underTest.updateAddresses(key -> key.equals(FIRST_KEY) ? changed : null);
+
+    assertThat(underTest.isAvailable(FIRST_ADDRESS)).isTrue();
+    assertThat(underTest.isAvailable(changed)).isFalse();
+    assertThat(underTest.getStates()).extracting(ProxyHealthTracker.ProxyState::getProxy).containsExactly(FIRST_KEY);
+  }
+
+  private void advance(long millis) {
+    clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(millis));
+  }
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright (c) 2020. dev-eth0.de All rights reserved.
+ */
+
+package de.dev.eth0.springboot.httpclient.impl.proxy;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.Test;
+
+import de.dev.eth0.springboot.httpclient.HttpClientProperties;
+
+public class ProxyLoadBalancerTest {
+
+  private static final HttpClientProperties.ProxyConfiguration FIRST_CONFIG = getProxyConfiguration("first");
+  private static final HttpClientProperties.ProxyConfiguration SECOND_CONFIG = getProxyConfiguration("second");
+  private static final HttpClientProperties.ProxyConfiguration THIRD_CONFIG = getProxyConfiguration("third");
+  private static final List<HttpClientProperties.ProxyConfiguration> CONFIGS = List.of(FIRST_CONFIG, SECOND_CONFIG, THIRD_CONFIG);
+  private static final List<Proxy> PROXIES = CONFIGS.stream()
+      .map(config -> new Proxy(Proxy.Type.HTTP, InetSocketAddress.createUnresolved(config.getProxyHost(), config.getProxyPort())))
+      .collect(Collectors.toUnmodifiableList());
+
+  @Test
+  public void createSelection_none() {
+    ProxySelection selection = new ProxyLoadBalancer(CONFIGS).createSelection("example.com", CONFIGS, PROXIES);
+
+    assertThat(selection.select()).isSameAs(PROXIES);
+    assertThat(selection.select()).isSameAs(PROXIES);
+  }
+
+  @Test
+  public void createSelection_roundRobin() {
+    List<HttpClientProperties.ProxyConfiguration> configs = withStrategy(HttpClientProperties.LoadBalancingStrategy.ROUND_ROBIN);
+    ProxyLoadBalancer underTest = new ProxyLoadBalancer(configs);
+
+    ProxySelection selection = underTest.createSelection("example.com", configs, PROXIES);
+    assertThat(selection.select()).containsExactly(PROXIES.get(0), PROXIES.get(1), PROXIES.get(2));
+    assertThat(selection.select()).containsExactly(PROXIES.get(1), PROXIES.get(0), PROXIES.get(2));
+    assertThat(selection.select()).containsExactly(PROXIES.get(2), PROXIES.get(0), PROXIES.get(1));
+
+    // the counter belongs to the proxy configuration, not to the selection of a single host
+    ProxySelection otherSelection = underTest.createSelection("example.de", configs, PROXIES);
+    assertThat(otherSelection.select().get(0)).isEqualTo(PROXIES.get(0));
+  }
+
+  @Test
+  public void createSelection_leastInFlight() {
+    List<HttpClientProperties.ProxyConfiguration> configs = withStrategy(HttpClientProperties.LoadBalancingStrategy.LEAST_IN_FLIGHT);
+    ProxyLoadBalancer underTest = new ProxyLoadBalancer(configs);
+    assertThat(underTest.isTrackingInFlight()).isTrue();
+
+    underTest.getInFlightCounter("first:3128").set(2);
+    underTest.getInFlightCounter("second:3128").set(1);
+    underTest.getInFlightCounter("third:3128").set(3);
+
+    ProxySelection selection = underTest.createSelection("example.com", configs, PROXIES);
+    assertThat(selection.select()).containsExactly(PROXIES.get(1), PROXIES.get(0), PROXIES.get(2));
+    assertThat(selection.select().get(0)).isEqualTo(PROXIES.get(1));
+  }
+
+  @Test
+  public void createSelection_consistentHash() {
+    List<HttpClientProperties.ProxyConfiguration> configs = withStrategy(HttpClientProperties.LoadBalancingStrategy.CONSISTENT_HASH);
+    ProxyLoadBalancer underTest = new ProxyLoadBalancer(configs);
+
+    List<Proxy> first = underTest.createSelection("example.com", configs, PROXIES).select();
+    assertThat(underTest.createSelection("example.com", configs, PROXIES).select()).isEqualTo(first);
+
+    long distinctProxies = IntStream.range(0, 100)
+        .mapToObj(i -> underTest.createSelection("host" + i + ".example.com", configs, PROXIES).select().get(0))
+        .distinct()
+        .count();
+    assertThat(distinctProxies).isEqualTo(PROXIES.size());
+  }
+
+  @Test
+  public void createSelection_consistentHash_stableOnRemoval() {
+    List<HttpClientProperties.ProxyConfiguration> configs = withStrategy(HttpClientProperties.LoadBalancingStrategy.CONSISTENT_HASH);
+    ProxyLoadBalancer underTest = new ProxyLoadBalancer(configs);
+
+    IntStream.range(0, 100).mapToObj(i -> "host" + i + ".example.com").forEach(host -> {
+      Proxy proxy = underTest.createSelection(host, configs, PROXIES).select().get(0);
+      if (!proxy.equals(PROXIES.get(2))) {
+        assertThat(underTest.createSelection(host, configs.subList(0, 2), PROXIES.subList(0, 2)).select().get(0)).isEqualTo(proxy);
+      }
+    });
+  }
+
+  private static List<HttpClientProperties.ProxyConfiguration> withStrategy(HttpClientProperties.LoadBalancingStrategy strategy) {
+    List<HttpClientProperties.ProxyConfiguration> configs = CONFIGS.stream()
+        .map(config -> getProxyConfiguration(config.getProxyHost()))
+        .collect(Collectors.toList());
+    configs.get(0).setLoadBalancing(strategy);
+    return configs;
+  }
+
+  private static HttpClientProperties.ProxyConfiguration getProxyConfiguration(String proxyHost) {
+    HttpClientProperties.ProxyConfiguration config = new HttpClientProperties.ProxyConfiguration();
+    config.setProxyHost(proxyHost);
+    return config;
+  }
+}
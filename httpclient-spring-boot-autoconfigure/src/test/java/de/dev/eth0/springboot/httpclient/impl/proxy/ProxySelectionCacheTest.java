@@ -0,0 +1,106 @@
+/*
+ * Copyright (c) 2020. dev-eth0.de All rights reserved.
+ */
+
+package de.dev.eth0.springboot.httpclient.impl.proxy;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import org.junit.jupiter.api.Test;
+
+public class ProxySelectionCacheTest {
+
+  private static final ProxySelection PROXIES = ProxySelection.ordered(
+      List.of(new Proxy(Proxy.Type.HTTP, InetSocketAddress.createUnresolved("localhost", 3128))));
+
+  private final AtomicInteger loadCount = new AtomicInteger();
+
+  private final Function<String, ProxySelection> loader = host -> {
+    loadCount.incrementAndGet();
+    return PROXIES;
+  };
+
+  @Test
+  public void get_cached() {
+    ProxySelectionCache underTest = new ProxySelectionCache(10);
+
+    assertThat(underTest.get("example.com", loader)).isSameAs(PROXIES);
+    assertThat(underTest.get("example.com", loader)).isSameAs(PROXIES);
+
+    assertThat(loadCount).hasValue(1);
+    assertThat(underTest.getMissCount()).isEqualTo(1);
+    assertThat(underTest.getHitCount()).isEqualTo(1);
+    assertThat(underTest.size()).isEqualTo(1);
+  }
+
+  @Test
+  public void get_evicted() {
+    ProxySelectionCache underTest = new ProxySelectionCache(2);
+
+    underTest.get("example.com", loader);
+    underTest.get("example.de", loader);
+    underTest.get("example.org", loader);
+
+    assertThat(underTest.size()).isEqualTo(2);
+    assertThat(underTest.getEvictionCount()).isEqualTo(1);
+    assertThat(underTest.getMissCount()).isEqualTo(3);
+  }
+
+  @Test
+  public void get_recentlyHitNotEvicted() {
+    ProxySelectionCache underTest = new ProxySelectionCache(2);
+
+    underTest.get("example.com", loader);
+    underTest.get("example.de", loader);
+    underTest.get("example.com", loader);
+    underTest.get("example.org", loader);
+    underTest.get("example.com", loader);
+
+    assertThat(loadCount).hasValue(3);
+    assertThat(underTest.getEvictionCount()).isEqualTo(1);
+    underTest.get("example.de", loader);
+    assertThat(loadCount).hasValue(4);
+  }
+
+  @Test
+  public void get_evictedAfterInvalidateAll() {
+    ProxySelectionCache underTest = new ProxySelectionCache(2);
+
+    underTest.get("example.com", loader);
+    underTest.invalidateAll();
+    underTest.get("example.de", loader);
+    underTest.get("example.org", loader);
+    underTest.get("example.net", loader);
+
+    assertThat(underTest.size()).isEqualTo(2);
+    assertThat(underTest.getEvictionCount()).isEqualTo(1);
+  }
+
+  @Test
+  public void get_disabled() {
+    ProxySelectionCache underTest = new ProxySelectionCache(0);
+
+    underTest.get("example.com", loader);
+    underTest.get("example.com", loader);
+
+    assertThat(loadCount).hasValue(2);
+    assertThat(underTest.size()).isZero();
+    assertThat(underTest.getHitCount()).isZero();
+  }
+
+  @Test
+  public void invalidateAll() {
+    ProxySelectionCache underTest = new ProxySelectionCache(10);
+
+    underTest.get("example.com", loader);
+    underTest.invalidateAll();
+    underTest.get("example.com", loader);
+
+    assertThat(loadCount).hasValue(2);
+  }
+}
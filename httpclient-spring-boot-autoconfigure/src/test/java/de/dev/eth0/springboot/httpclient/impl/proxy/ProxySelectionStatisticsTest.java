@@ -0,0 +1,84 @@
+/*
+ * Copyright (c) 2020. dev-eth0.de All rights reserved.
+ */
+
+package de.dev.eth0.springboot.httpclient.impl.proxy;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.util.List;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import de.dev.eth0.springboot.httpclient.HttpClientProperties;
+
+public class ProxySelectionStatisticsTest {
+
+  private ProxyAddressResolver addressResolver;
+  private ProxySelectionStatistics underTest;
+
+  @BeforeEach
+  public void setup() {
+    List<HttpClientProperties.ProxyConfiguration> configurations = List.of(
+        getProxyConfiguration("localhost", 3128), getProxyConfiguration("localhost", 3129), getProxyConfiguration(null, 3128));
+    addressResolver = new ProxyAddressResolver(configurations, 0);
+    underTest = new ProxySelectionStatistics(configurations, addressResolver);
+  }
+
+  @AfterEach
+  public void tearDown() {
+    addressResolver.close();
+  }
+
+  @Test
+  public void getKeys() {
+    assertThat(underTest.getKeys()).containsExactly("localhost:3128", "localhost:3129", ProxySelectionStatistics.DIRECT);
+  }
+
+  @Test
+  public void getKey() {
+    assertThat(underTest.getKey(addressResolver.getProxy("localhost", 3129))).isEqualTo("localhost:3129");
+    assertThat(underTest.getKey(Proxy.NO_PROXY)).isEqualTo(ProxySelectionStatistics.DIRECT);
+    assertThat(underTest.getKey(new Proxy(Proxy.Type.HTTP, InetSocketAddress.createUnresolved("unknown.invalid", 3128)))).isNull();
+  }
+
+  @Test
+  public void record_firstProxy() {
+    Proxy first = addressResolver.getProxy("localhost", 3128);
+    Proxy second = addressResolver.getProxy("localhost", 3129);
+
+    underTest.record(List.of(first, second));
+    underTest.record(List.of(first, second));
+    underTest.record(List.of(second, first));
+
+    assertThat(underTest.getCount("localhost:3128")).isEqualTo(2);
+    assertThat(underTest.getCount("localhost:3129")).isEqualTo(1);
+    assertThat(underTest.getCount(ProxySelectionStatistics.DIRECT)).isZero();
+  }
+
+  @Test
+  public void record_direct() {
+    underTest.record(List.of(Proxy.NO_PROXY));
+    underTest.record(List.of());
+
+    assertThat(underTest.getCount(ProxySelectionStatistics.DIRECT)).isEqualTo(2);
+  }
+
+  @Test
+  public void record_unknownProxy() {
+    underTest.record(List.of(new Proxy(Proxy.Type.HTTP, InetSocketAddress.createUnresolved("unknown.invalid", 3128))));
+
+    assertThat(underTest.getKeys()).allSatisfy(key -> assertThat(underTest.getCount(key)).isZero());
+    assertThat(underTest.getCount("unknown.invalid:3128")).isZero();
+  }
+
+  private static HttpClientProperties.ProxyConfiguration getProxyConfiguration(String host, int port) {
+    HttpClientProperties.ProxyConfiguration configuration = new HttpClientProperties.ProxyConfiguration();
+    configuration.setProxyHost(host);
+    configuration.setProxyPort(port);
+    return configuration;
+  }
+}
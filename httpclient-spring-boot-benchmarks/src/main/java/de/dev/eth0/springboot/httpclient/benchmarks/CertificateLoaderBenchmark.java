@@ -0,0 +1,93 @@
+/*
+ * Copyright (c) 2020. dev-eth0.de All rights reserved.
+ */
+
+package de.dev.eth0.springboot.httpclient.benchmarks;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.TimeUnit;
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.TrustManagerFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.dev.eth0.springboot.httpclient.HttpClientProperties;
+import de.dev.eth0.springboot.httpclient.impl.certificates.CertificateLoader;
+
+/**
+ * Loading the key and truststore and building the SSL context, as done for each configured client
+ * <p>
+ * The stores are copied to temporary files, as they can't be loaded from the benchmark jar.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CertificateLoaderBenchmark {
+
+  private static final String PASSWORD = "changeit";
+
+  private final HttpClientProperties httpClientProperties = new HttpClientProperties();
+  private Path keystore;
+  private Path truststore;
+  private KeyManagerFactory keyManagerFactory;
+  private TrustManagerFactory trustManagerFactory;
+
+  @Setup(Level.Trial)
+  public void setup() throws IOException {
+    keystore = copyResource("keystore.p12");
+    truststore = copyResource("truststore.jks");
+    httpClientProperties.getKeystore().setPath(keystore.toString());
+    httpClientProperties.getKeystore().setPassword(PASSWORD);
+    httpClientProperties.getTruststore().setPath(truststore.toString());
+    httpClientProperties.getTruststore().setPassword(PASSWORD);
+    keyManagerFactory = CertificateLoader.getKeyManagerFactory(httpClientProperties);
+    trustManagerFactory = CertificateLoader.getTrustManagerFactory(httpClientProperties);
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws IOException {
+    Files.deleteIfExists(keystore);
+    Files.deleteIfExists(truststore);
+  }
+
+  @Benchmark
+  public KeyManagerFactory loadKeystore() {
+    return CertificateLoader.getKeyManagerFactory(httpClientProperties);
+  }
+
+  @Benchmark
+  public TrustManagerFactory loadTruststore() {
+    return CertificateLoader.getTrustManagerFactory(httpClientProperties);
+  }
+
+  @Benchmark
+  public SSLContext buildSSLContext() {
+    return CertificateLoader.buildSSLContext(httpClientProperties, keyManagerFactory, trustManagerFactory);
+  }
+
+  private static Path copyResource(String name) throws IOException {
+    Path file = Files.createTempFile("benchmark", name);
+    try (InputStream is = CertificateLoaderBenchmark.class.getResourceAsStream("/" + name)) {
+      Files.copy(is, file, StandardCopyOption.REPLACE_EXISTING);
+    }
+    return file;
+  }
+}
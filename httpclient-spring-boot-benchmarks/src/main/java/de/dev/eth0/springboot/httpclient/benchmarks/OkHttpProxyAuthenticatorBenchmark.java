@@ -0,0 +1,86 @@
+/*
+ * Copyright (c) 2020. dev-eth0.de All rights reserved.
+ */
+
+package de.dev.eth0.springboot.httpclient.benchmarks;
+
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.net.ProxySelector;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import javax.net.SocketFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.dev.eth0.springboot.httpclient.HttpClientProperties;
+import de.dev.eth0.springboot.httpclient.impl.proxy.OkHttpProxyAuthenticator;
+import okhttp3.Address;
+import okhttp3.Authenticator;
+import okhttp3.Dns;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.Route;
+
+/**
+ * Answering the challenge of a proxy, for a proxy with credentials and a proxy without credentials
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class OkHttpProxyAuthenticatorBenchmark {
+
+  private OkHttpProxyAuthenticator authenticator;
+  private Route routeWithAuth;
+  private Route routeWithoutAuth;
+  private Response challenge;
+
+  @Setup(Level.Trial)
+  public void setup() {
+    HttpClientProperties.ProxyConfiguration proxyConfigWithAuth = new HttpClientProperties.ProxyConfiguration();
+    proxyConfigWithAuth.setProxyHost("proxy1.example.com");
+    proxyConfigWithAuth.setProxyPort(3128);
+    proxyConfigWithAuth.setProxyUser("user");
+    proxyConfigWithAuth.setProxyPassword("password");
+    HttpClientProperties.ProxyConfiguration proxyConfigWithoutAuth = new HttpClientProperties.ProxyConfiguration();
+    proxyConfigWithoutAuth.setProxyHost("proxy2.example.com");
+    proxyConfigWithoutAuth.setProxyPort(3128);
+    authenticator = new OkHttpProxyAuthenticator(new HttpClientProperties.ProxyConfiguration[] { proxyConfigWithAuth, proxyConfigWithoutAuth });
+
+    Address address = new Address("example.com", 443, Dns.SYSTEM, SocketFactory.getDefault(), null, null, null, Authenticator.NONE, null,
+        List.of(Protocol.HTTP_1_1), List.of(), ProxySelector.getDefault());
+    InetSocketAddress target = InetSocketAddress.createUnresolved("example.com", 443);
+    routeWithAuth = new Route(address, new Proxy(Proxy.Type.HTTP, InetSocketAddress.createUnresolved("proxy1.example.com", 3128)), target);
+    routeWithoutAuth = new Route(address, new Proxy(Proxy.Type.HTTP, InetSocketAddress.createUnresolved("proxy2.example.com", 3128)), target);
+    challenge = new Response.Builder()
+        .request(new Request.Builder().url("https://example.com/").build())
+        .protocol(Protocol.HTTP_1_1)
+        .code(407)
+        .message("Proxy Authentication Required")
+        .header("Proxy-Authenticate", "Basic realm=\"proxy\"")
+        .build();
+  }
+
+  @Benchmark
+  public Request authenticate() {
+    return authenticator.authenticate(routeWithAuth, challenge);
+  }
+
+  @Benchmark
+  public Request authenticateWithoutCredentials() {
+    return authenticator.authenticate(routeWithoutAuth, challenge);
+  }
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright (c) 2020. dev-eth0.de All rights reserved.
+ */
+
+package de.dev.eth0.springboot.httpclient.benchmarks;
+
+import java.net.Proxy;
+import java.net.URI;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.dev.eth0.springboot.httpclient.HttpClientProperties;
+import de.dev.eth0.springboot.httpclient.impl.proxy.ConfigurableProxySelector;
+
+/**
+ * Proxy selection with a growing number of host pattern rules
+ * <p>
+ * The requested hosts match the first rule, the last rule and no rule. With the selection cache, only the load
+ * balancing and health check of the cached selection are measured, without cache all rules are matched.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ProxySelectorBenchmark {
+
+  @Param({ "1", "10", "100", "1000" })
+  private int rules;
+
+  @Param({ "true", "false" })
+  private boolean cached;
+
+  private ConfigurableProxySelector proxySelector;
+  private URI[] uris;
+
+  @Setup(Level.Trial)
+  public void setup() {
+    HttpClientProperties.ProxyConfiguration[] proxyConfigurations = new HttpClientProperties.ProxyConfiguration[rules];
+    for (int i = 0; i < rules; i++) {
+      HttpClientProperties.ProxyConfiguration proxyConfiguration = new HttpClientProperties.ProxyConfiguration();
+      proxyConfiguration.setHostPatterns(new String[] { "host" + i + "\\.example\\.com" });
+      proxyConfiguration.setProxyHost("localhost");
+      proxyConfiguration.setProxyPort(3128 + i % 10);
+      proxyConfigurations[i] = proxyConfiguration;
+    }
+    HttpClientProperties.ProxySelectorConfiguration proxySelectorConfiguration = new HttpClientProperties.ProxySelectorConfiguration();
+    proxySelectorConfiguration.setCacheSize(cached ? HttpClientProperties.ProxySelectorConfiguration.DEFAULT_CACHE_SIZE : 0);
+    proxySelector = new ConfigurableProxySelector(proxyConfigurations, proxySelectorConfiguration);
+    uris = new URI[] {
+        URI.create("https://host0.example.com/"),
+        URI.create("https://host" + (rules - 1) + ".example.com/"),
+        URI.create("https://unmatched.example.org/")
+    };
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    proxySelector.close();
+  }
+
+  @Benchmark
+  public List<Proxy> selectFirstRule() {
+    return proxySelector.select(uris[0]);
+  }
+
+  @Benchmark
+  public List<Proxy> selectLastRule() {
+    return proxySelector.select(uris[1]);
+  }
+
+  @Benchmark
+  public List<Proxy> selectNoRule() {
+    return proxySelector.select(uris[2]);
+  }
+}
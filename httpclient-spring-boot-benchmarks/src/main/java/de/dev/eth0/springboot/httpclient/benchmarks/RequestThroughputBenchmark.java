@@ -0,0 +1,101 @@
+/*
+ * Copyright (c) 2020. dev-eth0.de All rights reserved.
+ */
+
+package de.dev.eth0.springboot.httpclient.benchmarks;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.util.EntityUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.dev.eth0.springboot.httpclient.HttpClientProperties;
+import de.dev.eth0.springboot.httpclient.impl.ConfigurableApacheHttpClientFactory;
+import de.dev.eth0.springboot.httpclient.impl.ConfigurableOkHttpClientFactory;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+
+/**
+ * End-to-end requests of the configured clients against an in-process server, including the pooling, proxy selection
+ * and phase listeners of the factories
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Threads(4)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RequestThroughputBenchmark {
+
+  private static final String BODY = "{\"status\":\"ok\"}";
+
+  private MockWebServer server;
+  private ConfigurableApacheHttpClientFactory apacheHttpClientFactory;
+  private CloseableHttpClient apacheHttpClient;
+  private ConfigurableOkHttpClientFactory okHttpClientFactory;
+  private OkHttpClient okHttpClient;
+  private String url;
+
+  @Setup(Level.Trial)
+  public void setup() throws IOException {
+    server = new MockWebServer();
+    server.setDispatcher(new Dispatcher() {
+      @Override
+      public MockResponse dispatch(RecordedRequest recordedRequest) {
+        return new MockResponse().setBody(BODY);
+      }
+    });
+    server.start();
+    url = server.url("/").toString();
+
+    HttpClientProperties httpClientProperties = new HttpClientProperties();
+    apacheHttpClientFactory = new ConfigurableApacheHttpClientFactory(HttpClientBuilder.create(), httpClientProperties);
+    apacheHttpClient = apacheHttpClientFactory.createBuilder().build();
+    okHttpClientFactory = new ConfigurableOkHttpClientFactory(new OkHttpClient.Builder(), httpClientProperties);
+    okHttpClient = okHttpClientFactory.createBuilder(false).build();
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws IOException {
+    apacheHttpClient.close();
+    apacheHttpClientFactory.destroy();
+    okHttpClientFactory.destroy();
+    server.shutdown();
+  }
+
+  @Benchmark
+  public String apacheHttpClient() throws IOException {
+    try (CloseableHttpResponse response = apacheHttpClient.execute(new HttpGet(url))) {
+      return EntityUtils.toString(response.getEntity());
+    }
+  }
+
+  @Benchmark
+  public String okHttpClient() throws IOException {
+    try (Response response = okHttpClient.newCall(new Request.Builder().url(url).build()).execute()) {
+      return response.body().string();
+    }
+  }
+}
@@ -0,0 +1,157 @@
+/*
+ * Copyright (c) 2020. dev-eth0.de All rights reserved.
+ */
+
+package de.dev.eth0.springboot.httpclient.benchmarks;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.Socket;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLServerSocket;
+import javax.net.ssl.SSLSession;
+import javax.net.ssl.SSLSocket;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.dev.eth0.springboot.httpclient.HttpClientProperties;
+import de.dev.eth0.springboot.httpclient.impl.certificates.CertificateLoader;
+import de.dev.eth0.springboot.httpclient.impl.certificates.SharedSSLContext;
+
+/**
+ * Full and resumed TLS handshakes of the shared SSL context against a local server, per security provider and protocol
+ * <p>
+ * The server always uses the default provider, so only the client side differs between the providers. The session of a
+ * full handshake is invalidated afterwards, so it isn't resumed by the next one.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TlsHandshakeBenchmark {
+
+  private static final String PASSWORD = "changeit";
+
+  @Param({ "SunJSSE", "org.conscrypt.OpenSSLProvider" })
+  public String provider;
+
+  @Param({ "TLSv1.2", "TLSv1.3" })
+  public String protocol;
+
+  private Path keystore;
+  private Path truststore;
+  private SSLServerSocket serverSocket;
+  private ExecutorService server;
+  private SharedSSLContext sslContext;
+
+  @Setup(Level.Trial)
+  public void setup() throws IOException {
+    keystore = copyResource("server.p12");
+    truststore = copyResource("server-truststore.jks");
+
+    HttpClientProperties serverProperties = new HttpClientProperties();
+    serverProperties.setSslContext("TLS");
+    serverProperties.getKeystore().setPath(keystore.toString());
+    serverProperties.getKeystore().setPassword(PASSWORD);
+    SSLContext serverContext = CertificateLoader.buildSSLContext(serverProperties,
+        CertificateLoader.getKeyManagerFactory(serverProperties), null);
+    serverSocket = (SSLServerSocket)serverContext.getServerSocketFactory().createServerSocket(0);
+    server = Executors.newCachedThreadPool(runnable -> {
+      Thread thread = new Thread(runnable, "handshake-server");
+      thread.setDaemon(true);
+      return thread;
+    });
+    server.execute(this::accept);
+
+    HttpClientProperties clientProperties = new HttpClientProperties();
+    clientProperties.setSslContext("TLS");
+    clientProperties.getTruststore().setPath(truststore.toString());
+    clientProperties.getTruststore().setPassword(PASSWORD);
+    clientProperties.getSsl().setProvider(provider);
+    clientProperties.getSsl().setProtocols(new String[] { protocol });
+    sslContext = CertificateLoader.getSharedSSLContext(clientProperties);
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws IOException {
+    serverSocket.close();
+    server.shutdownNow();
+    CertificateLoader.clearSharedSSLContexts();
+    Files.deleteIfExists(keystore);
+    Files.deleteIfExists(truststore);
+  }
+
+  @Benchmark
+  public SSLSession fullHandshake() throws IOException {
+    SSLSession session = handshake();
+    session.invalidate();
+    return session;
+  }
+
+  @Benchmark
+  public SSLSession resumedHandshake() throws IOException {
+    return handshake();
+  }
+
+  private SSLSession handshake() throws IOException {
+    try (SSLSocket socket = (SSLSocket)sslContext.getSocketFactory().createSocket("localhost", serverSocket.getLocalPort())) {
+      socket.startHandshake();
+      // TLSv1.3 session tickets are received after the handshake
+      socket.getInputStream().read();
+      return socket.getSession();
+    }
+  }
+
+  private void accept() {
+    while (!serverSocket.isClosed()) {
+      try {
+        Socket socket = serverSocket.accept();
+        server.execute(() -> respond((SSLSocket)socket));
+      }
+      catch (IOException ex) {
+        // server closed
+      }
+    }
+  }
+
+  private static void respond(SSLSocket socket) {
+    try (socket) {
+      socket.startHandshake();
+      socket.getOutputStream().write(1);
+      socket.getOutputStream().flush();
+      while (socket.getInputStream().read() != -1) {
+        // wait for the client to close the connection
+      }
+    }
+    catch (IOException ex) {
+      // connection closed by the client
+    }
+  }
+
+  private static Path copyResource(String name) throws IOException {
+    Path file = Files.createTempFile("benchmark", name);
+    try (InputStream is = TlsHandshakeBenchmark.class.getResourceAsStream("/" + name)) {
+      Files.copy(is, file, StandardCopyOption.REPLACE_EXISTING);
+    }
+    return file;
+  }
+}
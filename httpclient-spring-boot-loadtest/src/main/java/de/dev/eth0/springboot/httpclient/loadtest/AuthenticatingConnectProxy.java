@@ -0,0 +1,184 @@
+/*
+ * Copyright (c) 2020. dev-eth0.de All rights reserved.
+ */
+
+package de.dev.eth0.springboot.httpclient.loadtest;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.LongAdder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Minimal proxy which only supports CONNECT requests with basic authentication, as used for HTTPS through a proxy
+ * <p>
+ * Requests without valid credentials are answered with a challenge on the same connection, so the clients can retry
+ * with credentials. Each tunnel uses two threads copying the bytes in both directions until either side closes.
+ */
+public class AuthenticatingConnectProxy implements Closeable {
+
+  private static final Logger LOG = LoggerFactory.getLogger(AuthenticatingConnectProxy.class);
+  private static final String PROXY_AUTHORIZATION = "proxy-authorization:";
+
+  private final String expectedAuthorization;
+  private final ServerSocket serverSocket;
+  private final ExecutorService executor = Executors.newCachedThreadPool(runnable -> {
+    Thread thread = new Thread(runnable, "loadtest-proxy");
+    thread.setDaemon(true);
+    return thread;
+  });
+  private final LongAdder tunnels = new LongAdder();
+  private final LongAdder challenges = new LongAdder();
+
+  /**
+   * @param user expected user
+   * @param password expected password
+   */
+  public AuthenticatingConnectProxy(String user, String password) throws IOException {
+    this.expectedAuthorization = "Basic " + Base64.getEncoder().encodeToString((user + ":" + password).getBytes(StandardCharsets.ISO_8859_1));
+    this.serverSocket = new ServerSocket(0, 512, InetAddress.getLoopbackAddress());
+  }
+
+  /**
+   * Starts accepting connections in the background
+   */
+  public void start() {
+    executor.execute(this::accept);
+  }
+
+  /**
+   * @return port of the proxy on the loopback address
+   */
+  public int getPort() {
+    return serverSocket.getLocalPort();
+  }
+
+  /**
+   * @return number of established tunnels
+   */
+  public long getTunnelCount() {
+    return tunnels.sum();
+  }
+
+  /**
+   * @return number of requests answered with a challenge
+   */
+  public long getChallengeCount() {
+    return challenges.sum();
+  }
+
+  @Override
+  public void close() throws IOException {
+    serverSocket.close();
+    executor.shutdownNow();
+  }
+
+  private void accept() {
+    while (!serverSocket.isClosed()) {
+      try {
+        Socket client = serverSocket.accept();
+        executor.execute(() -> handle(client));
+      }
+      catch (IOException ex) {
+        if (!serverSocket.isClosed()) {
+          LOG.warn("Could not accept connection", ex);
+        }
+      }
+    }
+  }
+
+  private void handle(Socket client) {
+    try (client) {
+      InputStream in = new BufferedInputStream(client.getInputStream());
+      OutputStream out = client.getOutputStream();
+      String requestLine;
+      while ((requestLine = readLine(in)) != null) {
+        boolean authorized = false;
+        String header;
+        while ((header = readLine(in)) != null && !header.isEmpty()) {
+          if (header.toLowerCase(Locale.ROOT).startsWith(PROXY_AUTHORIZATION)) {
+            authorized = expectedAuthorization.equals(header.substring(PROXY_AUTHORIZATION.length()).trim());
+          }
+        }
+        String[] parts = requestLine.split(" ");
+        if (parts.length != 3 || !"CONNECT".equals(parts[0])) {
+          write(out, "HTTP/1.1 405 Method Not Allowed\r\nContent-Length: 0\r\nConnection: close\r\n\r\n");
+          return;
+        }
+        if (!authorized) {
+          challenges.increment();
+          write(out, "HTTP/1.1 407 Proxy Authentication Required\r\nProxy-Authenticate: Basic realm=\"loadtest\"\r\nContent-Length: 0\r\n\r\n");
+          continue;
+        }
+        tunnel(client, in, out, parts[1]);
+        return;
+      }
+    }
+    catch (IOException ex) {
+      LOG.debug("Proxy connection failed", ex);
+    }
+  }
+
+  private void tunnel(Socket client, InputStream in, OutputStream out, String authority) throws IOException {
+    int separator = authority.lastIndexOf(':');
+    try (Socket target = new Socket(authority.substring(0, separator), Integer.parseInt(authority.substring(separator + 1)))) {
+      write(out, "HTTP/1.1 200 Connection established\r\n\r\n");
+      tunnels.increment();
+      executor.execute(() -> copy(in, target));
+      copy(target.getInputStream(), client);
+    }
+  }
+
+  /**
+   * Copies until the end of the stream and closes the written socket afterwards, so the other direction ends as well
+   */
+  private static void copy(InputStream in, Socket out) {
+    try {
+      in.transferTo(out.getOutputStream());
+    }
+    catch (SocketException ex) {
+      // closed by the other direction
+    }
+    catch (IOException ex) {
+      LOG.debug("Tunnel failed", ex);
+    }
+    finally {
+      try {
+        out.close();
+      }
+      catch (IOException ex) {
+        // ignore
+      }
+    }
+  }
+
+  private static void write(OutputStream out, String response) throws IOException {
+    out.write(response.getBytes(StandardCharsets.ISO_8859_1));
+    out.flush();
+  }
+
+  private static String readLine(InputStream in) throws IOException {
+    ByteArrayOutputStream line = new ByteArrayOutputStream();
+    int b;
+    while ((b = in.read()) != -1 && b != '\n') {
+      if (b != '\r') {
+        line.write(b);
+      }
+    }
+    return b == -1 && line.size() == 0 ? null : line.toString(StandardCharsets.ISO_8859_1);
+  }
+}
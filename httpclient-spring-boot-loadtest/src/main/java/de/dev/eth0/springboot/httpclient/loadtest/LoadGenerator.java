@@ -0,0 +1,161 @@
+/*
+ * Copyright (c) 2020. dev-eth0.de All rights reserved.
+ */
+
+package de.dev.eth0.springboot.httpclient.loadtest;
+
+import java.time.Duration;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.distribution.HistogramSnapshot;
+import io.micrometer.core.instrument.distribution.ValueAtPercentile;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Runs requests from a fixed number of threads, either as fast as possible or at a fixed total rate
+ * <p>
+ * With a rate, each thread sends its requests at fixed intervals and the latency is measured from the time the request
+ * was scheduled, so a slow response also counts for the delayed requests behind it.
+ */
+public class LoadGenerator {
+
+  private static final Logger LOG = LoggerFactory.getLogger(LoadGenerator.class);
+  private static final double[] PERCENTILES = { 0.5, 0.9, 0.99 };
+
+  private final int concurrency;
+  private final int rate;
+
+  /**
+   * @param concurrency number of threads sending requests
+   * @param rate total requests per second, 0 sends as fast as possible
+   */
+  public LoadGenerator(int concurrency, int rate) {
+    this.concurrency = concurrency;
+    this.rate = rate;
+  }
+
+  /**
+   * @param request request to send
+   * @param warmup warmup in ms, not recorded
+   * @param duration duration of the recorded run in ms
+   * @return recorded latencies and failures
+   */
+  public Measurement run(Callable<?> request, long warmup, long duration) throws InterruptedException {
+    if (warmup > 0) {
+      execute(request, warmup, null);
+    }
+    Measurement measurement = new Measurement(duration);
+    execute(request, duration, measurement);
+    return measurement;
+  }
+
+  private void execute(Callable<?> request, long duration, Measurement measurement) throws InterruptedException {
+    ExecutorService executor = Executors.newFixedThreadPool(concurrency);
+    CountDownLatch done = new CountDownLatch(concurrency);
+    long start = System.nanoTime();
+    long end = start + TimeUnit.MILLISECONDS.toNanos(duration);
+    long interval = rate > 0 ? TimeUnit.SECONDS.toNanos(concurrency) / rate : 0;
+    for (int i = 0; i < concurrency; i++) {
+      // spread the first requests of the threads over the interval
+      long first = start + interval * i / concurrency;
+      executor.execute(() -> {
+        try {
+          send(request, first, end, interval, measurement);
+        }
+        finally {
+          done.countDown();
+        }
+      });
+    }
+    done.await();
+    executor.shutdown();
+  }
+
+  private void send(Callable<?> request, long first, long end, long interval, Measurement measurement) {
+    long scheduled = first;
+    while (scheduled < end) {
+      long now = System.nanoTime();
+      if (interval > 0 && scheduled > now) {
+        LockSupport.parkNanos(scheduled - now);
+      }
+      long start = interval > 0 ? scheduled : System.nanoTime();
+      try {
+        request.call();
+        if (measurement != null) {
+          measurement.latencies.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+      }
+      catch (Exception ex) {
+        LOG.debug("Request failed", ex);
+        if (measurement != null) {
+          measurement.errors.increment();
+        }
+      }
+      scheduled = interval > 0 ? scheduled + interval : System.nanoTime();
+    }
+  }
+
+  /**
+   * Latencies and failures of a run
+   */
+  public static final class Measurement {
+
+    private final long duration;
+    private final Timer latencies;
+    private final LongAdder errors = new LongAdder();
+
+    private Measurement(long duration) {
+      this.duration = duration;
+      // a single buffer which doesn't expire during the run, so the percentiles cover all requests
+      this.latencies = Timer.builder("loadtest.latency")
+          .publishPercentiles(PERCENTILES)
+          .percentilePrecision(2)
+          .distributionStatisticBufferLength(1)
+          .distributionStatisticExpiry(Duration.ofMillis(duration).multipliedBy(2))
+          .register(new SimpleMeterRegistry());
+    }
+
+    /**
+     * @return number of successful requests
+     */
+    public long getRequests() {
+      return latencies.count();
+    }
+
+    /**
+     * @return number of failed requests
+     */
+    public long getErrors() {
+      return errors.sum();
+    }
+
+    /**
+     * @return successful requests per second
+     */
+    public double getThroughput() {
+      return latencies.count() * 1000d / duration;
+    }
+
+    /**
+     * @return 50th, 90th and 99th percentile and maximum of the latency in ms
+     */
+    public double[] getLatencies() {
+      HistogramSnapshot snapshot = latencies.takeSnapshot();
+      ValueAtPercentile[] percentiles = snapshot.percentileValues();
+      double[] values = new double[percentiles.length + 1];
+      for (int i = 0; i < percentiles.length; i++) {
+        values[i] = percentiles[i].value(TimeUnit.MILLISECONDS);
+      }
+      values[percentiles.length] = snapshot.max(TimeUnit.MILLISECONDS);
+      return values;
+    }
+  }
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright (c) 2020. dev-eth0.de All rights reserved.
+ */
+
+package de.dev.eth0.springboot.httpclient.loadtest;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.web.client.RestTemplateBuilder;
+import org.springframework.cloud.openfeign.EnableFeignClients;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.core.env.SimpleCommandLinePropertySource;
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.web.client.RestTemplate;
+
+/**
+ * Starts the local server and proxy once and runs the load test for each client backend in its own context, so all
+ * backends use the same {@code http.client.*} configuration
+ * <p>
+ * The backends are selected with {@code --loadtest.clients=apache,okhttp}, each one is activated by the profile of the
+ * same name.
+ */
+@SpringBootApplication
+@EnableFeignClients
+@EnableConfigurationProperties(LoadTestProperties.class)
+public class LoadTestApplication {
+
+  private static final Logger log = LoggerFactory.getLogger(LoadTestApplication.class);
+  /** credentials of the proxy, configured in the proxy profile */
+  static final String PROXY_USER = "loadtest";
+  static final String PROXY_PASSWORD = "loadtest123";
+
+  public static void main(String[] args) throws IOException, InterruptedException {
+    String clients = new SimpleCommandLinePropertySource(args).getProperty("loadtest.clients");
+    List<LoadTestResult> results = new ArrayList<>();
+    try (LocalHttpsServer server = new LocalHttpsServer();
+        AuthenticatingConnectProxy proxy = new AuthenticatingConnectProxy(PROXY_USER, PROXY_PASSWORD)) {
+      server.start();
+      proxy.start();
+      for (String client : (clients != null ? clients : "apache,okhttp").split(",")) {
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(LoadTestApplication.class)
+            .profiles(client.trim())
+            .properties("loadtest.server-url=" + server.getUrl(), "loadtest.proxy-port=" + proxy.getPort())
+            .initializers(ctx -> {
+              ctx.getBeanFactory().registerSingleton("localHttpsServer", server);
+              ctx.getBeanFactory().registerSingleton("authenticatingConnectProxy", proxy);
+            })
+            .run(args)) {
+          results.addAll(context.getBean(LoadTestRunner.class).run(client.trim()));
+        }
+      }
+    }
+    StringBuilder report = new StringBuilder("Load test results").append(System.lineSeparator()).append(LoadTestResult.header());
+    results.forEach(result -> report.append(System.lineSeparator()).append(result));
+    log.info(report.toString());
+  }
+
+  /**
+   * We need to set the custom {@link ClientHttpRequestFactory}, otherwise the default Client is used
+   */
+  @Bean
+  public RestTemplate restTemplate(RestTemplateBuilder builder, ClientHttpRequestFactory clientHttpRequestFactory) {
+    return builder.requestFactory(() -> clientHttpRequestFactory).build();
+  }
+
+  @Bean
+  public LoadTestRunner loadTestRunner(LoadTestProperties properties, RestTemplate restTemplate, PayloadFeignClient feignClient,
+      LocalHttpsServer server, AuthenticatingConnectProxy proxy) {
+    return new LoadTestRunner(properties, restTemplate, feignClient, server, proxy);
+  }
+}
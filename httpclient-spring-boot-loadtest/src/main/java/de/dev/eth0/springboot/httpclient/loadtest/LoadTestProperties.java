@@ -0,0 +1,90 @@
+/*
+ * Copyright (c) 2020. dev-eth0.de All rights reserved.
+ */
+
+package de.dev.eth0.springboot.httpclient.loadtest;
+
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotBlank;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.validation.annotation.Validated;
+
+/**
+ * Load Test Configuration
+ */
+@Validated
+@ConfigurationProperties(prefix = "loadtest")
+public class LoadTestProperties {
+
+  /** set by the {@link LoadTestApplication} */
+  @NotBlank
+  private String serverUrl;
+  @Min(1)
+  private int concurrency = 16;
+  @Min(0)
+  private int rate;
+  @Min(0)
+  private long warmup = 5000;
+  @Min(1)
+  private long duration = 30000;
+  @Min(0)
+  private int payloadSize = 1024;
+  @Min(0)
+  private long responseDelay;
+
+  public String getServerUrl() {
+    return serverUrl;
+  }
+
+  public void setServerUrl(String serverUrl) {
+    this.serverUrl = serverUrl;
+  }
+
+  public int getConcurrency() {
+    return concurrency;
+  }
+
+  public void setConcurrency(int concurrency) {
+    this.concurrency = concurrency;
+  }
+
+  public int getRate() {
+    return rate;
+  }
+
+  public void setRate(int rate) {
+    this.rate = rate;
+  }
+
+  public long getWarmup() {
+    return warmup;
+  }
+
+  public void setWarmup(long warmup) {
+    this.warmup = warmup;
+  }
+
+  public long getDuration() {
+    return duration;
+  }
+
+  public void setDuration(long duration) {
+    this.duration = duration;
+  }
+
+  public int getPayloadSize() {
+    return payloadSize;
+  }
+
+  public void setPayloadSize(int payloadSize) {
+    this.payloadSize = payloadSize;
+  }
+
+  public long getResponseDelay() {
+    return responseDelay;
+  }
+
+  public void setResponseDelay(long responseDelay) {
+    this.responseDelay = responseDelay;
+  }
+}
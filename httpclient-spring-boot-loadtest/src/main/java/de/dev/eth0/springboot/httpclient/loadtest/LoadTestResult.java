@@ -0,0 +1,117 @@
+/*
+ * Copyright (c) 2020. dev-eth0.de All rights reserved.
+ */
+
+package de.dev.eth0.springboot.httpclient.loadtest;
+
+/**
+ * Result of a single load test run, latencies in ms
+ */
+public class LoadTestResult {
+
+  private final String client;
+  private final String api;
+  private final long requests;
+  private final long errors;
+  private final double throughput;
+  private final double p50;
+  private final double p90;
+  private final double p99;
+  private final double max;
+  private final long connections;
+  private final long tunnels;
+
+  LoadTestResult(String client, String api, long requests, long errors, double throughput, double p50, double p90, double p99,
+      double max, long connections, long tunnels) {
+    this.client = client;
+    this.api = api;
+    this.requests = requests;
+    this.errors = errors;
+    this.throughput = throughput;
+    this.p50 = p50;
+    this.p90 = p90;
+    this.p99 = p99;
+    this.max = max;
+    this.connections = connections;
+    this.tunnels = tunnels;
+  }
+
+  /**
+   * @return client backend, e.g. apache or okhttp
+   */
+  public String getClient() {
+    return client;
+  }
+
+  /**
+   * @return api used for the requests, e.g. RestTemplate or Feign
+   */
+  public String getApi() {
+    return api;
+  }
+
+  /**
+   * @return number of successful requests
+   */
+  public long getRequests() {
+    return requests;
+  }
+
+  /**
+   * @return number of failed requests
+   */
+  public long getErrors() {
+    return errors;
+  }
+
+  /**
+   * @return successful requests per second
+   */
+  public double getThroughput() {
+    return throughput;
+  }
+
+  public double getP50() {
+    return p50;
+  }
+
+  public double getP90() {
+    return p90;
+  }
+
+  public double getP99() {
+    return p99;
+  }
+
+  public double getMax() {
+    return max;
+  }
+
+  /**
+   * @return number of connections opened to the server
+   */
+  public long getConnections() {
+    return connections;
+  }
+
+  /**
+   * @return number of tunnels opened through the proxy
+   */
+  public long getTunnels() {
+    return tunnels;
+  }
+
+  /**
+   * @return header of the table printed by {@link #toString()}
+   */
+  static String header() {
+    return String.format("%-8s %-12s %10s %8s %10s %9s %9s %9s %9s %11s %8s",
+        "client", "api", "requests", "errors", "req/s", "p50 ms", "p90 ms", "p99 ms", "max ms", "connections", "tunnels");
+  }
+
+  @Override
+  public String toString() {
+    return String.format("%-8s %-12s %10d %8d %10.1f %9.2f %9.2f %9.2f %9.2f %11d %8d",
+        client, api, requests, errors, throughput, p50, p90, p99, max, connections, tunnels);
+  }
+}
@@ -0,0 +1,59 @@
+/*
+ * Copyright (c) 2020. dev-eth0.de All rights reserved.
+ */
+
+package de.dev.eth0.springboot.httpclient.loadtest;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.web.client.RestTemplate;
+
+/**
+ * Runs the load test with the {@link RestTemplate} and the Feign client of the current context, each one after the
+ * other so the connections opened by each api can be counted
+ */
+public class LoadTestRunner {
+
+  private static final Logger LOG = LoggerFactory.getLogger(LoadTestRunner.class);
+
+  private final LoadTestProperties properties;
+  private final RestTemplate restTemplate;
+  private final PayloadFeignClient feignClient;
+  private final LocalHttpsServer server;
+  private final AuthenticatingConnectProxy proxy;
+
+  public LoadTestRunner(LoadTestProperties properties, RestTemplate restTemplate, PayloadFeignClient feignClient,
+      LocalHttpsServer server, AuthenticatingConnectProxy proxy) {
+    this.properties = properties;
+    this.restTemplate = restTemplate;
+    this.feignClient = feignClient;
+    this.server = server;
+    this.proxy = proxy;
+  }
+
+  /**
+   * @param client name of the client backend of the current context
+   * @return results of the RestTemplate and Feign runs
+   */
+  public List<LoadTestResult> run(String client) throws InterruptedException {
+    server.configure(properties.getPayloadSize(), properties.getResponseDelay());
+    String url = properties.getServerUrl() + "payload";
+    return List.of(
+        run(client, "RestTemplate", () -> restTemplate.getForObject(url, Payload.class)),
+        run(client, "Feign", feignClient::getPayload));
+  }
+
+  private LoadTestResult run(String client, String api, Callable<Payload> request) throws InterruptedException {
+    LOG.info("Running {} with {} for {} ms", client, api, properties.getDuration());
+    LoadGenerator loadGenerator = new LoadGenerator(properties.getConcurrency(), properties.getRate());
+    long connections = server.getConnectionCount();
+    long tunnels = proxy.getTunnelCount();
+    LoadGenerator.Measurement measurement = loadGenerator.run(request, properties.getWarmup(), properties.getDuration());
+    double[] latencies = measurement.getLatencies();
+    return new LoadTestResult(client, api, measurement.getRequests(), measurement.getErrors(), measurement.getThroughput(),
+        latencies[0], latencies[1], latencies[2], latencies[3],
+        server.getConnectionCount() - connections, proxy.getTunnelCount() - tunnels);
+  }
+}
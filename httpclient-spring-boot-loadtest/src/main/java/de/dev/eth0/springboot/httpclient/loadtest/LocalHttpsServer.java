@@ -0,0 +1,118 @@
+/*
+ * Copyright (c) 2020. dev-eth0.de All rights reserved.
+ */
+
+package de.dev.eth0.springboot.httpclient.loadtest;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.GeneralSecurityException;
+import java.security.KeyStore;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+
+/**
+ * Local HTTPS server answering each request with a payload of the configured size, using the certificate of
+ * {@code server.p12} for localhost
+ * <p>
+ * New connections are counted by the first request received on them.
+ */
+public class LocalHttpsServer implements Closeable {
+
+  private static final String KEYSTORE = "/server.p12";
+  private static final char[] PASSWORD = "changeit".toCharArray();
+
+  private final MockWebServer server = new MockWebServer();
+  private final LongAdder requests = new LongAdder();
+  private final LongAdder connections = new LongAdder();
+  private volatile String body = "";
+  private volatile long responseDelay;
+
+  public LocalHttpsServer() throws IOException {
+    server.useHttps(buildSSLContext().getSocketFactory(), false);
+    server.setDispatcher(new Dispatcher() {
+      @Override
+      public MockResponse dispatch(RecordedRequest request) {
+        requests.increment();
+        if (request.getSequenceNumber() == 0) {
+          connections.increment();
+        }
+        MockResponse response = new MockResponse()
+            .setHeader("Content-Type", "application/json")
+            .setBody(body);
+        if (responseDelay > 0) {
+          response.setHeadersDelay(responseDelay, TimeUnit.MILLISECONDS);
+        }
+        return response;
+      }
+    });
+  }
+
+  /**
+   * Starts the server on a free port
+   */
+  public void start() throws IOException {
+    server.start();
+  }
+
+  /**
+   * @param payloadSize size of the payload string of each response
+   * @param responseDelay delay of each response in ms
+   */
+  public void configure(int payloadSize, long responseDelay) {
+    char[] payload = new char[payloadSize];
+    Arrays.fill(payload, 'x');
+    this.body = "{\"payload\":\"" + new String(payload) + "\"}";
+    this.responseDelay = responseDelay;
+  }
+
+  /**
+   * @return url of the server, using localhost as host
+   */
+  public String getUrl() {
+    return server.url("/").toString();
+  }
+
+  /**
+   * @return number of requests received
+   */
+  public long getRequestCount() {
+    return requests.sum();
+  }
+
+  /**
+   * @return number of connections which received at least one request
+   */
+  public long getConnectionCount() {
+    return connections.sum();
+  }
+
+  @Override
+  public void close() throws IOException {
+    server.shutdown();
+  }
+
+  private static SSLContext buildSSLContext() throws IOException {
+    try (InputStream is = LocalHttpsServer.class.getResourceAsStream(KEYSTORE)) {
+      KeyStore keyStore = KeyStore.getInstance("PKCS12");
+      keyStore.load(is, PASSWORD);
+      KeyManagerFactory keyManagerFactory = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+      keyManagerFactory.init(keyStore, PASSWORD);
+      SSLContext sslContext = SSLContext.getInstance("TLS");
+      sslContext.init(keyManagerFactory.getKeyManagers(), null, null);
+      return sslContext;
+    }
+    catch (GeneralSecurityException ex) {
+      throw new IOException("Could not load " + KEYSTORE, ex);
+    }
+  }
+}
@@ -0,0 +1,15 @@
+/*
+ * Copyright (c) 2020. dev-eth0.de All rights reserved.
+ */
+
+package de.dev.eth0.springboot.httpclient.loadtest;
+
+import org.springframework.cloud.openfeign.FeignClient;
+import org.springframework.web.bind.annotation.GetMapping;
+
+@FeignClient(value = "payloadClient", url = "${loadtest.server-url}")
+public interface PayloadFeignClient {
+
+  @GetMapping("/payload")
+  Payload getPayload();
+}